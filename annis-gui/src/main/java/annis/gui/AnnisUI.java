@@ -217,6 +217,8 @@ public class AnnisUI extends CommonUI
   /**
    * Get a cached version of the {@link CorpusConfig} for a corpus.
    *
+   * The cache is cleared when the service reports a changed corpus list.
+   *
    * @param corpus
    * @return
    */
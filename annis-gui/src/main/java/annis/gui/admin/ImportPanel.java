@@ -19,6 +19,7 @@ import annis.gui.LoginListener;
 import annis.libgui.Background;
 import annis.libgui.Helper;
 import annis.service.objects.ImportJob;
+import annis.service.objects.ImportProgress;
 import com.google.common.base.Splitter;
 import com.sun.jersey.api.client.ClientResponse;
 import com.sun.jersey.api.client.GenericType;
@@ -47,8 +48,12 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.net.URI;
 import java.text.DecimalFormat;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import javax.ws.rs.core.Response;
+import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -62,6 +67,19 @@ public class ImportPanel extends Panel
 {
   
   private static final Logger log = LoggerFactory.getLogger(ImportPanel.class);
+  
+  private static final Map<ImportProgress.Phase, String> PHASE_CAPTIONS 
+    = new EnumMap<>(ImportProgress.Phase.class);
+  static
+  {
+    PHASE_CAPTIONS.put(ImportProgress.Phase.PREPARE, "Preparing");
+    PHASE_CAPTIONS.put(ImportProgress.Phase.BULK_LOAD, "Loading files");
+    PHASE_CAPTIONS.put(ImportProgress.Phase.STAGING, "Checking corpus");
+    PHASE_CAPTIONS.put(ImportProgress.Phase.BINARY_DATA, "Copying media files");
+    PHASE_CAPTIONS.put(ImportProgress.Phase.CATALOG, "Adding corpus");
+    PHASE_CAPTIONS.put(ImportProgress.Phase.FACTS, "Creating search tables");
+    PHASE_CAPTIONS.put(ImportProgress.Phase.FINISH, "Finishing");
+  }
   private final VerticalLayout layout;
   private final TextArea txtMessages;
   private final Upload upload;
@@ -201,6 +219,21 @@ public class ImportPanel extends Panel
   }
   
 
+  private static String formatDuration(long millis)
+  {
+    long seconds = TimeUnit.MILLISECONDS.toSeconds(millis);
+    if(seconds < 60)
+    {
+      return seconds + " s";
+    }
+    long minutes = TimeUnit.SECONDS.toMinutes(seconds);
+    if(minutes < 60)
+    {
+      return minutes + " min";
+    }
+    return TimeUnit.MINUTES.toHours(minutes) + " h " + (minutes % 60) + " min";
+  }
+
   @Override
   public void updateProgress(long readBytes, long contentLength)
   {
@@ -342,6 +375,7 @@ public class ImportPanel extends Panel
               else if(lastStatus == ImportJob.Status.RUNNING)
               {
                 outputNewMessages(j.getMessages());
+                showProgress(j.getProgress());
               }
               break;
             }
@@ -380,12 +414,52 @@ public class ImportPanel extends Panel
         public void run()
         {
           progress.setVisible(false);
+          progress.setIndeterminate(true);
+          progress.setCaption(null);
           upload.setEnabled(true);
         }
       });
       
     }
     
+    private void showProgress(final ImportProgress p)
+    {
+      if(p == null || p.getPhase() == null)
+      {
+        return;
+      }
+      ui.access(new Runnable()
+      {
+        @Override
+        public void run()
+        {
+          progress.setIndeterminate(false);
+          progress.setValue((float) p.getFraction());
+          
+          StringBuilder caption = new StringBuilder();
+          caption.append(PHASE_CAPTIONS.get(p.getPhase()));
+          if(p.getRowsTotal() > 0)
+          {
+            caption.append(" (").append(p.getRowsProcessed()).append("/")
+              .append(p.getRowsTotal()).append(")");
+          }
+          else if(p.getPhase() == ImportProgress.Phase.BULK_LOAD 
+            && p.getBytesTotal() > 0)
+          {
+            caption.append(" (").append(FileUtils.byteCountToDisplaySize(p.getBytesRead()))
+              .append("/").append(FileUtils.byteCountToDisplaySize(p.getBytesTotal()))
+              .append(")");
+          }
+          if(p.getRemaining() >= 0)
+          {
+            caption.append(", about ")
+              .append(formatDuration(p.getRemaining())).append(" left");
+          }
+          progress.setCaption(caption.toString());
+        }
+      });
+    }
+    
     private void outputNewMessages(List<String> allMessages)
     {
       if(currentMessageIndex < allMessages.size())
@@ -21,12 +21,14 @@ import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
 
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response;
 
 import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.Sets;
 import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientResponse;
 import com.sun.jersey.api.client.GenericType;
 import com.sun.jersey.api.client.UniformInterfaceException;
 import com.sun.jersey.api.client.WebResource;
@@ -116,6 +118,14 @@ public class CorpusListPanel extends VerticalLayout implements
 
   private transient UserConfig userConfig;
 
+  /**
+   * The last corpus list received from the service and its entity tag, which
+   * is used to check if the list has changed.
+   */
+  private transient List<AnnisCorpus> lastCorpusList;
+
+  private String lastCorpusListTag;
+
   private final InstanceConfig instanceConfig;
 
   private Container.Filter textFilter;
@@ -408,8 +418,28 @@ public class CorpusListPanel extends VerticalLayout implements
     try
     {
       WebResource rootRes = Helper.getAnnisWebResource();
-      result = rootRes.path("query").path("corpora")
-        .get(new AnnisCorpusListType());
+      WebResource.Builder request = rootRes.path("query").path("corpora").
+        getRequestBuilder();
+      if (lastCorpusList != null && lastCorpusListTag != null)
+      {
+        // only transfer the list if the corpora have changed
+        request = request.header(HttpHeaders.IF_NONE_MATCH, lastCorpusListTag);
+      }
+      ClientResponse response = request.get(ClientResponse.class);
+      if (response.getStatus() == Response.Status.NOT_MODIFIED.getStatusCode())
+      {
+        // releases the pooled connection
+        response.close();
+        return new LinkedList<>(lastCorpusList);
+      }
+      else if (response.getStatus() >= 300)
+      {
+        throw new UniformInterfaceException(response);
+      }
+
+      result = response.getEntity(new AnnisCorpusListType());
+      lastCorpusList = new LinkedList<>(result);
+      lastCorpusListTag = response.getHeaders().getFirst(HttpHeaders.ETAG);
       return result;
     }
     catch (ClientHandlerException ex)
@@ -15,10 +15,8 @@
  */
 package annis.gui.exporter;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.Serializable;
 import java.io.Writer;
 import java.util.HashMap;
@@ -28,7 +26,6 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
-import javax.ws.rs.core.MediaType;
 
 import org.apache.commons.lang3.StringUtils;
 import org.corpus_tools.salt.common.SaltProject;
@@ -53,6 +50,8 @@ import annis.service.ifaces.AnnisResult;
 import annis.service.ifaces.AnnisResultSet;
 import annis.service.objects.AnnisAttribute;
 import annis.service.objects.CorpusConfig;
+import annis.service.objects.CompactMatchReader;
+import annis.service.objects.CompactMatchWriter;
 import annis.service.objects.Match;
 import annis.service.objects.MatchGroup;
 import annis.service.objects.SubgraphFilter;
@@ -128,23 +127,20 @@ public abstract class GeneralTextExporter implements ExporterPlugin, Serializabl
       InputStream matchStream = annisResource.path("search/find/")
         .queryParam("q", Helper.encodeJersey(queryAnnisQL))
         .queryParam("corpora", StringUtils.join(corpora, ","))
-        .accept(MediaType.TEXT_PLAIN_TYPE)
+        .accept(CompactMatchWriter.MEDIA_TYPE)
         .get(InputStream.class);
       
      
-      try(BufferedReader inReader = new BufferedReader(new InputStreamReader(
-        matchStream, "UTF-8")))
+      try(CompactMatchReader matchReader = new CompactMatchReader(matchStream))
       {
         WebResource subgraphRes = annisResource.path("search/subgraph");
         MatchGroup currentMatches = new MatchGroup();
-        String currentLine;
+        Match match;
         int offset=0;
         // 2. iterate over all matches and get the sub-graph for a group of matches
         while(!Thread.currentThread().isInterrupted() 
-          && (currentLine = inReader.readLine()) != null)
+          && (match = matchReader.next()) != null)
         { 
-          Match match = Match.parseFromString(currentLine);
-
           currentMatches.getMatches().add(match);
 
           if(currentMatches.getMatches().size() >= stepSize)
@@ -187,7 +183,7 @@ public abstract class GeneralTextExporter implements ExporterPlugin, Serializabl
             }
           }
           offset++;
-        } // end for each line
+        } // end for each match
         
         if (Thread.interrupted())
         {
@@ -15,10 +15,8 @@
  */
 package annis.gui.exporter;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.Serializable;
 import java.io.Writer;
 import java.util.ArrayList;
@@ -30,7 +28,6 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
-import javax.ws.rs.core.MediaType;
 
 import org.apache.commons.lang3.StringUtils;
 import org.corpus_tools.salt.common.SCorpusGraph;
@@ -63,6 +60,8 @@ import annis.libgui.exporter.ExporterPlugin;
 import annis.model.QueryNode;
 import annis.service.objects.AnnisAttribute;
 import annis.service.objects.CorpusConfig;
+import annis.service.objects.CompactMatchReader;
+import annis.service.objects.CompactMatchWriter;
 import annis.service.objects.Match;
 import annis.service.objects.MatchGroup;
 import annis.service.objects.SubgraphFilter;
@@ -154,7 +153,7 @@ public abstract class SaltBasedExporter implements ExporterPlugin, Serializable
       InputStream matchStream = annisResource.path("search/find/")
         .queryParam("q", Helper.encodeJersey(queryAnnisQL))
         .queryParam("corpora", StringUtils.join(corpora, ","))
-        .accept(MediaType.TEXT_PLAIN_TYPE)
+        .accept(CompactMatchWriter.MEDIA_TYPE)
         .get(InputStream.class);
       
       //get node count for the query
@@ -164,19 +163,16 @@ public abstract class SaltBasedExporter implements ExporterPlugin, Serializable
       Integer nodeCount = nodes.size();
                 
      
-      try(BufferedReader inReader = new BufferedReader(new InputStreamReader(
-        matchStream, "UTF-8")))
+      try(CompactMatchReader matchReader = new CompactMatchReader(matchStream))
       {
         WebResource subgraphRes = annisResource.path("search/subgraph");
         MatchGroup currentMatches = new MatchGroup();
-        String currentLine;
+        Match match;
         int offset=1;
         // 2. iterate over all matches and get the sub-graph for a group of matches
         while(!Thread.currentThread().isInterrupted() 
-          && (currentLine = inReader.readLine()) != null)
+          && (match = matchReader.next()) != null)
         { 
-          Match match = Match.parseFromString(currentLine);
-
           currentMatches.getMatches().add(match);
 
           if(currentMatches.getMatches().size() >= stepSize)
@@ -224,7 +220,7 @@ public abstract class SaltBasedExporter implements ExporterPlugin, Serializable
             }
           }
           offset++;
-        } // end for each line
+        } // end for each match
         
         if (Thread.interrupted())
         {
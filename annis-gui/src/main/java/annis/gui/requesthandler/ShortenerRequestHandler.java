@@ -16,6 +16,8 @@
 package annis.gui.requesthandler;
 
 import annis.libgui.Helper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.sun.jersey.api.client.WebResource;
 import com.vaadin.server.RequestHandler;
 import com.vaadin.server.VaadinRequest;
@@ -27,12 +29,19 @@ import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletResponse;
 
 /**
+ * Redirects a short URL to its original URL.
+ *
+ * The original URL of an ID never changes, thus the recently resolved URLs
+ * are shared between all sessions and browsers may cache the redirect.
  *
  * @author Thomas Krause <krauseto@hu-berlin.de>
  */
 public class ShortenerRequestHandler implements RequestHandler
 {
 
+  private static final Cache<String, String> URL_CACHE = CacheBuilder.
+    newBuilder().maximumSize(1000).build();
+
   @Override
   public boolean handleRequest(VaadinSession session, VaadinRequest request,
     VaadinResponse response) throws IOException
@@ -45,9 +54,14 @@ public class ShortenerRequestHandler implements RequestHandler
     }
     
     // get the actual URL
-    WebResource res = Helper.getAnnisWebResource();
-    res = res.path("shortener").path(id);
-    String longURL = res.get(String.class);
+    String longURL = URL_CACHE.getIfPresent(id);
+    if(longURL == null)
+    {
+      WebResource res = Helper.getAnnisWebResource();
+      res = res.path("shortener").path(id);
+      longURL = res.get(String.class);
+      URL_CACHE.put(id, longURL);
+    }
     
     // redirects only work in http servlets
     if(response instanceof VaadinServletResponse)
@@ -57,7 +71,10 @@ public class ShortenerRequestHandler implements RequestHandler
       {    
         HttpServletResponse httpResponse = (HttpServletResponse) servletResponse;
         httpResponse.setHeader("Location", request.getContextPath() +  longURL);
-        httpResponse.setStatus(307); // temporary redirect
+        // the URL of an ID never changes, thus the redirect is permanent and
+        // may be cached (browsers keep it for at most a day)
+        httpResponse.setHeader("Cache-Control", "public, max-age=86400");
+        httpResponse.setStatus(HttpServletResponse.SC_MOVED_PERMANENTLY);
         return true;
       }
     }
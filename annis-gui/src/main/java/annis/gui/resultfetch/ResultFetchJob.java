@@ -23,6 +23,7 @@ import annis.libgui.Helper;
 import annis.model.AqlParseError;
 import annis.service.objects.Match;
 import annis.service.objects.MatchGroup;
+import annis.service.objects.OrderType;
 import annis.service.objects.SubgraphFilter;
 import com.google.common.base.Joiner;
 import com.sun.jersey.api.client.AsyncWebResource;
@@ -32,6 +33,7 @@ import com.sun.jersey.api.client.WebResource;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Objects;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutionException;
@@ -74,12 +76,19 @@ public class ResultFetchJob extends AbstractResultFetchJob implements Runnable
     
     res = Helper.getAnnisAsyncWebResource();
     
-    futureMatches = res.path("query").path("search").path("find")
+    AsyncWebResource findRes = res.path("query").path("search").path("find")
       .queryParam("q", Helper.encodeJersey(query.getQuery()))
       .queryParam("offset", "" + query.getOffset())
       .queryParam("limit", "" + query.getLimit())
       .queryParam("corpora", Helper.encodeJersey(StringUtils.join(query.getCorpora(), ",")))
-      .queryParam("order", query.getOrder().toString())
+      .queryParam("order", query.getOrder().toString());
+    if(query.getOrder() == OrderType.random)
+    {
+      // use the same random order for all pages of the query in this UI
+      int seed = Objects.hash(query.getQuery(), query.getCorpora(), ui.getUIId());
+      findRes = findRes.queryParam("seed", "" + seed);
+    }
+    futureMatches = findRes
       .accept(MediaType.APPLICATION_XML_TYPE)
       .get(MatchGroup.class);
 
@@ -32,6 +32,7 @@ import com.vaadin.server.VaadinSession;
 import annis.gui.requesthandler.ShortenerRequestHandler;
 import annis.libgui.AnnisBaseUI;
 import annis.libgui.Helper;
+import annis.libgui.RESTConnectionPool;
 
 /**
  *
@@ -110,5 +111,12 @@ public class AnnisServlet extends VaadinServlet
       }
     });
   }
+
+  @Override
+  public void destroy()
+  {
+    super.destroy();
+    RESTConnectionPool.getInstance().close();
+  }
   
 }
@@ -40,6 +40,9 @@ public class ExampleQuery implements Serializable
   // the amount of nodes of the example query
   private int nodes;
 
+  // the measured runtime in milliseconds
+  private Long runtime;
+
   public String getType()
   {
     return type;
@@ -105,6 +108,7 @@ public class ExampleQuery implements Serializable
     sb.append("description: ").append(description).append("\n");
     sb.append("used operators: ").append(used_operators).append("\n");
     sb.append("nodes: ").append(nodes).append("\n");
+    sb.append("runtime: ").append(runtime).append("\n");
     return sb.toString();
   }
 
@@ -123,4 +127,19 @@ public class ExampleQuery implements Serializable
   {
     this.nodes = nodes;
   }
+
+  /**
+   * The runtime of the query measured after the corpus was imported.
+   *
+   * @return The runtime in milliseconds or null if it was not measured yet.
+   */
+  public Long getRuntime()
+  {
+    return runtime;
+  }
+
+  public void setRuntime(Long runtime)
+  {
+    this.runtime = runtime;
+  }
 }
@@ -17,7 +17,11 @@
 package annis.service;
 
 import annis.security.User;
+import annis.service.objects.AdmissionPoolStatus;
 import annis.service.objects.ImportJob;
+import annis.service.objects.ImportPhaseTiming;
+import annis.service.objects.MaintenanceReport;
+import annis.service.objects.SlowQuery;
 import java.util.List;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.core.Response;
@@ -140,6 +144,21 @@ public interface AdminService
    *     <statusMail>mail@example.com</statusMail>
    *     <!-- alias name of the corpus as defined by the import request -->
    *     <alias>CorpusAlias</alias>
+   *     <!-- progress of the running import, durations are in milliseconds
+   *       and estimations are -1 if unknown -->
+   *     <progress>
+   *       <corpus>MyNewCorpus</corpus>
+   *       <phase>FACTS</phase>
+   *       <bytesRead>52428800</bytesRead>
+   *       <bytesTotal>52428800</bytesTotal>
+   *       <rowsProcessed>120000</rowsProcessed>
+   *       <rowsTotal>480000</rowsTotal>
+   *       <phaseElapsed>30000</phaseElapsed>
+   *       <phaseEstimated>120000</phaseEstimated>
+   *       <elapsed>95000</elapsed>
+   *       <remaining>110000</remaining>
+   *       <fraction>0.46</fraction>
+   *     </progress>
    *  </importJob>
    * </importJobs>
    * }
@@ -149,6 +168,169 @@ public interface AdminService
    * "importJob" element for each element of the list.
    */
   public List<ImportJob> currentImports();
+
+  /**
+   * Lists the durations of the phases of the latest successful imports.
+   *
+   * <h3>Path(s)</h3>
+   * <ol>
+   * <li>GET annis/admin/import/timings</li>
+   * </ol>
+   *
+   * <h3>MIME</h3>
+   * produces:
+   * <code>application/xml</code>:
+   * {@code
+   * <?xml version="1.0" encoding="UTF-8" standalone="yes"?>
+   * <importPhaseTimings>
+   *   <importPhaseTiming>
+   *     <!-- name of the top level corpus -->
+   *     <corpus>MyNewCorpus</corpus>
+   *     <!-- PREPARE, BULK_LOAD, STAGING, BINARY_DATA, CATALOG, FACTS or FINISH -->
+   *     <phase>FACTS</phase>
+   *     <!-- duration in milliseconds -->
+   *     <duration>120000</duration>
+   *     <!-- size of the ANNIS files of the corpus -->
+   *     <bytes>52428800</bytes>
+   *     <!-- rows processed in this phase -->
+   *     <rows>480000</rows>
+   *     <finished>2016-05-12T13:42:00.000+02:00</finished>
+   *   </importPhaseTiming>
+   * </importPhaseTimings>
+   * }
+   *
+   * @return The timings, the most recent first.
+   */
+  public List<ImportPhaseTiming> importTimings();
+
+  /**
+   * Lists the tables and partitions with outdated planner statistics and the
+   * indexes which were never used.
+   *
+   * <h3>Path(s)</h3>
+   * <ol>
+   * <li>GET annis/admin/maintenance</li>
+   * </ol>
+   *
+   * <h3>MIME</h3>
+   * produces:
+   * <code>application/xml</code>:
+   * {@code
+   * <?xml version="1.0" encoding="UTF-8" standalone="yes"?>
+   * <maintenanceReport>
+   *   <!-- when the statistics were refreshed by the service -->
+   *   <lastRun>2016-05-12T03:00:00.000+02:00</lastRun>
+   *   <nextRun>2016-05-13T03:00:00.000+02:00</nextRun>
+   *   <staleTables>
+   *     <table>
+   *       <name>facts_42</name>
+   *       <liveRows>480000</liveRows>
+   *       <!-- rows modified since the last ANALYZE -->
+   *       <modifiedRows>120000</modifiedRows>
+   *       <lastAnalyzed>2016-05-01T03:00:00.000+02:00</lastAnalyzed>
+   *       <!-- size including the indexes in bytes -->
+   *       <size>104857600</size>
+   *     </table>
+   *   </staleTables>
+   *   <unusedIndexes>
+   *     <index>
+   *       <name>idx__facts_42__level</name>
+   *       <table>facts_42</table>
+   *       <definition>CREATE INDEX idx__facts_42__level ON facts_42 USING btree (level)</definition>
+   *       <scans>0</scans>
+   *       <size>10485760</size>
+   *     </index>
+   *   </unusedIndexes>
+   * </maintenanceReport>
+   * }
+   *
+   * @return
+   */
+  public MaintenanceReport maintenanceReport();
+
+  /**
+   * Analyzes all tables with outdated statistics in the background.
+   *
+   * <h3>Path(s)</h3>
+   * <ol>
+   * <li>POST annis/admin/maintenance/refresh</li>
+   * </ol>
+   *
+   * @return HTTP status 202 (accepted).
+   */
+  public Response refreshStatistics();
+
+  /**
+   * Shows how many queries are executed and waiting in each pool of the
+   * admission control. Times are in milliseconds.
+   *
+   * <h3>Path(s)</h3>
+   * <ol>
+   * <li>GET annis/admin/admission</li>
+   * </ol>
+   *
+   * <h3>MIME</h3>
+   * produces:
+   * <code>application/xml</code>:
+   * {@code
+   * <?xml version="1.0" encoding="UTF-8" standalone="yes"?>
+   * <admissionPoolStatuses>
+   *   <admissionPoolStatus>
+   *     <!-- "interactive" (count, find, subgraph) or "bulk" (matrix, frequency) -->
+   *     <name>bulk</name>
+   *     <maxConcurrent>2</maxConcurrent>
+   *     <maxQueued>10</maxQueued>
+   *     <running>2</running>
+   *     <queued>3</queued>
+   *     <admitted>120</admitted>
+   *     <rejected>4</rejected>
+   *     <totalWait>360000</totalWait>
+   *     <completed>118</completed>
+   *     <totalRuntime>2400000</totalRuntime>
+   *   </admissionPoolStatus>
+   * </admissionPoolStatuses>
+   * }
+   *
+   * @return
+   */
+  public List<AdmissionPoolStatus> admissionStatus();
+
+  /**
+   * Lists the captured slow queries together with their query plan. Times are
+   * in milliseconds.
+   *
+   * <h3>Path(s)</h3>
+   * <ol>
+   * <li>GET annis/admin/slow-queries</li>
+   * </ol>
+   *
+   * <h3>MIME</h3>
+   * produces:
+   * <code>application/xml</code>:
+   * {@code
+   * <?xml version="1.0" encoding="UTF-8" standalone="yes"?>
+   * <slowQueries>
+   *   <slowQuery>
+   *     <time>2016-05-10T14:02:11.532+02:00</time>
+   *     <generator>FindSqlGenerator</generator>
+   *     <aql>pos="NN" &amp; lemma="Haus" &amp; #1 . #2</aql>
+   *     <corpora>
+   *       <corpus>pcc2</corpus>
+   *     </corpora>
+   *     <sql>SELECT ...</sql>
+   *     <duration>14230</duration>
+   *     <!-- the output of EXPLAIN (ANALYZE, BUFFERS) or only EXPLAIN if
+   *          analyzed is false -->
+   *     <plan>Limit (cost=...) (actual time=...) ...</plan>
+   *     <analyzed>true</analyzed>
+   *     <explainDuration>13987</explainDuration>
+   *   </slowQuery>
+   * </slowQueries>
+   * }
+   *
+   * @return The queries, the newest first.
+   */
+  public List<SlowQuery> slowQueries();
   
   /**
    * 
@@ -112,8 +112,10 @@ public interface QueryService
    * @param offset Optional offset from where to start the matches. Default is 0.
    * @param limit Optional limit of the number of returned matches. Set to -1 if unlimited. Default is -1.
    * @param order Optional order how the results should be sorted. Can be either "normal", "random" or "inverted"
-   *  "normal" is the default ordering, "inverted" inverses the default ordering and "random" is a non-stable
-   *  (thus you will get different results for the same offset and limit) random ordering.
+   *  "normal" is the default ordering, "inverted" inverses the default ordering and "random" is a random
+   *  ordering which is only stable (thus you will get the same results for the same offset and limit)
+   *  if a seed is given.
+   * @param seed Optional seed (a number) for the "random" order.
    * @return
    * @throws IOException 
    */
@@ -122,7 +124,8 @@ public interface QueryService
     String corpora,
     String offset,
     String limit,
-    String order) throws IOException;
+    String order,
+    String seed) throws IOException;
   
   /**
    * Get a graph as {@link SaltProject} from a set of (matched) Salt IDs.
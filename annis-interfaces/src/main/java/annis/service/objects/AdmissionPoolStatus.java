@@ -0,0 +1,202 @@
+/*
+ * Copyright 2016 SFB 632.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package annis.service.objects;
+
+import java.io.Serializable;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * The state of a pool of the admission control, which limits the number of
+ * queries executed at the same time.
+ *
+ * @author Thomas Krause <krauseto@hu-berlin.de>
+ */
+@XmlRootElement
+public class AdmissionPoolStatus implements Serializable
+{
+
+  private String name;
+
+  private int maxConcurrent;
+
+  private int maxQueued;
+
+  private int running;
+
+  private int queued;
+
+  private long admitted;
+
+  private long rejected;
+
+  private long totalWait;
+
+  private long completed;
+
+  private long totalRuntime;
+
+  /**
+   * Name of the pool, e.g. "interactive" or "bulk".
+   *
+   * @return
+   */
+  public String getName()
+  {
+    return name;
+  }
+
+  public void setName(String name)
+  {
+    this.name = name;
+  }
+
+  /**
+   * Maximal number of queries executed at the same time.
+   *
+   * @return
+   */
+  public int getMaxConcurrent()
+  {
+    return maxConcurrent;
+  }
+
+  public void setMaxConcurrent(int maxConcurrent)
+  {
+    this.maxConcurrent = maxConcurrent;
+  }
+
+  /**
+   * Maximal number of waiting queries.
+   *
+   * @return
+   */
+  public int getMaxQueued()
+  {
+    return maxQueued;
+  }
+
+  public void setMaxQueued(int maxQueued)
+  {
+    this.maxQueued = maxQueued;
+  }
+
+  /**
+   * Number of queries which are currently executed.
+   *
+   * @return
+   */
+  public int getRunning()
+  {
+    return running;
+  }
+
+  public void setRunning(int running)
+  {
+    this.running = running;
+  }
+
+  /**
+   * Number of queries which are currently waiting.
+   *
+   * @return
+   */
+  public int getQueued()
+  {
+    return queued;
+  }
+
+  public void setQueued(int queued)
+  {
+    this.queued = queued;
+  }
+
+  /**
+   * Number of queries admitted since the service was started.
+   *
+   * @return
+   */
+  public long getAdmitted()
+  {
+    return admitted;
+  }
+
+  public void setAdmitted(long admitted)
+  {
+    this.admitted = admitted;
+  }
+
+  /**
+   * Number of queries rejected because the queue was full or they waited too
+   * long.
+   *
+   * @return
+   */
+  public long getRejected()
+  {
+    return rejected;
+  }
+
+  public void setRejected(long rejected)
+  {
+    this.rejected = rejected;
+  }
+
+  /**
+   * Sum of the waiting times of all admitted queries in milliseconds.
+   *
+   * @return
+   */
+  public long getTotalWait()
+  {
+    return totalWait;
+  }
+
+  public void setTotalWait(long totalWait)
+  {
+    this.totalWait = totalWait;
+  }
+
+  /**
+   * Number of finished queries.
+   *
+   * @return
+   */
+  public long getCompleted()
+  {
+    return completed;
+  }
+
+  public void setCompleted(long completed)
+  {
+    this.completed = completed;
+  }
+
+  /**
+   * Sum of the runtimes of all finished queries in milliseconds.
+   *
+   * @return
+   */
+  public long getTotalRuntime()
+  {
+    return totalRuntime;
+  }
+
+  public void setTotalRuntime(long totalRuntime)
+  {
+    this.totalRuntime = totalRuntime;
+  }
+
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2016 SFB 632.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package annis.service.objects;
+
+import com.google.common.base.Joiner;
+import com.google.common.escape.Escaper;
+import com.google.common.net.UrlEscapers;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads matches that have been written by {@link CompactMatchWriter}.
+ *
+ * @author Thomas Krause <krauseto@hu-berlin.de>
+ */
+public class CompactMatchReader implements AutoCloseable
+{
+
+  private static final Escaper fragmentEscaper = UrlEscapers.urlFragmentEscaper();
+
+  private static final Escaper pathEscaper = UrlEscapers.urlPathSegmentEscaper();
+
+  private final DataInputStream in;
+
+  /**
+   * Already escaped Salt ID prefixes for each path number.
+   */
+  private final List<String> pathPrefixes = new ArrayList<>();
+
+  private boolean finished = false;
+
+  public CompactMatchReader(InputStream in)
+  {
+    this.in = new DataInputStream(new BufferedInputStream(in, 64 * 1024));
+  }
+
+  /**
+   * Reads the next match.
+   *
+   * @return The match or {@code null} if there are no more matches.
+   * @throws IOException If the stream is invalid or ended before the end
+   * marker, e.g. because the query failed on the server.
+   */
+  public Match next() throws IOException
+  {
+    while (!finished)
+    {
+      int type;
+      try
+      {
+        type = in.readByte();
+      }
+      catch (EOFException ex)
+      {
+        throw new IOException("The compact match stream ended unexpectedly, "
+          + "the list of matches is incomplete", ex);
+      }
+
+      switch (type)
+      {
+        case CompactMatchWriter.RECORD_PATH:
+          readPath();
+          break;
+        case CompactMatchWriter.RECORD_MATCH:
+          return readMatch();
+        case CompactMatchWriter.RECORD_END:
+          finished = true;
+          break;
+        default:
+          throw new IOException("Invalid record type " + type
+            + " in compact match stream");
+      }
+    }
+    return null;
+  }
+
+  private void readPath() throws IOException
+  {
+    int size = in.readUnsignedShort();
+    List<String> escaped = new ArrayList<>(size);
+    for (int i = 0; i < size; i++)
+    {
+      escaped.add(pathEscaper.escape(in.readUTF()));
+    }
+    pathPrefixes.add("salt:/" + Joiner.on('/').join(escaped) + "#");
+  }
+
+  private Match readMatch() throws IOException
+  {
+    int size = in.readUnsignedShort();
+    List<URI> ids = new ArrayList<>(size);
+    List<String> annos = new ArrayList<>(size);
+    for (int i = 0; i < size; i++)
+    {
+      int pathID = in.readInt();
+      if (pathID < 0 || pathID >= pathPrefixes.size())
+      {
+        throw new IOException("Unknown corpus path " + pathID
+          + " in compact match stream");
+      }
+      ids.add(URI.create(pathPrefixes.get(pathID)
+        + fragmentEscaper.escape(in.readUTF())));
+      annos.add(in.readUTF());
+    }
+    return new Match(ids, annos);
+  }
+
+  @Override
+  public void close() throws IOException
+  {
+    in.close();
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2016 SFB 632.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package annis.service.objects;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes matches in a compact binary encoding.
+ *
+ * Each corpus path is only written once and then referenced by its number,
+ * so for each node of a match only the path number, the node name and the
+ * matched annotation name are transmitted. Use {@link CompactMatchReader} to
+ * read the matches again.
+ *
+ * <p>
+ * The stream consists of records that start with a single type byte:
+ * </p>
+ * <ul>
+ * <li>{@link #RECORD_PATH}: number of path elements (short) followed by the
+ * (unescaped) elements as UTF strings, the path gets the next free number
+ * starting with 0</li>
+ * <li>{@link #RECORD_MATCH}: number of nodes (short) followed by the path
+ * number (int), node name and annotation name (UTF, empty if none) for each
+ * node</li>
+ * <li>{@link #RECORD_END}: marks the end of the stream, it is only written
+ * by {@link #finish() } after all matches were written successfully</li>
+ * </ul>
+ *
+ * @author Thomas Krause <krauseto@hu-berlin.de>
+ */
+public class CompactMatchWriter implements AutoCloseable
+{
+
+  public static final String MEDIA_TYPE = "application/x-annis-compact-matches";
+
+  public static final byte RECORD_END = 0;
+
+  public static final byte RECORD_PATH = 1;
+
+  public static final byte RECORD_MATCH = 2;
+
+  private final DataOutputStream out;
+
+  private final Map<List<String>, Integer> pathDictionary = new HashMap<>();
+
+  public CompactMatchWriter(OutputStream out)
+  {
+    this.out = new DataOutputStream(new BufferedOutputStream(out, 64 * 1024));
+  }
+
+  /**
+   * Writes a single match.
+   *
+   * @param corpusPath The unescaped corpus path of all nodes of the match,
+   * starting with the top-level corpus ({@code null} is treated as an empty
+   * path).
+   * @param nodeNames The node names (without any escaping)
+   * @param annos The qualified matched annotation names, the list can contain
+   * {@code null} values and must have the same size as the node names.
+   * @throws IOException
+   */
+  public void writeMatch(List<String> corpusPath, List<String> nodeNames,
+    List<String> annos) throws IOException
+  {
+    if (corpusPath == null)
+    {
+      corpusPath = Collections.emptyList();
+    }
+    Integer pathID = pathDictionary.get(corpusPath);
+    if (pathID == null)
+    {
+      pathID = pathDictionary.size();
+      pathDictionary.put(corpusPath, pathID);
+
+      out.writeByte(RECORD_PATH);
+      out.writeShort(corpusPath.size());
+      for (String p : corpusPath)
+      {
+        out.writeUTF(p);
+      }
+    }
+
+    out.writeByte(RECORD_MATCH);
+    out.writeShort(nodeNames.size());
+    for (int i = 0; i < nodeNames.size(); i++)
+    {
+      String anno = annos.get(i);
+      out.writeInt(pathID);
+      out.writeUTF(nodeNames.get(i));
+      out.writeUTF(anno == null ? "" : anno);
+    }
+  }
+
+  public void flush() throws IOException
+  {
+    out.flush();
+  }
+
+  /**
+   * Writes the end marker and flushes the stream. Must only be called when all
+   * matches were written, since readers treat a stream without the end marker
+   * as incomplete.
+   *
+   * @throws IOException
+   */
+  public void finish() throws IOException
+  {
+    out.writeByte(RECORD_END);
+    out.flush();
+  }
+
+  /**
+   * Flushes the stream without writing the end marker. The underlying stream
+   * is not closed.
+   *
+   * @throws IOException
+   */
+  @Override
+  public void close() throws IOException
+  {
+    out.flush();
+  }
+}
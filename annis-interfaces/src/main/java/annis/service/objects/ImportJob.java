@@ -61,6 +61,7 @@ public class ImportJob
   private boolean overwrite;
   private String alias;
   private String statusEmail;
+  private ImportProgress progress;
 
   /**
    * Get the unique identifier of this job.
@@ -186,6 +187,24 @@ public class ImportJob
     this.statusEmail = statusEmail;
   }
 
+  /**
+   * Get the progress of the corpus that is currently imported by this job.
+   * @return The progress or {@code null} if the job is not running.
+   */
+  public ImportProgress getProgress()
+  {
+    return progress;
+  }
+
+  /**
+   * @see #getProgress() 
+   * @param progress 
+   */
+  public void setProgress(ImportProgress progress)
+  {
+    this.progress = progress;
+  }
+
   /**
    * Get alias name of the corpus as defined by the import request.
    * @return 
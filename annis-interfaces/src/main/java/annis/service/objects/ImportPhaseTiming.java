@@ -0,0 +1,143 @@
+/*
+ * Copyright 2016 SFB 632.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package annis.service.objects;
+
+import java.io.Serializable;
+import java.util.Date;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * The duration of a single phase of a finished import.
+ *
+ * @author Thomas Krause <krauseto@hu-berlin.de>
+ */
+@XmlRootElement
+public class ImportPhaseTiming implements Serializable
+{
+
+  private String corpus;
+
+  private ImportProgress.Phase phase;
+
+  private long duration;
+
+  private long bytes;
+
+  private long rows;
+
+  private Date finished;
+
+  public ImportPhaseTiming()
+  {
+  }
+
+  public ImportPhaseTiming(String corpus, ImportProgress.Phase phase,
+    long duration, long bytes, long rows, Date finished)
+  {
+    this.corpus = corpus;
+    this.phase = phase;
+    this.duration = duration;
+    this.bytes = bytes;
+    this.rows = rows;
+    this.finished = finished;
+  }
+
+  /**
+   * Name of the imported top level corpus.
+   *
+   * @return
+   */
+  public String getCorpus()
+  {
+    return corpus;
+  }
+
+  public void setCorpus(String corpus)
+  {
+    this.corpus = corpus;
+  }
+
+  public ImportProgress.Phase getPhase()
+  {
+    return phase;
+  }
+
+  public void setPhase(ImportProgress.Phase phase)
+  {
+    this.phase = phase;
+  }
+
+  /**
+   * Duration of the phase in milliseconds.
+   *
+   * @return
+   */
+  public long getDuration()
+  {
+    return duration;
+  }
+
+  public void setDuration(long duration)
+  {
+    this.duration = duration;
+  }
+
+  /**
+   * Size of the ANNIS files of the corpus.
+   *
+   * @return
+   */
+  public long getBytes()
+  {
+    return bytes;
+  }
+
+  public void setBytes(long bytes)
+  {
+    this.bytes = bytes;
+  }
+
+  /**
+   * Number of rows processed in this phase.
+   *
+   * @return
+   */
+  public long getRows()
+  {
+    return rows;
+  }
+
+  public void setRows(long rows)
+  {
+    this.rows = rows;
+  }
+
+  /**
+   * When the phase was finished.
+   *
+   * @return
+   */
+  public Date getFinished()
+  {
+    return finished;
+  }
+
+  public void setFinished(Date finished)
+  {
+    this.finished = finished;
+  }
+
+}
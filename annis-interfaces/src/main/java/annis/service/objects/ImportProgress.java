@@ -0,0 +1,258 @@
+/*
+ * Copyright 2016 SFB 632.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package annis.service.objects;
+
+import java.io.Serializable;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * The progress of a running corpus import.
+ *
+ * All durations are given in milliseconds. Estimations are -1 if they are not
+ * known, e.g. because there are no timings of earlier imports yet.
+ *
+ * @author Thomas Krause <krauseto@hu-berlin.de>
+ */
+@XmlRootElement
+public class ImportProgress implements Serializable
+{
+
+  /**
+   * The phases of an import in the order they are executed.
+   */
+  public enum Phase
+  {
+    /**
+     * Creating the staging area.
+     */
+    PREPARE,
+    /**
+     * Copying the ANNIS files into the staging area.
+     */
+    BULK_LOAD,
+    /**
+     * Checking and indexing the staging area and reserving the IDs.
+     */
+    STAGING,
+    /**
+     * Copying the media files into the data directory.
+     */
+    BINARY_DATA,
+    /**
+     * Remaining computations in the staging area and copying the corpus into
+     * the main tables.
+     */
+    CATALOG,
+    /**
+     * Creating and indexing the facts table.
+     */
+    FACTS,
+    /**
+     * Analyzing the new tables and generating example queries.
+     */
+    FINISH
+  }
+
+  private String corpus;
+
+  private Phase phase;
+
+  private long bytesRead;
+
+  private long bytesTotal;
+
+  private long rowsProcessed;
+
+  private long rowsTotal = -1;
+
+  private long phaseElapsed;
+
+  private long phaseEstimated = -1;
+
+  private long elapsed;
+
+  private long remaining = -1;
+
+  private double fraction;
+
+  /**
+   * Name of the top level corpus or {@code null} if not known yet.
+   *
+   * @return
+   */
+  public String getCorpus()
+  {
+    return corpus;
+  }
+
+  public void setCorpus(String corpus)
+  {
+    this.corpus = corpus;
+  }
+
+  /**
+   * The currently executed phase.
+   *
+   * @return
+   */
+  public Phase getPhase()
+  {
+    return phase;
+  }
+
+  public void setPhase(Phase phase)
+  {
+    this.phase = phase;
+  }
+
+  /**
+   * Number of bytes of the ANNIS files that have been copied into the staging
+   * area.
+   *
+   * @return
+   */
+  public long getBytesRead()
+  {
+    return bytesRead;
+  }
+
+  public void setBytesRead(long bytesRead)
+  {
+    this.bytesRead = bytesRead;
+  }
+
+  /**
+   * Size of all ANNIS files of the corpus.
+   *
+   * @return
+   */
+  public long getBytesTotal()
+  {
+    return bytesTotal;
+  }
+
+  public void setBytesTotal(long bytesTotal)
+  {
+    this.bytesTotal = bytesTotal;
+  }
+
+  /**
+   * Number of rows which have been processed in the current phase.
+   *
+   * @return
+   */
+  public long getRowsProcessed()
+  {
+    return rowsProcessed;
+  }
+
+  public void setRowsProcessed(long rowsProcessed)
+  {
+    this.rowsProcessed = rowsProcessed;
+  }
+
+  /**
+   * Number of rows the current phase will process or -1 if unknown.
+   *
+   * @return
+   */
+  public long getRowsTotal()
+  {
+    return rowsTotal;
+  }
+
+  public void setRowsTotal(long rowsTotal)
+  {
+    this.rowsTotal = rowsTotal;
+  }
+
+  /**
+   * Time since the current phase was started.
+   *
+   * @return
+   */
+  public long getPhaseElapsed()
+  {
+    return phaseElapsed;
+  }
+
+  public void setPhaseElapsed(long phaseElapsed)
+  {
+    this.phaseElapsed = phaseElapsed;
+  }
+
+  /**
+   * Estimated duration of the complete current phase.
+   *
+   * @return
+   */
+  public long getPhaseEstimated()
+  {
+    return phaseEstimated;
+  }
+
+  public void setPhaseEstimated(long phaseEstimated)
+  {
+    this.phaseEstimated = phaseEstimated;
+  }
+
+  /**
+   * Time since the import was started.
+   *
+   * @return
+   */
+  public long getElapsed()
+  {
+    return elapsed;
+  }
+
+  public void setElapsed(long elapsed)
+  {
+    this.elapsed = elapsed;
+  }
+
+  /**
+   * Estimated time until the import is finished.
+   *
+   * @return
+   */
+  public long getRemaining()
+  {
+    return remaining;
+  }
+
+  public void setRemaining(long remaining)
+  {
+    this.remaining = remaining;
+  }
+
+  /**
+   * Estimated fraction of the import which is already done (between 0.0 and
+   * 1.0).
+   *
+   * @return
+   */
+  public double getFraction()
+  {
+    return fraction;
+  }
+
+  public void setFraction(double fraction)
+  {
+    this.fraction = fraction;
+  }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2016 SFB 632.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package annis.service.objects;
+
+import java.io.Serializable;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Describes how often an index was used since the database statistics were
+ * reset.
+ *
+ * @author Thomas Krause <krauseto@hu-berlin.de>
+ */
+@XmlRootElement
+public class IndexUsage implements Serializable
+{
+
+  private String name;
+
+  private String table;
+
+  private String definition;
+
+  private long scans;
+
+  private long size;
+
+  public IndexUsage()
+  {
+  }
+
+  public IndexUsage(String name, String table, String definition, long scans,
+    long size)
+  {
+    this.name = name;
+    this.table = table;
+    this.definition = definition;
+    this.scans = scans;
+    this.size = size;
+  }
+
+  public String getName()
+  {
+    return name;
+  }
+
+  public void setName(String name)
+  {
+    this.name = name;
+  }
+
+  /**
+   * The table or partition the index belongs to.
+   *
+   * @return
+   */
+  public String getTable()
+  {
+    return table;
+  }
+
+  public void setTable(String table)
+  {
+    this.table = table;
+  }
+
+  /**
+   * The CREATE INDEX statement of the index.
+   *
+   * @return
+   */
+  public String getDefinition()
+  {
+    return definition;
+  }
+
+  public void setDefinition(String definition)
+  {
+    this.definition = definition;
+  }
+
+  /**
+   * Number of index scans.
+   *
+   * @return
+   */
+  public long getScans()
+  {
+    return scans;
+  }
+
+  public void setScans(long scans)
+  {
+    this.scans = scans;
+  }
+
+  /**
+   * Size of the index in bytes.
+   *
+   * @return
+   */
+  public long getSize()
+  {
+    return size;
+  }
+
+  public void setSize(long size)
+  {
+    this.size = size;
+  }
+
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2016 SFB 632.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package annis.service.objects;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlElementWrapper;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Lists the tables with outdated statistics and the indexes which are never
+ * used.
+ *
+ * @author Thomas Krause <krauseto@hu-berlin.de>
+ */
+@XmlRootElement
+public class MaintenanceReport implements Serializable
+{
+
+  private List<TableStatistics> staleTables = new ArrayList<>();
+
+  private List<IndexUsage> unusedIndexes = new ArrayList<>();
+
+  private Date lastRun;
+
+  private Date nextRun;
+
+  @XmlElementWrapper(name = "staleTables")
+  @XmlElement(name = "table")
+  public List<TableStatistics> getStaleTables()
+  {
+    return staleTables;
+  }
+
+  public void setStaleTables(List<TableStatistics> staleTables)
+  {
+    this.staleTables = staleTables;
+  }
+
+  @XmlElementWrapper(name = "unusedIndexes")
+  @XmlElement(name = "index")
+  public List<IndexUsage> getUnusedIndexes()
+  {
+    return unusedIndexes;
+  }
+
+  public void setUnusedIndexes(List<IndexUsage> unusedIndexes)
+  {
+    this.unusedIndexes = unusedIndexes;
+  }
+
+  /**
+   * When the statistics were refreshed the last time by the service.
+   *
+   * @return The date or null if they were not refreshed since the service
+   * was started.
+   */
+  public Date getLastRun()
+  {
+    return lastRun;
+  }
+
+  public void setLastRun(Date lastRun)
+  {
+    this.lastRun = lastRun;
+  }
+
+  /**
+   * When the next scheduled refresh starts.
+   *
+   * @return The date or null if no refresh is scheduled.
+   */
+  public Date getNextRun()
+  {
+    return nextRun;
+  }
+
+  public void setNextRun(Date nextRun)
+  {
+    this.nextRun = nextRun;
+  }
+
+}
@@ -279,15 +279,31 @@ public class Match implements Serializable
   {
     if(uri != null)
     {
-      String v = uri.toASCIIString();
       if(anno != null && !anno.isEmpty())
       {
-        v = spaceEscaper.escape(anno) + "::" + uri;
+        return singleMatchToString(uri.toString(), anno);
       }
-      return v;
+      return uri.toASCIIString();
     }
     return "";
   }
   
+  /**
+   * Same as {@link #singleMatchToString(java.net.URI, java.lang.String) } but
+   * for an already escaped Salt ID, which avoids creating an {@link URI} object.
+   * 
+   * @param saltID The properly escaped Salt ID.
+   * @param anno
+   * @return 
+   */
+  public static String singleMatchToString(String saltID, String anno)
+  {
+    if(anno != null && !anno.isEmpty())
+    {
+      return spaceEscaper.escape(anno) + "::" + saltID;
+    }
+    return saltID;
+  }
+  
   
 }
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2016 SFB 632.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package annis.service.objects;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlElementWrapper;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * A query which took longer than the configured threshold together with its
+ * query plan.
+ *
+ * @author Thomas Krause <krauseto@hu-berlin.de>
+ */
+@XmlRootElement
+public class SlowQuery implements Serializable
+{
+
+  private Date time;
+
+  private String generator;
+
+  private String aql;
+
+  private List<String> corpora = new ArrayList<>();
+
+  private String sql;
+
+  private long duration;
+
+  private boolean timedOut;
+
+  private String plan;
+
+  private boolean analyzed;
+
+  private long explainDuration;
+
+  /**
+   * When the query was finished.
+   *
+   * @return
+   */
+  public Date getTime()
+  {
+    return time;
+  }
+
+  public void setTime(Date time)
+  {
+    this.time = time;
+  }
+
+  /**
+   * The name of the SQL generator, e.g. "FindSqlGenerator".
+   *
+   * @return
+   */
+  public String getGenerator()
+  {
+    return generator;
+  }
+
+  public void setGenerator(String generator)
+  {
+    this.generator = generator;
+  }
+
+  /**
+   * The AQL query as reconstructed from the parsed query.
+   *
+   * @return
+   */
+  public String getAql()
+  {
+    return aql;
+  }
+
+  public void setAql(String aql)
+  {
+    this.aql = aql;
+  }
+
+  /**
+   * The names of the queried toplevel corpora.
+   *
+   * @return
+   */
+  @XmlElementWrapper(name = "corpora")
+  @XmlElement(name = "corpus")
+  public List<String> getCorpora()
+  {
+    return corpora;
+  }
+
+  public void setCorpora(List<String> corpora)
+  {
+    this.corpora = corpora;
+  }
+
+  /**
+   * The generated SQL.
+   *
+   * @return
+   */
+  public String getSql()
+  {
+    return sql;
+  }
+
+  public void setSql(String sql)
+  {
+    this.sql = sql;
+  }
+
+  /**
+   * The time until the result of the original query was available in
+   * milliseconds.
+   *
+   * @return
+   */
+  public long getDuration()
+  {
+    return duration;
+  }
+
+  public void setDuration(long duration)
+  {
+    this.duration = duration;
+  }
+
+  /**
+   * True if the original query was canceled by the statement timeout. The
+   * duration is then the time until it was canceled.
+   *
+   * @return
+   */
+  public boolean isTimedOut()
+  {
+    return timedOut;
+  }
+
+  public void setTimedOut(boolean timedOut)
+  {
+    this.timedOut = timedOut;
+  }
+
+  /**
+   * The output of EXPLAIN.
+   *
+   * @return
+   */
+  public String getPlan()
+  {
+    return plan;
+  }
+
+  public void setPlan(String plan)
+  {
+    this.plan = plan;
+  }
+
+  /**
+   * True if the plan contains the actual times and buffers (EXPLAIN ANALYZE),
+   * false if the analysis took too long and only the estimated plan is
+   * available.
+   *
+   * @return
+   */
+  public boolean isAnalyzed()
+  {
+    return analyzed;
+  }
+
+  public void setAnalyzed(boolean analyzed)
+  {
+    this.analyzed = analyzed;
+  }
+
+  /**
+   * The time needed to create the plan in milliseconds.
+   *
+   * @return
+   */
+  public long getExplainDuration()
+  {
+    return explainDuration;
+  }
+
+  public void setExplainDuration(long explainDuration)
+  {
+    this.explainDuration = explainDuration;
+  }
+}
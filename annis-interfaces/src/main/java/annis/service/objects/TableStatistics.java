@@ -0,0 +1,127 @@
+/*
+ * Copyright 2016 SFB 632.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package annis.service.objects;
+
+import java.io.Serializable;
+import java.util.Date;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Statistics about a single database table or partition.
+ *
+ * @author Thomas Krause <krauseto@hu-berlin.de>
+ */
+@XmlRootElement
+public class TableStatistics implements Serializable
+{
+
+  private String name;
+
+  private long liveRows;
+
+  private long modifiedRows;
+
+  private Date lastAnalyzed;
+
+  private long size;
+
+  public TableStatistics()
+  {
+  }
+
+  public TableStatistics(String name, long liveRows, long modifiedRows,
+    Date lastAnalyzed, long size)
+  {
+    this.name = name;
+    this.liveRows = liveRows;
+    this.modifiedRows = modifiedRows;
+    this.lastAnalyzed = lastAnalyzed;
+    this.size = size;
+  }
+
+  public String getName()
+  {
+    return name;
+  }
+
+  public void setName(String name)
+  {
+    this.name = name;
+  }
+
+  /**
+   * Estimated number of rows of the table.
+   *
+   * @return
+   */
+  public long getLiveRows()
+  {
+    return liveRows;
+  }
+
+  public void setLiveRows(long liveRows)
+  {
+    this.liveRows = liveRows;
+  }
+
+  /**
+   * Number of rows inserted, updated or deleted since the statistics of the
+   * table were collected the last time.
+   *
+   * @return
+   */
+  public long getModifiedRows()
+  {
+    return modifiedRows;
+  }
+
+  public void setModifiedRows(long modifiedRows)
+  {
+    this.modifiedRows = modifiedRows;
+  }
+
+  /**
+   * When the statistics were collected the last time, either manually or by
+   * the autovacuum daemon.
+   *
+   * @return The date or null if the table was never analyzed.
+   */
+  public Date getLastAnalyzed()
+  {
+    return lastAnalyzed;
+  }
+
+  public void setLastAnalyzed(Date lastAnalyzed)
+  {
+    this.lastAnalyzed = lastAnalyzed;
+  }
+
+  /**
+   * Size of the table including its indexes in bytes.
+   *
+   * @return
+   */
+  public long getSize()
+  {
+    return size;
+  }
+
+  public void setSize(long size)
+  {
+    this.size = size;
+  }
+
+}
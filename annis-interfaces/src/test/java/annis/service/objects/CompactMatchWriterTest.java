@@ -0,0 +1,127 @@
+/*
+ * Copyright 2016 SFB 632.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package annis.service.objects;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ *
+ * @author Thomas Krause <krauseto@hu-berlin.de>
+ */
+public class CompactMatchWriterTest
+{
+
+  @Test
+  public void testRoundTrip() throws IOException
+  {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (CompactMatchWriter w = new CompactMatchWriter(out))
+    {
+      w.writeMatch(Arrays.asList("pcc2", "4282"),
+        Arrays.asList("tok_1", "sSpan 2"), Arrays.asList(null, "tiger::cat"));
+      w.writeMatch(Arrays.asList("pcc2", "4282"),
+        Arrays.asList("tok_5"), Arrays.asList((String) null));
+      w.writeMatch(Arrays.asList("pcc2", "doc#\u00fc"),
+        Arrays.asList("n/1"), Arrays.asList("pos"));
+      w.finish();
+    }
+
+    try (CompactMatchReader r = new CompactMatchReader(
+      new ByteArrayInputStream(out.toByteArray())))
+    {
+      assertEquals("salt:/pcc2/4282#tok_1 tiger::cat::salt:/pcc2/4282#sSpan%202",
+        r.next().toString());
+      assertEquals("salt:/pcc2/4282#tok_5", r.next().toString());
+      assertEquals("pos::salt:/pcc2/doc%23%C3%BC#n/1", r.next().toString());
+      assertNull(r.next());
+    }
+  }
+
+  @Test
+  public void testMissingEndMarker() throws IOException
+  {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (CompactMatchWriter w = new CompactMatchWriter(out))
+    {
+      w.writeMatch(Arrays.asList("pcc2", "4282"),
+        Arrays.asList("tok_1"), Arrays.asList((String) null));
+      // the query failed, finish() is not called
+    }
+
+    try (CompactMatchReader r = new CompactMatchReader(
+      new ByteArrayInputStream(out.toByteArray())))
+    {
+      assertEquals("salt:/pcc2/4282#tok_1", r.next().toString());
+      r.next();
+      fail("an incomplete stream must not end like a complete one");
+    }
+    catch (IOException ex)
+    {
+      // expected
+    }
+  }
+
+  @Test
+  public void testTruncatedRecord() throws IOException
+  {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (CompactMatchWriter w = new CompactMatchWriter(out))
+    {
+      w.writeMatch(Arrays.asList("pcc2", "4282"),
+        Arrays.asList("tok_1", "tok_2"), Arrays.asList(null, "pos"));
+      w.finish();
+    }
+    byte[] complete = out.toByteArray();
+
+    try (CompactMatchReader r = new CompactMatchReader(
+      new ByteArrayInputStream(Arrays.copyOf(complete, complete.length - 4))))
+    {
+      r.next();
+      fail("a cut off match must not be returned");
+    }
+    catch (IOException ex)
+    {
+      // expected
+    }
+  }
+
+  @Test
+  public void testEmptyCorpusPath() throws IOException
+  {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (CompactMatchWriter w = new CompactMatchWriter(out))
+    {
+      w.writeMatch(null, Arrays.asList("tok_1"), Arrays.asList((String) null));
+      w.finish();
+    }
+
+    try (CompactMatchReader r = new CompactMatchReader(
+      new ByteArrayInputStream(out.toByteArray())))
+    {
+      assertNotNull(r.next());
+      assertNull(r.next());
+    }
+  }
+
+}
@@ -22,6 +22,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -33,6 +34,7 @@ import javax.swing.SwingUtilities;
 import javax.swing.SwingWorker;
 import javax.swing.filechooser.FileNameExtensionFilter;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -42,6 +44,7 @@ import com.google.common.io.Files;
 import annis.administration.CorpusAdministration;
 import annis.administration.ImportStatus;
 import annis.administration.StatementController;
+import annis.corpuspathsearch.CorpusRoot;
 import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.LoggerContext;
 import ch.qos.logback.classic.joran.JoranConfigurator;
@@ -313,6 +316,11 @@ public class ImportDialog extends javax.swing.JDialog
 
     getRootPane().setDefaultButton(btOk);
 
+    if (this.corpora == null)
+    {
+      scanInputDir();
+    }
+
     isImporting = false;
     
     addAppender();
@@ -393,6 +401,62 @@ public class ImportDialog extends javax.swing.JDialog
     appender.start();
   }
 
+  /**
+   * Searches the selected directory for corpora in the background and shows
+   * what will be imported. The import itself searches the directory again,
+   * since corpora might have been added in the meantime.
+   */
+  private void scanInputDir()
+  {
+    final String path = txtInputDir.getText();
+    if (path.isEmpty() || !new File(path).isDirectory())
+    {
+      lblCurrentCorpus.setText("");
+      lblCurrentCorpus.setToolTipText(null);
+      return;
+    }
+
+    lblCurrentCorpus.setText("searching for corpora...");
+    new SwingWorker<List<CorpusRoot>, Void>()
+    {
+      @Override
+      protected List<CorpusRoot> doInBackground() throws Exception
+      {
+        return corpusAdministration.findCorpora(Collections.singletonList(path));
+      }
+
+      @Override
+      protected void done()
+      {
+        if (isImporting || !path.equals(txtInputDir.getText()))
+        {
+          return;
+        }
+        try
+        {
+          List<CorpusRoot> found = get();
+          long size = 0;
+          StringBuilder names = new StringBuilder("<html>");
+          for (CorpusRoot c : found)
+          {
+            size += c.getSize();
+            names.append(c.getName()).append("<br/>");
+          }
+          names.append("</html>");
+          lblCurrentCorpus.setText("found " + found.size() + " corpora ("
+            + FileUtils.byteCountToDisplaySize(size) + ")");
+          lblCurrentCorpus.setToolTipText(found.isEmpty() ? null : names.
+            toString());
+        }
+        catch (InterruptedException | ExecutionException ex)
+        {
+          log.error("could not search for corpora", ex);
+          lblCurrentCorpus.setText("");
+        }
+      }
+    }.execute();
+  }
+
   private void startImport()
   {
     btOk.setEnabled(false);
@@ -576,6 +640,7 @@ public class ImportDialog extends javax.swing.JDialog
         File f = fileChooser.getSelectedFile();
         txtInputDir.setText(f.getAbsolutePath());
         storeProperties();
+        scanInputDir();
       }
 
     }//GEN-LAST:event_btSearchInputDirActionPerformed
@@ -44,8 +44,10 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.CredentialsProvider;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.params.ClientPNames;
+import org.apache.http.impl.client.AbstractHttpClient;
 import org.apache.http.impl.client.BasicCredentialsProvider;
-import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
 import org.corpus_tools.salt.SaltFactory;
 import org.corpus_tools.salt.common.SDocument;
 import org.corpus_tools.salt.common.SDocumentGraph;
@@ -114,7 +116,7 @@ public class Helper
   private static final org.slf4j.Logger log = LoggerFactory.getLogger(
     Helper.class);
 
-  private static final ThreadLocal<Client> anonymousClient = new ThreadLocal<>();
+  private static volatile Client anonymousClient;
 
   private static final String ERROR_MESSAGE_CORPUS_PROPS_HEADER
     = "Corpus properties does not exist";
@@ -144,7 +146,9 @@ public class Helper
     .build();
 
   /**
-   * Creates an authentificiated REST client
+   * Creates an authentificiated REST client.
+   *
+   * All clients share the connections of the {@link RESTConnectionPool}.
    *
    * @param userName
    * @param password
@@ -156,10 +160,9 @@ public class Helper
     DefaultApacheHttpClient4Config rc = new DefaultApacheHttpClient4Config();
     rc.getClasses().add(SaltProjectProvider.class);
 
-    ThreadSafeClientConnManager clientConnMgr = new ThreadSafeClientConnManager();
-    clientConnMgr.setDefaultMaxPerRoute(10);
+    RESTConnectionPool pool = RESTConnectionPool.getInstance();
     rc.getProperties().put(ApacheHttpClient4Config.PROPERTY_CONNECTION_MANAGER,
-      clientConnMgr);
+      pool);
 
     if (userName != null && password != null)
     {
@@ -176,7 +179,15 @@ public class Helper
 
     }
 
-    Client c = ApacheHttpClient4.create(rc);
+    ApacheHttpClient4 c = ApacheHttpClient4.create(rc);
+    HttpClient httpClient = c.getClientHandler().getHttpClient();
+    if (httpClient instanceof AbstractHttpClient)
+    {
+      ((AbstractHttpClient) httpClient).setKeepAliveStrategy(pool.
+        getKeepAliveStrategy());
+    }
+    httpClient.getParams().setLongParameter(ClientPNames.CONN_MANAGER_TIMEOUT,
+      pool.getLeaseTimeout());
     return c;
   }
 
@@ -259,14 +270,7 @@ public class Helper
       }
     }
 
-    // use the anonymous client
-    if (anonymousClient.get() == null)
-    {
-      // anonymous client not created yet
-      anonymousClient.set(createRESTClient());
-    }
-
-    return anonymousClient.get().resource(uri);
+    return getAnonymousClient().resource(uri);
   }
 
   /**
@@ -300,14 +304,31 @@ public class Helper
       }
     }
 
-    // use the anonymous client
-    if (anonymousClient.get() == null)
+    return getAnonymousClient().asyncResource(uri);
+  }
+
+  /**
+   * Gets the client which is shared by all anonymous requests.
+   *
+   * @return
+   */
+  private static Client getAnonymousClient()
+  {
+    Client c = anonymousClient;
+    if (c == null)
     {
-      // anonymous client not created yet
-      anonymousClient.set(createRESTClient());
+      synchronized (Helper.class)
+      {
+        c = anonymousClient;
+        if (c == null)
+        {
+          // anonymous client not created yet
+          c = createRESTClient();
+          anonymousClient = c;
+        }
+      }
     }
-
-    return anonymousClient.get().asyncResource(uri);
+    return c;
   }
 
   /**
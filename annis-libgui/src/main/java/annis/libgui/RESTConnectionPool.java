@@ -0,0 +1,289 @@
+/*
+ * Copyright 2016 SFB 632.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package annis.libgui;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.http.HttpResponse;
+import org.apache.http.conn.ClientConnectionRequest;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ManagedClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.conn.SchemeRegistryFactory;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.apache.http.protocol.HttpContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The connections to the ANNIS service which are shared by all REST clients.
+ *
+ * The pool can be configured with the system properties
+ * "annis.rest.max-connections", "annis.rest.max-connections-per-route",
+ * "annis.rest.keep-alive" (seconds an idle connection is kept open) and
+ * "annis.rest.lease-timeout" (milliseconds a request waits for a free
+ * connection). The time requests wait for a free connection is recorded and
+ * logged periodically.
+ *
+ * @author Thomas Krause <krauseto@hu-berlin.de>
+ */
+public class RESTConnectionPool extends ThreadSafeClientConnManager
+{
+
+  private static final Logger log = LoggerFactory.getLogger(
+    RESTConnectionPool.class);
+
+  /**
+   * Interval in seconds in which the statistics are logged.
+   */
+  private static final long STATISTICS_INTERVAL = 300;
+
+  private static final RESTConnectionPool instance = new RESTConnectionPool(
+    Integer.getInteger("annis.rest.max-connections", 200),
+    Integer.getInteger("annis.rest.max-connections-per-route", 100),
+    Integer.getInteger("annis.rest.keep-alive", 30),
+    Long.getLong("annis.rest.lease-timeout", 30000));
+
+  private final int keepAlive;
+
+  private final long leaseTimeout;
+
+  private final ScheduledExecutorService maintenance;
+
+  private final AtomicLong leases = new AtomicLong();
+
+  private final AtomicLong leaseWait = new AtomicLong();
+
+  private final AtomicLong maxLeaseWait = new AtomicLong();
+
+  private final AtomicLong timeouts = new AtomicLong();
+
+  private long lastLoggedLeases;
+
+  private long lastLoggedTimeouts;
+
+  public RESTConnectionPool(int maxConnections, int maxConnectionsPerRoute,
+    int keepAlive, long leaseTimeout)
+  {
+    super(SchemeRegistryFactory.createDefault());
+    this.keepAlive = Math.max(1, keepAlive);
+    this.leaseTimeout = Math.max(1, leaseTimeout);
+    setMaxTotal(Math.max(1, maxConnections));
+    setDefaultMaxPerRoute(Math.max(1, Math.min(maxConnections,
+      maxConnectionsPerRoute)));
+
+    this.maintenance = Executors.newSingleThreadScheduledExecutor(
+      new ThreadFactoryBuilder()
+      .setNameFormat("rest-connection-pool-%d")
+      .setDaemon(true)
+      .build());
+    this.maintenance.scheduleWithFixedDelay(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        closeExpiredConnections();
+        closeIdleConnections(RESTConnectionPool.this.keepAlive,
+          TimeUnit.SECONDS);
+      }
+    }, this.keepAlive, this.keepAlive, TimeUnit.SECONDS);
+    this.maintenance.scheduleWithFixedDelay(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        logStatistics();
+      }
+    }, STATISTICS_INTERVAL, STATISTICS_INTERVAL, TimeUnit.SECONDS);
+  }
+
+  public static RESTConnectionPool getInstance()
+  {
+    return instance;
+  }
+
+  @Override
+  public ClientConnectionRequest requestConnection(HttpRoute route,
+    Object state)
+  {
+    final ClientConnectionRequest request = super.requestConnection(route,
+      state);
+    return new ClientConnectionRequest()
+    {
+      @Override
+      public ManagedClientConnection getConnection(long timeout,
+        TimeUnit tunit) throws InterruptedException,
+        ConnectionPoolTimeoutException
+      {
+        if (timeout <= 0)
+        {
+          // never wait without limit
+          timeout = leaseTimeout;
+          tunit = TimeUnit.MILLISECONDS;
+        }
+        long start = System.nanoTime();
+        try
+        {
+          ManagedClientConnection connection = request.getConnection(timeout,
+            tunit);
+          recordLease(System.nanoTime() - start);
+          return connection;
+        }
+        catch (ConnectionPoolTimeoutException ex)
+        {
+          timeouts.incrementAndGet();
+          throw ex;
+        }
+      }
+
+      @Override
+      public void abortRequest()
+      {
+        request.abortRequest();
+      }
+    };
+  }
+
+  private void recordLease(long waitNanos)
+  {
+    leases.incrementAndGet();
+    leaseWait.addAndGet(waitNanos);
+    long max = maxLeaseWait.get();
+    while (waitNanos > max && !maxLeaseWait.compareAndSet(max, waitNanos))
+    {
+      max = maxLeaseWait.get();
+    }
+  }
+
+  /**
+   * The clients share this pool, thus a destroyed client must not shut it
+   * down. Use {@link #close() } instead.
+   */
+  @Override
+  public void shutdown()
+  {
+  }
+
+  /**
+   * Closes all connections and stops the maintenance of the pool.
+   */
+  public void close()
+  {
+    maintenance.shutdownNow();
+    super.shutdown();
+  }
+
+  /**
+   * A keep-alive strategy which keeps connections without an explicit timeout
+   * from the server for the configured time.
+   *
+   * @return
+   */
+  public ConnectionKeepAliveStrategy getKeepAliveStrategy()
+  {
+    return new DefaultConnectionKeepAliveStrategy()
+    {
+      @Override
+      public long getKeepAliveDuration(HttpResponse response,
+        HttpContext context)
+      {
+        long duration = super.getKeepAliveDuration(response, context);
+        return duration > 0 ? duration : TimeUnit.SECONDS.toMillis(keepAlive);
+      }
+    };
+  }
+
+  private synchronized void logStatistics()
+  {
+    long currentLeases = leases.get();
+    long currentTimeouts = timeouts.get();
+    if (currentLeases == lastLoggedLeases
+      && currentTimeouts == lastLoggedTimeouts)
+    {
+      return;
+    }
+    lastLoggedLeases = currentLeases;
+    lastLoggedTimeouts = currentTimeouts;
+    // all values are totals since the pool was created
+    log.info("REST connection pool: {} connections open, {} leased in total, "
+      + "average wait {} ms, maximal wait {} ms, {} timeouts",
+      getConnectionsInPool(), currentLeases,
+      String.format("%.2f", getAverageLeaseWait()),
+      getMaxLeaseWait(), currentTimeouts);
+  }
+
+  /**
+   * The number of requests which got a connection from the pool.
+   *
+   * @return
+   */
+  public long getLeases()
+  {
+    return leases.get();
+  }
+
+  /**
+   * The average time in milliseconds a request waited for a connection.
+   *
+   * @return
+   */
+  public double getAverageLeaseWait()
+  {
+    long n = leases.get();
+    return n == 0 ? 0.0 : leaseWait.get() / 1.0e6 / n;
+  }
+
+  /**
+   * The longest time in milliseconds a request waited for a connection.
+   *
+   * @return
+   */
+  public long getMaxLeaseWait()
+  {
+    return TimeUnit.NANOSECONDS.toMillis(maxLeaseWait.get());
+  }
+
+  /**
+   * The number of requests which did not get a connection in time.
+   *
+   * @return
+   */
+  public long getTimeouts()
+  {
+    return timeouts.get();
+  }
+
+  public int getKeepAlive()
+  {
+    return keepAlive;
+  }
+
+  /**
+   * The time in milliseconds a request waits for a free connection.
+   *
+   * @return
+   */
+  public long getLeaseTimeout()
+  {
+    return leaseTimeout;
+  }
+
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2016 SFB 632.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package annis.libgui;
+
+import java.util.concurrent.TimeUnit;
+import org.apache.http.HttpHost;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ManagedClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.junit.After;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Thomas Krause <krauseto@hu-berlin.de>
+ */
+public class RESTConnectionPoolTest
+{
+
+  private RESTConnectionPool pool;
+
+  private HttpRoute route;
+
+  @Before
+  public void setUp()
+  {
+    pool = new RESTConnectionPool(1, 1, 30, 100);
+    route = new HttpRoute(new HttpHost("localhost", 5711));
+  }
+
+  @After
+  public void tearDown()
+  {
+    pool.close();
+  }
+
+  @Test
+  public void testLeaseTimeout() throws Exception
+  {
+    ManagedClientConnection first = pool.requestConnection(route, null).
+      getConnection(0, TimeUnit.MILLISECONDS);
+    assertNotNull(first);
+    assertEquals(1, pool.getLeases());
+    assertEquals(0, pool.getTimeouts());
+
+    // the only connection is leased, an unlimited wait uses the lease timeout
+    long start = System.nanoTime();
+    try
+    {
+      pool.requestConnection(route, null).getConnection(0,
+        TimeUnit.MILLISECONDS);
+      fail("the request must not wait for a connection forever");
+    }
+    catch (ConnectionPoolTimeoutException ex)
+    {
+      // expected
+    }
+    assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(
+      100));
+    // a timeout is not counted as a lease
+    assertEquals(1, pool.getLeases());
+    assertEquals(1, pool.getTimeouts());
+
+    pool.releaseConnection(first, 0, TimeUnit.MILLISECONDS);
+    ManagedClientConnection second = pool.requestConnection(route, null).
+      getConnection(1, TimeUnit.SECONDS);
+    assertNotNull(second);
+    assertEquals(2, pool.getLeases());
+    assertEquals(1, pool.getTimeouts());
+    assertTrue(pool.getMaxLeaseWait() < 100);
+    assertTrue(pool.getAverageLeaseWait() <= pool.getMaxLeaseWait() + 1);
+    pool.releaseConnection(second, 0, TimeUnit.MILLISECONDS);
+  }
+
+  @Test
+  public void testShutdown()
+  {
+    // clients must not shut down the shared pool
+    pool.shutdown();
+    ManagedClientConnection connection;
+    try
+    {
+      connection = pool.requestConnection(route, null).getConnection(0,
+        TimeUnit.MILLISECONDS);
+    }
+    catch (InterruptedException | ConnectionPoolTimeoutException ex)
+    {
+      throw new AssertionError(ex);
+    }
+    assertNotNull(connection);
+    pool.releaseConnection(connection, 0, TimeUnit.MILLISECONDS);
+  }
+
+}
@@ -1,6 +1,22 @@
+-- when a corpus is updated the categories of removed annotations are deleted,
+-- the facts of the changed documents referring to them are already deleted
+DELETE FROM annotation_category AS c
+WHERE c.toplevel_corpus = :id
+AND NOT EXISTS (
+  SELECT 1 FROM annotations_:id AS a
+  WHERE a.type = 'node' AND a.name = c.name
+  AND a.namespace IS NOT DISTINCT FROM c.namespace
+);
+
 INSERT INTO annotation_category (toplevel_corpus, namespace, name)
 (
   SELECT DISTINCT :id, namespace, name
-  FROM annotations_:id
+  FROM annotations_:id AS a
   WHERE name IS NOT NULL  AND type = 'node'
-);
\ No newline at end of file
+  -- when a corpus is updated only the new categories are added
+  AND NOT EXISTS (
+    SELECT 1 FROM annotation_category AS c
+    WHERE c.toplevel_corpus = :id AND c.name = a.name
+    AND c.namespace IS NOT DISTINCT FROM a.namespace
+  )
+);
@@ -0,0 +1,22 @@
+--- :id is replaced by code
+
+-- the tables of the corpus, they are filled from the bundle
+DROP TABLE IF EXISTS annotations_:id;
+
+CREATE TABLE annotations_:id
+(
+  -- check constraints
+  CHECK(toplevel_corpus = :id)
+)
+INHERITS (annotations);
+
+-- new IDs for the annotation categories of the bundle
+CREATE TEMPORARY TABLE _bundle_category_map
+(
+  "old" integer PRIMARY KEY,
+  "new" integer NOT NULL
+) ON COMMIT DROP;
+
+INSERT INTO _bundle_category_map ("old", "new")
+SELECT id, nextval(pg_get_serial_sequence('annotation_category', 'id'))
+FROM _bundle_annotation_category;
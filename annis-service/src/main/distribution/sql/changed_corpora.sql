@@ -0,0 +1,13 @@
+--- :offset_corpus_id is the difference between the IDs of the stored corpora
+--- and the ones in the staging area
+
+-- all corpora and documents whose content differs from the stored one
+DROP TABLE IF EXISTS _changed_corpus;
+CREATE UNLOGGED TABLE _changed_corpus AS
+SELECT f.corpus_ref AS id
+FROM _document_fingerprint AS f
+  LEFT JOIN document_fingerprint AS stored
+    ON (stored.corpus_ref = f.corpus_ref + :offset_corpus_id)
+WHERE stored.fingerprint IS DISTINCT FROM f.fingerprint;
+
+ANALYZE _changed_corpus;
@@ -0,0 +1,56 @@
+-- Computes a hash of the content of each corpus and document in the staging
+-- area. Only names and values are hashed, not the IDs, thus the hash does not
+-- change when an unchanged document is exported again.
+
+DROP TABLE IF EXISTS _document_fingerprint;
+CREATE UNLOGGED TABLE _document_fingerprint AS
+SELECT
+  c.id AS corpus_ref,
+  md5(COALESCE(string_agg(part.h, '' ORDER BY part.h), '')) AS fingerprint
+FROM
+  _corpus AS c
+  LEFT JOIN
+  (
+    SELECT corpus_ref, md5(ROW(namespace, "name", "value")::text) AS h
+    FROM _corpus_annotation
+
+    UNION ALL
+
+    SELECT corpus_ref, md5(ROW("name", "text")::text) AS h
+    FROM _text
+
+    UNION ALL
+
+    SELECT n.corpus_ref, md5(ROW(t."name", n.layer, n."name", n."left", n."right",
+      n.token_index, n.seg_index, n.seg_name, n.span)::text) AS h
+    FROM _node AS n
+      LEFT JOIN _text AS t ON (t.corpus_ref = n.corpus_ref AND t.id = n.text_ref)
+
+    UNION ALL
+
+    SELECT n.corpus_ref, md5(ROW(n."name", a.namespace, a."name", a."value")::text) AS h
+    FROM _node_annotation AS a
+      JOIN _node AS n ON (n.id = a.node_ref)
+
+    UNION ALL
+
+    SELECT n.corpus_ref, md5(ROW(comp.type, comp.layer, comp."name", n."name",
+      parent_node."name", e.namespace, e."name", e."value")::text) AS h
+    FROM _rank AS r
+      JOIN _node AS n ON (n.id = r.node_ref)
+      JOIN _component AS comp ON (comp.id = r.component_ref)
+      LEFT JOIN _rank AS parent_rank ON (parent_rank.id = r.parent)
+      LEFT JOIN _node AS parent_node ON (parent_node.id = parent_rank.node_ref)
+      LEFT JOIN _edge_annotation AS e ON (e.rank_ref = r.id)
+
+    UNION ALL
+
+    -- the visualizations belong to the top level corpus
+    SELECT (SELECT id FROM _corpus WHERE top_level IS TRUE LIMIT 1),
+      md5(ROW(corpus, version, namespace, element, vis_type, display_name,
+        visibility, "order", mappings)::text) AS h
+    FROM _resolver_vis_map
+  ) AS part ON (part.corpus_ref = c.id)
+GROUP BY c.id;
+
+ANALYZE _document_fingerprint;
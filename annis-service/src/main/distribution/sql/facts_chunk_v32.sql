@@ -1,22 +1,6 @@
 --- :id is replaced by code
-DROP TABLE IF EXISTS facts_:id;
-
-------------
--- FACTS --
------------
-
-CREATE TABLE facts_:id
-(
-  -- temporary columns for calculating the sample_*
-  PRIMARY KEY(fid),
-  -- check constraints
-  CHECK(toplevel_corpus = :id)
-)
-INHERITS (facts);
-
-ALTER TABLE facts_:id ALTER COLUMN span SET STATISTICS :stat_target;
-ALTER TABLE facts_:id ALTER COLUMN node_annotext SET STATISTICS :stat_target;
-ALTER TABLE facts_:id ALTER COLUMN node_qannotext SET STATISTICS :stat_target;
+--- :corpus_ref_min and :corpus_ref_max restrict the corpus_ref of the nodes
+--- which are inserted by this chunk
 
 INSERT INTO facts_:id
 (
@@ -62,7 +46,7 @@ SELECT
 FROM
 (
   SELECT
-    ((SELECT "new" FROM _nodeidmapping WHERE "old" = _node.id LIMIT 1) + :offset_node_id) AS id,
+    (_nodeidmapping."new" + :offset_node_id) AS id,
     _node.text_ref AS text_ref,
     (_node.corpus_ref + :offset_corpus_id) AS corpus_ref,
     :id AS toplevel_corpus,
@@ -114,6 +98,7 @@ FROM
     ) AS edge_qannotext
   FROM
     _node
+    LEFT JOIN _nodeidmapping ON (_nodeidmapping."old" = _node.id)
     LEFT JOIN _node_annotation ON (_node_annotation.node_ref = _node.id)
     LEFT JOIN _rank ON (_rank.node_ref = _node.id)
     LEFT JOIN _component ON (_rank.component_ref = _component.id)
@@ -123,6 +108,8 @@ FROM
       AND annotation_category.namespace IS NOT DISTINCT FROM _node_annotation.namespace
       AND annotation_category.toplevel_corpus = :id
     )
+  WHERE
+    _node.corpus_ref BETWEEN :corpus_ref_min AND :corpus_ref_max
 ) as tmp
 ORDER BY corpus_ref, n_sample, is_token
 ;
@@ -0,0 +1,30 @@
+--- :id is replaced by code
+--- Hides a top level corpus without touching the large shared tables. The
+--- remaining entries are deleted in the background by DeleteCorpusDao.
+
+-- remember the range of the corpus tree
+INSERT INTO corpus_cleanup (corpus_ref, pre, post, requested)
+SELECT id, pre, post, now() FROM corpus WHERE id = :id AND top_level IS TRUE;
+
+-- resolver_vis_map (refers to the name, which can be re-used by a new import)
+DELETE FROM resolver_vis_map
+USING corpus toplevel
+WHERE toplevel.id = :id AND resolver_vis_map.corpus = toplevel."name"
+AND (resolver_vis_map.version = toplevel.version
+  OR resolver_vis_map.version IS NULL AND toplevel.version IS NULL);
+
+-- the corpus IDs and pre/post values stay in use until the corpus entries
+-- are deleted, thus they must not be reserved by new imports
+SELECT setval('import_corpus_id_seq', GREATEST(s.max_corpus_id + 1, seq.last_value))
+FROM corpus_stats AS s, import_corpus_id_seq AS seq WHERE s.id = :id;
+SELECT setval('import_corpus_post_seq', GREATEST(s.max_corpus_post + 1, seq.last_value))
+FROM corpus_stats AS s, import_corpus_post_seq AS seq WHERE s.id = :id;
+
+-- small tables which only refer to the top level corpus
+DELETE FROM corpus_stats WHERE id = :id;
+DELETE FROM corpus_alias WHERE corpus_ref = :id;
+DELETE FROM example_queries WHERE corpus_ref = :id;
+DELETE FROM annotation_category WHERE toplevel_corpus = :id;
+
+-- all queries start at a top level corpus, thus the corpus is not found anymore
+UPDATE corpus SET top_level = FALSE WHERE id = :id;
@@ -15,4 +15,7 @@ FROM
   WHERE
     n.corpus_ref = c.id AND n.text_ref = t.id  AND c.id = t.corpus_ref
   ORDER BY c.name, t.name, n.left_token, n."name"
-) as ordered;
\ No newline at end of file
+) as ordered;
+
+-- the facts table joins this mapping, so the planner needs statistics
+ANALYZE _nodeidmapping;
@@ -252,9 +252,53 @@ CREATE TABLE example_queries
   "type" TEXT COLLATE "C" NOT NULL,
   "nodes" INTEGER NOT NULL,
   "used_ops" TEXT[] COLLATE "C" NOT NULL,
-  "corpus_ref" integer NOT NULL REFERENCES corpus (id) ON DELETE CASCADE
+  "corpus_ref" integer NOT NULL REFERENCES corpus (id) ON DELETE CASCADE,
+  -- measured runtime in milliseconds, -1 if the query exceeded the timeout
+  -- and NULL if it was not executed yet
+  "runtime" bigint
 );
 
+-- durations of the phases of successful imports
+DROP TABLE IF EXISTS import_phase_timing;
+CREATE TABLE import_phase_timing
+(
+  corpus varchar COLLATE "C",
+  phase varchar NOT NULL,
+  duration bigint NOT NULL, -- milliseconds
+  bytes bigint NOT NULL, -- size of the ANNIS files of the corpus
+  "rows" bigint NOT NULL,
+  finished timestamp with time zone NOT NULL
+);
+
+-- hash of the content of each (sub-)corpus and document, used to find the
+-- changed documents when a corpus is updated
+DROP TABLE IF EXISTS document_fingerprint;
+CREATE TABLE document_fingerprint
+(
+  corpus_ref integer PRIMARY KEY REFERENCES corpus (id) ON DELETE CASCADE,
+  fingerprint varchar COLLATE "C" NOT NULL
+);
+
+-- top level corpora which have been hidden by a fast delete, their remaining
+-- entries are removed in the background, see DeleteCorpusDao
+DROP TABLE IF EXISTS corpus_cleanup;
+CREATE TABLE corpus_cleanup
+(
+  corpus_ref integer PRIMARY KEY,
+  pre integer NOT NULL,
+  post integer NOT NULL,
+  requested timestamp with time zone NOT NULL
+);
+
+-- first free value of the ID ranges that have been reserved by running or
+-- finished imports, see AdministrationDao#reserveOffsets()
+DROP SEQUENCE IF EXISTS import_corpus_id_seq;
+CREATE SEQUENCE import_corpus_id_seq MINVALUE 0 START 0;
+DROP SEQUENCE IF EXISTS import_corpus_post_seq;
+CREATE SEQUENCE import_corpus_post_seq MINVALUE 0 START 0;
+DROP SEQUENCE IF EXISTS import_node_id_seq;
+CREATE SEQUENCE import_node_id_seq MINVALUE 0 START 0;
+
 
 -- HACK: add a custom operator which is the same as "=" for integers but always
 -- returns 0.995 as join selectivity. See the description
@@ -12,4 +12,5 @@ CREATE INDEX idx__annocat__corpus ON annotation_category("toplevel_corpus");
 CREATE INDEX idx__annocat__namebyid ON annotation_category(id, toplevel_corpus, "name");
 CREATE INDEX idx__annocat__namespacebyid ON annotation_category(id, toplevel_corpus, "namespace");
 
-CREATE INDEX idx__urlshortener__url ON url_shortener(url, id);
\ No newline at end of file
+-- the URLs can be too long for a B-tree entry, thus only their digest is indexed
+CREATE INDEX idx__urlshortener__url_md5 ON url_shortener(md5(url));
\ No newline at end of file
@@ -0,0 +1,65 @@
+--- :id is replaced by code
+--- Replaces the entries of the corpora and documents listed in _changed_corpus
+--- with the ones from the staging area. The IDs of the staging area are mapped
+--- to the ones of the stored corpus by :offset_corpus_id.
+
+-- facts (the new rows are inserted later by facts_chunk.sql)
+DELETE FROM facts_:id
+WHERE corpus_ref IN (SELECT id + :offset_corpus_id FROM _changed_corpus);
+
+-- corpus_annotation
+DELETE FROM corpus_annotation
+WHERE corpus_ref IN (SELECT id + :offset_corpus_id FROM _changed_corpus);
+
+INSERT INTO corpus_annotation (corpus_ref, namespace, "name", "value")
+SELECT a.corpus_ref + :offset_corpus_id, a.namespace, a."name", a."value"
+FROM _corpus_annotation AS a
+  JOIN _changed_corpus AS c ON (c.id = a.corpus_ref);
+
+-- text
+DELETE FROM text
+WHERE corpus_ref IN (SELECT id + :offset_corpus_id FROM _changed_corpus);
+
+INSERT INTO text (corpus_ref, id, "name", "text", toplevel_corpus)
+SELECT t.corpus_ref + :offset_corpus_id, t.id, t."name", t."text", t.toplevel_corpus
+FROM _text AS t
+  JOIN _changed_corpus AS c ON (c.id = t.corpus_ref);
+
+-- media_files (_media_files only contains the files of the changed documents)
+DELETE FROM media_files
+WHERE corpus_ref IN (SELECT id + :offset_corpus_id FROM _changed_corpus);
+
+INSERT INTO media_files (filename, corpus_ref, mime_type, title)
+SELECT filename, corpus_ref + :offset_corpus_id, mime_type, title
+FROM _media_files;
+
+-- document_fingerprint
+DELETE FROM document_fingerprint
+WHERE corpus_ref IN (SELECT id + :offset_corpus_id FROM _changed_corpus);
+
+INSERT INTO document_fingerprint (corpus_ref, fingerprint)
+SELECT f.corpus_ref + :offset_corpus_id, f.fingerprint
+FROM _document_fingerprint AS f
+  JOIN _changed_corpus AS c ON (c.id = f.corpus_ref);
+
+-- resolver_vis_map (part of the fingerprint of the top level corpus)
+DELETE FROM resolver_vis_map
+USING corpus toplevel
+WHERE toplevel.id = :id AND resolver_vis_map.corpus = toplevel."name"
+AND (resolver_vis_map.version = toplevel.version
+  OR resolver_vis_map.version IS NULL AND toplevel.version IS NULL);
+
+INSERT INTO resolver_vis_map (corpus, version, namespace, element, vis_type,
+  display_name, visibility, "order", mappings)
+SELECT corpus, version, namespace, element, vis_type, display_name,
+  visibility::resolver_visibility, "order", mappings
+FROM _resolver_vis_map;
+
+-- corpus_stats
+UPDATE corpus_stats SET
+  text = s.text,
+  tokens = s.tokens,
+  max_node_id = GREATEST(corpus_stats.max_node_id, s.max_node_id + :offset_node_id),
+  source_path = s.source_path
+FROM _corpus_stats AS s
+WHERE corpus_stats.id = :id;
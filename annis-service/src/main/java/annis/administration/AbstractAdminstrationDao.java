@@ -27,6 +27,7 @@ import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.ResultSetExtractor;
 
 import annis.dao.AbstractDao;
+import annis.dao.CorpusCatalog;
 import annis.dao.QueryDao;
 
 /**
@@ -44,6 +45,8 @@ public abstract class AbstractAdminstrationDao extends AbstractDao
   
   private QueryDao queryDao;
 
+  private CorpusCatalog corpusCatalog;
+
   protected boolean lockRepositoryMetadataTable(boolean waitForOtherTasks)
   {
     try
@@ -60,6 +63,32 @@ public abstract class AbstractAdminstrationDao extends AbstractDao
     }
   }
 
+  /**
+   * Locks the repository_metadata table in a mode that conflicts with
+   * {@link #lockRepositoryMetadataTable(boolean) } but not with itself. Thus
+   * several imports can write to the main tables at the same time while e.g.
+   * deleting a corpus has to wait for them.
+   *
+   * @param waitForOtherTasks If true wait for other tasks to finish, if false
+   * abort.
+   * @return True if the lock was acquired.
+   */
+  protected boolean lockRepositoryMetadataTableShared(boolean waitForOtherTasks)
+  {
+    try
+    {
+      log.info("Locking repository_metadata table in shared mode");
+      getJdbcTemplate().execute(
+        "LOCK TABLE repository_metadata IN ROW EXCLUSIVE MODE" + (waitForOtherTasks ? ""
+          : " NOWAIT"));
+      return true;
+    }
+    catch (DataAccessException ex)
+    {
+      return false;
+    }
+  }
+
   protected File getRealDataDir()
   {
     File dataDir;
@@ -170,6 +199,28 @@ public abstract class AbstractAdminstrationDao extends AbstractDao
   {
     this.queryDao = queryDao;
   }
+
+  /**
+   * Reloads the corpus catalog after the current transaction was completed.
+   * Must be called by all operations which add, remove or rename corpora.
+   */
+  protected void invalidateCorpusCatalog()
+  {
+    if (corpusCatalog != null)
+    {
+      corpusCatalog.invalidate();
+    }
+  }
+
+  public CorpusCatalog getCorpusCatalog()
+  {
+    return corpusCatalog;
+  }
+
+  public void setCorpusCatalog(CorpusCatalog corpusCatalog)
+  {
+    this.corpusCatalog = corpusCatalog;
+  }
   
 
 }
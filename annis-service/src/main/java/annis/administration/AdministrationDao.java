@@ -15,14 +15,17 @@
  */
 package annis.administration;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileFilter;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.sql.Connection;
@@ -30,15 +33,22 @@ import java.sql.DatabaseMetaData;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -47,8 +57,6 @@ import javax.sql.DataSource;
 import org.apache.commons.dbcp2.BasicDataSource;
 import org.apache.commons.dbcp2.DelegatingConnection;
 import org.apache.commons.io.FilenameUtils;
-import org.apache.commons.io.filefilter.DirectoryFileFilter;
-import org.apache.commons.io.filefilter.FileFileFilter;
 import org.apache.commons.lang3.StringUtils;
 import org.codehaus.jackson.map.AnnotationIntrospector;
 import org.codehaus.jackson.map.ObjectMapper;
@@ -62,27 +70,36 @@ import org.springframework.core.io.Resource;
 import org.springframework.core.io.WritableResource;
 import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.SingleColumnRowMapper;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.datasource.ConnectionProxy;
 import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
-import com.google.common.base.Charsets;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Splitter;
 import com.google.common.collect.Multimap;
-import com.google.common.collect.TreeMultimap;
 import com.google.common.io.Files;
+import com.google.common.collect.Range;
+import com.google.common.collect.TreeMultimap;
 
 import annis.dao.autogenqueries.QueriesGenerator;
 import annis.examplequeries.ExampleQuery;
 import annis.exceptions.AnnisException;
+import annis.metrics.MetricsRegistry;
 import annis.model.QueryNode;
 import annis.ql.parser.QueryData;
 import annis.security.UserConfig;
+import annis.service.objects.ImportPhaseTiming;
+import annis.service.objects.ImportProgress;
 
 /**
  *
@@ -93,6 +110,11 @@ public class AdministrationDao extends AbstractAdminstrationDao
   private static final Logger log = LoggerFactory.getLogger(
     AdministrationDao.class);
 
+  /**
+   * Key of the advisory lock that protects the reservation of ID ranges.
+   */
+  private static final long OFFSET_RESERVATION_LOCK = 0x414e4e4953L;
+
   // if this is true, the staging area is not deleted
   private boolean temporaryStagingArea;
 
@@ -100,6 +122,23 @@ public class AdministrationDao extends AbstractAdminstrationDao
   
   private boolean hackDistinctLeftRightToken;
 
+  /**
+   * Maximal number of nodes that are inserted into the facts table with a
+   * single statement.
+   */
+  private long factsChunkSize = 1000000;
+
+  private int parallelIndexWorkers = 4;
+
+  /**
+   * The progress of the import running in the current thread.
+   */
+  private final ThreadLocal<ImportProgressTracker> currentImport
+    = new ThreadLocal<>();
+
+  private final ConcurrentMap<Thread, ImportProgressTracker> runningImports
+    = new ConcurrentHashMap<>();
+
 
   /**
    * Searches for textes which are empty or only contains whitespaces. If that
@@ -230,6 +269,13 @@ public class AdministrationDao extends AbstractAdminstrationDao
   private final ObjectMapper jsonMapper = new ObjectMapper();
 
   private QueriesGenerator queriesGenerator;
+
+  private StatisticsMaintenance statisticsMaintenance;
+
+  /**
+   * Receives the durations of the import phases, optional.
+   */
+  private MetricsRegistry metricsRegistry;
   
   /**
    * Called when Spring configuration finished
@@ -538,46 +584,319 @@ public class AdministrationDao extends AbstractAdminstrationDao
     boolean overwrite,
     boolean waitForOtherTasks)
   {
+    return importCorpus(new DirectoryImportSource(new File(path)), aliasName,
+      overwrite, waitForOtherTasks);
+  }
+
+  /**
+   * Reads ANNIS files from an import source, e.g. a directory or an entry of
+   * a ZIP file.
+   *
+   * @param source The location of the corpus, which should be imported.
+   * @param aliasName An alias name for this corpus. Can be null.
+   * @param overwrite If set to true conflicting top level corpora are deleted.
+   * @param waitForOtherTasks If true wait for other tasks to finish, if false
+   * abort.
+   *
+   * @return true if successful
+   */
+  @Transactional(readOnly = false, propagation = Propagation.REQUIRES_NEW,
+    isolation = Isolation.READ_COMMITTED)
+  public boolean importCorpus(ImportSource source,
+    String aliasName,
+    boolean overwrite,
+    boolean waitForOtherTasks)
+  {
+    return importOrUpdateCorpus(source, aliasName, overwrite, false,
+      waitForOtherTasks);
+  }
+
+  /**
+   * Updates an existing corpus from the ANNIS files in a directory.
+   *
+   * @see #updateCorpus(annis.administration.ImportSource, java.lang.String,
+   * boolean)
+   */
+  @Transactional(readOnly = false, propagation = Propagation.REQUIRES_NEW,
+    isolation = Isolation.READ_COMMITTED)
+  public boolean updateCorpus(String path,
+    String aliasName,
+    boolean waitForOtherTasks)
+  {
+    return updateCorpus(new DirectoryImportSource(new File(path)), aliasName,
+      waitForOtherTasks);
+  }
+
+  /**
+   * Updates an existing corpus by only replacing the documents whose content
+   * has changed.
+   *
+   * The corpus is imported completely (overwriting the existing one) if it
+   * does not exist yet, if documents or sub-corpora have been added, removed
+   * or renamed, or if the corpus was imported by an ANNIS version which did
+   * not store the content hashes of the documents.
+   *
+   * @param source The location of the corpus, which should be imported.
+   * @param aliasName An alias name for this corpus. Can be null.
+   * @param waitForOtherTasks If true wait for other tasks to finish, if false
+   * abort.
+   *
+   * @return true if successful
+   */
+  @Transactional(readOnly = false, propagation = Propagation.REQUIRES_NEW,
+    isolation = Isolation.READ_COMMITTED)
+  public boolean updateCorpus(ImportSource source,
+    String aliasName,
+    boolean waitForOtherTasks)
+  {
+    return importOrUpdateCorpus(source, aliasName, true, true,
+      waitForOtherTasks);
+  }
+
+  private boolean importOrUpdateCorpus(ImportSource source,
+    String aliasName,
+    boolean overwrite,
+    boolean update,
+    boolean waitForOtherTasks)
+  {
 
     // check schema version first
     checkDatabaseSchemaVersion();
 
-    if (!lockRepositoryMetadataTable(waitForOtherTasks))
-    {
-      log.error("Another import is currently running");
-      return false;
-    }
-
     // explicitly unset any timeout
     getJdbcTemplate().update("SET statement_timeout TO 0");
 
-    ANNISFormatVersion annisFormatVersion = getANNISFormatVersion(path);
+    invalidateCorpusCatalog();
 
-    if (annisFormatVersion == ANNISFormatVersion.V3_3)
+    ANNISFormatVersion annisFormatVersion = getANNISFormatVersion(source);
+
+    ImportProgressTracker tracker = new ImportProgressTracker(
+      loadMillisPerByte());
+    currentImport.set(tracker);
+    runningImports.put(Thread.currentThread(), tracker);
+    try
     {
-      return importVersion4(path, aliasName, overwrite, annisFormatVersion);
+      startPhase(ImportProgress.Phase.PREPARE);
+      if (annisFormatVersion == ANNISFormatVersion.V3_3)
+      {
+        tracker.setBytesTotal(sizeOfImportFiles(source, annisFormatVersion));
+        return importVersion4(source, aliasName, overwrite, update,
+          waitForOtherTasks, annisFormatVersion);
+      }
+      else if (annisFormatVersion == ANNISFormatVersion.V3_1
+        || annisFormatVersion == ANNISFormatVersion.V3_2)
+      {
+        tracker.setBytesTotal(sizeOfImportFiles(source, annisFormatVersion));
+        if (update)
+        {
+          log.info("only corpora in the relANNIS 3.3 format can be updated, "
+            + "importing the complete corpus");
+        }
+        return importVersion3(source, aliasName, overwrite, waitForOtherTasks,
+          annisFormatVersion);
+      }
     }
-    else if (annisFormatVersion == ANNISFormatVersion.V3_1 || annisFormatVersion
-      == ANNISFormatVersion.V3_2)
+    finally
     {
-      return importVersion3(path, aliasName, overwrite, annisFormatVersion);
+      currentImport.remove();
+      runningImports.remove(Thread.currentThread());
     }
 
     log.error("Unknown ANNIS import format version");
     return false;
   }
 
-  private boolean importVersion4(String path, String aliasName,
-    boolean overwrite,
+  /**
+   * Get the progress of the import that is executed by the given thread.
+   *
+   * @param thread
+   * @return The progress or {@code null} if the thread does not import a
+   * corpus at the moment.
+   */
+  public ImportProgress getImportProgress(Thread thread)
+  {
+    ImportProgressTracker tracker = runningImports.get(thread);
+    return tracker == null ? null : tracker.getProgress();
+  }
+
+  /**
+   * Lists the durations of the phases of the latest imports.
+   *
+   * @param limit Maximal number of entries.
+   * @return The timings, the most recent first.
+   */
+  public List<ImportPhaseTiming> listImportTimings(int limit)
+  {
+    if (!hasImportPhaseTimingTable())
+    {
+      return new LinkedList<>();
+    }
+    return getJdbcTemplate().query(
+      "SELECT corpus, phase, duration, bytes, \"rows\", finished "
+      + "FROM import_phase_timing ORDER BY finished DESC LIMIT ?",
+      new RowMapper<ImportPhaseTiming>()
+    {
+      @Override
+      public ImportPhaseTiming mapRow(ResultSet rs, int rowNum) throws
+        SQLException
+      {
+        return new ImportPhaseTiming(rs.getString("corpus"),
+          ImportProgress.Phase.valueOf(rs.getString("phase")),
+          rs.getLong("duration"), rs.getLong("bytes"), rs.getLong("rows"),
+          rs.getTimestamp("finished"));
+      }
+    }, limit);
+  }
+
+  /**
+   * Calculates the average duration per byte of each phase from the latest
+   * imports. The result is empty if the timing table does not exist yet.
+   */
+  private Map<ImportProgress.Phase, Double> loadMillisPerByte()
+  {
+    final Map<ImportProgress.Phase, Double> result = new EnumMap<>(
+      ImportProgress.Phase.class);
+    if (!hasImportPhaseTimingTable())
+    {
+      log.warn("import_phase_timing table does not exist, the duration of "
+        + "the import can not be estimated");
+      return result;
+    }
+    getJdbcTemplate().query(
+      "SELECT phase, sum(duration)::double precision / sum(bytes) AS rate\n"
+      + "FROM\n"
+      + "(\n"
+      + "  SELECT phase, duration, bytes,\n"
+      + "    row_number() OVER (PARTITION BY phase ORDER BY finished DESC) AS n\n"
+      + "  FROM import_phase_timing WHERE bytes > 0\n"
+      + ") AS latest\n"
+      + "WHERE n <= 20\n"
+      + "GROUP BY phase", new RowCallbackHandler()
+    {
+      @Override
+      public void processRow(ResultSet rs) throws SQLException
+      {
+        try
+        {
+          result.put(ImportProgress.Phase.valueOf(rs.getString("phase")),
+            rs.getDouble("rate"));
+        }
+        catch (IllegalArgumentException ex)
+        {
+          log.warn("unknown import phase {}", rs.getString("phase"));
+        }
+      }
+    });
+    return result;
+  }
+
+  /**
+   * Checks if the table for the import timings exists. It is created by
+   * {@link SchemeFixer}, which might not have run on this database yet. A
+   * failing query would abort the whole import transaction.
+   */
+  private boolean hasImportPhaseTimingTable()
+  {
+    return Boolean.TRUE.equals(getJdbcTemplate().queryForObject(
+      "SELECT to_regclass('import_phase_timing') IS NOT NULL", Boolean.class));
+  }
+
+  /**
+   * Stores the durations of all phases of the current import.
+   */
+  private void recordImportTimings()
+  {
+    ImportProgressTracker tracker = currentImport.get();
+    if (tracker == null)
+    {
+      return;
+    }
+    tracker.finishPhase();
+    boolean storeTimings = hasImportPhaseTimingTable();
+    for (ImportPhaseTiming t : tracker.getTimings())
+    {
+      log.info("import phase {} took {} ms", t.getPhase(), t.getDuration());
+      if (metricsRegistry != null)
+      {
+        metricsRegistry.histogram("annis_import_phase_seconds",
+          "Duration of the phases of a corpus import in seconds.", "phase")
+          .observeMillis(t.getDuration(), t.getPhase().name());
+      }
+      if (storeTimings)
+      {
+        getJdbcTemplate().update(
+          "INSERT INTO import_phase_timing"
+          + "(corpus, phase, duration, bytes, \"rows\", finished) "
+          + "VALUES (?, ?, ?, ?, ?, ?)",
+          t.getCorpus(), t.getPhase().name(), t.getDuration(), t.getBytes(),
+          t.getRows(), new Timestamp(t.getFinished().getTime()));
+      }
+    }
+  }
+
+  private void startPhase(ImportProgress.Phase phase)
+  {
+    ImportProgressTracker tracker = currentImport.get();
+    if (tracker != null)
+    {
+      tracker.startPhase(phase);
+    }
+  }
+
+  private long sizeOfImportFiles(ImportSource source,
+    ANNISFormatVersion version)
+  {
+    long result = 0;
+    for (String table : importedTables)
+    {
+      String fileName = table + version.getFileSuffix();
+      if (source.exists(fileName))
+      {
+        try
+        {
+          result += source.getResource(fileName).contentLength();
+        }
+        catch (IOException ex)
+        {
+          log.warn("could not get the size of " + fileName, ex);
+        }
+      }
+    }
+    return result;
+  }
+
+  private boolean importVersion4(ImportSource source, String aliasName,
+    boolean overwrite, boolean update, boolean waitForOtherTasks,
     ANNISFormatVersion version)
   {
+    StagingSchema stagingSchema = createStagingSchema();
     createStagingAreaV33(temporaryStagingArea);
-    bulkImport(path, version);
+    startPhase(ImportProgress.Phase.BULK_LOAD);
+    bulkImport(source, version);
+    startPhase(ImportProgress.Phase.STAGING);
 
     String toplevelCorpusName = getTopLevelCorpusFromTmpArea();
+    if (currentImport.get() != null)
+    {
+      currentImport.get().setCorpus(toplevelCorpusName);
+    }
+
+    if (!lockToplevelCorpus(toplevelCorpusName, waitForOtherTasks))
+    {
+      log.error("Another import of the corpus \"{}\" is currently running",
+        toplevelCorpusName);
+      dropStagingSchema(stagingSchema);
+      return false;
+    }
 
     // remove conflicting top level corpora, when override is set to true.
-    if (overwrite)
+    // An update only removes the corpus if it can't be updated.
+    if (update)
+    {
+      log.info("checking if corpus \"{}\" can be updated",
+        toplevelCorpusName);
+    }
+    else if (overwrite)
     {
       deleteCorpusDao.checkAndRemoveTopLevelCorpus(toplevelCorpusName);
     }
@@ -594,23 +913,51 @@ public class AdministrationDao extends AbstractAdminstrationDao
     analyzeStagingTables();
 
     addDocumentNameMetaData();
+    computeDocumentFingerprints();
+
+    if (update)
+    {
+      Offsets storedOffsets = mapToStoredCorpus(toplevelCorpusName);
+      if (storedOffsets != null)
+      {
+        return updateDocuments(source, aliasName, toplevelCorpusName,
+          storedOffsets, stagingSchema, waitForOtherTasks, version);
+      }
+      log.info("corpus \"{}\" can't be updated, importing it completely",
+        toplevelCorpusName);
+      deleteCorpusDao.checkAndRemoveTopLevelCorpus(toplevelCorpusName);
+    }
 
-    Offsets offsets = calculateOffsets();
+    Offsets offsets = reserveOffsets();
     long corpusID = getNewToplevelCorpusID(offsets);
     createNodeIdMapping();
 
-    importBinaryData(path, toplevelCorpusName);
+    startPhase(ImportProgress.Phase.BINARY_DATA);
+    importBinaryData(source, toplevelCorpusName, null);
+    startPhase(ImportProgress.Phase.CATALOG);
 
     extendStagingText(corpusID);
     extendStagingExampleQueries(corpusID);
 
     analyzeAutoGeneratedQueries(corpusID);
 
-    computeCorpusStatistics(path);
+    computeCorpusStatistics(source.getSourcePath());
 
     analyzeStagingTables();
 
+    // the new tables of the corpus must not be created in the staging schema
+    useMainSchema(stagingSchema);
+
+    // block tasks like deleting corpora but not other imports
+    if (!lockRepositoryMetadataTableShared(waitForOtherTasks))
+    {
+      log.error("Another administration task is currently running");
+      discardImport();
+      return false;
+    }
+
     insertCorpus(corpusID, offsets);
+    insertDocumentFingerprints(offsets);
 
     computeCorpusPath(corpusID);
 
@@ -619,16 +966,24 @@ public class AdministrationDao extends AbstractAdminstrationDao
     createAnnoCategory(corpusID);
 
     // create the new facts table partition
+    startPhase(ImportProgress.Phase.FACTS);
     createFacts(corpusID, version, offsets);
     
     if(hackDistinctLeftRightToken)
     {
       adjustDistinctLeftRightToken(corpusID);
     }
+    startPhase(ImportProgress.Phase.FINISH);
     
     if (temporaryStagingArea)
     {
       dropStagingArea();
+      dropStagingSchema(stagingSchema);
+    }
+    else
+    {
+      log.info("staging area was kept in schema \"{}\"",
+        stagingSchema.getName());
     }
 
     // create empty corpus properties file
@@ -640,23 +995,148 @@ public class AdministrationDao extends AbstractAdminstrationDao
 
     analyzeFacts(corpusID);
     analyzeTextTable(toplevelCorpusName);
+    analyzeSharedTables();
     generateExampleQueries(corpusID);
 
     if (aliasName != null && !aliasName.isEmpty())
     {
       addCorpusAlias(corpusID, aliasName);
     }
+    recordImportTimings();
     return true;
   }
 
-  private boolean importVersion3(String path, String aliasName,
-    boolean overwrite,
+  /**
+   * Replaces the changed documents of a stored corpus with the ones from the
+   * staging area.
+   *
+   * The catalog entries and media files of the changed documents are replaced
+   * and their rows in the facts table are deleted and inserted again. The
+   * ranks of the new rows are moved behind the ones of the unchanged
+   * documents and the nodes get new IDs, thus the IDs stay unique.
+   *
+   * @param storedOffsets Maps the corpora of the staging area to the stored
+   * ones.
+   */
+  private boolean updateDocuments(ImportSource source, String aliasName,
+    String toplevelCorpusName, Offsets storedOffsets,
+    StagingSchema stagingSchema, boolean waitForOtherTasks,
+    ANNISFormatVersion version)
+  {
+    long corpusID = getNewToplevelCorpusID(storedOffsets);
+
+    executeSqlFromScript("changed_corpora.sql", storedOffsets.makeArgs());
+    List<Long> changedIDs = getJdbcTemplate().queryForList(
+      "SELECT id FROM _changed_corpus", Long.class);
+    List<String> changedNames = getJdbcTemplate().queryForList(
+      "SELECT c.\"name\" FROM " + tableInStagingArea("corpus")
+      + " AS c JOIN _changed_corpus AS changed ON (changed.id = c.id)",
+      String.class);
+
+    if (changedIDs.isEmpty())
+    {
+      log.info("corpus \"{}\" has not changed", toplevelCorpusName);
+    }
+    else
+    {
+      log.info("updating {} documents and corpora of \"{}\"",
+        changedIDs.size(), toplevelCorpusName);
+
+      long offsetNodeID = reserveNodeIDs();
+      createNodeIdMapping();
+
+      startPhase(ImportProgress.Phase.BINARY_DATA);
+      importBinaryData(source, toplevelCorpusName, new HashSet<>(
+        changedNames));
+      startPhase(ImportProgress.Phase.CATALOG);
+
+      extendStagingText(corpusID);
+      computeCorpusStatistics(source.getSourcePath());
+      analyzeStagingTables();
+
+      useMainSchema(stagingSchema);
+
+      if (!lockRepositoryMetadataTableShared(waitForOtherTasks))
+      {
+        log.error("Another administration task is currently running");
+        discardImport();
+        return false;
+      }
+
+      Offsets offsets = new Offsets(storedOffsets.getCorpusID(),
+        storedOffsets.getCorpusPost(), offsetNodeID);
+
+      log.info("replacing the changed documents of corpus with ID "
+        + corpusID);
+      executeSqlFromScript("update_corpus.sql", offsets.makeArgs()
+        .addValue(":id", corpusID));
+
+      // the occurrences are counted from the staging area, which always
+      // contains the complete corpus
+      createAnnotations(corpusID);
+      createAnnoCategory(corpusID);
+
+      startPhase(ImportProgress.Phase.FACTS);
+      fillFacts(corpusID, version, moveBehindStoredRanks(corpusID, offsets),
+        new HashSet<>(changedIDs));
+
+      if (hackDistinctLeftRightToken)
+      {
+        adjustDistinctLeftRightToken(corpusID);
+      }
+      startPhase(ImportProgress.Phase.FINISH);
+
+      analyzeFacts(corpusID);
+      analyzeTextTable(toplevelCorpusName);
+      analyzeSharedTables();
+    }
+
+    if (temporaryStagingArea)
+    {
+      dropStagingArea();
+      dropStagingSchema(stagingSchema);
+    }
+    else
+    {
+      log.info("staging area was kept in schema \"{}\"",
+        stagingSchema.getName());
+    }
+
+    // the alias might already have been added when the corpus was imported
+    if (aliasName != null && !aliasName.isEmpty()
+      && getJdbcTemplate().queryForObject(
+        "SELECT count(*) FROM corpus_alias WHERE alias = ? AND corpus_ref = ?",
+        Integer.class, aliasName, corpusID) == 0)
+    {
+      addCorpusAlias(corpusID, aliasName);
+    }
+    recordImportTimings();
+    return true;
+  }
+
+  private boolean importVersion3(ImportSource source, String aliasName,
+    boolean overwrite, boolean waitForOtherTasks,
     ANNISFormatVersion version)
   {
+    StagingSchema stagingSchema = createStagingSchema();
     createStagingAreaV32(temporaryStagingArea);
-    bulkImport(path, version);
+    startPhase(ImportProgress.Phase.BULK_LOAD);
+    bulkImport(source, version);
+    startPhase(ImportProgress.Phase.STAGING);
 
     String toplevelCorpusName = getTopLevelCorpusFromTmpArea();
+    if (currentImport.get() != null)
+    {
+      currentImport.get().setCorpus(toplevelCorpusName);
+    }
+
+    if (!lockToplevelCorpus(toplevelCorpusName, waitForOtherTasks))
+    {
+      log.error("Another import of the corpus \"{}\" is currently running",
+        toplevelCorpusName);
+      dropStagingSchema(stagingSchema);
+      return false;
+    }
 
     // remove conflicting top level corpora, when override is set to true.
     if (overwrite)
@@ -684,11 +1164,13 @@ public class AdministrationDao extends AbstractAdminstrationDao
     adjustTextId();
     addDocumentNameMetaData();
 
-    Offsets offsets = calculateOffsets();
+    Offsets offsets = reserveOffsets();
     long corpusID = getNewToplevelCorpusID(offsets);
     createNodeIdMapping();
 
-    importBinaryData(path, toplevelCorpusName);
+    startPhase(ImportProgress.Phase.BINARY_DATA);
+    importBinaryData(source, toplevelCorpusName, null);
+    startPhase(ImportProgress.Phase.CATALOG);
 
     extendStagingText(corpusID);
     extendStagingExampleQueries(corpusID);
@@ -697,12 +1179,23 @@ public class AdministrationDao extends AbstractAdminstrationDao
 
     computeRealRoot();
     computeLevel();
-    computeCorpusStatistics(path);
+    computeCorpusStatistics(source.getSourcePath());
     computeSpanFromSegmentation();
 
     applyConstraints();
     analyzeStagingTables();
 
+    // the new tables of the corpus must not be created in the staging schema
+    useMainSchema(stagingSchema);
+
+    // block tasks like deleting corpora but not other imports
+    if (!lockRepositoryMetadataTableShared(waitForOtherTasks))
+    {
+      log.error("Another administration task is currently running");
+      discardImport();
+      return false;
+    }
+
     insertCorpus(corpusID, offsets);
 
     computeCorpusPath(corpusID);
@@ -712,16 +1205,24 @@ public class AdministrationDao extends AbstractAdminstrationDao
     createAnnoCategory(corpusID);
 
     // create the new facts table partition
+    startPhase(ImportProgress.Phase.FACTS);
     createFacts(corpusID, version, offsets);
     
     if(hackDistinctLeftRightToken)
     {
       adjustDistinctLeftRightToken(corpusID);
     }
+    startPhase(ImportProgress.Phase.FINISH);
     
     if (temporaryStagingArea)
     {
       dropStagingArea();
+      dropStagingSchema(stagingSchema);
+    }
+    else
+    {
+      log.info("staging area was kept in schema \"{}\"",
+        stagingSchema.getName());
     }
 
     // create empty corpus properties file
@@ -733,12 +1234,14 @@ public class AdministrationDao extends AbstractAdminstrationDao
 
     analyzeFacts(corpusID);
     analyzeTextTable(toplevelCorpusName);
+    analyzeSharedTables();
     generateExampleQueries(corpusID);
 
     if (aliasName != null && !aliasName.isEmpty())
     {
       addCorpusAlias(corpusID, aliasName);
     }
+    recordImportTimings();
     return true;
   }
 
@@ -788,10 +1291,11 @@ public class AdministrationDao extends AbstractAdminstrationDao
    *
    * </ul>
    *
-   * @param path The path to the ANNIS files. The files have to have this suffix
-   * @param version {@link DefaultAdministrationDao#REL_ANNIS_FILE_SUFFIX}
+   * @param source The location of the ANNIS files.
+   * @param version The version of the format, which determines the suffix of 
+   * the files ({@link ANNISFormatVersion#getFileSuffix() }).
    */
-  void bulkImport(String path, ANNISFormatVersion version)
+  void bulkImport(ImportSource source, ANNISFormatVersion version)
   {
     log.info("bulk-loading data");
 
@@ -799,17 +1303,17 @@ public class AdministrationDao extends AbstractAdminstrationDao
     {
       if (table.equalsIgnoreCase(FILE_RESOLVER_VIS_MAP))
       {
-        importResolverVisMapTable(path, table, version.getFileSuffix());
+        importResolverVisMapTable(source, table, version.getFileSuffix());
       }
       // check if example query exists. If not copy it from the resource folder.
       else if (table.equalsIgnoreCase(EXAMPLE_QUERIES_TAB))
       {
-        File f = new File(path, table + version.getFileSuffix());
-        if (f.exists())
+        String fileName = table + version.getFileSuffix();
+        if (source.exists(fileName))
         {
-          log.info(table + version.getFileSuffix() + " file exists");
+          log.info(fileName + " file exists");
           bulkloadTableFromResource(tableInStagingArea(table),
-            new FileSystemResource(f));
+            source.getResource(fileName));
 
           if (generateExampleQueries == (EXAMPLE_QUERIES_CONFIG.IF_MISSING))
           {
@@ -828,80 +1332,64 @@ public class AdministrationDao extends AbstractAdminstrationDao
       }
       else if (table.equalsIgnoreCase("node"))
       {
-        bulkImportNode(path, version);
+        bulkImportNode(source, version);
       }
       else
       {
         bulkloadTableFromResource(tableInStagingArea(table),
-          new FileSystemResource(new File(path, table + version.getFileSuffix())));
+          source.getResource(table + version.getFileSuffix()));
       }
     }
   }
 
-  private void bulkImportNode(String path, ANNISFormatVersion version)
+  private void bulkImportNode(ImportSource source, ANNISFormatVersion version)
   {
-    // check column number by reading first line
-    File nodeTabFile = new File(path, "node" + version.getFileSuffix());
-    try (BufferedReader reader
-      = new BufferedReader(new InputStreamReader(
-          new FileInputStream(nodeTabFile), "UTF-8"));)
+    // the number of columns is already known from the format version, thus the
+    // file is only read once by COPY
+    Resource nodeTabFile = source.getResource("node" + version.getFileSuffix());
+    if (version == ANNISFormatVersion.V3_3 || version
+      == ANNISFormatVersion.V3_2)
     {
-
-      String firstLine = reader.readLine();
-
-      int columnNumber = firstLine == null ? 13
-        : StringUtils.splitPreserveAllTokens(firstLine, '\t').length;
-      if (version == ANNISFormatVersion.V3_3 || version
-        == ANNISFormatVersion.V3_2)
-      {
-        // new node table with segmentations
-        // no special handling needed
-        bulkloadTableFromResource(tableInStagingArea("node"),
-          new FileSystemResource(nodeTabFile));
-      }
-      else if (version == ANNISFormatVersion.V3_1)
-      {
-        getJdbcTemplate().execute("DROP TABLE IF EXISTS _tmpnode;");
-        // old node table without segmentations
-        // create temporary table for  bulk import
-        getJdbcTemplate().execute(
-          "CREATE TEMPORARY TABLE _tmpnode"
-          + "\n(\n"
-          + "id bigint,\n"
-          + "text_ref integer,\n"
-          + "corpus_ref integer,\n"
-          + "namespace varchar,\n"
-          + "name varchar,\n"
-          + "\"left\" integer,\n"
-          + "\"right\" integer,\n"
-          + "token_index integer,\n"
-          + "continuous boolean,\n"
-          + "span varchar\n"
-          + ");");
-
-        bulkloadTableFromResource("_tmpnode",
-          new FileSystemResource(nodeTabFile));
-
-        log.info("copying nodes from temporary helper table into staging area");
-        getJdbcTemplate().execute(
-          "INSERT INTO " + tableInStagingArea("node") + "\n"
-          + "  SELECT id, text_ref, corpus_ref, namespace AS layer, name, \"left\", "
-          + "\"right\", token_index, "
-          + "NULL AS seg_name, NULL AS seg_left, NULL AS seg_left, continuous, "
-          + "span\n"
-          + "FROM _tmpnode");
-      }
-      else
-      {
-        throw new RuntimeException("Illegal number of columns in node"
-          + version.getFileSuffix() + ", "
-          + "should be 13 or 10 but was " + columnNumber);
-      }
-        }
-        catch (IOException ex)
-        {
-          log.error(null, ex);
-        }
+      // new node table with segmentations
+      // no special handling needed
+      bulkloadTableFromResource(tableInStagingArea("node"), nodeTabFile);
+    }
+    else if (version == ANNISFormatVersion.V3_1)
+    {
+      getJdbcTemplate().execute("DROP TABLE IF EXISTS _tmpnode;");
+      // old node table without segmentations
+      // create temporary table for  bulk import
+      getJdbcTemplate().execute(
+        "CREATE TEMPORARY TABLE _tmpnode"
+        + "\n(\n"
+        + "id bigint,\n"
+        + "text_ref integer,\n"
+        + "corpus_ref integer,\n"
+        + "namespace varchar,\n"
+        + "name varchar,\n"
+        + "\"left\" integer,\n"
+        + "\"right\" integer,\n"
+        + "token_index integer,\n"
+        + "continuous boolean,\n"
+        + "span varchar\n"
+        + ");");
+
+      bulkloadTableFromResource("_tmpnode", nodeTabFile);
+
+      log.info("copying nodes from temporary helper table into staging area");
+      getJdbcTemplate().execute(
+        "INSERT INTO " + tableInStagingArea("node") + "\n"
+        + "  SELECT id, text_ref, corpus_ref, namespace AS layer, name, \"left\", "
+        + "\"right\", token_index, "
+        + "NULL AS seg_name, NULL AS seg_left, NULL AS seg_left, continuous, "
+        + "span\n"
+        + "FROM _tmpnode");
+    }
+    else
+    {
+      throw new RuntimeException("Illegal number of columns in node"
+        + version.getFileSuffix() + ", should be 13 or 10");
+    }
   }
 
   void createStagingAreaIndexes(ANNISFormatVersion version)
@@ -923,94 +1411,74 @@ public class AdministrationDao extends AbstractAdminstrationDao
     executeSqlFromScript("toplevel_corpus.sql");
   }
 
-  void importBinaryData(String path, String toplevelCorpusName)
-  {
-    log.info("importing all binary data from ExtData");
-    File extData = new File(path + "/ExtData");
-    if (extData.canRead() && extData.isDirectory())
-    {
-      // import toplevel corpus media files
-      File[] topFiles = extData.listFiles((FileFilter) FileFileFilter.FILE);
-      if(topFiles != null)
-      {
-	      for (File data : topFiles)
-	      {
-	        String extension = FilenameUtils.getExtension(data.getName());
-	        try
-	        {
-	          if (mimeTypeMapping.containsKey(extension))
-	          {
-	            log.info("import " + data.getCanonicalPath() + " to staging area");
-	
-	            // search for corpus_ref
-	            String sqlScript
-	              = "SELECT id FROM _corpus WHERE top_level IS TRUE LIMIT 1";
-	            long corpusID = getJdbcTemplate().queryForObject(sqlScript, Long.class);
-	
-	            importSingleFile(data.getCanonicalPath(), toplevelCorpusName,
-	              corpusID);
-	          }
-	          else
-	          {
-	            log.warn(
-	              "not importing " + data.getCanonicalPath()
-	              + " since file type is unknown");
-	          }
-	        }
-	        catch (IOException ex)
-	        {
-	          log.error("no canonical path given", ex);
-	        }
-	      }
-	  }
-      // get each subdirectory (which corresponds to an document name)
-      File[] documents = extData.listFiles(
-        (FileFilter) DirectoryFileFilter.DIRECTORY);
-      if(documents != null)
-      {
-	      for (File doc : documents)
-	      {
-	        if (doc.isDirectory() && doc.canRead())
-	        {
-	          File[] dataFiles = doc.listFiles((FileFilter) FileFileFilter.FILE);
-	          if(dataFiles != null)
-	          {
-		          for (File data : dataFiles)
-		          {
-		            String extension = FilenameUtils.getExtension(data.getName());
-		            try
-		            {
-		              if (mimeTypeMapping.containsKey(extension))
-		              {
-		                log.info(
-		                  "import " + data.getCanonicalPath() + " to staging area");
-		
-		                // search for corpus_ref
-		                String sqlScript
-		                  = "SELECT id FROM _corpus WHERE \"name\" = ? LIMIT 1";
-		                long corpusID = getJdbcTemplate().queryForObject(sqlScript, Long.class, doc.
-		                  getName());
-		
-		                importSingleFile(data.getCanonicalPath(), toplevelCorpusName,
-		                  corpusID);
-		              }
-		              else
-		              {
-		                log.
-		                  warn(
-		                    "not importing " + data.getCanonicalPath()
-		                    + " since file type is unknown");
-		              }
-		            }
-		            catch (IOException ex)
-		            {
-		              log.error("no canonical path given", ex);
-		            }
-		          }
-	          }
-	        }
-	      }
-    	}
+  /**
+   * Imports the binary files from the ExtData directory.
+   *
+   * @param source
+   * @param toplevelCorpusName
+   * @param corpusNames If not null only the files of the corpora and documents
+   * with these names are imported.
+   */
+  void importBinaryData(ImportSource source, String toplevelCorpusName,
+    Set<String> corpusNames)
+  {
+    log.info("importing all binary data from ExtData");
+
+    // import toplevel corpus media files
+    boolean includeToplevel = corpusNames == null || corpusNames.contains(
+      toplevelCorpusName);
+    for (String name : source.listFiles("ExtData"))
+    {
+      if (includeToplevel && isKnownBinaryFile(source, "ExtData/" + name))
+      {
+        // search for corpus_ref
+        String sqlScript
+          = "SELECT id FROM _corpus WHERE top_level IS TRUE LIMIT 1";
+        long corpusID = getJdbcTemplate().queryForObject(sqlScript, Long.class);
+
+        importSingleFile(source.getResource("ExtData/" + name),
+          toplevelCorpusName, corpusID);
+      }
+    }
+
+    // get each subdirectory (which corresponds to an document name)
+    for (String doc : source.listDirectories("ExtData"))
+    {
+      if (corpusNames != null && !corpusNames.contains(doc))
+      {
+        continue;
+      }
+      for (String name : source.listFiles("ExtData/" + doc))
+      {
+        String file = "ExtData/" + doc + "/" + name;
+        if (isKnownBinaryFile(source, file))
+        {
+          // search for corpus_ref
+          String sqlScript
+            = "SELECT id FROM _corpus WHERE \"name\" = ? LIMIT 1";
+          long corpusID = getJdbcTemplate().queryForObject(sqlScript, Long.class,
+            doc);
+
+          importSingleFile(source.getResource(file), toplevelCorpusName,
+            corpusID);
+        }
+      }
+    }
+  }
+
+  private boolean isKnownBinaryFile(ImportSource source, String file)
+  {
+    String extension = FilenameUtils.getExtension(file);
+    if (mimeTypeMapping.containsKey(extension))
+    {
+      log.info("import " + source.getPath() + "/" + file + " to staging area");
+      return true;
+    }
+    else
+    {
+      log.warn("not importing " + source.getPath() + "/" + file
+        + " since file type is unknown");
+      return false;
     }
   }
 
@@ -1021,7 +1489,7 @@ public class AdministrationDao extends AbstractAdminstrationDao
    * @param corpusRef Assigns the file this corpus.
    * @param toplevelCorpusName The toplevel corpus name
    */
-  private void importSingleFile(String file, String toplevelCorpusName,
+  private void importSingleFile(Resource file, String toplevelCorpusName,
     long corpusRef)
   {
 
@@ -1164,6 +1632,112 @@ public class AdministrationDao extends AbstractAdminstrationDao
     executeSqlFromScript("node_id_mapping.sql");
 
   }
+
+  void computeDocumentFingerprints()
+  {
+    log.info("computing the content hashes of the documents");
+    executeSqlFromScript("document_fingerprint.sql");
+  }
+
+  void insertDocumentFingerprints(Offsets offsets)
+  {
+    executeSql("INSERT INTO document_fingerprint (corpus_ref, fingerprint)\n"
+      + "SELECT corpus_ref + :offset_corpus_id, fingerprint\n"
+      + "FROM _document_fingerprint", offsets.makeArgs());
+  }
+
+  /**
+   * Checks if the corpus in the staging area has the same corpus tree as the
+   * stored top level corpus with the same name.
+   *
+   * @param toplevelCorpusName
+   * @return The offsets of the corpus IDs and pre/post values between the
+   * staging area and the stored corpus or null if the corpus can't be updated.
+   */
+  private Offsets mapToStoredCorpus(String toplevelCorpusName)
+  {
+    List<Offsets> stored = getJdbcTemplate().query(
+      "SELECT c.id - s.id, c.pre - s.pre\n"
+      + "FROM corpus AS c, " + tableInStagingArea("corpus") + " AS s\n"
+      + "WHERE c.top_level IS TRUE AND c.\"name\" = ? AND s.top_level IS TRUE",
+      new RowMapper<Offsets>()
+    {
+      @Override
+      public Offsets mapRow(ResultSet rs, int rowNum) throws SQLException
+      {
+        return new Offsets(rs.getLong(1), rs.getLong(2), 0);
+      }
+    }, toplevelCorpusName);
+
+    if (stored.size() != 1)
+    {
+      log.info("there is no stored corpus \"{}\"", toplevelCorpusName);
+      return null;
+    }
+    Offsets offsets = stored.get(0);
+    long corpusID = getNewToplevelCorpusID(offsets);
+
+    int fingerprints = getJdbcTemplate().queryForObject(
+      "SELECT count(*) FROM document_fingerprint WHERE corpus_ref = ?",
+      Integer.class, corpusID);
+    if (fingerprints == 0)
+    {
+      log.info("the stored corpus has no content hashes");
+      return null;
+    }
+
+    // each corpus and document must be stored with the same name, type and
+    // position in the corpus tree
+    int storedCorpora = getJdbcTemplate().queryForObject(
+      "SELECT count(*) FROM corpus AS c, corpus AS toplevel\n"
+      + "WHERE toplevel.id = ? AND c.pre BETWEEN toplevel.pre AND toplevel.post",
+      Integer.class, corpusID);
+    int stagingCorpora = getJdbcTemplate().queryForObject(
+      "SELECT count(*) FROM " + tableInStagingArea("corpus"), Integer.class);
+    int unmatchedCorpora = getJdbcTemplate().queryForObject(
+      "SELECT count(*) FROM " + tableInStagingArea("corpus") + " AS s\n"
+      + "WHERE NOT EXISTS (SELECT 1 FROM corpus AS c WHERE c.id = s.id + ?\n"
+      + "  AND c.\"name\" = s.\"name\" AND c.type = s.type\n"
+      + "  AND c.pre = s.pre + ? AND c.post = s.post + ?)",
+      Integer.class, offsets.getCorpusID(), offsets.getCorpusPost(),
+      offsets.getCorpusPost());
+    if (storedCorpora != stagingCorpora || unmatchedCorpora > 0)
+    {
+      log.info("documents or corpora have been added, removed or renamed");
+      return null;
+    }
+    return offsets;
+  }
+
+  /**
+   * Computes the offsets for the ranks and components of the changed
+   * documents, so they follow the ones of the documents that remain in the
+   * facts table.
+   *
+   * @param corpusID
+   * @param offsets The offsets of the corpus and node IDs.
+   * @return
+   */
+  private Offsets moveBehindStoredRanks(long corpusID, Offsets offsets)
+  {
+    SqlRowSet stored = getJdbcTemplate().queryForRowSet(
+      "SELECT COALESCE(max(rank_id)+1, 0), COALESCE(max(post)+1, 0), "
+      + "COALESCE(max(component_id)+1, 0) FROM facts_" + corpusID);
+    SqlRowSet staging = getJdbcTemplate().queryForRowSet(
+      "SELECT COALESCE(min(r.id), 0), COALESCE(min(r.pre), 0), "
+      + "COALESCE(min(r.component_ref), 0)\n"
+      + "FROM " + tableInStagingArea("rank") + " AS r\n"
+      + "  JOIN " + tableInStagingArea("node") + " AS n ON (n.id = r.node_ref)\n"
+      + "  JOIN _changed_corpus AS c ON (c.id = n.corpus_ref)");
+    stored.next();
+    staging.next();
+
+    return new Offsets(offsets.getCorpusID(), offsets.getCorpusPost(),
+      offsets.getNodeID(),
+      stored.getLong(1) - staging.getLong(1),
+      stored.getLong(2) - staging.getLong(2),
+      stored.getLong(3) - staging.getLong(3));
+  }
   /*
    private long getRecentCorpusID()
    {
@@ -1207,22 +1781,176 @@ public class AdministrationDao extends AbstractAdminstrationDao
     executeSqlFromScript("constraints.sql");
   }
 
-  private Offsets calculateOffsets()
+  /**
+   * Reserves the corpus and node ID ranges for the corpus in the staging area.
+   *
+   * The first free values are stored in sequences, which are not affected by
+   * the import transaction. Thus concurrent imports will always get disjunct
+   * ranges, even if the other imports have not been committed yet.
+   *
+   * @return The offsets of the reserved ranges.
+   */
+  private Offsets reserveOffsets()
   {
-    log.info("querying ID offsets");
+    log.info("reserving ID ranges");
 
-    long offsetCorpusID = getJdbcTemplate().queryForObject(
-      "SELECT COALESCE((SELECT max(max_corpus_id)+1 FROM corpus_stats),0)",
+    long numOfCorpusIDs = getJdbcTemplate().queryForObject(
+      "SELECT COALESCE(max(id)+1, 0) FROM " + tableInStagingArea("corpus"),
       Long.class);
-    long offsetCorpusPost = getJdbcTemplate().queryForObject(
-      "SELECT COALESCE((SELECT max(max_corpus_post)+1 FROM corpus_stats),0)",
+    long numOfCorpusPost = getJdbcTemplate().queryForObject(
+      "SELECT COALESCE(max(post)+1, 0) FROM " + tableInStagingArea("corpus"),
       Long.class);
+    long numOfNodeIDs = numOfNodeIDsInStagingArea();
+
+    // only one import at a time is allowed to change the sequences
+    getJdbcTemplate().queryForRowSet("SELECT pg_advisory_lock(?)",
+      OFFSET_RESERVATION_LOCK);
+    try
+    {
+      long offsetCorpusID = reserveRange("import_corpus_id_seq",
+        "max_corpus_id", numOfCorpusIDs);
+      long offsetCorpusPost = reserveRange("import_corpus_post_seq",
+        "max_corpus_post", numOfCorpusPost);
+      long offsetNodeID = reserveRange("import_node_id_seq",
+        "max_node_id", numOfNodeIDs);
+
+      return new Offsets(offsetCorpusID, offsetCorpusPost, offsetNodeID);
+    }
+    finally
+    {
+      getJdbcTemplate().queryForRowSet("SELECT pg_advisory_unlock(?)",
+        OFFSET_RESERVATION_LOCK);
+    }
+  }
+
+  /**
+   * Reserves only a node ID range, the corpus IDs of an updated corpus are
+   * not changed.
+   *
+   * @return The offset of the node IDs.
+   */
+  private long reserveNodeIDs()
+  {
+    log.info("reserving node ID range");
+
+    long numOfNodeIDs = numOfNodeIDsInStagingArea();
 
-    long offsetNodeID = getJdbcTemplate().queryForObject(
-      "SELECT COALESCE((SELECT max(max_node_id)+1 FROM corpus_stats),0)",
+    getJdbcTemplate().queryForRowSet("SELECT pg_advisory_lock(?)",
+      OFFSET_RESERVATION_LOCK);
+    try
+    {
+      return reserveRange("import_node_id_seq", "max_node_id", numOfNodeIDs);
+    }
+    finally
+    {
+      getJdbcTemplate().queryForRowSet("SELECT pg_advisory_unlock(?)",
+        OFFSET_RESERVATION_LOCK);
+    }
+  }
+
+  private long numOfNodeIDsInStagingArea()
+  {
+    // the node IDs are re-numbered starting with 1 by the node ID mapping
+    return getJdbcTemplate().queryForObject(
+      "SELECT COALESCE(GREATEST(max(id), count(*))+1, 0) FROM "
+      + tableInStagingArea("node"), Long.class);
+  }
+
+  private long reserveRange(String sequence, String statsColumn, long size)
+  {
+    long offset = getJdbcTemplate().queryForObject(
+      "SELECT GREATEST("
+      + "COALESCE((SELECT max(" + statsColumn + ")+1 FROM corpus_stats),0), "
+      + "(SELECT last_value FROM " + sequence + "))",
       Long.class);
+    getJdbcTemplate().queryForObject("SELECT setval('" + sequence + "', ?)",
+      Long.class, offset + size);
+    return offset;
+  }
+
+  /**
+   * Marks the transaction of the current import for rollback, thus the
+   * staging schema and all other changes are discarded although the import
+   * method returns normally. The ID ranges which were already reserved by the
+   * sequences are not reused, which only leaves a gap.
+   */
+  private void discardImport()
+  {
+    TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+  }
+
+  /**
+   * Creates a new schema for the staging area of this import and adds it to
+   * the front of the search path of the current transaction.
+   *
+   * Staging tables which are not temporary are created in this schema, thus
+   * they don't collide with the ones of other imports.
+   *
+   * @return The created schema.
+   */
+  StagingSchema createStagingSchema()
+  {
+    String searchPath = getJdbcTemplate().queryForObject("SHOW search_path",
+      String.class);
+    String name = "annis_import_" + UUID.randomUUID().toString().replace("-",
+      "");
+
+    log.info("creating staging schema \"{}\"", name);
+    getJdbcTemplate().execute("CREATE SCHEMA " + name);
+    getJdbcTemplate().execute("SET LOCAL search_path TO " + name + ", "
+      + searchPath);
+
+    return new StagingSchema(name, searchPath);
+  }
+
+  /**
+   * Puts the staging schema to the end of the search path, so new tables are
+   * created in the main schema again while the staging tables can still be
+   * accessed.
+   *
+   * @param stagingSchema
+   */
+  void useMainSchema(StagingSchema stagingSchema)
+  {
+    getJdbcTemplate().execute("SET LOCAL search_path TO "
+      + stagingSchema.getSearchPath() + ", " + stagingSchema.getName());
+  }
+
+  void dropStagingSchema(StagingSchema stagingSchema)
+  {
+    log.info("dropping staging schema \"{}\"", stagingSchema.getName());
+    getJdbcTemplate().execute("SET LOCAL search_path TO "
+      + stagingSchema.getSearchPath());
+    getJdbcTemplate().execute("DROP SCHEMA " + stagingSchema.getName()
+      + " CASCADE");
+  }
 
-    return new Offsets(offsetCorpusID, offsetCorpusPost, offsetNodeID);
+  /**
+   * Makes sure the same top level corpus is not imported by two concurrent
+   * imports. The lock is released when the import transaction ends.
+   *
+   * @param toplevelCorpusName
+   * @param waitForOtherTasks If true wait for the other import to finish, if
+   * false abort.
+   * @return True if the lock was acquired.
+   */
+  private boolean lockToplevelCorpus(String toplevelCorpusName,
+    boolean waitForOtherTasks)
+  {
+    log.info("Locking top level corpus \"{}\"", toplevelCorpusName);
+    if (waitForOtherTasks)
+    {
+      getJdbcTemplate().queryForRowSet(
+        "SELECT pg_advisory_xact_lock(hashtext('annis.import'), hashtext(?))",
+        toplevelCorpusName);
+      return true;
+    }
+    else
+    {
+      return getJdbcTemplate().queryForObject(
+        "SELECT pg_try_advisory_xact_lock(hashtext('annis.import'), hashtext(?))",
+        Boolean.class, toplevelCorpusName);
+    }
   }
 
   void insertCorpus(long corpusID, Offsets offsets)
@@ -1328,6 +2056,21 @@ public class AdministrationDao extends AbstractAdminstrationDao
     getJdbcTemplate().execute("ANALYZE facts_" + corpusID);
   }
 
+  /**
+   * Refreshes the statistics of the tables shared by all corpora in the
+   * background after the import was committed, since analyzing them can take
+   * longer than the import of a small corpus.
+   */
+  private void analyzeSharedTables()
+  {
+    if (statisticsMaintenance != null)
+    {
+      List<String> tables = new ArrayList<>(Arrays.asList(tablesToCopyManually));
+      tables.add("document_fingerprint");
+      statisticsMaintenance.analyzeInBackground(tables);
+    }
+  }
+
   
   void adjustDistinctLeftRightToken(long corpusID)
   {
@@ -1354,6 +2097,29 @@ public class AdministrationDao extends AbstractAdminstrationDao
     
     log.info("creating materialized facts table for corpus with ID " + corpusID);
     
+    args.addValue(":stat_target", statisticsTarget());
+    
+    executeSqlFromScript("facts.sql", args);
+
+    fillFacts(corpusID, version, offsets, null);
+
+    enableParallelIndexBuild();
+
+    log.info("indexing the new facts table (general indexes)");
+    executeSqlFromScript("indexes.sql", args);
+    
+    log.info("indexing the new facts table (edge related indexes)");
+    executeSqlFromScript("indexes_edge.sql", args);
+
+  }
+
+  /**
+   * The statistics target for the important columns of the facts table.
+   *
+   * @return
+   */
+  private int statisticsTarget()
+  {
     String defaultStatTargetRaw = 
       getJdbcTemplate().queryForObject("SHOW default_statistics_target", String.class);
     
@@ -1373,23 +2139,171 @@ public class AdministrationDao extends AbstractAdminstrationDao
         log.warn("Could not parse the \"default_statistics_target\" PostgreSQL parameter.");
       }
     }
-    args.addValue(":stat_target", selectedStatTarget);
-    
-    if (version == ANNISFormatVersion.V3_3)
+    return selectedStatTarget;
+  }
+
+  /**
+   * Inserts the nodes of the staging area into the facts table.
+   *
+   * @param corpusID
+   * @param version
+   * @param offsets
+   * @param corpora If not null only the nodes of these corpora (IDs of the
+   * staging area) are inserted.
+   */
+  void fillFacts(long corpusID, ANNISFormatVersion version, Offsets offsets,
+    Set<Long> corpora)
+  {
+    // Fill the table in chunks of documents. The rows of each chunk can be
+    // sorted in memory and since the chunks are ordered by the corpus_ref the
+    // table has the same physical order as if it was filled at once.
+    SortedMap<Long, Long> nodesPerCorpus = getJdbcTemplate().query(
+      "SELECT corpus_ref, count(*) FROM " + tableInStagingArea("node")
+      + " GROUP BY corpus_ref", new ResultSetExtractor<SortedMap<Long, Long>>()
+    {
+      @Override
+      public SortedMap<Long, Long> extractData(ResultSet rs) throws
+        SQLException, DataAccessException
+      {
+        SortedMap<Long, Long> result = new TreeMap<>();
+        while (rs.next())
+        {
+          result.put(rs.getLong(1), rs.getLong(2));
+        }
+        return result;
+      }
+    });
+
+    long nodesTotal = 0;
+    for (Map.Entry<Long, Long> e : nodesPerCorpus.entrySet())
     {
-      executeSqlFromScript("facts.sql", args);
+      if (corpora == null || corpora.contains(e.getKey()))
+      {
+        nodesTotal += e.getValue();
+      }
     }
-    else
+    long nodesProcessed = 0;
+    ImportProgressTracker tracker = currentImport.get();
+
+    List<Range<Long>> chunks = splitIntoChunks(nodesPerCorpus, corpora,
+      factsChunkSize);
+    for (int i = 0; i < chunks.size(); i++)
+    {
+      Range<Long> chunk = chunks.get(i);
+      if (tracker != null)
+      {
+        tracker.setRows(nodesProcessed, nodesTotal);
+      }
+      log.info("filling facts table for corpus with ID " + corpusID
+        + " (chunk " + (i + 1) + "/" + chunks.size() + ")");
+      MapSqlParameterSource chunkArgs = offsets.makeArgs()
+        .addValue(":id", corpusID)
+        .addValue(":corpus_ref_min", chunk.lowerEndpoint())
+        .addValue(":corpus_ref_max", chunk.upperEndpoint());
+      if (version == ANNISFormatVersion.V3_3)
+      {
+        executeSqlFromScript("facts_chunk.sql", chunkArgs);
+      }
+      else
+      {
+        executeSqlFromScript("facts_chunk_v32.sql", chunkArgs);
+      }
+      for (long n : nodesPerCorpus.subMap(chunk.lowerEndpoint(),
+        chunk.upperEndpoint() + 1).values())
+      {
+        nodesProcessed += n;
+      }
+    }
+    if (tracker != null)
     {
-      executeSqlFromScript("facts_v32.sql", args);
+      tracker.setRows(nodesProcessed, nodesTotal);
     }
+  }
 
-    log.info("indexing the new facts table (general indexes)");
-    executeSqlFromScript("indexes.sql", args);
-    
-    log.info("indexing the new facts table (edge related indexes)");
-    executeSqlFromScript("indexes_edge.sql", args);
+  /**
+   * Groups consecutive corpora into chunks with roughly the given number of
+   * nodes. A single corpus is never split.
+   *
+   * @param nodesPerCorpus Number of nodes for each corpus ID.
+   * @param chunkSize Maximal number of nodes per chunk (unless a single corpus
+   * is larger), if less or equal to 0 only one chunk is created.
+   * @return The closed ranges of corpus IDs in ascending order.
+   */
+  static List<Range<Long>> splitIntoChunks(SortedMap<Long, Long> nodesPerCorpus,
+    long chunkSize)
+  {
+    return splitIntoChunks(nodesPerCorpus, null, chunkSize);
+  }
+
+  /**
+   * Groups consecutive selected corpora into chunks with roughly the given
+   * number of nodes. A chunk never contains a corpus that is not selected.
+   *
+   * @param nodesPerCorpus Number of nodes for each corpus ID.
+   * @param selected The IDs of the selected corpora or null to select all.
+   * @param chunkSize Maximal number of nodes per chunk (unless a single corpus
+   * is larger), if less or equal to 0 the chunks are as large as possible.
+   * @return The closed ranges of corpus IDs in ascending order.
+   */
+  static List<Range<Long>> splitIntoChunks(SortedMap<Long, Long> nodesPerCorpus,
+    Set<Long> selected, long chunkSize)
+  {
+    List<Range<Long>> result = new ArrayList<>();
+    Long chunkStart = null;
+    Long chunkEnd = null;
+    long nodesInChunk = 0;
+    for (Map.Entry<Long, Long> e : nodesPerCorpus.entrySet())
+    {
+      if (selected != null && !selected.contains(e.getKey()))
+      {
+        if (chunkStart != null)
+        {
+          result.add(Range.closed(chunkStart, chunkEnd));
+          chunkStart = null;
+          nodesInChunk = 0;
+        }
+        continue;
+      }
+      if (chunkStart != null && chunkSize > 0
+        && nodesInChunk + e.getValue() > chunkSize)
+      {
+        result.add(Range.closed(chunkStart, chunkEnd));
+        chunkStart = null;
+        nodesInChunk = 0;
+      }
+      if (chunkStart == null)
+      {
+        chunkStart = e.getKey();
+      }
+      chunkEnd = e.getKey();
+      nodesInChunk += e.getValue();
+    }
+    if (chunkStart != null)
+    {
+      result.add(Range.closed(chunkStart, chunkEnd));
+    }
+    return result;
+  }
 
+  /**
+   * Allows PostgreSQL to use several worker processes for creating a single
+   * index. The indexes can't be created on separate connections since the
+   * table is not visible outside the import transaction.
+   */
+  private void enableParallelIndexBuild()
+  {
+    if (parallelIndexWorkers <= 0)
+    {
+      return;
+    }
+    int serverVersion = getJdbcTemplate().queryForObject(
+      "SELECT current_setting('server_version_num')::integer", Integer.class);
+    // parallel index builds are only supported since PostgreSQL 11
+    if (serverVersion >= 110000)
+    {
+      getJdbcTemplate().execute("SET LOCAL max_parallel_maintenance_workers TO "
+        + parallelIndexWorkers);
+    }
   }
 
   void removeUnecessarySpanningRelations()
@@ -1649,6 +2563,7 @@ public class AdministrationDao extends AbstractAdminstrationDao
       + "  ?\n"
       + ");",
       alias, corpusID);
+    invalidateCorpusCatalog();
   }
 
   public void addCorpusAlias(String corpusName, String alias)
@@ -1658,6 +2573,7 @@ public class AdministrationDao extends AbstractAdminstrationDao
       + "SELECT ? AS alias, c.id\n"
       + "FROM corpus AS c WHERE c.top_level AND c.name=? LIMIT 1;",
       alias, corpusName);
+    invalidateCorpusCatalog();
   }
 
   ///// Helpers
@@ -1691,6 +2607,34 @@ public class AdministrationDao extends AbstractAdminstrationDao
   }
 
   // bulk-loads a table from a resource
+  /**
+   * Gets the connection of the JDBC driver which is wrapped by the connection
+   * pool and by the proxies of the routing DataSource.
+   *
+   * @param con
+   * @return
+   */
+  private static Connection unwrapConnection(Connection con)
+  {
+    while (true)
+    {
+      Connection inner = null;
+      if (con instanceof ConnectionProxy)
+      {
+        inner = ((ConnectionProxy) con).getTargetConnection();
+      }
+      else if (con instanceof DelegatingConnection)
+      {
+        inner = ((DelegatingConnection<?>) con).getInnermostDelegate();
+      }
+      if (inner == null || inner == con)
+      {
+        return con;
+      }
+      con = inner;
+    }
+  }
+
   private void bulkloadTableFromResource(String table, Resource resource)
   {
     log.debug("bulk-loading data from '" + resource.getFilename()
@@ -1702,19 +2646,23 @@ public class AdministrationDao extends AbstractAdminstrationDao
     {
       // retrieve the currently open connection if running inside a transaction
       Connection originalCon = DataSourceUtils.getConnection(getDataSource());
-      Connection con = originalCon;
-      if (con instanceof DelegatingConnection)
-      {
-        DelegatingConnection<?> delCon = (DelegatingConnection<?>) con;
-        con = delCon.getInnermostDelegate();
-      }
+      Connection con = unwrapConnection(originalCon);
 
       Preconditions.checkState(con instanceof PGConnection,
         "bulk-loading only works with a PostgreSQL JDBC connection");
 
       // Postgres JDBC4 8.4 driver now supports the copy API
       PGConnection pgCon = (PGConnection) con;
-      pgCon.getCopyAPI().copyIn(sql, resource.getInputStream());
+      ImportProgressTracker tracker = currentImport.get();
+      try (InputStream in = tracker == null ? resource.getInputStream()
+        : tracker.track(resource.getInputStream()))
+      {
+        long rows = pgCon.getCopyAPI().copyIn(sql, in);
+        if (tracker != null)
+        {
+          tracker.addRows(rows);
+        }
+      }
 
       DataSourceUtils.releaseConnection(originalCon, getDataSource());
 
@@ -1748,12 +2696,7 @@ public class AdministrationDao extends AbstractAdminstrationDao
     {
       // retrieve the currently open connection if running inside a transaction
       Connection originalCon = DataSourceUtils.getConnection(getDataSource());
-      Connection con = originalCon;
-      if (con instanceof DelegatingConnection)
-      {
-        DelegatingConnection<?> delCon = (DelegatingConnection<?>) con;
-        con = delCon.getInnermostDelegate();
-      }
+      Connection con = unwrapConnection(originalCon);
 
       Preconditions.checkState(con instanceof PGConnection,
         "bulk-loading only works with a PostgreSQL JDBC connection");
@@ -1775,18 +2718,371 @@ public class AdministrationDao extends AbstractAdminstrationDao
     }
   }
 
-  // get a list of indexes on the imported Snd created tables tables which are not
-  // auto-created by postgres (namely, primary key and unique constraints)
-  // exploits the fact that the index has the same name as the constraint
-  private List<String> listIndexesOnTables(List<String> tables)
+  /**
+   * Exports a top level corpus as a {@link CorpusBundle}, which can be imported
+   * into another ANNIS instance with the same database schema version.
+   *
+   * @param toplevelCorpusName
+   * @param bundleDir The directory of the bundle, it is created if necessary.
+   */
+  @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+  public void exportCorpusBundle(String toplevelCorpusName, File bundleDir)
   {
-    String sql
-      = ""
-      + "SELECT indexname "
-      + "FROM pg_indexes "
-      + "WHERE tablename IN (" + StringUtils.repeat("?", ",", tables.size())
-      + ") "
-      + "AND lower(indexname) NOT IN "
+    SqlRowSet corpus = getJdbcTemplate().queryForRowSet(
+      "SELECT id, pre, post FROM corpus WHERE top_level IS TRUE AND \"name\" = ?",
+      toplevelCorpusName);
+    if (!corpus.next())
+    {
+      throw new AnnisException("Top level corpus \"" + toplevelCorpusName
+        + "\" does not exist");
+    }
+    long corpusID = corpus.getLong("id");
+    long pre = corpus.getLong("pre");
+    long post = corpus.getLong("post");
+
+    File extData = new File(bundleDir, CorpusBundle.EXT_DATA);
+    if (!extData.isDirectory() && !extData.mkdirs())
+    {
+      throw new FileAccessException("Could not create directory "
+        + extData.getAbsolutePath());
+    }
+
+    CorpusBundle bundle = new CorpusBundle(toplevelCorpusName,
+      getDatabaseSchemaVersion());
+    for (CorpusBundle.Table table : CorpusBundle.TABLES)
+    {
+      List<String> columns = new ArrayList<>();
+      for (String c : getJdbcTemplate().queryForList(
+        "SELECT column_name FROM information_schema.columns "
+        + "WHERE table_schema = current_schema() AND table_name = ? "
+        + "ORDER BY ordinal_position", String.class, table.getColumnTable()))
+      {
+        if (table.isExported(c))
+        {
+          columns.add(c);
+        }
+      }
+
+      log.info("exporting table \"{}\" of corpus \"{}\"", table.getName(),
+        toplevelCorpusName);
+      long rows = copyBinaryOut(table.exportQuery(columns, corpusID, pre, post),
+        new File(bundleDir, table.getFileName()));
+      bundle.setColumns(table, columns);
+      bundle.setRows(table, rows);
+    }
+
+    File dataDir = getRealDataDir();
+    for (String fileName : getJdbcTemplate().queryForList(
+      "SELECT filename FROM media_files WHERE corpus_ref IN "
+      + "(SELECT id FROM corpus WHERE pre BETWEEN ? AND ?)", String.class,
+      pre, post))
+    {
+      try
+      {
+        Files.copy(new File(dataDir, fileName), new File(extData, fileName));
+      }
+      catch (IOException ex)
+      {
+        throw new FileAccessException(ex);
+      }
+    }
+
+    try
+    {
+      bundle.write(bundleDir);
+    }
+    catch (IOException ex)
+    {
+      throw new FileAccessException(ex);
+    }
+  }
+
+  /**
+   * Imports a corpus exported with
+   * {@link #exportCorpusBundle(java.lang.String, java.io.File) }.
+   *
+   * The tables are loaded into a staging schema and copied to the main tables
+   * with new corpus, node and annotation category IDs. Nothing has to be
+   * computed except the indexes and the table statistics.
+   *
+   * @param bundleDir
+   * @param overwrite If true an existing corpus with the same name is deleted.
+   * @param waitForOtherTasks
+   * @return True if the bundle was imported.
+   */
+  @Transactional(readOnly = false, propagation = Propagation.REQUIRES_NEW,
+    isolation = Isolation.READ_COMMITTED)
+  public boolean importCorpusBundle(File bundleDir, boolean overwrite,
+    boolean waitForOtherTasks)
+  {
+    checkDatabaseSchemaVersion();
+
+    CorpusBundle bundle;
+    try
+    {
+      bundle = CorpusBundle.read(bundleDir);
+    }
+    catch (IOException ex)
+    {
+      throw new FileAccessException(ex);
+    }
+    if (!getDatabaseSchemaVersion().equalsIgnoreCase(bundle.getSchemaVersion()))
+    {
+      throw new AnnisException("The bundle was created with the database schema \""
+        + bundle.getSchemaVersion() + "\" but this instance uses \""
+        + getDatabaseSchemaVersion() + "\"");
+    }
+
+    // explicitly unset any timeout
+    getJdbcTemplate().update("SET statement_timeout TO 0");
+
+    invalidateCorpusCatalog();
+
+    String toplevelCorpusName = bundle.getCorpusName();
+    if (!lockToplevelCorpus(toplevelCorpusName, waitForOtherTasks))
+    {
+      log.error("Another import of the corpus \"{}\" is currently running",
+        toplevelCorpusName);
+      return false;
+    }
+
+    if (overwrite)
+    {
+      deleteCorpusDao.checkAndRemoveTopLevelCorpus(toplevelCorpusName);
+    }
+    else if (existConflictingTopLevelCorpus(toplevelCorpusName))
+    {
+      throw new ConflictingCorpusException(
+        "There already exists a top level corpus with the name: "
+        + toplevelCorpusName);
+    }
+
+    StagingSchema stagingSchema = createStagingSchema();
+    for (CorpusBundle.Table table : CorpusBundle.TABLES)
+    {
+      String columns = CorpusBundle.Table.quoted(bundle.getColumns(table), "");
+      log.info("loading table \"{}\" of corpus \"{}\"", table.getName(),
+        toplevelCorpusName);
+      getJdbcTemplate().execute("CREATE UNLOGGED TABLE "
+        + table.getStagingTable() + " AS SELECT " + columns + " FROM "
+        + table.getColumnTable() + " WITH NO DATA");
+      long rows = copyBinaryIn(table.getStagingTable() + " (" + columns + ")",
+        new File(bundleDir, table.getFileName()));
+      // a truncated file could still be a valid COPY stream
+      if (rows != bundle.getRows(table))
+      {
+        throw new AnnisException("The bundle is incomplete, the table \""
+          + table.getName() + "\" should have " + bundle.getRows(table)
+          + " rows but " + rows + " were loaded");
+      }
+    }
+
+    Offsets offsets = reserveBundleOffsets();
+    long corpusID = getJdbcTemplate().queryForObject(
+      "SELECT id FROM " + CorpusBundle.CORPUS.getStagingTable()
+      + " WHERE top_level IS TRUE", Long.class) + offsets.getCorpusID();
+    log.info("new corpus ID is " + corpusID);
+
+    // the new tables of the corpus must not be created in the staging schema
+    useMainSchema(stagingSchema);
+
+    // block tasks like deleting corpora but not other imports
+    if (!lockRepositoryMetadataTableShared(waitForOtherTasks))
+    {
+      log.error("Another administration task is currently running");
+      discardImport();
+      return false;
+    }
+
+    MapSqlParameterSource args = offsets.makeArgs().addValue(":id", corpusID);
+    args.addValue(":stat_target", statisticsTarget());
+    executeSqlFromScript("bundle_tables.sql", args);
+    executeSqlFromScript("facts.sql", args);
+
+    for (CorpusBundle.Table table : CorpusBundle.TABLES)
+    {
+      log.info("moving table \"{}\" to main db", table.getName());
+      executeSql(table.importStatement(bundle.getColumns(table)), args);
+    }
+
+    log.info("indexing the tables of corpus with ID " + corpusID);
+    executeSqlFromScript("indexes_annotations.sql", args);
+    enableParallelIndexBuild();
+    executeSqlFromScript("indexes.sql", args);
+    executeSqlFromScript("indexes_edge.sql", args);
+
+    File extData = new File(bundleDir, CorpusBundle.EXT_DATA);
+    File dataDir = getRealDataDir();
+    File[] files = extData.listFiles();
+    if (files != null)
+    {
+      for (File f : files)
+      {
+        File target = new File(dataDir, f.getName());
+        if (f.isFile() && !target.exists())
+        {
+          try
+          {
+            Files.copy(f, target);
+          }
+          catch (IOException ex)
+          {
+            throw new FileAccessException(ex);
+          }
+        }
+      }
+    }
+
+    dropStagingSchema(stagingSchema);
+
+    // create empty corpus properties file
+    if (getQueryDao().getCorpusConfigurationSave(toplevelCorpusName) == null)
+    {
+      log.info("creating new corpus.properties file");
+      getQueryDao().setCorpusConfiguration(toplevelCorpusName, new Properties());
+    }
+
+    analyzeFacts(corpusID);
+    analyzeTextTable(toplevelCorpusName);
+    analyzeSharedTables();
+    getJdbcTemplate().execute("ANALYZE annotations_" + corpusID);
+
+    return true;
+  }
+
+  /**
+   * Reserves the ID ranges for the corpus in the bundle staging tables. The
+   * bundle keeps the IDs of the exporting instance, thus the offsets are
+   * relative to the smallest IDs of the bundle.
+   *
+   * @return
+   */
+  private Offsets reserveBundleOffsets()
+  {
+    SqlRowSet corpus = getJdbcTemplate().queryForRowSet(
+      "SELECT min(id) AS min_id, max(id) AS max_id, "
+      + "min(pre) AS min_pre, max(post) AS max_post FROM "
+      + CorpusBundle.CORPUS.getStagingTable());
+    corpus.next();
+    SqlRowSet nodes = getJdbcTemplate().queryForRowSet(
+      "SELECT COALESCE(min(id), 0) AS min_id, COALESCE(max(id), -1) AS max_id "
+      + "FROM " + CorpusBundle.FACTS.getStagingTable());
+    nodes.next();
+
+    getJdbcTemplate().queryForRowSet("SELECT pg_advisory_lock(?)",
+      OFFSET_RESERVATION_LOCK);
+    try
+    {
+      long offsetCorpusID = reserveRange("import_corpus_id_seq",
+        "max_corpus_id", corpus.getLong("max_id") - corpus.getLong("min_id")
+        + 1) - corpus.getLong("min_id");
+      long offsetCorpusPost = reserveRange("import_corpus_post_seq",
+        "max_corpus_post", corpus.getLong("max_post") - corpus.getLong(
+          "min_pre") + 1) - corpus.getLong("min_pre");
+      long offsetNodeID = reserveRange("import_node_id_seq",
+        "max_node_id", nodes.getLong("max_id") - nodes.getLong("min_id") + 1)
+        - nodes.getLong("min_id");
+
+      return new Offsets(offsetCorpusID, offsetCorpusPost, offsetNodeID);
+    }
+    finally
+    {
+      getJdbcTemplate().queryForRowSet("SELECT pg_advisory_unlock(?)",
+        OFFSET_RESERVATION_LOCK);
+    }
+  }
+
+  /**
+   * Writes the result of a query to a file in the binary COPY format.
+   *
+   * @param query
+   * @param file
+   * @return The number of rows.
+   */
+  private long copyBinaryOut(String query, File file)
+  {
+    String sql = "COPY (" + query + ") TO STDOUT WITH (FORMAT binary)";
+    try
+    {
+      // retrieve the currently open connection if running inside a transaction
+      Connection originalCon = DataSourceUtils.getConnection(getDataSource());
+      Connection con = unwrapConnection(originalCon);
+
+      Preconditions.checkState(con instanceof PGConnection,
+        "bulk-loading only works with a PostgreSQL JDBC connection");
+
+      PGConnection pgCon = (PGConnection) con;
+      long rows;
+      try (OutputStream out = new BufferedOutputStream(new FileOutputStream(
+        file)))
+      {
+        rows = pgCon.getCopyAPI().copyOut(sql, out);
+      }
+
+      DataSourceUtils.releaseConnection(originalCon, getDataSource());
+      return rows;
+    }
+    catch (SQLException e)
+    {
+      throw new DatabaseAccessException(e);
+    }
+    catch (IOException e)
+    {
+      throw new FileAccessException(e);
+    }
+  }
+
+  /**
+   * Loads a file in the binary COPY format into a table.
+   *
+   * @param table The table and the list of columns.
+   * @param file The file in the binary COPY format.
+   * @return The number of loaded rows.
+   */
+  private long copyBinaryIn(String table, File file)
+  {
+    String sql = "COPY " + table + " FROM STDIN WITH (FORMAT binary)";
+    try
+    {
+      // retrieve the currently open connection if running inside a transaction
+      Connection originalCon = DataSourceUtils.getConnection(getDataSource());
+      Connection con = unwrapConnection(originalCon);
+
+      Preconditions.checkState(con instanceof PGConnection,
+        "bulk-loading only works with a PostgreSQL JDBC connection");
+
+      PGConnection pgCon = (PGConnection) con;
+      long rows;
+      try (InputStream in = new BufferedInputStream(new FileInputStream(file)))
+      {
+        rows = pgCon.getCopyAPI().copyIn(sql, in);
+      }
+
+      DataSourceUtils.releaseConnection(originalCon, getDataSource());
+      return rows;
+    }
+    catch (SQLException e)
+    {
+      throw new DatabaseAccessException(e);
+    }
+    catch (IOException e)
+    {
+      throw new FileAccessException(e);
+    }
+  }
+
+  // get a list of indexes on the imported Snd created tables tables which are not
+  // auto-created by postgres (namely, primary key and unique constraints)
+  // exploits the fact that the index has the same name as the constraint
+  private List<String> listIndexesOnTables(List<String> tables)
+  {
+    String sql
+      = ""
+      + "SELECT indexname "
+      + "FROM pg_indexes "
+      + "WHERE tablename IN (" + StringUtils.repeat("?", ",", tables.size())
+      + ") "
+      + "AND lower(indexname) NOT IN "
       + "	(SELECT lower(conname) FROM pg_constraint WHERE contype in ('p', 'u'))";
 
     return getJdbcTemplate().query(sql, tables.toArray(), stringRowMapper());
@@ -1951,7 +3247,7 @@ public class AdministrationDao extends AbstractAdminstrationDao
     this.tableInsertFrom = tableInsertFrom;
   }
 
-  private void readOldResolverVisMapFormat(File resolver_vis_tab)
+  private void readOldResolverVisMapFormat(Resource resolver_vis_tab)
   {
     StringBuilder sb = new StringBuilder();
     sb.append("CREATE TABLE tmp_resolver_vis_map ");
@@ -1968,8 +3264,7 @@ public class AdministrationDao extends AbstractAdminstrationDao
 
     getJdbcTemplate().execute(sb.toString());
 
-    bulkloadTableFromResource("tmp_resolver_vis_map",
-      new FileSystemResource(resolver_vis_tab));
+    bulkloadTableFromResource("tmp_resolver_vis_map", resolver_vis_tab);
 
     sb = new StringBuilder();
 
@@ -2007,28 +3302,22 @@ public class AdministrationDao extends AbstractAdminstrationDao
    * version has an additional column for visibility status of the
    * visualization.
    *
-   * @param path The path to the ANNIS file.
+   * @param source The location of the ANNIS files.
    * @param table The final table in the database of the resolver_vis_map table.
    */
-  private void importResolverVisMapTable(String path, String table, String annisFileSuffix)
+  private void importResolverVisMapTable(ImportSource source, String table, String annisFileSuffix)
   {
     try
     {
 
       // count cols for detecting old resolver_vis_map table format
-      File resolver_vis_tab = new File(path, table + annisFileSuffix);
-
-      if (!resolver_vis_tab.isFile())
+      if (!source.exists(table + annisFileSuffix))
       {
         return;
       }
+      Resource resolver_vis_tab = source.getResource(table + annisFileSuffix);
 
-      String firstLine;
-      try (BufferedReader bReader = new BufferedReader(
-        new InputStreamReader(new FileInputStream(resolver_vis_tab), "UTF-8")))
-      {
-        firstLine = bReader.readLine();
-      }
+      String firstLine = readFirstLine(resolver_vis_tab);
 
       int cols = 9; // default number
       if (firstLine != null)
@@ -2047,7 +3336,7 @@ public class AdministrationDao extends AbstractAdminstrationDao
         // new format
         case 9:
           bulkloadTableFromResource(tableInStagingArea(table),
-            new FileSystemResource(new File(path, table + annisFileSuffix)));
+            resolver_vis_tab);
           break;
         default:
           log.error("invalid amount of cols");
@@ -2083,15 +3372,34 @@ public class AdministrationDao extends AbstractAdminstrationDao
   }
 
   /**
-   * Generates example queries if no example queries tab file is defined by the
-   * user.
+   * Generates the example queries and measures the runtime of all example
+   * queries of the corpus in the background, after the import transaction was
+   * committed. Thus the corpus can already be used while the queries are
+   * executed.
+   *
+   * @param corpusID
    */
-  private void generateExampleQueries(long corpusID)
+  private void generateExampleQueries(final long corpusID)
   {
     // set in the annis.properties file.
-    if (generateExampleQueries == EXAMPLE_QUERIES_CONFIG.TRUE)
+    final boolean generate
+      = generateExampleQueries == EXAMPLE_QUERIES_CONFIG.TRUE;
+
+    if (TransactionSynchronizationManager.isSynchronizationActive())
     {
-      queriesGenerator.generateQueries(corpusID);
+      TransactionSynchronizationManager.registerSynchronization(
+        new TransactionSynchronizationAdapter()
+      {
+        @Override
+        public void afterCommit()
+        {
+          queriesGenerator.generateQueriesInBackground(corpusID, generate);
+        }
+      });
+    }
+    else
+    {
+      queriesGenerator.generateQueriesInBackground(corpusID, generate);
     }
   }
 
@@ -2223,6 +3531,27 @@ public class AdministrationDao extends AbstractAdminstrationDao
     this.queriesGenerator = queriesGenerator;
   }
 
+  public StatisticsMaintenance getStatisticsMaintenance()
+  {
+    return statisticsMaintenance;
+  }
+
+  public void setStatisticsMaintenance(
+    StatisticsMaintenance statisticsMaintenance)
+  {
+    this.statisticsMaintenance = statisticsMaintenance;
+  }
+
+  public MetricsRegistry getMetricsRegistry()
+  {
+    return metricsRegistry;
+  }
+
+  public void setMetricsRegistry(MetricsRegistry metricsRegistry)
+  {
+    this.metricsRegistry = metricsRegistry;
+  }
+
   public DeleteCorpusDao getDeleteCorpusDao()
   {
     return deleteCorpusDao;
@@ -2242,6 +3571,26 @@ public class AdministrationDao extends AbstractAdminstrationDao
   {
     this.hackDistinctLeftRightToken = hackDistinctLeftRightToken;
   }
+
+  public long getFactsChunkSize()
+  {
+    return factsChunkSize;
+  }
+
+  public void setFactsChunkSize(long factsChunkSize)
+  {
+    this.factsChunkSize = factsChunkSize;
+  }
+
+  public int getParallelIndexWorkers()
+  {
+    return parallelIndexWorkers;
+  }
+
+  public void setParallelIndexWorkers(int parallelIndexWorkers)
+  {
+    this.parallelIndexWorkers = parallelIndexWorkers;
+  }
   
   
 
@@ -2264,58 +3613,66 @@ public class AdministrationDao extends AbstractAdminstrationDao
     }
   }
 
-  private ANNISFormatVersion getANNISFormatVersion(String path)
+  /**
+   * Detects the version of the ANNIS format only from the names and the first
+   * lines of the files, so no file has to be read completely.
+   *
+   * @param source
+   * @return
+   */
+  private ANNISFormatVersion getANNISFormatVersion(ImportSource source)
   {
-    File pathDir = new File(path);
-    if (pathDir.isDirectory())
+    // check for existance of "annis.version" file
+    if (source.exists("annis.version"))
     {
-      // check for existance of "annis.version" file
-      File versionFile = new File(pathDir, "annis.version");
-      if (versionFile.isFile() && versionFile.exists())
+      try
       {
-        try
+        // read the first line
+        String firstLine = readFirstLine(source.getResource("annis.version"));
+        if (firstLine != null && "3.3".equals(firstLine.trim()))
         {
-          // read the first line
-          String firstLine = Files.readFirstLine(versionFile, Charsets.UTF_8);
-          if ("3.3".equals(firstLine.trim()))
-          {
-            return ANNISFormatVersion.V3_3;
-          }
-        }
-        catch (IOException ex)
-        {
-          log.warn("Could not read annis.version file", ex);
+          return ANNISFormatVersion.V3_3;
         }
       }
-      else
+      catch (IOException ex)
+      {
+        log.warn("Could not read annis.version file", ex);
+      }
+    }
+    else if (source.exists("node.tab"))
+    {
+      // we have to distinguish between 3.1 and 3.2
+      try
       {
-        // we have to distinguish between 3.1 and 3.2
-        File nodeTab = new File(pathDir, "node.tab");
-        if (nodeTab.isFile() && nodeTab.exists())
+        String firstLine = readFirstLine(source.getResource("node.tab"));
+        List<String> cols = Splitter.on('\t').splitToList(
+          firstLine == null ? "" : firstLine);
+        if (cols.size() == 13)
         {
-          try
-          {
-            String firstLine = Files.readFirstLine(nodeTab, Charsets.UTF_8);
-            List<String> cols = Splitter.on('\t').splitToList(firstLine);
-            if (cols.size() == 13)
-            {
-              return ANNISFormatVersion.V3_2;
-            }
-            else if (cols.size() == 10)
-            {
-              return ANNISFormatVersion.V3_1;
-            }
-          }
-          catch (IOException ex)
-          {
-            log.warn("Could not read node.tab file", ex);
-          }
+          return ANNISFormatVersion.V3_2;
         }
+        else if (cols.size() == 10)
+        {
+          return ANNISFormatVersion.V3_1;
+        }
+      }
+      catch (IOException ex)
+      {
+        log.warn("Could not read node.tab file", ex);
       }
     }
     return ANNISFormatVersion.UNKNOWN;
   }
 
+  private static String readFirstLine(Resource resource) throws IOException
+  {
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+      resource.getInputStream(), "UTF-8")))
+    {
+      return reader.readLine();
+    }
+  }
+
   public static class ConflictingCorpusException extends AnnisException
   {
 
@@ -2325,18 +3682,60 @@ public class AdministrationDao extends AbstractAdminstrationDao
     }
   }
 
+  /**
+   * The schema of a single import and the search path before it was created.
+   */
+  static class StagingSchema
+  {
+
+    private final String name;
+    private final String searchPath;
+
+    public StagingSchema(String name, String searchPath)
+    {
+      this.name = name;
+      this.searchPath = searchPath;
+    }
+
+    public String getName()
+    {
+      return name;
+    }
+
+    public String getSearchPath()
+    {
+      return searchPath;
+    }
+  }
+
   public static class Offsets
   {
 
     private final long corpusID;
     private final long corpusPost;
     private final long nodeID;
+    private final long rankID;
+    private final long rankPre;
+    private final long componentID;
 
     public Offsets(long corpusID, long corpusPost, long nodeID)
+    {
+      this(corpusID, corpusPost, nodeID, 0, 0, 0);
+    }
+
+    /**
+     * The rank and component offsets are only needed when documents are added
+     * to an existing facts table.
+     */
+    public Offsets(long corpusID, long corpusPost, long nodeID, long rankID,
+      long rankPre, long componentID)
     {
       this.corpusID = corpusID;
       this.corpusPost = corpusPost;
       this.nodeID = nodeID;
+      this.rankID = rankID;
+      this.rankPre = rankPre;
+      this.componentID = componentID;
     }
 
     public long getCorpusID()
@@ -2349,12 +3748,20 @@ public class AdministrationDao extends AbstractAdminstrationDao
       return corpusPost;
     }
 
+    public long getNodeID()
+    {
+      return nodeID;
+    }
+
     public MapSqlParameterSource makeArgs()
     {
       return new MapSqlParameterSource()
         .addValue(":offset_corpus_id", corpusID)
         .addValue(":offset_corpus_post", corpusPost)
-        .addValue(":offset_node_id", nodeID);
+        .addValue(":offset_node_id", nodeID)
+        .addValue(":offset_rank_id", rankID)
+        .addValue(":offset_rank_pre", rankPre)
+        .addValue(":offset_component_id", componentID);
     }
   }
 
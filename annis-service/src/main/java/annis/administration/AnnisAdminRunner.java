@@ -56,6 +56,8 @@ public class AnnisAdminRunner extends AnnisBaseRunner
   private QueryDao queryDao;
 
   private QueriesGenerator queriesGenerator;
+
+  private StatisticsMaintenance statisticsMaintenance;
   
   public static void main(String[] args)
   {
@@ -150,6 +152,14 @@ public class AnnisAdminRunner extends AnnisBaseRunner
     {
       doRestoreTable(commandArgs);
     }
+    else if("export-bundle".equals(command))
+    {
+      doExportBundle(commandArgs);
+    }
+    else if("import-bundle".equals(command))
+    {
+      doImportBundle(commandArgs);
+    }
     else
     {
       throw new UsageException("Unknown command: " + command);
@@ -173,6 +183,17 @@ public class AnnisAdminRunner extends AnnisBaseRunner
     this.queriesGenerator = queriesGenerator;
   }
 
+  public StatisticsMaintenance getStatisticsMaintenance()
+  {
+    return statisticsMaintenance;
+  }
+
+  public void setStatisticsMaintenance(
+    StatisticsMaintenance statisticsMaintenance)
+  {
+    this.statisticsMaintenance = statisticsMaintenance;
+  }
+
   static class OptionBuilder
   {
 
@@ -375,6 +396,8 @@ public class AnnisAdminRunner extends AnnisBaseRunner
     Options options = new OptionBuilder()
       .addToggle("o", "overwrite", false,
       "Overwrites a corpus, when it is already stored in the database.")
+      .addToggle("u", "update", false,
+      "Only replaces the changed documents of a corpus, which is already stored in the database.")
       .addParameter("m", "mail", "e-mail adress to where status updates should be send")
       .addParameter("a", "alias", "an alias name for this corpus")
       .createOptions();
@@ -395,11 +418,27 @@ public class AnnisAdminRunner extends AnnisBaseRunner
       }
 
       boolean overwrite = cmdLine.hasOption('o');
-      corpusAdministration.importCorporaSave(overwrite, 
+      if (cmdLine.hasOption('u'))
+      {
+        corpusAdministration.updateCorporaSave(
+          options.getOption("alias").getValue(),
+          options.getOption("mail").getValue(),
+          false,
+          cmdLine.getArgList());
+      }
+      else
+      {
+        corpusAdministration.importCorporaSave(overwrite, 
           options.getOption("alias").getValue(),
           options.getOption("mail").getValue(), 
           false,
           cmdLine.getArgList());
+      }
+
+      // the example queries are generated in the background
+      queriesGenerator.awaitBackgroundTasks();
+      // the shared tables are analyzed in the background
+      statisticsMaintenance.awaitBackgroundTasks();
       
     }
     catch (ParseException ex)
@@ -612,6 +651,50 @@ public class AnnisAdminRunner extends AnnisBaseRunner
     corpusAdministration.restoreTable(commandArgs.get(0), new File(commandArgs.get(1)));
   }
 
+  public void doExportBundle(List<String> commandArgs)
+  {
+    Preconditions.checkArgument(commandArgs.size() >= 2, "Need the corpus name and the output directory as argument");
+    corpusAdministration.exportCorpusBundle(commandArgs.get(0), new File(commandArgs.get(1)));
+  }
+
+  private void doImportBundle(List<String> commandArgs)
+  {
+    Options options = new OptionBuilder()
+      .addToggle("o", "overwrite", false,
+        "Overwrites a corpus, when it is already stored in the database.")
+      .createOptions();
+
+    CommandLineParser parser = new PosixParser();
+    try
+    {
+      CommandLine cmdLine = parser.parse(options, commandArgs.toArray(
+        new String[commandArgs.size()]));
+
+      if (cmdLine.getArgList().isEmpty())
+      {
+        throw new ParseException(
+          "You need to specifiy the directory of at least one bundle.");
+      }
+
+      List<File> bundleDirs = new LinkedList<>();
+      for (String dir : cmdLine.getArgs())
+      {
+        bundleDirs.add(new File(dir));
+      }
+      if (!corpusAdministration.importCorpusBundles(
+        cmdLine.hasOption("overwrite"), bundleDirs))
+      {
+        throw new AnnisRunnerException(50);
+      }
+    }
+    catch (ParseException ex)
+    {
+      HelpFormatter helpFormatter = new HelpFormatter();
+      helpFormatter.printHelp("annis-admin.sh import-bundle [OPTION] DIR [DIR ...]",
+        options);
+    }
+  }
+
   private void usage(String error)
   {
     Resource resource = new ClassPathResource("annis/administration/usage.txt");
@@ -26,6 +26,8 @@ import javax.activation.MimetypesFileTypeMap;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.slf4j.LoggerFactory;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
 import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.PreparedStatementCallback;
 
@@ -48,7 +50,9 @@ public class BinaryImportHelper implements
 
   public static final String SQL = "INSERT INTO _media_files VALUES (?, ?, ?, ?)";
 
-  private File fileSource;
+  private Resource fileSource;
+
+  private String fileName;
 
   private File fileDestination;
 
@@ -60,12 +64,31 @@ public class BinaryImportHelper implements
     long corpusRef,
     Map<String, String> mimeTypeMapping)
   {
-    this.fileSource = f;
+    this(new FileSystemResource(f), dataDir, toplevelCorpusName, corpusRef, 
+      mimeTypeMapping);
+  }
+  
+  /**
+   * Imports binary files from any resource, e.g. an entry of a ZIP file.
+   *
+   * @param source The content of the file. The file name of the resource is
+   * used as original file name.
+   * @param dataDir Specifies the directory, where the file is copied to.
+   * @param toplevelCorpusName Name of the toplevel corpus..
+   * @param corpusRef Assigns the file to a specific corpus in the database.
+   * @param mimeTypeMapping A map of default mime types.
+   */
+  public BinaryImportHelper(Resource source, File dataDir, 
+    String toplevelCorpusName, long corpusRef,
+    Map<String, String> mimeTypeMapping)
+  {
+    this.fileSource = source;
+    this.fileName = source.getFilename();
 
     // create a file-name in the form of "filename_toplevelcorpus_UUID.ending", thus we
     // need to split the file name into its components
-    String baseName = FilenameUtils.getBaseName(fileSource.getName());
-    String extension = FilenameUtils.getExtension(fileSource.getName());
+    String baseName = FilenameUtils.getBaseName(fileName);
+    String extension = FilenameUtils.getExtension(fileName);
     UUID uuid = UUID.randomUUID();
     
     String outputName = "";
@@ -86,14 +109,13 @@ public class BinaryImportHelper implements
     fileDestination = new File(dataDir, outputName);
 
 
-    String fileEnding = FilenameUtils.getExtension(f.getName());
-    if (mimeTypeMapping.containsKey(fileEnding))
+    if (mimeTypeMapping.containsKey(extension))
     {
-      this.mimeType = mimeTypeMapping.get(fileEnding);
+      this.mimeType = mimeTypeMapping.get(extension);
     }
     else
     {
-      this.mimeType = new MimetypesFileTypeMap().getContentType(fileSource);
+      this.mimeType = new MimetypesFileTypeMap().getContentType(fileName);
     }
     this.corpusRef = corpusRef;
   }
@@ -121,15 +143,16 @@ public class BinaryImportHelper implements
     ps.setString(1, fileDestination.getName());
     ps.setLong(2, this.corpusRef);
     ps.setString(3, this.mimeType);
-    ps.setString(4, fileSource.getName());
+    ps.setString(4, fileName);
     ps.executeUpdate();
     try
     {
-      FileUtils.copyFile(fileSource, fileDestination);
+      FileUtils.copyInputStreamToFile(fileSource.getInputStream(), 
+        fileDestination);
     }
     catch (IOException ex)
     {
-      log.error("Could not copy file " + fileSource.getPath(), ex);
+      log.error("Could not copy file " + fileSource.getDescription(), ex);
       return false;
     }
 
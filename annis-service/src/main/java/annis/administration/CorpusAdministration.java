@@ -17,12 +17,10 @@ package annis.administration;
 
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Enumeration;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
@@ -30,14 +28,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
 import java.util.zip.ZipFile;
 
 import javax.mail.internet.AddressException;
 import javax.mail.internet.InternetAddress;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.output.FileWriterWithEncoding;
 import org.apache.commons.mail.EmailException;
 import org.apache.commons.mail.SimpleEmail;
@@ -48,13 +44,12 @@ import org.springframework.transaction.annotation.Transactional;
 
 import com.google.common.base.Joiner;
 import com.google.common.collect.Multimap;
-import com.google.common.io.ByteStreams;
 
 import annis.AnnisRunnerException;
-import annis.CommonHelper;
+import annis.corpuspathsearch.CorpusPathScanner;
+import annis.corpuspathsearch.CorpusRoot;
 import annis.exceptions.AnnisException;
 import annis.service.objects.ImportJob;
-import annis.utils.ANNISFormatHelper;
 
 /**
  *
@@ -70,6 +65,8 @@ public class CorpusAdministration
 
   private String statusMailSender;
 
+  private final CorpusPathScanner corpusPathScanner = new CorpusPathScanner();
+
   private static final Logger log = LoggerFactory.getLogger(
     CorpusAdministration.class);
 
@@ -142,6 +139,33 @@ public class CorpusAdministration
     String aliasName,
     String statusEmailAdress, boolean waitForOtherTasks, List<String> paths)
   {
+    return importCorporaSave(overwrite, false, aliasName, statusEmailAdress,
+      waitForOtherTasks, paths);
+  }
+
+  /**
+   * Updates several corpora. Only the changed documents of a corpus which
+   * already exists are replaced, all other corpora are imported completely.
+   *
+   * @param aliasName An common alias name for all imported corpora or null
+   * @param statusEmailAdress an email adress for informating the admin about
+   * statuses
+   * @param waitForOtherTasks If true wait for other imports to finish, if false
+   * abort the import.
+   * @param paths Valid pathes to corpora.
+   * @return True if all corpora where updated successfully.
+   */
+  public ImportStatus updateCorporaSave(String aliasName,
+    String statusEmailAdress, boolean waitForOtherTasks, List<String> paths)
+  {
+    return importCorporaSave(true, true, aliasName, statusEmailAdress,
+      waitForOtherTasks, paths);
+  }
+
+  private ImportStatus importCorporaSave(boolean overwrite, boolean update,
+    String aliasName,
+    String statusEmailAdress, boolean waitForOtherTasks, List<String> paths)
+  {
 
     // init the import stats. From the beginning everything is ok
     ImportStatus importStats = new ImportStatsImpl();
@@ -153,199 +177,159 @@ public class CorpusAdministration
       schemeFixer.checkAndFix();
     }
 
-    List<File> roots = new LinkedList<>();
-    for (String path : paths)
+    List<ImportSource> roots = new LinkedList<>();
+    List<CorpusRoot> directoryCorpora = new ArrayList<>();
+    // ZIP files are kept open until all corpora have been imported
+    List<ZipFile> zipFiles = new LinkedList<>();
+    try
     {
-      File f = new File(path);
-
-      if (f.isFile())
+      for (String path : paths)
       {
-        // might be a ZIP-file
-        try (ZipFile zip = new ZipFile(f);)
-        {
-
-          // get the names of all corpora included in the ZIP file
-          // in order to get a folder name
-          Map<String, ZipEntry> corpora = ANNISFormatHelper.corporaInZipfile(zip);
-
-          // unzip and add all resulting corpora to import list
-          log.info("Unzipping " + f.getPath());
-          File outDir = createZIPOutputDir(Joiner.on(", ").
-            join(corpora.keySet()));
-          roots.addAll(unzipCorpus(outDir, zip));
+        File f = new File(path);
 
-        }
-        catch (ZipException ex)
+        if (f.isFile())
         {
-          log.error(
-            "" + f.getAbsolutePath()
-            + " might not be a valid ZIP file and will be ignored",
-            ex);
+          // might be a ZIP-file
+          try
+          {
+            ZipFile zip = new ZipFile(f);
+            zipFiles.add(zip);
+
+            // import all corpora directly from the ZIP file entries
+            List<ZipImportSource> corpora = ZipImportSource.corporaInZipFile(zip);
+            log.info("Found " + corpora.size() + " corpora in " + f.getPath());
+            roots.addAll(corpora);
+          }
+          catch (ZipException ex)
+          {
+            log.error(
+              "" + f.getAbsolutePath()
+              + " might not be a valid ZIP file and will be ignored",
+              ex);
+          }
+          catch (IOException ex)
+          {
+            log.error(
+              "IOException when importing file " + f.getAbsolutePath()
+              + ", will be ignored",
+              ex);
+          }
         }
-        catch (IOException ex)
+        else
         {
-          log.error(
-            "IOException when importing file " + f.getAbsolutePath()
-            + ", will be ignored",
-            ex);
+          // don't use a cached listing, the corpus might just have been
+          // copied into the directory, and import each top level corpus of
+          // the directory only once
+          List<CorpusRoot> corpora = CorpusPathScanner.distinctByName(
+            corpusPathScanner.scan(Collections.singletonList(f), false));
+          if (corpora.isEmpty())
+          {
+            IOException ex = new IOException("no corpus found in "
+              + f.getAbsolutePath());
+            log.error("Could not find any corpus in " + f.getPath(), ex);
+            importStats.setStatus(false);
+            importStats.addException(f.getAbsolutePath(), ex);
+          }
+          directoryCorpora.addAll(corpora);
         }
+      } // end for each given path
+
+      // import the smallest corpora first
+      Collections.sort(directoryCorpora);
+      for (CorpusRoot c : directoryCorpora)
+      {
+        roots.add(new DirectoryImportSource(c.getDirectory()));
       }
-      else
+
+      // import each corpus separately
+      for (ImportSource r : roots)
       {
         try
         {
-          roots.addAll(ANNISFormatHelper.corporaInDirectory(f).values());
+          log.info("Importing corpus from: " + r.getPath());
+          if (importCorpus(r, aliasName, overwrite, update, waitForOtherTasks))
+          {
+            log.info("Finished import from: " + r.getPath());
+            sendImportStatusMail(statusEmailAdress, r.getPath(),
+              ImportJob.Status.SUCCESS, null);
+          }
+          else
+          {
+            importStats.setStatus(false);
+            sendImportStatusMail(statusEmailAdress, r.getPath(), ImportJob.Status.ERROR,
+              null);
+          }
         }
-        catch (IOException ex)
+
+        catch (AdministrationDao.ConflictingCorpusException ex)
         {
-          log.error("Could not find any corpus in " + f.getPath(), ex);
           importStats.setStatus(false);
-          importStats.addException(f.getAbsolutePath(), ex);
+          importStats.addException(r.getPath(), ex);
+          log.error("Error on conflicting top level corpus name for {}", r.
+            getPath());
+          sendImportStatusMail(statusEmailAdress, r.getPath(), ImportJob.Status.ERROR,
+            ex.
+            getMessage());
         }
-      }
-    } // end for each given path
 
-    // import each corpus separately
-    boolean anyCorpusImported = false;
-    for (File r : roots)
-    {
-      try
-      {
-        log.info("Importing corpus from: " + r.getPath());
-        if (administrationDao.importCorpus(r.getPath(), aliasName,
-          overwrite, waitForOtherTasks))
+        catch (org.springframework.transaction.CannotCreateTransactionException ex)
         {
-          log.info("Finished import from: " + r.getPath());
-          sendImportStatusMail(statusEmailAdress, r.getPath(),
-            ImportJob.Status.SUCCESS, null);
-          anyCorpusImported = true;
+          importStats.setStatus(false);
+          importStats.addException(r.getPath(), ex);
+          log.error("Postgres is not running or misconfigured");
         }
-        else
+
+        catch (Throwable ex)
         {
           importStats.setStatus(false);
+          importStats.addException(r.getPath(), ex);
+          log.error("Error on importing corpus", ex);
           sendImportStatusMail(statusEmailAdress, r.getPath(), ImportJob.Status.ERROR,
-            null);
+            ex.getMessage());
         }
-      }
-
-      catch (AdministrationDao.ConflictingCorpusException ex)
-      {
-        importStats.setStatus(false);
-        importStats.addException(r.getPath(), ex);
-        log.error("Error on conflicting top level corpus name for {}", r.
-          getPath());
-        sendImportStatusMail(statusEmailAdress, r.getPath(), ImportJob.Status.ERROR,
-          ex.
-          getMessage());
-      }
-
-      catch (org.springframework.transaction.CannotCreateTransactionException ex)
-      {
-        importStats.setStatus(false);
-        importStats.addException(r.getPath(), ex);
-        log.error("Postgres is not running or misconfigured");
-      }
-
-      catch (Throwable ex)
-      {
-        importStats.setStatus(false);
-        importStats.addException(r.getPath(), ex);
-        log.error("Error on importing corpus", ex);
-        sendImportStatusMail(statusEmailAdress, r.getPath(), ImportJob.Status.ERROR,
-          ex.getMessage());
-      }
-    } // end for each corpus
-    
-    return importStats;
-  }
-
-  /**
-   * Extract the zipped ANNIS corpus files to an output directory.
-   *
-   * @param outDir The ouput directory.
-   * @param zip ZIP-file to extract.
-   * @return A list of root directories where the tab-files are located if
-   * found, null otherwise.
-   */
-  private List<File> unzipCorpus(File outDir, ZipFile zip)
-  {
-    List<File> rootDirs = new ArrayList<>();
-
-    Enumeration<? extends ZipEntry> zipEnum = zip.entries();
-    while (zipEnum.hasMoreElements())
+      } // end for each corpus
+    }
+    finally
     {
-      ZipEntry e = zipEnum.nextElement();
-      File outFile = new File(outDir, e.getName().replaceAll("\\/", "/"));
-
-      if (e.isDirectory())
-      {
-        if (!outFile.mkdirs())
-        {
-          log.warn("Could not create output directory " + outFile.
-            getAbsolutePath());
-        }
-      } // end if directory
-      else
+      for (ZipFile zip : zipFiles)
       {
-        if ("corpus.tab".equals(outFile.getName()) || "corpus.annis".equals(
-          outFile.getName()))
-        {
-          rootDirs.add(outFile.getParentFile());
-        }
-
-        if (!outFile.getParentFile().isDirectory())
-        {
-          if (!outFile.getParentFile().mkdirs())
-          {
-            {
-              log.warn(
-                "Could not create output directory for file " + outFile.
-                getAbsolutePath());
-            }
-          }
-        }
-        try (FileOutputStream outStream = new FileOutputStream(outFile);)
-        {
-
-          ByteStreams.copy(zip.getInputStream(e), outStream);
-        }
-        catch (FileNotFoundException ex)
+        try
         {
-          log.error(null, ex);
+          zip.close();
         }
         catch (IOException ex)
         {
-          log.error(null, ex);
+          log.warn("Could not close ZIP file " + zip.getName(), ex);
         }
-      } // end else is file
-    } // end for each entry in zip file
-
-    return rootDirs;
+      }
+    }
+    
+    return importStats;
   }
 
-  public File createZIPOutputDir(String corpusName)
+  private boolean importCorpus(ImportSource source, String aliasName,
+    boolean overwrite, boolean update, boolean waitForOtherTasks)
   {
-    File outDir = new File(System.getProperty("user.home"),
-      ".annis/zip-imports/"
-      + CommonHelper.getSafeFileName(corpusName));
-    if (outDir.exists())
+    if (update)
     {
-      try
+      if (source instanceof DirectoryImportSource)
       {
-        // delete old data inside the corpus directory
-        FileUtils.deleteDirectory(outDir);
-      }
-      catch (IOException ex)
-      {
-        log.warn("Could not recursivly delete the output directory", ex);
+        return administrationDao.updateCorpus(source.getPath(), aliasName,
+          waitForOtherTasks);
       }
+      return administrationDao.updateCorpus(source, aliasName,
+        waitForOtherTasks);
     }
-    if (!outDir.mkdirs())
+    else if (source instanceof DirectoryImportSource)
     {
-      throw new IllegalStateException("Could not create directory "
-        + outDir.getAbsolutePath());
+      return administrationDao.importCorpus(source.getPath(), aliasName,
+        overwrite, waitForOtherTasks);
+    }
+    else
+    {
+      return administrationDao.importCorpus(source, aliasName, overwrite,
+        waitForOtherTasks);
     }
-    return outDir;
   }
 
   public static class ImportStatsImpl implements ImportStatus
@@ -888,6 +872,51 @@ public class CorpusAdministration
     administrationDao.restoreTableFromResource(tableName, new FileSystemResource(inputFile));
   }
 
+  public void exportCorpusBundle(String corpusName, File bundleDir)
+  {
+    log.info("Exporting corpus {} as bundle to {}", corpusName, bundleDir);
+    administrationDao.exportCorpusBundle(corpusName, bundleDir);
+  }
+
+  /**
+   * Imports corpora which were exported with
+   * {@link #exportCorpusBundle(java.lang.String, java.io.File) }.
+   *
+   * @param overwrite
+   * @param bundleDirs
+   * @return True if all bundles were imported.
+   */
+  public boolean importCorpusBundles(boolean overwrite, List<File> bundleDirs)
+  {
+    boolean success = true;
+    for (File dir : bundleDirs)
+    {
+      try
+      {
+        log.info("Importing corpus bundle from: " + dir.getAbsolutePath());
+        if (administrationDao.importCorpusBundle(dir, overwrite, true))
+        {
+          log.info("Finished import from: " + dir.getAbsolutePath());
+        }
+        else
+        {
+          success = false;
+        }
+      }
+      catch (AdministrationDao.ConflictingCorpusException ex)
+      {
+        success = false;
+        log.error(ex.getMessage());
+      }
+      catch (Throwable ex)
+      {
+        success = false;
+        log.error("Error on importing corpus bundle", ex);
+      }
+    }
+    return success;
+  }
+
   ///// Helper
   protected void writeDatabasePropertiesFile(String host, String port,
     String database, String user, String password, boolean useSSL, String schema)
@@ -918,6 +947,29 @@ public class CorpusAdministration
     log.info("Wrote database configuration to " + file.getAbsolutePath());
   }
 
+  /**
+   * Finds the corpora in the given directories, e.g. to show them before an
+   * import. The result is cached for a short time, thus repeated calls for
+   * the same directories do not have to search them again. The import does
+   * not use the cached result and always searches the directories again.
+   *
+   * @param paths
+   * @return The corpora, the smallest one first.
+   */
+  public List<CorpusRoot> findCorpora(List<String> paths)
+  {
+    List<File> dirs = new LinkedList<>();
+    for (String p : paths)
+    {
+      File f = new File(p);
+      if (f.isDirectory())
+      {
+        dirs.add(f);
+      }
+    }
+    return corpusPathScanner.scan(dirs);
+  }
+
   ///// Getter / Setter
   public AdministrationDao getAdministrationDao()
   {
@@ -958,6 +1010,11 @@ public class CorpusAdministration
   {
     this.deleteCorpusDao = deleteCorpusDao;
   }
+
+  public CorpusPathScanner getCorpusPathScanner()
+  {
+    return corpusPathScanner;
+  }
   
   
 
@@ -0,0 +1,371 @@
+/*
+ * Copyright 2016 SFB 632.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package annis.administration;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * A top level corpus together with its already computed tables, which can be
+ * copied to another ANNIS instance without importing the relANNIS files
+ * again.
+ *
+ * A bundle is a directory with the manifest file {@link #MANIFEST}, one file
+ * per table in the binary format of the PostgreSQL COPY command and the
+ * external data files in the {@link #EXT_DATA} sub-directory. The manifest
+ * lists the columns of each table file, thus a bundle can be loaded without
+ * knowing how it was created. All IDs are the ones of the exporting instance
+ * and are remapped when the bundle is imported.
+ *
+ * @author Thomas Krause <krauseto@hu-berlin.de>
+ */
+public class CorpusBundle
+{
+
+  public static final int FORMAT_VERSION = 1;
+
+  public static final String MANIFEST = "bundle.properties";
+
+  public static final String EXT_DATA = "ExtData";
+
+  public static final Table CORPUS = new Table("corpus", "corpus",
+    "pre BETWEEN :pre AND :post",
+    ImmutableSet.<String>of(),
+    ImmutableMap.of(
+      "id", "t.id + :offset_corpus_id",
+      "pre", "t.pre + :offset_corpus_post",
+      "post", "t.post + :offset_corpus_post"), "");
+
+  /**
+   * The annotation categories get new IDs from the sequence of this instance,
+   * the mapping from the old to the new IDs is created before they are
+   * imported.
+   */
+  public static final Table ANNOTATION_CATEGORY = new Table(
+    "annotation_category", "annotation_category", "toplevel_corpus = :id",
+    ImmutableSet.<String>of(),
+    ImmutableMap.of(
+      "id", "m.\"new\"",
+      "toplevel_corpus", ":id"),
+    " JOIN _bundle_category_map AS m ON (m.\"old\" = t.id)");
+
+  public static final Table ANNOTATIONS = new Table("annotations",
+    "annotations_:id", null,
+    ImmutableSet.of("id"),
+    ImmutableMap.of("toplevel_corpus", ":id"), "");
+
+  public static final Table FACTS = new Table("facts", "facts_:id", null,
+    ImmutableSet.of("fid"),
+    ImmutableMap.of(
+      "id", "t.id + :offset_node_id",
+      "corpus_ref", "t.corpus_ref + :offset_corpus_id",
+      "toplevel_corpus", ":id",
+      "node_anno_category", "m.\"new\""),
+    " LEFT JOIN _bundle_category_map AS m ON (m.\"old\" = t.node_anno_category)");
+
+  private static final String CORPUS_REF_IN_TREE
+    = "corpus_ref IN (SELECT id FROM corpus WHERE pre BETWEEN :pre AND :post)";
+
+  /**
+   * All tables of a bundle in the order they must be imported.
+   */
+  public static final List<Table> TABLES = ImmutableList.of(
+    CORPUS,
+    new Table("corpus_annotation", "corpus_annotation", CORPUS_REF_IN_TREE,
+      ImmutableSet.<String>of(),
+      ImmutableMap.of("corpus_ref", "t.corpus_ref + :offset_corpus_id"), ""),
+    new Table("text", "text", "toplevel_corpus = :id",
+      ImmutableSet.<String>of(),
+      ImmutableMap.of(
+        "corpus_ref", "t.corpus_ref + :offset_corpus_id",
+        "toplevel_corpus", ":id"), ""),
+    new Table("media_files", "media_files", CORPUS_REF_IN_TREE,
+      ImmutableSet.<String>of(),
+      ImmutableMap.of("corpus_ref", "t.corpus_ref + :offset_corpus_id"), ""),
+    new Table("corpus_stats", "corpus_stats", "id = :id",
+      ImmutableSet.<String>of(),
+      ImmutableMap.of(
+        "id", ":id",
+        "max_corpus_id", "t.max_corpus_id + :offset_corpus_id",
+        "max_corpus_pre", "t.max_corpus_pre + :offset_corpus_post",
+        "max_corpus_post", "t.max_corpus_post + :offset_corpus_post",
+        "max_node_id", "t.max_node_id + :offset_node_id"), ""),
+    new Table("corpus_alias", "corpus_alias", "corpus_ref = :id",
+      ImmutableSet.<String>of(),
+      ImmutableMap.of("corpus_ref", ":id"), ""),
+    new Table("resolver_vis_map", "resolver_vis_map",
+      "EXISTS (SELECT 1 FROM corpus AS c WHERE c.id = :id "
+      + "AND c.\"name\" = resolver_vis_map.corpus "
+      + "AND c.version IS NOT DISTINCT FROM resolver_vis_map.version)",
+      ImmutableSet.of("id"),
+      ImmutableMap.<String, String>of(), ""),
+    new Table("example_queries", "example_queries", "corpus_ref = :id",
+      ImmutableSet.of("id"),
+      ImmutableMap.of("corpus_ref", ":id"), ""),
+    new Table("document_fingerprint", "document_fingerprint",
+      CORPUS_REF_IN_TREE,
+      ImmutableSet.<String>of(),
+      ImmutableMap.of("corpus_ref", "t.corpus_ref + :offset_corpus_id"), ""),
+    ANNOTATION_CATEGORY,
+    ANNOTATIONS,
+    FACTS
+  );
+
+  private final Properties manifest;
+
+  /**
+   * Creates the manifest of a new bundle.
+   *
+   * @param corpusName
+   * @param schemaVersion The version of the database schema of the exporting
+   * instance.
+   */
+  public CorpusBundle(String corpusName, String schemaVersion)
+  {
+    manifest = new Properties();
+    manifest.setProperty("format", "" + FORMAT_VERSION);
+    manifest.setProperty("corpus", corpusName);
+    manifest.setProperty("schema-version", schemaVersion);
+  }
+
+  private CorpusBundle(Properties manifest)
+  {
+    this.manifest = manifest;
+  }
+
+  /**
+   * Reads the manifest of an existing bundle.
+   *
+   * @param bundleDir
+   * @return
+   * @throws IOException
+   */
+  public static CorpusBundle read(File bundleDir) throws IOException
+  {
+    Properties manifest = new Properties();
+    try (InputStream in = new FileInputStream(new File(bundleDir, MANIFEST)))
+    {
+      manifest.load(in);
+    }
+    if (!("" + FORMAT_VERSION).equals(manifest.getProperty("format")))
+    {
+      throw new IOException("Unsupported bundle format "
+        + manifest.getProperty("format"));
+    }
+    return new CorpusBundle(manifest);
+  }
+
+  public void write(File bundleDir) throws IOException
+  {
+    try (OutputStream out = new FileOutputStream(new File(bundleDir, MANIFEST)))
+    {
+      manifest.store(out, "ANNIS corpus bundle");
+    }
+  }
+
+  public String getCorpusName()
+  {
+    return manifest.getProperty("corpus");
+  }
+
+  public String getSchemaVersion()
+  {
+    return manifest.getProperty("schema-version");
+  }
+
+  /**
+   * The columns of a table file in the order they are stored.
+   *
+   * @param table
+   * @return
+   */
+  public List<String> getColumns(Table table)
+  {
+    String columns = manifest.getProperty(table.getName() + ".columns");
+    if (columns == null)
+    {
+      return new ArrayList<>();
+    }
+    return Splitter.on(',').omitEmptyStrings().splitToList(columns);
+  }
+
+  public void setColumns(Table table, List<String> columns)
+  {
+    manifest.setProperty(table.getName() + ".columns", Joiner.on(',').join(
+      columns));
+  }
+
+  public long getRows(Table table)
+  {
+    return Long.parseLong(manifest.getProperty(table.getName() + ".rows",
+      "0"));
+  }
+
+  public void setRows(Table table, long rows)
+  {
+    manifest.setProperty(table.getName() + ".rows", "" + rows);
+  }
+
+  /**
+   * A table of a bundle and how its IDs are mapped when the bundle is
+   * imported.
+   */
+  public static class Table
+  {
+
+    private final String name;
+
+    private final String table;
+
+    private final String condition;
+
+    private final Set<String> excludedColumns;
+
+    private final Map<String, String> remap;
+
+    private final String join;
+
+    /**
+     *
+     * @param name The name of the table file in the bundle.
+     * @param table The table in the database, ":id" is replaced with the ID of
+     * the top level corpus.
+     * @param condition Selects the rows of the corpus, null if the whole table
+     * belongs to the corpus.
+     * @param excludedColumns Columns which are not exported, e.g. generated
+     * primary keys.
+     * @param remap SQL expressions for the columns that have to be changed on
+     * import. The original values are available as "t.&lt;column&gt;".
+     * @param join Additional tables that are joined on import.
+     */
+    public Table(String name, String table, String condition,
+      Set<String> excludedColumns, Map<String, String> remap, String join)
+    {
+      this.name = name;
+      this.table = table;
+      this.condition = condition;
+      this.excludedColumns = excludedColumns;
+      this.remap = remap;
+      this.join = join;
+    }
+
+    public String getName()
+    {
+      return name;
+    }
+
+    public String getFileName()
+    {
+      return name + ".bin";
+    }
+
+    /**
+     * The staging table the file is loaded into.
+     *
+     * @return
+     */
+    public String getStagingTable()
+    {
+      return "_bundle_" + name;
+    }
+
+    /**
+     * The table which defines the columns, for the tables of a single corpus
+     * this is the parent table.
+     *
+     * @return
+     */
+    public String getColumnTable()
+    {
+      return table.replace("_:id", "");
+    }
+
+    public boolean isExported(String column)
+    {
+      return !excludedColumns.contains(column);
+    }
+
+    /**
+     * Creates the query whose result is stored in the table file.
+     *
+     * @param columns
+     * @param corpusID
+     * @param pre
+     * @param post
+     * @return
+     */
+    public String exportQuery(List<String> columns, long corpusID, long pre,
+      long post)
+    {
+      StringBuilder sql = new StringBuilder("SELECT ");
+      sql.append(quoted(columns, ""));
+      sql.append(" FROM ").append(table);
+      if (condition != null)
+      {
+        sql.append(" WHERE ").append(condition);
+      }
+      return sql.toString()
+        .replace(":id", "" + corpusID)
+        .replace(":pre", "" + pre)
+        .replace(":post", "" + post);
+    }
+
+    /**
+     * Creates the statement which copies the rows of the staging table into
+     * the database. The parameters ":id" and the offsets must be substituted
+     * by the caller.
+     *
+     * @param columns The columns of the staging table.
+     * @return
+     */
+    public String importStatement(List<String> columns)
+    {
+      List<String> values = new ArrayList<>();
+      for (String c : columns)
+      {
+        String expr = remap.get(c);
+        values.add(expr == null ? "t.\"" + c + "\"" : expr);
+      }
+      return "INSERT INTO " + table + " (" + quoted(columns, "") + ")\n"
+        + "SELECT " + Joiner.on(", ").join(values) + "\n"
+        + "FROM " + getStagingTable() + " AS t" + join;
+    }
+
+    public static String quoted(List<String> columns, String prefix)
+    {
+      List<String> result = new ArrayList<>();
+      for (String c : columns)
+      {
+        result.add(prefix + "\"" + c + "\"");
+      }
+      return Joiner.on(", ").join(result);
+    }
+  }
+}
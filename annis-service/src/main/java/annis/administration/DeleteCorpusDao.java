@@ -15,15 +15,24 @@
  */
 package annis.administration;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.io.File;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 /**
  *
@@ -34,10 +43,45 @@ public class DeleteCorpusDao extends AbstractAdminstrationDao
   
   private final static Logger log = LoggerFactory.getLogger(AdministrationDao.class);
 
-  
+  /**
+   * Tables whose entries of hidden corpora are deleted in the background.
+   * All of them have a "corpus_ref" column.
+   */
+  private static final String[] CLEANUP_TABLES =
+  {
+    "corpus_annotation", "text", "document_fingerprint"
+  };
+
+  private final ExecutorService cleanupExecutor = Executors.
+    newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat(
+        "corpus-cleanup-%d").setDaemon(true).build());
+
+  private int cleanupBatchSize = 10000;
+
+  private boolean vacuumAfterCleanup = true;
+
+  /**
+   * Called when Spring configuration finished. Continues the cleanup of
+   * corpora which were deleted before the last shutdown.
+   */
+  public void init()
+  {
+    submitCleanup();
+  }
+
+  /**
+   * Called when the Spring context is closed.
+   */
+  public void destroy()
+  {
+    cleanupExecutor.shutdown();
+  }
   
   /**
    * Deletes a top level corpus, when it is already exists.
+   * 
+   * The corpus is only hidden and its remaining entries are deleted in the
+   * background, see {@link #deleteCorporaFast(java.util.List, boolean) }.
    * @param corpusName
    */
   @Transactional(readOnly = false, propagation = Propagation.REQUIRES_NEW,
@@ -49,7 +93,8 @@ public class DeleteCorpusDao extends AbstractAdminstrationDao
       log.info("delete conflicting corpus: {}", corpusName);
       List<String> corpusNames = new LinkedList<>();
       corpusNames.add(corpusName);
-      deleteCorpora(getQueryDao().mapCorpusNamesToIds(corpusNames), false);
+      deleteCorporaFast(getQueryDao().mapCorpusNamesToIds(corpusNames),
+        false);
     }
   }
   
@@ -68,6 +113,8 @@ public class DeleteCorpusDao extends AbstractAdminstrationDao
       return;
     }
 
+    invalidateCorpusCatalog();
+
     File dataDir = getRealDataDir();
 
     for (long l : ids)
@@ -92,16 +139,7 @@ public class DeleteCorpusDao extends AbstractAdminstrationDao
         }
       }
 
-      log.info("dropping tables");
-
-      log.debug("dropping facts table for corpus " + l);
-      getJdbcTemplate().execute("DROP TABLE IF EXISTS facts_" + l);
-      getJdbcTemplate().execute("DROP TABLE IF EXISTS facts_edge_" + l);
-      getJdbcTemplate().execute("DROP TABLE IF EXISTS facts_node_" + l);
-      log.debug("dropping annotation_pool table for corpus " + l);
-      getJdbcTemplate().execute("DROP TABLE IF EXISTS annotation_pool_" + l);
-      log.debug("dropping annotations table for corpus " + l);
-      getJdbcTemplate().execute("DROP TABLE IF EXISTS annotations_" + l);
+      dropCorpusTables(l);
     }
 
     log.info("recursivly deleting corpora: " + ids);
@@ -110,4 +148,220 @@ public class DeleteCorpusDao extends AbstractAdminstrationDao
       StringUtils.join(ids, ", ")));
   }
 
+  /**
+   * Deletes top level corpora without blocking the caller for a long time.
+   *
+   * Only the tables of the corpora are dropped and the corpora are hidden from
+   * all queries. Their entries in the shared tables and their external data
+   * files are deleted in the background after the transaction was committed.
+   *
+   * @param ids The IDs of the top level corpora.
+   * @param acquireLock
+   */
+  @Transactional(readOnly = false, propagation = Propagation.REQUIRES_NEW,
+    isolation = Isolation.READ_COMMITTED)
+  public void deleteCorporaFast(List<Long> ids, boolean acquireLock)
+  {
+    if (acquireLock && !lockRepositoryMetadataTable(false))
+    {
+      log.error("Another import is currently running");
+      return;
+    }
+
+    if (ids == null || ids.isEmpty())
+    {
+      return;
+    }
+
+    invalidateCorpusCatalog();
+
+    for (long l : ids)
+    {
+      dropCorpusTables(l);
+
+      log.info("hiding corpus " + l);
+      executeSqlFromScript("hide_corpus.sql", makeArgs().addValue(":id", l));
+    }
+
+    if (TransactionSynchronizationManager.isSynchronizationActive())
+    {
+      TransactionSynchronizationManager.registerSynchronization(
+        new TransactionSynchronizationAdapter()
+      {
+        @Override
+        public void afterCommit()
+        {
+          submitCleanup();
+        }
+      });
+    }
+    else
+    {
+      submitCleanup();
+    }
+  }
+
+  /**
+   * Deletes the remaining entries and external data files of all corpora
+   * which were hidden by
+   * {@link #deleteCorporaFast(java.util.List, boolean) }.
+   *
+   * The entries are deleted in batches and every batch is committed on its
+   * own, thus the shared tables are never locked for a long time. This method
+   * must not be called inside a transaction.
+   */
+  public void cleanupDeletedCorpora()
+  {
+    List<long[]> hidden = getJdbcTemplate().query(
+      "SELECT corpus_ref, pre, post FROM corpus_cleanup ORDER BY requested",
+      new RowMapper<long[]>()
+    {
+      @Override
+      public long[] mapRow(ResultSet rs, int rowNum) throws SQLException
+      {
+        return new long[]
+        {
+          rs.getLong(1), rs.getLong(2), rs.getLong(3)
+        };
+      }
+    });
+
+    if (hidden.isEmpty())
+    {
+      return;
+    }
+
+    File dataDir = getRealDataDir();
+    for (long[] corpus : hidden)
+    {
+      long pre = corpus[1];
+      long post = corpus[2];
+      log.info("cleaning up deleted corpus " + corpus[0]);
+
+      int deletedFiles = 0;
+      List<String> filesToDelete;
+      do
+      {
+        filesToDelete = getJdbcTemplate().queryForList(
+          "DELETE FROM media_files WHERE ctid = ANY(ARRAY(\n"
+          + "  SELECT m.ctid FROM media_files AS m JOIN corpus AS c ON (c.id = m.corpus_ref)\n"
+          + "  WHERE c.pre BETWEEN ? AND ? LIMIT ?))\n"
+          + "RETURNING filename", String.class, pre, post, cleanupBatchSize);
+        for (String fileName : filesToDelete)
+        {
+          File f = new File(dataDir, fileName);
+          if (f.exists() && !f.delete())
+          {
+            log.warn("Could not delete {}", f.getAbsolutePath());
+          }
+        }
+        deletedFiles += filesToDelete.size();
+      }
+      while (!filesToDelete.isEmpty());
+      log.debug("deleted {} external data files", deletedFiles);
+
+      for (String table : CLEANUP_TABLES)
+      {
+        deleteInBatches(table, "DELETE FROM " + table
+          + " WHERE ctid = ANY(ARRAY(\n"
+          + "  SELECT t.ctid FROM " + table
+          + " AS t JOIN corpus AS c ON (c.id = t.corpus_ref)\n"
+          + "  WHERE c.pre BETWEEN ? AND ? LIMIT ?))", pre, post);
+      }
+      deleteInBatches("corpus", "DELETE FROM corpus WHERE ctid = ANY(ARRAY(\n"
+        + "  SELECT ctid FROM corpus WHERE pre BETWEEN ? AND ? LIMIT ?))",
+        pre, post);
+
+      getJdbcTemplate().update("DELETE FROM corpus_cleanup WHERE corpus_ref = ?",
+        corpus[0]);
+      log.info("finished cleaning up deleted corpus " + corpus[0]);
+    }
+
+    if (vacuumAfterCleanup)
+    {
+      // give the space of the deleted rows free for new imports
+      for (String table : CLEANUP_TABLES)
+      {
+        getJdbcTemplate().execute("VACUUM ANALYZE " + table);
+      }
+      getJdbcTemplate().execute("VACUUM ANALYZE media_files");
+      getJdbcTemplate().execute("VACUUM ANALYZE corpus");
+    }
+    else
+    {
+      log.info("deleted corpora were cleaned up, the corpus tables should be "
+        + "vacuumed");
+    }
+  }
+
+  private void deleteInBatches(String table, String sql, long pre, long post)
+  {
+    log.debug("deleting entries from {}", table);
+    int deleted;
+    do
+    {
+      deleted = getJdbcTemplate().update(sql, pre, post, cleanupBatchSize);
+    }
+    while (deleted > 0);
+  }
+
+  private void submitCleanup()
+  {
+    cleanupExecutor.submit(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        try
+        {
+          cleanupDeletedCorpora();
+        }
+        catch (DataAccessException ex)
+        {
+          log.error("Could not clean up the deleted corpora", ex);
+        }
+      }
+    });
+  }
+
+  private void dropCorpusTables(long l)
+  {
+    log.info("dropping tables");
+
+    log.debug("dropping facts table for corpus " + l);
+    getJdbcTemplate().execute("DROP TABLE IF EXISTS facts_" + l);
+    getJdbcTemplate().execute("DROP TABLE IF EXISTS facts_edge_" + l);
+    getJdbcTemplate().execute("DROP TABLE IF EXISTS facts_node_" + l);
+    log.debug("dropping annotation_pool table for corpus " + l);
+    getJdbcTemplate().execute("DROP TABLE IF EXISTS annotation_pool_" + l);
+    log.debug("dropping annotations table for corpus " + l);
+    getJdbcTemplate().execute("DROP TABLE IF EXISTS annotations_" + l);
+  }
+
+  public int getCleanupBatchSize()
+  {
+    return cleanupBatchSize;
+  }
+
+  /**
+   * Maximal number of rows deleted by one statement of the background
+   * cleanup.
+   *
+   * @param cleanupBatchSize
+   */
+  public void setCleanupBatchSize(int cleanupBatchSize)
+  {
+    this.cleanupBatchSize = cleanupBatchSize;
+  }
+
+  public boolean isVacuumAfterCleanup()
+  {
+    return vacuumAfterCleanup;
+  }
+
+  public void setVacuumAfterCleanup(boolean vacuumAfterCleanup)
+  {
+    this.vacuumAfterCleanup = vacuumAfterCleanup;
+  }
+
 }
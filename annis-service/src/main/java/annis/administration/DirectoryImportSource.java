@@ -0,0 +1,101 @@
+/*
+ * Copyright 2016 SFB 632.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package annis.administration;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.commons.io.filefilter.DirectoryFileFilter;
+import org.apache.commons.io.filefilter.FileFileFilter;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+/**
+ * A corpus that is located in a directory of the file system.
+ *
+ * @author Thomas Krause <krauseto@hu-berlin.de>
+ */
+public class DirectoryImportSource implements ImportSource
+{
+
+  private final File root;
+
+  public DirectoryImportSource(File root)
+  {
+    this.root = root;
+  }
+
+  @Override
+  public String getPath()
+  {
+    return root.getPath();
+  }
+
+  @Override
+  public String getSourcePath()
+  {
+    return root.getPath();
+  }
+
+  @Override
+  public boolean exists(String name)
+  {
+    return new File(root, name).isFile();
+  }
+
+  @Override
+  public Resource getResource(String name)
+  {
+    return new FileSystemResource(new File(root, name));
+  }
+
+  @Override
+  public List<String> listFiles(String directory)
+  {
+    return list(directory, FileFileFilter.FILE);
+  }
+
+  @Override
+  public List<String> listDirectories(String directory)
+  {
+    return list(directory, DirectoryFileFilter.DIRECTORY);
+  }
+
+  private List<String> list(String directory, FileFilter filter)
+  {
+    List<String> result = new ArrayList<>();
+    File dir = new File(root, directory);
+    if (dir.isDirectory() && dir.canRead())
+    {
+      File[] files = dir.listFiles(filter);
+      if (files != null)
+      {
+        for (File f : files)
+        {
+          result.add(f.getName());
+        }
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public String toString()
+  {
+    return getPath();
+  }
+}
@@ -0,0 +1,300 @@
+/*
+ * Copyright 2016 SFB 632.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package annis.administration;
+
+import annis.service.objects.ImportPhaseTiming;
+import annis.service.objects.ImportProgress;
+import annis.service.objects.ImportProgress.Phase;
+import com.google.common.base.Ticker;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects the progress of a single import.
+ *
+ * The import thread reports the phases, rows and bytes while other threads
+ * can request a snapshot of the progress at any time. The duration of a phase
+ * is estimated from the time per byte of earlier imports or, if possible, from
+ * the progress inside the phase.
+ *
+ * @author Thomas Krause <krauseto@hu-berlin.de>
+ */
+public class ImportProgressTracker
+{
+
+  private final Ticker ticker;
+
+  /**
+   * Average milliseconds per byte of the ANNIS files for each phase.
+   */
+  private final Map<Phase, Double> millisPerByte;
+
+  private final Map<Phase, Long> finishedDurations = new EnumMap<>(Phase.class);
+
+  private final List<ImportPhaseTiming> timings = new ArrayList<>();
+
+  private final long importStart;
+
+  private String corpus;
+
+  private Phase phase;
+
+  private long phaseStart;
+
+  private long bytesRead;
+
+  private long bytesTotal;
+
+  private long rowsProcessed;
+
+  private long rowsTotal = -1;
+
+  public ImportProgressTracker(Map<Phase, Double> millisPerByte)
+  {
+    this(millisPerByte, Ticker.systemTicker());
+  }
+
+  public ImportProgressTracker(Map<Phase, Double> millisPerByte, Ticker ticker)
+  {
+    this.ticker = ticker;
+    this.millisPerByte = millisPerByte == null ? new EnumMap<Phase, Double>(
+      Phase.class) : millisPerByte;
+    this.importStart = now();
+  }
+
+  /**
+   * Finishes the current phase (if any) and starts the next one.
+   *
+   * @param next
+   */
+  public synchronized void startPhase(Phase next)
+  {
+    finishPhase();
+    phase = next;
+    phaseStart = now();
+    rowsProcessed = 0;
+    rowsTotal = -1;
+  }
+
+  /**
+   * Finishes the current phase and records its duration.
+   */
+  public synchronized void finishPhase()
+  {
+    if (phase != null)
+    {
+      long duration = now() - phaseStart;
+      finishedDurations.put(phase, duration);
+      timings.add(new ImportPhaseTiming(corpus, phase, duration, bytesTotal,
+        rowsProcessed, new Date()));
+      phase = null;
+    }
+  }
+
+  public synchronized void setCorpus(String corpus)
+  {
+    this.corpus = corpus;
+    for (ImportPhaseTiming t : timings)
+    {
+      t.setCorpus(corpus);
+    }
+  }
+
+  public synchronized void setBytesTotal(long bytesTotal)
+  {
+    this.bytesTotal = bytesTotal;
+  }
+
+  public synchronized void addBytes(long bytes)
+  {
+    bytesRead += bytes;
+  }
+
+  public synchronized void addRows(long rows)
+  {
+    rowsProcessed += rows;
+  }
+
+  /**
+   * Sets the rows of the current phase.
+   *
+   * @param processed
+   * @param total The number of rows the phase will process or -1 if unknown.
+   */
+  public synchronized void setRows(long processed, long total)
+  {
+    rowsProcessed = processed;
+    rowsTotal = total;
+  }
+
+  /**
+   * Wraps a stream so all bytes read from it are counted.
+   *
+   * @param in
+   * @return
+   */
+  public InputStream track(InputStream in)
+  {
+    return new FilterInputStream(in)
+    {
+      @Override
+      public int read() throws IOException
+      {
+        int result = super.read();
+        if (result >= 0)
+        {
+          addBytes(1);
+        }
+        return result;
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException
+      {
+        int result = super.read(b, off, len);
+        if (result > 0)
+        {
+          addBytes(result);
+        }
+        return result;
+      }
+
+      @Override
+      public long skip(long n) throws IOException
+      {
+        long result = super.skip(n);
+        addBytes(result);
+        return result;
+      }
+    };
+  }
+
+  /**
+   * Get the durations of all finished phases.
+   *
+   * @return
+   */
+  public synchronized List<ImportPhaseTiming> getTimings()
+  {
+    return new ArrayList<>(timings);
+  }
+
+  /**
+   * Creates a snapshot of the current progress.
+   *
+   * @return
+   */
+  public synchronized ImportProgress getProgress()
+  {
+    long time = now();
+
+    ImportProgress result = new ImportProgress();
+    result.setCorpus(corpus);
+    result.setPhase(phase);
+    result.setBytesRead(bytesRead);
+    result.setBytesTotal(bytesTotal);
+    result.setRowsProcessed(rowsProcessed);
+    result.setRowsTotal(rowsTotal);
+    result.setElapsed(time - importStart);
+
+    long phaseElapsed = phase == null ? 0 : time - phaseStart;
+    result.setPhaseElapsed(phaseElapsed);
+
+    long phaseEstimated = phase == null ? 0 : estimateCurrentPhase(
+      phaseElapsed);
+    result.setPhaseEstimated(phaseEstimated);
+
+    // sum up the finished, current and upcoming phases
+    long done = 0;
+    long remaining = phaseEstimated < 0 ? -1 : Math.max(0, phaseEstimated
+      - phaseElapsed);
+    for (Phase p : Phase.values())
+    {
+      if (finishedDurations.containsKey(p))
+      {
+        done += finishedDurations.get(p);
+      }
+      else if (p != phase && (phase == null || p.ordinal() > phase.ordinal()))
+      {
+        long estimated = estimateFromHistory(p);
+        remaining = remaining < 0 || estimated < 0 ? -1 : remaining
+          + estimated;
+      }
+    }
+    result.setRemaining(remaining);
+
+    if (phase == null && !finishedDurations.isEmpty())
+    {
+      result.setFraction(1.0);
+    }
+    else if (remaining >= 0)
+    {
+      long elapsed = done + phaseElapsed;
+      result.setFraction(elapsed + remaining == 0 ? 0.0
+        : (double) elapsed / (double) (elapsed + remaining));
+    }
+    else if (phase != null)
+    {
+      // no estimation available, assume each phase takes the same time
+      double inPhase = rowsTotal > 0 ? Math.min(1.0, (double) rowsProcessed
+        / (double) rowsTotal) : 0.0;
+      result.setFraction((phase.ordinal() + inPhase) / Phase.values().length);
+    }
+    return result;
+  }
+
+  private long estimateCurrentPhase(long phaseElapsed)
+  {
+    double done = -1.0;
+    if (phase == Phase.BULK_LOAD && bytesTotal > 0 && bytesRead > 0)
+    {
+      done = (double) bytesRead / (double) bytesTotal;
+    }
+    else if (rowsTotal > 0 && rowsProcessed > 0)
+    {
+      done = (double) rowsProcessed / (double) rowsTotal;
+    }
+
+    if (done > 0.0)
+    {
+      return Math.max(phaseElapsed, (long) (phaseElapsed / Math.min(done, 1.0)));
+    }
+    long estimated = estimateFromHistory(phase);
+    return estimated < 0 ? -1 : Math.max(phaseElapsed, estimated);
+  }
+
+  private long estimateFromHistory(Phase p)
+  {
+    Double rate = millisPerByte.get(p);
+    if (rate == null || bytesTotal <= 0)
+    {
+      return -1;
+    }
+    return (long) (rate * bytesTotal);
+  }
+
+  private long now()
+  {
+    return TimeUnit.NANOSECONDS.toMillis(ticker.read());
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2016 SFB 632.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package annis.administration;
+
+import java.util.List;
+import org.springframework.core.io.Resource;
+
+/**
+ * The location of a single corpus in the relANNIS format that should be
+ * imported.
+ *
+ * All files are addressed by their path relative to the directory of the
+ * corpus (the one containing the corpus.tab or corpus.annis file) and use "/"
+ * as separator, e.g. "ExtData/doc1/audio.mp3".
+ *
+ * @author Thomas Krause <krauseto@hu-berlin.de>
+ */
+public interface ImportSource
+{
+
+  /**
+   * A human readable description of the location.
+   *
+   * @return
+   */
+  public String getPath();
+
+  /**
+   * The path that is stored as the source path of the corpus. It must be a
+   * file or directory that can be given to the import again, e.g. when
+   * copying the corpora from another instance.
+   *
+   * @return
+   */
+  public String getSourcePath();
+
+  public boolean exists(String name);
+
+  /**
+   * Get the content of a file. The stream returned by the resource must be
+   * closed by the caller.
+   *
+   * @param name
+   * @return
+   */
+  public Resource getResource(String name);
+
+  /**
+   * Lists the names (without the directory) of all files directly contained
+   * in the given directory.
+   *
+   * @param directory
+   * @return
+   */
+  public List<String> listFiles(String directory);
+
+  /**
+   * Lists the names (without the parent directory) of all sub-directories of
+   * the given directory.
+   *
+   * @param directory
+   * @return
+   */
+  public List<String> listDirectories(String directory);
+}
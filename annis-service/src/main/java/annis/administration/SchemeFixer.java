@@ -21,6 +21,7 @@ import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import javax.sql.DataSource;
@@ -34,6 +35,12 @@ import org.springframework.jdbc.core.JdbcTemplate;
  * Currently it can
  * - create an corpus_alias table <br />
  * - create an url_shortener table <br />
+ * - create the sequences for reserving import ID ranges <br />
+ * - create an import_phase_timing table <br />
+ * - create a document_fingerprint table <br />
+ * - create a corpus_cleanup table <br />
+ * - add the runtime column to the example_queries table <br />
+ * - index the digest of the URLs in the url_shortener table <br />
  * 
  * @author Thomas Krause <krauseto@hu-berlin.de>
  */
@@ -54,9 +61,38 @@ public class SchemeFixer
   {
     log.info("testing if fixing schema is necessary");
     corpusAlias();
+    importReservationSequences();
+    importPhaseTiming();
+    documentFingerprint();
+    corpusCleanup();
+    exampleQueryRuntime();
+    urlShortenerDigest();
     log.info("finished schema test");
   }
-  
+
+  /**
+   * Creates the sequences that are used to reserve the ID ranges of concurrent
+   * imports if they don't exist yet.
+   */
+  protected void importReservationSequences()
+  {
+    for(String seq : Arrays.asList("import_corpus_id_seq",
+      "import_corpus_post_seq", "import_node_id_seq"))
+    {
+      // CREATE SEQUENCE IF NOT EXISTS needs PostgreSQL 9.5
+      int exists = jdbcTemplate.queryForObject(
+        "SELECT count(*) FROM pg_class AS c "
+        + "JOIN pg_namespace AS n ON (n.oid = c.relnamespace) "
+        + "WHERE c.relkind = 'S' AND c.relname = ? "
+        + "AND n.nspname = current_schema()", Integer.class, seq);
+      if (exists == 0)
+      {
+        log.info("Creating sequence " + seq);
+        jdbcTemplate.execute("CREATE SEQUENCE " + seq + " MINVALUE 0 START 0");
+      }
+    }
+  }
+
   protected void corpusAlias()
   {
     try(Connection conn = dataSource.getConnection();)
@@ -98,6 +134,92 @@ public class SchemeFixer
     
   }
   
+  /**
+   * Creates the table for the durations of the import phases if it does not
+   * exist yet.
+   */
+  protected void importPhaseTiming()
+  {
+    jdbcTemplate.execute(
+      "CREATE TABLE IF NOT EXISTS import_phase_timing\n" + "(\n"
+      + "  corpus varchar COLLATE \"C\",\n"
+      + "  phase varchar NOT NULL,\n"
+      + "  duration bigint NOT NULL,\n"
+      + "  bytes bigint NOT NULL,\n"
+      + "  \"rows\" bigint NOT NULL,\n"
+      + "  finished timestamp with time zone NOT NULL\n" + ")");
+  }
+  
+  /**
+   * Creates the table for the content hashes of the documents if it does not
+   * exist yet. Corpora which were imported before have no hashes and can't be
+   * updated incrementally.
+   */
+  protected void documentFingerprint()
+  {
+    jdbcTemplate.execute(
+      "CREATE TABLE IF NOT EXISTS document_fingerprint\n" + "(\n"
+      + "  corpus_ref integer PRIMARY KEY REFERENCES corpus (id) ON DELETE CASCADE,\n"
+      + "  fingerprint varchar COLLATE \"C\" NOT NULL\n" + ")");
+  }
+  
+  /**
+   * Creates the table for the corpora which are deleted in the background if
+   * it does not exist yet.
+   */
+  protected void corpusCleanup()
+  {
+    jdbcTemplate.execute(
+      "CREATE TABLE IF NOT EXISTS corpus_cleanup\n" + "(\n"
+      + "  corpus_ref integer PRIMARY KEY,\n"
+      + "  pre integer NOT NULL,\n"
+      + "  post integer NOT NULL,\n"
+      + "  requested timestamp with time zone NOT NULL\n" + ")");
+  }
+  
+  /**
+   * Adds the column for the measured runtime of the example queries if it does
+   * not exist yet.
+   */
+  protected void exampleQueryRuntime()
+  {
+    int columns = jdbcTemplate.queryForObject(
+      "SELECT count(*) FROM information_schema.columns "
+      + "WHERE table_schema = current_schema() "
+      + "AND table_name = 'example_queries' AND column_name = 'runtime'",
+      Integer.class);
+    if (columns == 0)
+    {
+      log.info("Adding runtime column to example_queries table");
+      jdbcTemplate.execute("ALTER TABLE example_queries ADD COLUMN runtime bigint");
+    }
+  }
+  
+  /**
+   * Replaces the index of the complete URLs in the url_shortener table with an
+   * index of their MD5 digest. Long URLs did not fit into the old index.
+   */
+  protected void urlShortenerDigest()
+  {
+    Boolean exists = jdbcTemplate.queryForObject(
+      "SELECT to_regclass('url_shortener') IS NOT NULL", Boolean.class);
+    if (Boolean.TRUE.equals(exists))
+    {
+      jdbcTemplate.execute("DROP INDEX IF EXISTS idx__urlshortener__url");
+      // CREATE INDEX IF NOT EXISTS needs PostgreSQL 9.5
+      int indexes = jdbcTemplate.queryForObject(
+        "SELECT count(*) FROM pg_indexes "
+        + "WHERE schemaname = current_schema() "
+        + "AND indexname = 'idx__urlshortener__url_md5'", Integer.class);
+      if (indexes == 0)
+      {
+        log.info("Adding digest index to url_shortener table");
+        jdbcTemplate.execute("CREATE INDEX idx__urlshortener__url_md5 "
+          + "ON url_shortener(md5(url))");
+      }
+    }
+  }
+  
   public JdbcTemplate getJdbcTemplate()
   {
     return jdbcTemplate;
@@ -0,0 +1,530 @@
+/*
+ * Copyright 2016 SFB 632.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package annis.administration;
+
+import annis.service.objects.IndexUsage;
+import annis.service.objects.MaintenanceReport;
+import annis.service.objects.TableStatistics;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Keeps the planner statistics of the ANNIS tables up to date.
+ *
+ * The number of rows modified since the last ANALYZE is tracked by PostgreSQL
+ * for each table and each partition of the facts and annotations tables
+ * (before PostgreSQL 9.4 it is estimated from the cumulative counters).
+ * Once a day at an off-peak hour all tables with too many modifications are
+ * analyzed and the indexes which were never used are reported. Imports
+ * request an ANALYZE of the shared tables they changed, which is executed in
+ * the background after the import was committed.
+ *
+ * @author Thomas Krause <krauseto@hu-berlin.de>
+ */
+public class StatisticsMaintenance extends AbstractAdminstrationDao
+{
+
+  private final static Logger log = LoggerFactory.getLogger(
+    StatisticsMaintenance.class);
+
+  private final ScheduledExecutorService executor = Executors.
+    newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat(
+        "statistics-maintenance-%d").setDaemon(true).build());
+
+  private int hour = 3;
+
+  private double staleFraction = 0.1;
+
+  private long staleMinRows = 1000;
+
+  private volatile Date lastRun;
+
+  private volatile Date nextRun;
+
+  private final ConcurrentMap<String, ModificationCounter> lastSeenCounters
+    = new ConcurrentHashMap<>();
+
+  /**
+   * Called when Spring configuration finished. Schedules the first refresh.
+   */
+  public void init()
+  {
+    scheduleNextRun();
+  }
+
+  /**
+   * Called when the Spring context is closed.
+   */
+  public void destroy()
+  {
+    executor.shutdownNow();
+  }
+
+  /**
+   * Lists the tables and partitions whose statistics are outdated.
+   *
+   * A table is outdated if it was never analyzed or if more than
+   * {@link #getStaleMinRows() } plus {@link #getStaleFraction() } of its rows
+   * were modified since.
+   *
+   * @return The tables, the one with the most modifications first.
+   */
+  public List<TableStatistics> listStaleTables()
+  {
+    List<TableStatistics> result = new ArrayList<>();
+    for (TableStatistics t : listTableStatistics())
+    {
+      if (isStale(t, staleFraction, staleMinRows))
+      {
+        result.add(t);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Statistics about all tables and partitions in the ANNIS schema.
+   *
+   * @return
+   */
+  public List<TableStatistics> listTableStatistics()
+  {
+    int serverVersion = getJdbcTemplate().queryForObject(
+      "SELECT current_setting('server_version_num')::integer", Integer.class);
+    // the modifications since the last ANALYZE are only known since
+    // PostgreSQL 9.4, older versions only count all modifications
+    final boolean cumulative = serverVersion < 90400;
+    String modified = cumulative ? "s.n_tup_ins + s.n_tup_upd + s.n_tup_del"
+      : "s.n_mod_since_analyze";
+
+    String sql = "SELECT s.relname, s.n_live_tup, " + modified
+      + " AS modified,\n"
+      + "  greatest(s.last_analyze, s.last_autoanalyze) AS analyzed,\n"
+      + "  pg_total_relation_size(s.relid) AS size\n"
+      + "FROM pg_stat_user_tables AS s\n"
+      + "WHERE s.schemaname = current_schema()\n"
+      + "ORDER BY modified DESC, s.relname";
+
+    List<TableStatistics> result = getJdbcTemplate().query(sql,
+      new RowMapper<TableStatistics>()
+    {
+      @Override
+      public TableStatistics mapRow(ResultSet rs, int rowNum) throws
+        SQLException
+      {
+        String name = rs.getString("relname");
+        long modifiedRows = rs.getLong("modified");
+        Date analyzed = rs.getTimestamp("analyzed");
+        if (cumulative)
+        {
+          modifiedRows = modificationsSinceAnalyze(name, modifiedRows,
+            analyzed);
+        }
+        return new TableStatistics(name, rs.getLong("n_live_tup"),
+          modifiedRows, analyzed, rs.getLong("size"));
+      }
+    });
+    if (cumulative)
+    {
+      // the order of the query is based on the cumulative counters
+      Collections.sort(result, new Comparator<TableStatistics>()
+      {
+        @Override
+        public int compare(TableStatistics o1, TableStatistics o2)
+        {
+          return Long.compare(o2.getModifiedRows(), o1.getModifiedRows());
+        }
+      });
+    }
+    return result;
+  }
+
+  /**
+   * Estimates the modifications since the last ANALYZE from the cumulative
+   * modification counter of a table.
+   *
+   * The counter seen first after each ANALYZE is remembered and subtracted
+   * from the later values. Thus modifications between the ANALYZE and the
+   * first call are not counted.
+   *
+   * @param table
+   * @param counter The cumulative number of inserted, updated and deleted
+   * rows.
+   * @param analyzed The time of the last ANALYZE or null.
+   * @return
+   */
+  long modificationsSinceAnalyze(String table, long counter, Date analyzed)
+  {
+    if (analyzed == null)
+    {
+      // never analyzed, all modifications count
+      lastSeenCounters.remove(table);
+      return counter;
+    }
+    ModificationCounter seen = lastSeenCounters.get(table);
+    if (seen == null || !analyzed.equals(seen.analyzed) || counter
+      < seen.counter)
+    {
+      // analyzed since or the statistics were reset
+      lastSeenCounters.put(table, new ModificationCounter(counter, analyzed));
+      return 0;
+    }
+    return counter - seen.counter;
+  }
+
+  /**
+   * Lists the indexes which were not used since the database statistics were
+   * reset. Indexes of primary keys and unique constraints are not listed.
+   *
+   * @return The indexes, the largest one first.
+   */
+  public List<IndexUsage> listUnusedIndexes()
+  {
+    String sql = "SELECT i.indexrelname, i.relname,\n"
+      + "  pg_get_indexdef(i.indexrelid) AS indexdef, i.idx_scan,\n"
+      + "  pg_relation_size(i.indexrelid) AS size\n"
+      + "FROM pg_stat_user_indexes AS i\n"
+      + "  JOIN pg_index AS x ON (x.indexrelid = i.indexrelid)\n"
+      + "WHERE i.schemaname = current_schema()\n"
+      + "  AND i.idx_scan = 0\n"
+      + "  AND NOT x.indisprimary AND NOT x.indisunique\n"
+      + "ORDER BY size DESC, i.indexrelname";
+
+    return getJdbcTemplate().query(sql, new RowMapper<IndexUsage>()
+    {
+      @Override
+      public IndexUsage mapRow(ResultSet rs, int rowNum) throws SQLException
+      {
+        return new IndexUsage(rs.getString("indexrelname"),
+          rs.getString("relname"), rs.getString("indexdef"),
+          rs.getLong("idx_scan"), rs.getLong("size"));
+      }
+    });
+  }
+
+  /**
+   * Lists the outdated tables, the unused indexes and when the statistics
+   * are refreshed.
+   *
+   * @return
+   */
+  public MaintenanceReport createReport()
+  {
+    MaintenanceReport report = new MaintenanceReport();
+    report.setStaleTables(listStaleTables());
+    report.setUnusedIndexes(listUnusedIndexes());
+    report.setLastRun(lastRun);
+    report.setNextRun(nextRun);
+    return report;
+  }
+
+  /**
+   * Analyzes all outdated tables and reports the unused indexes.
+   */
+  public void refreshStatistics()
+  {
+    List<TableStatistics> stale = listStaleTables();
+    log.info("refreshing statistics of {} tables", stale.size());
+    for (TableStatistics t : stale)
+    {
+      log.debug("analyzing {} ({} of {} rows modified)", t.getName(),
+        t.getModifiedRows(), t.getLiveRows());
+      analyze(t.getName());
+    }
+    lastRun = new Date();
+
+    List<IndexUsage> unused = listUnusedIndexes();
+    if (!unused.isEmpty())
+    {
+      long size = 0;
+      for (IndexUsage i : unused)
+      {
+        size += i.getSize();
+      }
+      log.info("{} indexes with a size of {} were never used", unused.size(),
+        FileUtils.byteCountToDisplaySize(size));
+    }
+  }
+
+  /**
+   * Analyzes the given tables in the background. If called inside a
+   * transaction, the tables are analyzed after it was committed.
+   *
+   * @param tables
+   */
+  public void analyzeInBackground(Collection<String> tables)
+  {
+    final Set<String> copy = new LinkedHashSet<>(tables);
+    if (TransactionSynchronizationManager.isSynchronizationActive())
+    {
+      TransactionSynchronizationManager.registerSynchronization(
+        new TransactionSynchronizationAdapter()
+      {
+        @Override
+        public void afterCommit()
+        {
+          submitAnalyze(copy);
+        }
+      });
+    }
+    else
+    {
+      submitAnalyze(copy);
+    }
+  }
+
+  /**
+   * Starts {@link #refreshStatistics() } in the background.
+   */
+  public void refreshInBackground()
+  {
+    executor.submit(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        runRefresh();
+      }
+    });
+  }
+
+  /**
+   * Waits until all tables which were requested by
+   * {@link #analyzeInBackground(java.util.Collection) } are analyzed.
+   */
+  public void awaitBackgroundTasks()
+  {
+    Future<?> marker = executor.submit(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        // all tasks submitted before are finished
+      }
+    });
+    try
+    {
+      marker.get();
+    }
+    catch (InterruptedException ex)
+    {
+      Thread.currentThread().interrupt();
+    }
+    catch (ExecutionException ex)
+    {
+      log.error(null, ex);
+    }
+  }
+
+  /**
+   * Checks if the statistics of a table are outdated.
+   *
+   * @param t
+   * @param staleFraction
+   * @param staleMinRows
+   * @return
+   */
+  static boolean isStale(TableStatistics t, double staleFraction,
+    long staleMinRows)
+  {
+    if (t.getLastAnalyzed() == null)
+    {
+      return t.getLiveRows() > 0 || t.getModifiedRows() > 0;
+    }
+    return t.getModifiedRows() > staleMinRows + staleFraction * t.
+      getLiveRows();
+  }
+
+  /**
+   * Calculates when the next refresh should start.
+   *
+   * @param now
+   * @param hour
+   * @return The next time with the given hour, at least one minute after
+   * now.
+   */
+  static Date nextRun(Date now, int hour)
+  {
+    Calendar next = Calendar.getInstance();
+    next.setTime(now);
+    next.set(Calendar.HOUR_OF_DAY, hour);
+    next.set(Calendar.MINUTE, 0);
+    next.set(Calendar.SECOND, 0);
+    next.set(Calendar.MILLISECOND, 0);
+    if (next.getTimeInMillis() - now.getTime() < TimeUnit.MINUTES.toMillis(1))
+    {
+      next.add(Calendar.DAY_OF_MONTH, 1);
+    }
+    return next.getTime();
+  }
+
+  private void scheduleNextRun()
+  {
+    if (hour < 0 || executor.isShutdown())
+    {
+      nextRun = null;
+      return;
+    }
+    nextRun = nextRun(new Date(), hour);
+    executor.schedule(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        try
+        {
+          runRefresh();
+        }
+        finally
+        {
+          scheduleNextRun();
+        }
+      }
+    }, nextRun.getTime() - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+    log.debug("next refresh of the statistics at {}", nextRun);
+  }
+
+  private void runRefresh()
+  {
+    try
+    {
+      refreshStatistics();
+    }
+    catch (DataAccessException ex)
+    {
+      log.error("Could not refresh the statistics", ex);
+    }
+  }
+
+  private void submitAnalyze(final Collection<String> tables)
+  {
+    executor.submit(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        for (String t : tables)
+        {
+          try
+          {
+            analyze(t);
+          }
+          catch (DataAccessException ex)
+          {
+            log.error("Could not analyze " + t, ex);
+          }
+        }
+      }
+    });
+  }
+
+  private void analyze(String table)
+  {
+    getJdbcTemplate().execute("ANALYZE \"" + table.replace("\"", "\"\"")
+      + "\"");
+  }
+
+  /**
+   * The cumulative modification counter of a table as it was seen first after
+   * an ANALYZE.
+   */
+  private static class ModificationCounter
+  {
+
+    private final long counter;
+
+    private final Date analyzed;
+
+    public ModificationCounter(long counter, Date analyzed)
+    {
+      this.counter = counter;
+      this.analyzed = analyzed;
+    }
+  }
+
+  public int getHour()
+  {
+    return hour;
+  }
+
+  /**
+   * The hour of the day (0-23) at which the statistics are refreshed. A
+   * negative value disables the scheduled refresh.
+   *
+   * @param hour
+   */
+  public void setHour(int hour)
+  {
+    this.hour = hour;
+  }
+
+  public double getStaleFraction()
+  {
+    return staleFraction;
+  }
+
+  /**
+   * Fraction of the rows of a table which must be modified before its
+   * statistics are outdated.
+   *
+   * @param staleFraction
+   */
+  public void setStaleFraction(double staleFraction)
+  {
+    this.staleFraction = staleFraction;
+  }
+
+  public long getStaleMinRows()
+  {
+    return staleMinRows;
+  }
+
+  /**
+   * Number of rows which must be modified in addition to the
+   * {@link #setStaleFraction(double) fraction}.
+   *
+   * @param staleMinRows
+   */
+  public void setStaleMinRows(long staleMinRows)
+  {
+    this.staleMinRows = staleMinRows;
+  }
+
+}
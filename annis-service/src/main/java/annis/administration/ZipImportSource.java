@@ -0,0 +1,230 @@
+/*
+ * Copyright 2016 SFB 632.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package annis.administration;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+
+/**
+ * A corpus that is located inside a ZIP file.
+ *
+ * The files are read directly from the entries of the ZIP file, so the
+ * archive does not need to be extracted before the import. The ZIP file is
+ * not owned by this class and must be closed by the caller after the import.
+ *
+ * @author Thomas Krause <krauseto@hu-berlin.de>
+ */
+public class ZipImportSource implements ImportSource
+{
+
+  private final ZipFile zip;
+
+  private final String root;
+
+  /**
+   * All file entries of the corpus, indexed by their relative name.
+   */
+  private final Map<String, ZipEntry> entries = new LinkedHashMap<>();
+
+  private ZipImportSource(ZipFile zip, String root)
+  {
+    this.zip = zip;
+    this.root = root;
+  }
+
+  /**
+   * Finds all corpora in a ZIP file. A corpus is any directory that contains
+   * a corpus.tab or corpus.annis file.
+   *
+   * @param zip
+   * @return
+   */
+  public static List<ZipImportSource> corporaInZipFile(ZipFile zip)
+  {
+    List<ZipEntry> files = new ArrayList<>();
+    List<ZipImportSource> result = new ArrayList<>();
+
+    Enumeration<? extends ZipEntry> zipEnum = zip.entries();
+    while (zipEnum.hasMoreElements())
+    {
+      ZipEntry e = zipEnum.nextElement();
+      if (!e.isDirectory())
+      {
+        files.add(e);
+        String name = normalize(e.getName());
+        String fileName = name.substring(name.lastIndexOf('/') + 1);
+        if ("corpus.tab".equals(fileName) || "corpus.annis".equals(fileName))
+        {
+          result.add(new ZipImportSource(zip,
+            name.substring(0, name.length() - fileName.length())));
+        }
+      }
+    }
+
+    for (ZipImportSource source : result)
+    {
+      for (ZipEntry e : files)
+      {
+        String name = normalize(e.getName());
+        if (name.startsWith(source.root))
+        {
+          source.entries.put(name.substring(source.root.length()), e);
+        }
+      }
+    }
+    return result;
+  }
+
+  private static String normalize(String entryName)
+  {
+    return entryName.replace('\\', '/');
+  }
+
+  @Override
+  public String getPath()
+  {
+    return zip.getName() + (root.isEmpty() ? "" : "!/" + root);
+  }
+
+  /**
+   * Returns the path of the ZIP file, since the entries can not be imported
+   * on their own. Importing the ZIP file again imports all of its corpora.
+   *
+   * @return
+   */
+  @Override
+  public String getSourcePath()
+  {
+    return zip.getName();
+  }
+
+  @Override
+  public boolean exists(String name)
+  {
+    return entries.containsKey(name);
+  }
+
+  @Override
+  public Resource getResource(String name)
+  {
+    return new ZipEntryResource(name, entries.get(name));
+  }
+
+  @Override
+  public List<String> listFiles(String directory)
+  {
+    String prefix = directory.isEmpty() ? "" : directory + "/";
+    List<String> result = new ArrayList<>();
+    for (String name : entries.keySet())
+    {
+      if (name.startsWith(prefix) && name.indexOf('/', prefix.length()) < 0)
+      {
+        result.add(name.substring(prefix.length()));
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public List<String> listDirectories(String directory)
+  {
+    String prefix = directory.isEmpty() ? "" : directory + "/";
+    Set<String> result = new LinkedHashSet<>();
+    for (String name : entries.keySet())
+    {
+      if (name.startsWith(prefix))
+      {
+        int end = name.indexOf('/', prefix.length());
+        if (end >= 0)
+        {
+          result.add(name.substring(prefix.length(), end));
+        }
+      }
+    }
+    return new ArrayList<>(result);
+  }
+
+  @Override
+  public String toString()
+  {
+    return getPath();
+  }
+
+  private class ZipEntryResource extends AbstractResource
+  {
+
+    private final String name;
+
+    private final ZipEntry entry;
+
+    public ZipEntryResource(String name, ZipEntry entry)
+    {
+      this.name = name;
+      this.entry = entry;
+    }
+
+    @Override
+    public boolean exists()
+    {
+      return entry != null;
+    }
+
+    @Override
+    public long contentLength() throws IOException
+    {
+      if (entry == null || entry.getSize() < 0)
+      {
+        return super.contentLength();
+      }
+      return entry.getSize();
+    }
+
+    @Override
+    public String getFilename()
+    {
+      return name.substring(name.lastIndexOf('/') + 1);
+    }
+
+    @Override
+    public String getDescription()
+    {
+      return "ZIP entry [" + root + name + "] of [" + zip.getName() + "]";
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException
+    {
+      if (entry == null)
+      {
+        throw new FileNotFoundException(getDescription()
+          + " does not exist");
+      }
+      return zip.getInputStream(entry);
+    }
+  }
+}
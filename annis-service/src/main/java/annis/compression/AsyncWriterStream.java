@@ -0,0 +1,243 @@
+/*
+ * Copyright 2016 SFB 632.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package annis.compression;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Hands the written bytes in chunks to a writer thread, which writes them into
+ * the target stream.
+ *
+ * When the target compresses, the compression runs in parallel to the thread
+ * producing the data. Only a bounded number of chunks is queued, a faster
+ * producer has to wait for the writer.
+ *
+ * @author Thomas Krause <krauseto@hu-berlin.de>
+ */
+class AsyncWriterStream extends OutputStream
+{
+
+  private static final int CHUNK_SIZE = 32 * 1024;
+
+  private static final byte[] FLUSH = new byte[0];
+
+  private static final byte[] END = new byte[0];
+
+  private final BlockingQueue<byte[]> queue;
+
+  private final Future<?> writer;
+
+  private byte[] chunk = new byte[CHUNK_SIZE];
+
+  private int count;
+
+  private boolean closed;
+
+  private volatile IOException error;
+
+  public AsyncWriterStream(final OutputStream target, CompressionPolicy policy)
+  {
+    this.queue = new ArrayBlockingQueue<>(Math.max(1, policy.
+      getAsyncBuffers()));
+    this.writer = policy.submit(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        try
+        {
+          byte[] c;
+          while ((c = queue.take()) != END)
+          {
+            // after an error the queue is still emptied, so the producer is
+            // not blocked
+            if (error == null)
+            {
+              writeToTarget(target, c);
+            }
+          }
+          if (error == null)
+          {
+            target.close();
+          }
+        }
+        catch (InterruptedException ex)
+        {
+          error = new InterruptedIOException("writer thread was interrupted");
+          Thread.currentThread().interrupt();
+        }
+        catch (IOException ex)
+        {
+          error = ex;
+        }
+      }
+    });
+  }
+
+  private void writeToTarget(OutputStream target, byte[] c)
+  {
+    try
+    {
+      if (c == FLUSH)
+      {
+        target.flush();
+      }
+      else
+      {
+        target.write(c);
+      }
+    }
+    catch (IOException ex)
+    {
+      error = ex;
+    }
+  }
+
+  @Override
+  public void write(int b) throws IOException
+  {
+    checkError();
+    if (count == chunk.length)
+    {
+      sendChunk();
+    }
+    chunk[count++] = (byte) b;
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException
+  {
+    checkError();
+    while (len > 0)
+    {
+      if (count == chunk.length)
+      {
+        sendChunk();
+      }
+      int n = Math.min(len, chunk.length - count);
+      System.arraycopy(b, off, chunk, count, n);
+      count += n;
+      off += n;
+      len -= n;
+    }
+  }
+
+  @Override
+  public void flush() throws IOException
+  {
+    checkError();
+    sendChunk();
+    put(FLUSH);
+  }
+
+  @Override
+  public void close() throws IOException
+  {
+    if (closed)
+    {
+      return;
+    }
+    closed = true;
+    sendChunk();
+    put(END);
+    try
+    {
+      writer.get();
+    }
+    catch (InterruptedException ex)
+    {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    }
+    catch (ExecutionException ex)
+    {
+      throw new IOException(ex.getCause());
+    }
+    checkError();
+  }
+
+  /**
+   * Stops the writer thread without writing the remaining data and without
+   * closing the target, used if the response failed.
+   */
+  public void abort()
+  {
+    if (closed)
+    {
+      return;
+    }
+    closed = true;
+    chunk = null;
+    count = 0;
+    if (error == null)
+    {
+      error = new IOException("the response was aborted");
+    }
+    try
+    {
+      // the writer thread discards all chunks after the error
+      put(END);
+      writer.get();
+    }
+    catch (IOException | ExecutionException ex)
+    {
+      // the writer thread is finished anyway
+    }
+    catch (InterruptedException ex)
+    {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void sendChunk() throws IOException
+  {
+    if (count > 0)
+    {
+      byte[] full = count == chunk.length ? chunk : Arrays.copyOf(chunk, count);
+      put(full);
+      chunk = new byte[CHUNK_SIZE];
+      count = 0;
+    }
+  }
+
+  private void put(byte[] c) throws IOException
+  {
+    try
+    {
+      queue.put(c);
+    }
+    catch (InterruptedException ex)
+    {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    }
+  }
+
+  private void checkError() throws IOException
+  {
+    if (error != null)
+    {
+      throw error;
+    }
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2016 SFB 632.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package annis.compression;
+
+import java.io.IOException;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Compresses the responses with the encoding chosen by the client, see
+ * {@link CompressionPolicy}.
+ *
+ * @author Thomas Krause <krauseto@hu-berlin.de>
+ */
+public class CompressionFilter implements Filter
+{
+
+  private final CompressionPolicy policy;
+
+  public CompressionFilter(CompressionPolicy policy)
+  {
+    this.policy = policy;
+  }
+
+  @Override
+  public void init(FilterConfig filterConfig) throws ServletException
+  {
+  }
+
+  @Override
+  public void doFilter(ServletRequest request, ServletResponse response,
+    FilterChain chain) throws IOException, ServletException
+  {
+    if (!(request instanceof HttpServletRequest)
+      || !(response instanceof HttpServletResponse))
+    {
+      chain.doFilter(request, response);
+      return;
+    }
+    HttpServletRequest httpRequest = (HttpServletRequest) request;
+    HttpServletResponse httpResponse = (HttpServletResponse) response;
+
+    httpResponse.addHeader("Vary", "Accept-Encoding");
+    Encoding encoding = policy.negotiate(httpRequest.getHeader(
+      "Accept-Encoding"));
+    if (encoding == null)
+    {
+      chain.doFilter(request, response);
+      return;
+    }
+
+    String path = httpRequest.getRequestURI().substring(httpRequest.
+      getContextPath().length());
+    CompressionResponse compressionResponse = new CompressionResponse(
+      httpResponse, policy, encoding, policy.isAsync(path));
+    boolean completed = false;
+    try
+    {
+      chain.doFilter(request, compressionResponse);
+      completed = true;
+    }
+    finally
+    {
+      if (completed)
+      {
+        compressionResponse.finish();
+      }
+      else
+      {
+        // a buffered body must not be sent as a complete response, the
+        // container sends the error instead
+        compressionResponse.abort();
+      }
+    }
+  }
+
+  @Override
+  public void destroy()
+  {
+  }
+}
@@ -0,0 +1,394 @@
+/*
+ * Copyright 2016 SFB 632.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package annis.compression;
+
+import com.google.common.base.Splitter;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Decides which responses are compressed and how.
+ *
+ * Media and other already compressed types are never compressed. Small
+ * responses are compressed completely at once and the compressed bodies are
+ * cached by the hash of their content, thus a repeated response (e.g. the
+ * corpus configuration) is only compressed once. Large responses of the
+ * paths configured as asynchronous are compressed by a writer thread, so the
+ * request thread can already produce the next part of the result.
+ *
+ * @author Thomas Krause <krauseto@hu-berlin.de>
+ */
+public class CompressionPolicy
+{
+
+  private ExecutorService executor;
+
+  private Cache<String, byte[]> cache;
+
+  private int level = 6;
+
+  private int minSize = 1024;
+
+  private int bufferSize = 256 * 1024;
+
+  private int asyncBuffers = 16;
+
+  private int cacheSize = 32;
+
+  private String asyncPaths = "";
+
+  private String excludedTypes = "image/,audio/,video/,application/zip,"
+    + "application/gzip,application/x-gzip,application/pdf,"
+    + "application/octet-stream";
+
+  private List<String> asyncPathList = new ArrayList<>();
+
+  private List<String> excludedTypeList = new ArrayList<>();
+
+  /**
+   * Called when Spring configuration finished.
+   */
+  public void init()
+  {
+    executor = Executors.newCachedThreadPool(new ThreadFactoryBuilder().
+      setNameFormat("compression-writer-%d").setDaemon(true).build());
+    cache = CacheBuilder.newBuilder()
+      .maximumWeight(cacheSize * 1024l * 1024l)
+      .weigher(new Weigher<String, byte[]>()
+      {
+        @Override
+        public int weigh(String key, byte[] value)
+        {
+          return value.length;
+        }
+      })
+      .recordStats()
+      .build();
+    asyncPathList = split(asyncPaths);
+    excludedTypeList = split(excludedTypes.toLowerCase(Locale.ENGLISH));
+  }
+
+  /**
+   * Called when the Spring context is closed.
+   */
+  public void destroy()
+  {
+    if (executor != null)
+    {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Chooses the encoding preferred by the client.
+   *
+   * @param acceptEncoding The value of the Accept-Encoding header.
+   * @return The encoding or null if the response should not be compressed.
+   */
+  public Encoding negotiate(String acceptEncoding)
+  {
+    if (acceptEncoding == null)
+    {
+      return null;
+    }
+    double gzipQuality = -1.0;
+    double deflateQuality = -1.0;
+    double anyQuality = -1.0;
+    for (String part : Splitter.on(',').trimResults().omitEmptyStrings().split(
+      acceptEncoding))
+    {
+      List<String> params = Splitter.on(';').trimResults().splitToList(part);
+      String coding = params.get(0).toLowerCase(Locale.ENGLISH);
+      double quality = 1.0;
+      for (String p : params.subList(1, params.size()))
+      {
+        if (p.startsWith("q="))
+        {
+          try
+          {
+            quality = Double.parseDouble(p.substring(2));
+          }
+          catch (NumberFormatException ex)
+          {
+            quality = 0.0;
+          }
+        }
+      }
+      switch (coding)
+      {
+        case "gzip":
+        case "x-gzip":
+          gzipQuality = quality;
+          break;
+        case "deflate":
+          deflateQuality = quality;
+          break;
+        case "*":
+          anyQuality = quality;
+          break;
+      }
+    }
+    if (gzipQuality < 0)
+    {
+      gzipQuality = anyQuality;
+    }
+    if (deflateQuality < 0)
+    {
+      deflateQuality = anyQuality;
+    }
+    if (gzipQuality <= 0 && deflateQuality <= 0)
+    {
+      return null;
+    }
+    return gzipQuality >= deflateQuality ? Encoding.gzip : Encoding.deflate;
+  }
+
+  /**
+   * Checks if a response with the given type should be compressed.
+   *
+   * @param contentType The value of the Content-Type header.
+   * @return
+   */
+  public boolean isCompressible(String contentType)
+  {
+    if (contentType == null)
+    {
+      return false;
+    }
+    String type = contentType.toLowerCase(Locale.ENGLISH);
+    int paramStart = type.indexOf(';');
+    if (paramStart >= 0)
+    {
+      type = type.substring(0, paramStart);
+    }
+    type = type.trim();
+    for (String excluded : excludedTypeList)
+    {
+      if (excluded.endsWith("/") ? type.startsWith(excluded) : type.equals(
+        excluded))
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Checks if large responses of the path are compressed by a writer thread.
+   *
+   * @param path The path of the request without the context path.
+   * @return
+   */
+  public boolean isAsync(String path)
+  {
+    return path != null && asyncPathList.contains(path);
+  }
+
+  /**
+   * Compresses a complete body or returns the cached compressed body of the
+   * same content.
+   *
+   * @param encoding
+   * @param data
+   * @param length
+   * @return
+   * @throws IOException
+   */
+  public byte[] compress(final Encoding encoding, final byte[] data,
+    final int length) throws IOException
+  {
+    if (cache == null || cacheSize <= 0)
+    {
+      return encoding.compress(data, length, level);
+    }
+    String key = encoding.name() + ":" + Hashing.sha256().hashBytes(data, 0,
+      length).toString();
+    try
+    {
+      return cache.get(key, new Callable<byte[]>()
+      {
+        @Override
+        public byte[] call() throws Exception
+        {
+          return encoding.compress(data, length, level);
+        }
+      });
+    }
+    catch (ExecutionException ex)
+    {
+      if (ex.getCause() instanceof IOException)
+      {
+        throw (IOException) ex.getCause();
+      }
+      throw new IOException(ex.getCause());
+    }
+  }
+
+  /**
+   * Runs a writer task.
+   *
+   * @param task
+   * @return
+   */
+  public Future<?> submit(Runnable task)
+  {
+    return executor.submit(task);
+  }
+
+  /**
+   * The hits and misses of the cached compressed bodies.
+   *
+   * @return
+   */
+  public CacheStats getCacheStats()
+  {
+    return cache == null ? new CacheStats(0, 0, 0, 0, 0, 0) : cache.stats();
+  }
+
+  private static List<String> split(String value)
+  {
+    List<String> result = new ArrayList<>();
+    if (value != null)
+    {
+      result.addAll(Splitter.on(',').trimResults().omitEmptyStrings().
+        splitToList(value));
+    }
+    return result;
+  }
+
+  /**
+   * The compression level from 1 (fastest) to 9 (best).
+   *
+   * @return
+   */
+  public int getLevel()
+  {
+    return level;
+  }
+
+  public void setLevel(int level)
+  {
+    this.level = level;
+  }
+
+  /**
+   * Responses with less bytes are not compressed.
+   *
+   * @return
+   */
+  public int getMinSize()
+  {
+    return minSize;
+  }
+
+  public void setMinSize(int minSize)
+  {
+    this.minSize = minSize;
+  }
+
+  /**
+   * The number of bytes of a response which are collected before it is
+   * compressed, larger responses are compressed while they are written.
+   *
+   * @return
+   */
+  public int getBufferSize()
+  {
+    return bufferSize;
+  }
+
+  public void setBufferSize(int bufferSize)
+  {
+    this.bufferSize = bufferSize;
+  }
+
+  /**
+   * The number of chunks a request thread may write ahead of the writer
+   * thread before it has to wait.
+   *
+   * @return
+   */
+  public int getAsyncBuffers()
+  {
+    return asyncBuffers;
+  }
+
+  public void setAsyncBuffers(int asyncBuffers)
+  {
+    this.asyncBuffers = asyncBuffers;
+  }
+
+  /**
+   * The size of the cache of compressed bodies in megabytes, 0 disables the
+   * cache.
+   *
+   * @return
+   */
+  public int getCacheSize()
+  {
+    return cacheSize;
+  }
+
+  public void setCacheSize(int cacheSize)
+  {
+    this.cacheSize = cacheSize;
+  }
+
+  /**
+   * Comma separated paths whose large responses are compressed by a writer
+   * thread.
+   *
+   * @return
+   */
+  public String getAsyncPaths()
+  {
+    return asyncPaths;
+  }
+
+  public void setAsyncPaths(String asyncPaths)
+  {
+    this.asyncPaths = asyncPaths;
+  }
+
+  /**
+   * Comma separated content types which are never compressed. Entries ending
+   * with "/" exclude all types with this prefix.
+   *
+   * @return
+   */
+  public String getExcludedTypes()
+  {
+    return excludedTypes;
+  }
+
+  public void setExcludedTypes(String excludedTypes)
+  {
+    this.excludedTypes = excludedTypes;
+  }
+}
@@ -0,0 +1,480 @@
+/*
+ * Copyright 2016 SFB 632.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package annis.compression;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * Compresses the body of a response if its type and size allow it.
+ *
+ * The decision is made when the first byte is written, thus the content type
+ * and status are known. Until the size of the body exceeds the buffer size it
+ * is collected, so small bodies can be sent uncompressed and the compressed
+ * bodies can be cached by the {@link CompressionPolicy}. Responses which
+ * already have a Content-Encoding are not changed.
+ *
+ * @author Thomas Krause <krauseto@hu-berlin.de>
+ */
+class CompressionResponse extends HttpServletResponseWrapper
+{
+
+  private final CompressionPolicy policy;
+
+  private final Encoding encoding;
+
+  private final boolean async;
+
+  private Long contentLength;
+
+  private boolean encodedByApplication;
+
+  private CompressionStream stream;
+
+  private PrintWriter writer;
+
+  public CompressionResponse(HttpServletResponse response,
+    CompressionPolicy policy, Encoding encoding, boolean async)
+  {
+    super(response);
+    this.policy = policy;
+    this.encoding = encoding;
+    this.async = async;
+  }
+
+  /**
+   * Writes the remaining data, must be called after the request was handled.
+   *
+   * @throws IOException
+   */
+  public void finish() throws IOException
+  {
+    if (writer != null)
+    {
+      writer.close();
+    }
+    else if (stream != null)
+    {
+      stream.close();
+    }
+  }
+
+  /**
+   * Discards the data which was not sent yet, must be called instead of
+   * {@link #finish() } if handling the request failed. A compressed body which
+   * was already started is not finished, thus the client can't mistake it for
+   * a complete response.
+   */
+  public void abort()
+  {
+    if (stream != null)
+    {
+      stream.abort();
+    }
+    if (!isCommitted())
+    {
+      super.resetBuffer();
+    }
+  }
+
+  @Override
+  public ServletOutputStream getOutputStream() throws IOException
+  {
+    if (writer != null)
+    {
+      throw new IllegalStateException("getWriter() was already called");
+    }
+    if (stream == null)
+    {
+      stream = new CompressionStream();
+    }
+    return stream;
+  }
+
+  @Override
+  public PrintWriter getWriter() throws IOException
+  {
+    if (writer == null)
+    {
+      if (stream != null)
+      {
+        throw new IllegalStateException(
+          "getOutputStream() was already called");
+      }
+      stream = new CompressionStream();
+      writer = new PrintWriter(new OutputStreamWriter(stream,
+        getCharacterEncoding()));
+    }
+    return writer;
+  }
+
+  @Override
+  public void flushBuffer() throws IOException
+  {
+    if (writer != null)
+    {
+      writer.flush();
+    }
+    else if (stream != null)
+    {
+      stream.flush();
+    }
+    // committing the response before the decision would send the wrong
+    // headers
+    if (stream == null || stream.state != State.UNDECIDED
+      && stream.state != State.BUFFER)
+    {
+      super.flushBuffer();
+    }
+  }
+
+  @Override
+  public void reset()
+  {
+    super.reset();
+    stream = null;
+    writer = null;
+    contentLength = null;
+    encodedByApplication = false;
+  }
+
+  @Override
+  public void resetBuffer()
+  {
+    super.resetBuffer();
+    if (stream != null)
+    {
+      stream.count = 0;
+    }
+  }
+
+  @Override
+  public void setContentLength(int len)
+  {
+    setContentLengthLong(len);
+  }
+
+  @Override
+  public void setContentLengthLong(long len)
+  {
+    if (stream != null && stream.state == State.PASS)
+    {
+      super.setContentLengthLong(len);
+    }
+    else
+    {
+      contentLength = len;
+    }
+  }
+
+  @Override
+  public void setHeader(String name, String value)
+  {
+    if (isContentLength(name))
+    {
+      setContentLengthLong(Long.parseLong(value.trim()));
+    }
+    else
+    {
+      checkContentEncoding(name);
+      super.setHeader(name, value);
+    }
+  }
+
+  @Override
+  public void addHeader(String name, String value)
+  {
+    if (isContentLength(name))
+    {
+      setContentLengthLong(Long.parseLong(value.trim()));
+    }
+    else
+    {
+      checkContentEncoding(name);
+      super.addHeader(name, value);
+    }
+  }
+
+  @Override
+  public void setIntHeader(String name, int value)
+  {
+    if (isContentLength(name))
+    {
+      setContentLengthLong(value);
+    }
+    else
+    {
+      super.setIntHeader(name, value);
+    }
+  }
+
+  @Override
+  public void addIntHeader(String name, int value)
+  {
+    if (isContentLength(name))
+    {
+      setContentLengthLong(value);
+    }
+    else
+    {
+      super.addIntHeader(name, value);
+    }
+  }
+
+  private static boolean isContentLength(String name)
+  {
+    return "Content-Length".equalsIgnoreCase(name);
+  }
+
+  private void checkContentEncoding(String name)
+  {
+    if ("Content-Encoding".equalsIgnoreCase(name))
+    {
+      // the body is already compressed
+      encodedByApplication = true;
+    }
+  }
+
+  private boolean shouldCompress()
+  {
+    int status = getStatus();
+    if (encodedByApplication || status < 200 || status == 204
+      || status == 206 || status == 304)
+    {
+      return false;
+    }
+    if (getHeader("Content-Range") != null)
+    {
+      return false;
+    }
+    return policy.isCompressible(getContentType());
+  }
+
+  private enum State
+  {
+    UNDECIDED, PASS, BUFFER, STREAM
+  }
+
+  private class CompressionStream extends ServletOutputStream
+  {
+
+    private State state = State.UNDECIDED;
+
+    private byte[] buffer = new byte[0];
+
+    private int count;
+
+    private OutputStream out;
+
+    /**
+     * The compressing stream, which might be wrapped by an
+     * {@link AsyncWriterStream}.
+     */
+    private OutputStream compressed;
+
+    private boolean closed;
+
+    private void decide() throws IOException
+    {
+      if (state != State.UNDECIDED)
+      {
+        return;
+      }
+      if (shouldCompress())
+      {
+        state = State.BUFFER;
+        buffer = new byte[Math.min(8192, Math.max(1, policy.getBufferSize()))];
+      }
+      else
+      {
+        state = State.PASS;
+        if (contentLength != null)
+        {
+          CompressionResponse.super.setContentLengthLong(contentLength);
+        }
+        out = CompressionResponse.super.getOutputStream();
+      }
+    }
+
+    /**
+     * Starts to compress while writing, called when the buffer is full.
+     */
+    private void startStreaming() throws IOException
+    {
+      setEncodingHeader();
+      compressed = encoding.wrap(CompressionResponse.super.
+        getOutputStream(), policy.getLevel());
+      out = async ? new AsyncWriterStream(compressed, policy) : compressed;
+      out.write(buffer, 0, count);
+      buffer = null;
+      count = 0;
+      state = State.STREAM;
+    }
+
+    private void setEncodingHeader()
+    {
+      CompressionResponse.super.setHeader("Content-Encoding", encoding.name());
+    }
+
+    @Override
+    public void write(int b) throws IOException
+    {
+      if (!closed && (state == State.PASS || state == State.STREAM))
+      {
+        out.write(b);
+        return;
+      }
+      write(new byte[]
+      {
+        (byte) b
+      }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException
+    {
+      if (closed)
+      {
+        throw new IOException("stream is closed");
+      }
+      decide();
+      if (state == State.BUFFER)
+      {
+        if (count + len <= policy.getBufferSize())
+        {
+          if (count + len > buffer.length)
+          {
+            buffer = Arrays.copyOf(buffer, Math.min(policy.getBufferSize(),
+              Math.max(count + len, 2 * buffer.length)));
+          }
+          System.arraycopy(b, off, buffer, count, len);
+          count += len;
+          return;
+        }
+        startStreaming();
+      }
+      out.write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException
+    {
+      // a buffered body is sent when the stream is closed
+      if (state == State.PASS || state == State.STREAM)
+      {
+        out.flush();
+      }
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+      if (closed)
+      {
+        return;
+      }
+      closed = true;
+      decide();
+      if (state == State.BUFFER)
+      {
+        OutputStream raw = CompressionResponse.super.getOutputStream();
+        if (count < policy.getMinSize())
+        {
+          CompressionResponse.super.setContentLengthLong(count);
+          raw.write(buffer, 0, count);
+        }
+        else
+        {
+          byte[] compressed = policy.compress(encoding, buffer, count);
+          setEncodingHeader();
+          CompressionResponse.super.setContentLengthLong(compressed.length);
+          raw.write(compressed);
+        }
+        buffer = null;
+        raw.close();
+      }
+      else
+      {
+        out.close();
+      }
+    }
+
+    private void abort()
+    {
+      if (closed)
+      {
+        return;
+      }
+      closed = true;
+      buffer = null;
+      count = 0;
+      if (out instanceof AsyncWriterStream)
+      {
+        // waits until the writer thread does not use the compressor anymore
+        ((AsyncWriterStream) out).abort();
+      }
+      if (compressed != null)
+      {
+        Encoding.abort(compressed);
+      }
+    }
+
+    @Override
+    public boolean isReady()
+    {
+      try
+      {
+        return CompressionResponse.super.getOutputStream().isReady();
+      }
+      catch (IOException ex)
+      {
+        return false;
+      }
+    }
+
+    /**
+     * Asynchronous output is only possible if the response is not compressed.
+     *
+     * @param writeListener
+     * @throws IllegalStateException If the response is compressed.
+     */
+    @Override
+    public void setWriteListener(WriteListener writeListener)
+    {
+      try
+      {
+        decide();
+      }
+      catch (IOException ex)
+      {
+        throw new IllegalStateException(ex);
+      }
+      if (state != State.PASS)
+      {
+        throw new IllegalStateException(
+          "asynchronous output is not supported for compressed responses");
+      }
+      ((ServletOutputStream) out).setWriteListener(writeListener);
+    }
+  }
+}
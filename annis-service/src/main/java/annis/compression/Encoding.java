@@ -0,0 +1,146 @@
+/*
+ * Copyright 2016 SFB 632.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package annis.compression;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The supported content codings of HTTP.
+ *
+ * @author Thomas Krause <krauseto@hu-berlin.de>
+ */
+public enum Encoding
+{
+
+  gzip
+  {
+    @Override
+    public OutputStream wrap(OutputStream out, int level) throws IOException
+    {
+      return new GzipStream(out, level);
+    }
+  },
+  deflate
+  {
+    @Override
+    public OutputStream wrap(OutputStream out, int level) throws IOException
+    {
+      // the "deflate" coding of HTTP uses the zlib format
+      return new ZlibStream(out, level);
+    }
+  };
+
+  private static final int BUFFER_SIZE = 8192;
+
+  /**
+   * Creates a stream which compresses into the given stream. Closing the
+   * returned stream writes the remaining data and closes the given stream.
+   *
+   * @param out
+   * @param level The compression level from 1 (fastest) to 9 (best).
+   * @return
+   * @throws IOException
+   */
+  public abstract OutputStream wrap(OutputStream out, int level) throws
+    IOException;
+
+  /**
+   * Releases the native compressor of a stream created by
+   * {@link #wrap(java.io.OutputStream, int) } without writing the remaining
+   * data or closing the underlying stream, e.g. if the response failed. The
+   * stream must not be used afterwards.
+   *
+   * @param compressed
+   */
+  public static void abort(OutputStream compressed)
+  {
+    if (compressed instanceof GzipStream)
+    {
+      ((GzipStream) compressed).abort();
+    }
+    else if (compressed instanceof ZlibStream)
+    {
+      ((ZlibStream) compressed).abort();
+    }
+  }
+
+  /**
+   * Compresses a complete body.
+   *
+   * @param data
+   * @param length The number of bytes to use from data.
+   * @param level
+   * @return
+   * @throws IOException
+   */
+  public byte[] compress(byte[] data, int length, int level) throws IOException
+  {
+    ByteArrayOutputStream result = new ByteArrayOutputStream(Math.max(64,
+      length / 4));
+    try (OutputStream out = wrap(result, level))
+    {
+      out.write(data, 0, length);
+    }
+    return result.toByteArray();
+  }
+
+  private static class GzipStream extends GZIPOutputStream
+  {
+
+    public GzipStream(OutputStream out, int level) throws IOException
+    {
+      super(out, BUFFER_SIZE, true);
+      def.setLevel(level);
+    }
+
+    public void abort()
+    {
+      def.end();
+    }
+  }
+
+  private static class ZlibStream extends DeflaterOutputStream
+  {
+
+    public ZlibStream(OutputStream out, int level)
+    {
+      super(out, new Deflater(level), BUFFER_SIZE, true);
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+      try
+      {
+        super.close();
+      }
+      finally
+      {
+        def.end();
+      }
+    }
+
+    public void abort()
+    {
+      def.end();
+    }
+  }
+}
@@ -0,0 +1,359 @@
+/*
+ * Copyright 2016 SFB 632.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package annis.corpuspathsearch;
+
+import annis.utils.ANNISFormatHelper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Finds the corpora below a list of directories.
+ *
+ * Each directory is listed by its own task of a fork-join pool, thus slow
+ * file systems like network mounts are accessed in parallel. The results of a
+ * directory are cached for a short time so repeated scans, e.g. when
+ * browsing directories for the import dialog, only walk it once. Imports
+ * should not use the cached results, since corpora might have been copied
+ * into the directory in the meantime. The name of the top level corpus is
+ * cached as long as the corpus file is not modified.
+ *
+ * @author Thomas Krause <krauseto@hu-berlin.de>
+ */
+public class CorpusPathScanner
+{
+
+  private static final Logger log = LoggerFactory.getLogger(
+    CorpusPathScanner.class);
+
+  private final int parallelism;
+
+  private final Cache<Path, List<CorpusRoot>> resultCache;
+
+  private final ConcurrentMap<Path, CachedName> nameCache
+    = new ConcurrentHashMap<>();
+
+  public CorpusPathScanner()
+  {
+    this(Math.max(4, 2 * Runtime.getRuntime().availableProcessors()), 300);
+  }
+
+  /**
+   *
+   * @param parallelism The number of directories which are read at the same
+   * time.
+   * @param cacheSeconds How long the result of a scan is reused.
+   */
+  public CorpusPathScanner(int parallelism, long cacheSeconds)
+  {
+    this.parallelism = parallelism;
+    this.resultCache = CacheBuilder.newBuilder()
+      .expireAfterWrite(cacheSeconds, TimeUnit.SECONDS)
+      .recordStats()
+      .build();
+  }
+
+  /**
+   * Finds all corpora below a single directory.
+   *
+   * @param root
+   * @return The corpora, the smallest one first.
+   */
+  public List<CorpusRoot> scan(File root)
+  {
+    return scan(Collections.singletonList(root));
+  }
+
+  /**
+   * Finds all corpora below the given directories.
+   *
+   * @param roots
+   * @return The corpora, the smallest one first.
+   */
+  public List<CorpusRoot> scan(Collection<File> roots)
+  {
+    return scan(roots, true);
+  }
+
+  /**
+   * Finds all corpora below the given directories.
+   *
+   * @param roots
+   * @param useCachedResults If false the directories are always walked again,
+   * the new results replace the cached ones.
+   * @return The corpora, the smallest one first.
+   */
+  public List<CorpusRoot> scan(Collection<File> roots,
+    boolean useCachedResults)
+  {
+    List<CorpusRoot> result = new ArrayList<>();
+    List<Path> uncached = new LinkedList<>();
+    for (File f : roots)
+    {
+      Path p = f.toPath().toAbsolutePath().normalize();
+      List<CorpusRoot> cached = useCachedResults ? resultCache.getIfPresent(p)
+        : null;
+      if (cached == null)
+      {
+        uncached.add(p);
+      }
+      else
+      {
+        result.addAll(cached);
+      }
+    }
+
+    if (!uncached.isEmpty())
+    {
+      ForkJoinPool pool = new ForkJoinPool(parallelism);
+      try
+      {
+        for (Path p : uncached)
+        {
+          ConcurrentLinkedQueue<CorpusRoot> found
+            = new ConcurrentLinkedQueue<>();
+          long start = System.currentTimeMillis();
+          pool.invoke(new DirectoryTask(p, found));
+          log.debug("found {} corpora in {} ms below {}", found.size(),
+            System.currentTimeMillis() - start, p);
+
+          List<CorpusRoot> corpora = ImmutableList.copyOf(found);
+          resultCache.put(p, corpora);
+          result.addAll(corpora);
+        }
+      }
+      finally
+      {
+        pool.shutdown();
+      }
+    }
+
+    Collections.sort(result);
+    return result;
+  }
+
+  /**
+   * Removes corpora with the same top level name as a previous one. Of the
+   * corpora with the same name the one with the first corpus file path is
+   * kept, regardless of the order of the list.
+   *
+   * @param corpora
+   * @return The remaining corpora in the same order.
+   */
+  public static List<CorpusRoot> distinctByName(List<CorpusRoot> corpora)
+  {
+    List<CorpusRoot> byPath = new ArrayList<>(corpora);
+    Collections.sort(byPath, new Comparator<CorpusRoot>()
+    {
+      @Override
+      public int compare(CorpusRoot o1, CorpusRoot o2)
+      {
+        return o1.getCorpusFile().compareTo(o2.getCorpusFile());
+      }
+    });
+    Set<String> names = new HashSet<>();
+    Set<CorpusRoot> kept = new HashSet<>();
+    for (CorpusRoot c : byPath)
+    {
+      if (names.add(c.getName()))
+      {
+        kept.add(c);
+      }
+      else
+      {
+        log.warn("ignoring corpus \"{}\" in {}, it was already found in "
+          + "another directory", c.getName(), c.getDirectory());
+      }
+    }
+
+    List<CorpusRoot> result = new ArrayList<>(kept.size());
+    for (CorpusRoot c : corpora)
+    {
+      if (kept.contains(c))
+      {
+        result.add(c);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Forgets all cached results.
+   */
+  public void invalidate()
+  {
+    resultCache.invalidateAll();
+    nameCache.clear();
+  }
+
+  /**
+   * The hits and misses of the cached scan results.
+   *
+   * @return
+   */
+  public CacheStats getCacheStats()
+  {
+    return resultCache.stats();
+  }
+
+  private String toplevelName(Path corpusFile, BasicFileAttributes attrs)
+    throws IOException
+  {
+    long modified = attrs.lastModifiedTime().toMillis();
+    CachedName cached = nameCache.get(corpusFile);
+    if (cached != null && cached.modified == modified)
+    {
+      return cached.name;
+    }
+    try (InputStream in = Files.newInputStream(corpusFile))
+    {
+      String name = ANNISFormatHelper.extractToplevelCorpusNames(in);
+      if (name != null)
+      {
+        nameCache.put(corpusFile, new CachedName(name, modified));
+      }
+      return name;
+    }
+  }
+
+  private static boolean isCorpusFile(Path file)
+  {
+    String name = file.getFileName().toString();
+    return "corpus.tab".equalsIgnoreCase(name)
+      || "corpus.annis".equalsIgnoreCase(name);
+  }
+
+  /**
+   * Lists a single directory and forks a new task for each sub-directory.
+   */
+  private class DirectoryTask extends RecursiveAction
+  {
+
+    private final Path dir;
+
+    private final Collection<CorpusRoot> found;
+
+    public DirectoryTask(Path dir, Collection<CorpusRoot> found)
+    {
+      this.dir = dir;
+      this.found = found;
+    }
+
+    @Override
+    protected void compute()
+    {
+      final List<DirectoryTask> subTasks = new LinkedList<>();
+      final List<Path> corpusFiles = new LinkedList<>();
+      final List<BasicFileAttributes> corpusFileAttrs = new LinkedList<>();
+      final long[] size = new long[1];
+
+      try
+      {
+        // only visit the direct children, sub-directories are handled by
+        // their own task (symbolic links are not followed, since the cycle
+        // detection of walkFileTree does not work across tasks)
+        Files.walkFileTree(dir, EnumSet.noneOf(FileVisitOption.class), 1,
+          new SimpleFileVisitor<Path>()
+          {
+            @Override
+            public FileVisitResult visitFile(Path file,
+              BasicFileAttributes attrs) throws IOException
+            {
+              if (attrs.isDirectory())
+              {
+                subTasks.add(new DirectoryTask(file, found));
+              }
+              else if (attrs.isRegularFile())
+              {
+                size[0] += attrs.size();
+                if (isCorpusFile(file))
+                {
+                  corpusFiles.add(file);
+                  corpusFileAttrs.add(attrs);
+                }
+              }
+              return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc)
+              throws IOException
+            {
+              log.warn("could not read {}", file);
+              return FileVisitResult.CONTINUE;
+            }
+          });
+
+        for (int i = 0; i < corpusFiles.size(); i++)
+        {
+          String name = toplevelName(corpusFiles.get(i), corpusFileAttrs.get(i));
+          if (name != null)
+          {
+            found.add(new CorpusRoot(name, corpusFiles.get(i).toFile(),
+              size[0]));
+          }
+        }
+      }
+      catch (IOException ex)
+      {
+        log.warn("could not search for corpora in " + dir, ex);
+      }
+
+      invokeAll(subTasks);
+    }
+  }
+
+  private static class CachedName
+  {
+
+    private final String name;
+
+    private final long modified;
+
+    public CachedName(String name, long modified)
+    {
+      this.name = name;
+      this.modified = modified;
+    }
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2016 SFB 632.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package annis.corpuspathsearch;
+
+import com.google.common.collect.ComparisonChain;
+import java.io.File;
+
+/**
+ * A corpus found in the file system.
+ *
+ * Corpora are ordered by their size, so the smallest ones can be imported
+ * first.
+ *
+ * @author Thomas Krause <krauseto@hu-berlin.de>
+ */
+public class CorpusRoot implements Comparable<CorpusRoot>
+{
+
+  private final String name;
+
+  private final File corpusFile;
+
+  private final long size;
+
+  public CorpusRoot(String name, File corpusFile, long size)
+  {
+    this.name = name;
+    this.corpusFile = corpusFile;
+    this.size = size;
+  }
+
+  /**
+   * The name of the top level corpus.
+   *
+   * @return
+   */
+  public String getName()
+  {
+    return name;
+  }
+
+  /**
+   * The corpus.tab or corpus.annis file.
+   *
+   * @return
+   */
+  public File getCorpusFile()
+  {
+    return corpusFile;
+  }
+
+  /**
+   * The directory of the ANNIS files.
+   *
+   * @return
+   */
+  public File getDirectory()
+  {
+    return corpusFile.getParentFile();
+  }
+
+  /**
+   * The size of all files in the corpus directory, without the ones in
+   * sub-directories (e.g. ExtData).
+   *
+   * @return
+   */
+  public long getSize()
+  {
+    return size;
+  }
+
+  @Override
+  public int compareTo(CorpusRoot o)
+  {
+    return ComparisonChain.start()
+      .compare(size, o.size)
+      .compare(name, o.name)
+      .compare(corpusFile, o.corpusFile)
+      .result();
+  }
+
+  @Override
+  public boolean equals(Object obj)
+  {
+    if (!(obj instanceof CorpusRoot))
+    {
+      return false;
+    }
+    CorpusRoot other = (CorpusRoot) obj;
+    return size == other.size && name.equals(other.name)
+      && corpusFile.equals(other.corpusFile);
+  }
+
+  @Override
+  public int hashCode()
+  {
+    return corpusFile.hashCode();
+  }
+
+  @Override
+  public String toString()
+  {
+    return name + " (" + getDirectory().getAbsolutePath() + ")";
+  }
+}
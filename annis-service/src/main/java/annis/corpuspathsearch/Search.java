@@ -4,10 +4,7 @@
  */
 package annis.corpuspathsearch;
 
-import annis.utils.ANNISFormatHelper;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
@@ -35,36 +32,13 @@ public class Search {
 
 	public void startSearch() {
 		corpusPaths.clear();
-		for (File f : rootPaths) {
-			searchPath(f);
+		for (CorpusRoot c : new CorpusPathScanner().scan(rootPaths)) {
+			log.debug("found corpus " + c);
+			corpusPaths.put(c.getName(), c.getCorpusFile());
 		}
 		wasSearched = true;
 	}
 
-	private void searchPath(File path) {
-		if (path != null && path.canRead()) {
-			if (path.isDirectory()) {
-				// search all subdirectories
-				File[] children = path.listFiles();
-				if (children != null) {
-					for (File f : children) {
-						log.debug("seaching in " + f.getPath() + " for corpora");
-						searchPath(f);
-					}
-				}
-			} else if (path.isFile() && "corpus.tab".equals(path.getName())) {
-				try {
-					String toplevel = ANNISFormatHelper.extractToplevelCorpusNames(new FileInputStream(path));
-					corpusPaths.put(toplevel, path);
-				} catch (FileNotFoundException ex) {
-					log.error(null, ex);
-				}
-
-			}
-		}
-
-	}
-
 	public Map<String, File> getCorpusPaths() {
 		return corpusPaths;
 	}
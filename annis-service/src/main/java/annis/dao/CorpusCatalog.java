@@ -0,0 +1,473 @@
+/*
+ * Copyright 2016 SFB 632.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package annis.dao;
+
+import annis.service.objects.AnnisCorpus;
+import annis.sqlgen.ListCorpusSqlHelper;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Holds the top level corpora with their IDs, alias names and sizes in
+ * memory.
+ *
+ * The catalog is loaded on first access and reloaded after an import or a
+ * deletion was committed by this process. Corpora imported by another process
+ * (e.g. the command line administration) are noticed by a reload every
+ * {@link #getRefreshInterval() } seconds. Every change of the catalog
+ * increases its version, which can be used by clients to check if their copy
+ * is still valid. State which depends on the catalog, e.g. the corpus
+ * configuration files, can be checked for changes by each reload with a
+ * {@link ChangeCheck}.
+ *
+ * @author Thomas Krause <krauseto@hu-berlin.de>
+ */
+public class CorpusCatalog extends AbstractDao
+{
+
+  private final static Logger log = LoggerFactory.getLogger(
+    CorpusCatalog.class);
+
+  private ListCorpusSqlHelper listCorpusSqlHelper;
+
+  private int refreshInterval = 60;
+
+  private ScheduledExecutorService refreshExecutor;
+
+  private final AtomicLong version = new AtomicLong();
+
+  /**
+   * Distinguishes the versions of different runs of the service, since the
+   * version starts at 1 again after a restart.
+   */
+  private final String instance = Long.toString(System.currentTimeMillis(),
+    36);
+
+  private volatile Snapshot snapshot;
+
+  private volatile boolean stale;
+
+  private TransactionTemplate primaryTransaction;
+
+  private final List<ChangeCheck> changeChecks = new CopyOnWriteArrayList<>();
+
+  /**
+   * Called when Spring configuration finished. Starts the periodic reload.
+   */
+  public void init()
+  {
+    if (refreshInterval > 0)
+    {
+      refreshExecutor = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder().setNameFormat("corpus-catalog-%d").
+        setDaemon(true).build());
+      refreshExecutor.scheduleWithFixedDelay(new Runnable()
+      {
+        @Override
+        public void run()
+        {
+          if (snapshot == null)
+          {
+            // nobody has used the catalog yet
+            return;
+          }
+          try
+          {
+            refresh();
+          }
+          catch (DataAccessException ex)
+          {
+            log.warn("Could not reload the corpus catalog", ex);
+          }
+        }
+      }, refreshInterval, refreshInterval, TimeUnit.SECONDS);
+    }
+  }
+
+  /**
+   * Called when the Spring context is closed.
+   */
+  public void destroy()
+  {
+    if (refreshExecutor != null)
+    {
+      refreshExecutor.shutdownNow();
+    }
+  }
+
+  /**
+   * Returns the current state of the catalog, it is loaded if necessary.
+   *
+   * @return
+   */
+  public Snapshot getSnapshot()
+  {
+    Snapshot s = snapshot;
+    if (s == null || stale)
+    {
+      s = refresh();
+    }
+    return s;
+  }
+
+  /**
+   * Marks the catalog as outdated, thus it is reloaded on the next access. If
+   * called inside a transaction this happens after the commit.
+   */
+  public void invalidate()
+  {
+    if (TransactionSynchronizationManager.isSynchronizationActive())
+    {
+      TransactionSynchronizationManager.registerSynchronization(
+        new TransactionSynchronizationAdapter()
+      {
+        @Override
+        public void afterCompletion(int status)
+        {
+          stale = true;
+        }
+      });
+    }
+    else
+    {
+      stale = true;
+    }
+  }
+
+  /**
+   * Reloads the catalog from the database. The version is only increased if
+   * the content has changed or the catalog was invalidated.
+   *
+   * @return The new state of the catalog.
+   */
+  public synchronized Snapshot refresh()
+  {
+    // reset the flag before loading, so an invalidation during the load is
+    // not lost
+    final boolean forced = stale || hasDependentChanges();
+    stale = false;
+
+    if (primaryTransaction == null)
+    {
+      return load(forced);
+    }
+    // uses an own connection to the primary database, the connection of the
+    // calling transaction might belong to a replica which has not replayed
+    // the last import yet
+    return primaryTransaction.execute(new TransactionCallback<Snapshot>()
+    {
+      @Override
+      public Snapshot doInTransaction(TransactionStatus status)
+      {
+        return load(forced);
+      }
+    });
+  }
+
+  private Snapshot load(boolean forced)
+  {
+    List<AnnisCorpus> corpora = getJdbcTemplate().query(listCorpusSqlHelper.
+      createSqlQuery(), listCorpusSqlHelper);
+    ImmutableListMultimap<String, Long> aliases = getJdbcTemplate().query(
+      "SELECT alias, corpus_ref FROM corpus_alias ORDER BY alias, corpus_ref",
+      new ResultSetExtractor<ImmutableListMultimap<String, Long>>()
+    {
+      @Override
+      public ImmutableListMultimap<String, Long> extractData(ResultSet rs)
+        throws SQLException, DataAccessException
+      {
+        ImmutableListMultimap.Builder<String, Long> result
+          = ImmutableListMultimap.builder();
+        while (rs.next())
+        {
+          result.put(rs.getString(1), rs.getLong(2));
+        }
+        return result.build();
+      }
+    });
+
+    HashCode fingerprint = fingerprint(corpora, aliases);
+    Snapshot old = snapshot;
+    if (!forced && old != null && old.fingerprint.equals(fingerprint))
+    {
+      return old;
+    }
+
+    Snapshot s = new Snapshot(version.incrementAndGet(), fingerprint, corpora,
+      aliases);
+    log.debug("loaded corpus catalog version {} with {} corpora", s.
+      getVersion(), corpora.size());
+    snapshot = s;
+    return s;
+  }
+
+  private boolean hasDependentChanges()
+  {
+    Snapshot old = snapshot;
+    if (old == null)
+    {
+      return false;
+    }
+    for (ChangeCheck check : changeChecks)
+    {
+      if (check.hasChanged(old.getVersion()))
+      {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Registers a check which is executed by every reload of the catalog. If it
+   * reports a change, a new version is created.
+   *
+   * @param check
+   */
+  public void addChangeCheck(ChangeCheck check)
+  {
+    changeChecks.add(check);
+  }
+
+  /**
+   * A tag for the current version which is unique across restarts and can be
+   * used as HTTP entity tag.
+   *
+   * @return
+   */
+  public String getTag()
+  {
+    return instance + "-" + getSnapshot().getVersion();
+  }
+
+  private static HashCode fingerprint(List<AnnisCorpus> corpora,
+    ImmutableListMultimap<String, Long> aliases)
+  {
+    Hasher h = Hashing.murmur3_128().newHasher();
+    for (AnnisCorpus c : corpora)
+    {
+      h.putLong(c.getId())
+        .putString(String.valueOf(c.getName()), StandardCharsets.UTF_8)
+        .putInt(c.getTextCount())
+        .putInt(c.getTokenCount())
+        .putString(String.valueOf(c.getSourcePath()), StandardCharsets.UTF_8);
+    }
+    for (String a : aliases.keySet())
+    {
+      h.putString(a, StandardCharsets.UTF_8);
+      for (Long id : aliases.get(a))
+      {
+        h.putLong(id);
+      }
+    }
+    return h.hash();
+  }
+
+  public ListCorpusSqlHelper getListCorpusSqlHelper()
+  {
+    return listCorpusSqlHelper;
+  }
+
+  public void setListCorpusSqlHelper(ListCorpusSqlHelper listCorpusSqlHelper)
+  {
+    this.listCorpusSqlHelper = listCorpusSqlHelper;
+  }
+
+  /**
+   * The catalog is loaded in a new transaction of this manager which is not
+   * read-only, thus it is always loaded from the primary database.
+   *
+   * @param transactionManager
+   */
+  public void setTransactionManager(
+    PlatformTransactionManager transactionManager)
+  {
+    primaryTransaction = new TransactionTemplate(transactionManager);
+    primaryTransaction.setPropagationBehavior(
+      TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    primaryTransaction.setReadOnly(false);
+  }
+
+  /**
+   * The number of seconds between two reloads of the catalog, 0 disables the
+   * periodic reload.
+   *
+   * @return
+   */
+  public int getRefreshInterval()
+  {
+    return refreshInterval;
+  }
+
+  public void setRefreshInterval(int refreshInterval)
+  {
+    this.refreshInterval = refreshInterval;
+  }
+
+  /**
+   * Checks state which depends on the catalog for changes.
+   */
+  public interface ChangeCheck
+  {
+
+    /**
+     * Called by each reload of the catalog.
+     *
+     * @param version The currently loaded version of the catalog.
+     * @return True if the state has changed since this version was loaded.
+     */
+    public boolean hasChanged(long version);
+  }
+
+  /**
+   * An immutable state of the catalog.
+   */
+  public static class Snapshot
+  {
+
+    private final long version;
+
+    private final HashCode fingerprint;
+
+    private final ImmutableList<AnnisCorpus> corpora;
+
+    private final ImmutableMap<String, AnnisCorpus> byName;
+
+    private final ImmutableMap<Long, AnnisCorpus> byId;
+
+    private final ImmutableListMultimap<String, Long> aliases;
+
+    Snapshot(long version, HashCode fingerprint, List<AnnisCorpus> corpora,
+      ImmutableListMultimap<String, Long> aliases)
+    {
+      this.version = version;
+      this.fingerprint = fingerprint;
+      this.corpora = ImmutableList.copyOf(corpora);
+      this.aliases = aliases;
+
+      Map<String, AnnisCorpus> names = new HashMap<>();
+      Map<Long, AnnisCorpus> ids = new HashMap<>();
+      for (AnnisCorpus c : corpora)
+      {
+        // names of visible top level corpora are unique, but be tolerant
+        if (!names.containsKey(c.getName()))
+        {
+          names.put(c.getName(), c);
+        }
+        ids.put(c.getId(), c);
+      }
+      this.byName = ImmutableMap.copyOf(names);
+      this.byId = ImmutableMap.copyOf(ids);
+    }
+
+    public long getVersion()
+    {
+      return version;
+    }
+
+    /**
+     * All top level corpora.
+     *
+     * @return
+     */
+    public ImmutableList<AnnisCorpus> getCorpora()
+    {
+      return corpora;
+    }
+
+    /**
+     * Returns the corpora with the given IDs, unknown IDs are ignored.
+     *
+     * @param ids
+     * @return
+     */
+    public List<AnnisCorpus> getCorpora(Collection<Long> ids)
+    {
+      List<AnnisCorpus> result = new ArrayList<>(ids.size());
+      for (Long id : ids)
+      {
+        AnnisCorpus c = byId.get(id);
+        if (c != null)
+        {
+          result.add(c);
+        }
+      }
+      return result;
+    }
+
+    /**
+     * Maps the names of top level corpora to their IDs, in the same order.
+     * Unknown names are ignored.
+     *
+     * @param names
+     * @return
+     */
+    public List<Long> mapNamesToIds(Collection<String> names)
+    {
+      List<Long> result = new ArrayList<>(names.size());
+      for (String n : names)
+      {
+        AnnisCorpus c = byName.get(n);
+        if (c != null)
+        {
+          result.add(c.getId());
+        }
+      }
+      return result;
+    }
+
+    /**
+     * The IDs of all corpora which have the alias.
+     *
+     * @param alias
+     * @return
+     */
+    public List<Long> mapAliasToIds(String alias)
+    {
+      return alias == null ? Collections.<Long>emptyList() : aliases.get(alias);
+    }
+  }
+}
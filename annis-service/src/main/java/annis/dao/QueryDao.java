@@ -144,6 +144,18 @@ public interface QueryDao
   List<Match> find(QueryData queryData);
 
   public boolean find(final QueryData queryData, final OutputStream out);
+  
+  /**
+   * Streams the matches of the query to the output stream.
+   * 
+   * @param queryData
+   * @param out
+   * @param compact If {@code true} use the binary encoding of 
+   * {@link annis.service.objects.CompactMatchWriter} instead of one match per line.
+   * @return 
+   */
+  public boolean find(final QueryData queryData, final OutputStream out, 
+    final boolean compact);
 
   /**
    * Returns a part of a salt document according the saltIDs, we get with the 
@@ -15,6 +15,7 @@
  */
 package annis.dao;
 
+import java.io.BufferedWriter;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
@@ -27,6 +28,7 @@ import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.io.UnsupportedEncodingException;
+import java.io.Writer;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.PreparedStatement;
@@ -44,6 +46,8 @@ import java.util.SortedMap;
 import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.commons.io.IOUtils;
 import org.codehaus.jackson.map.DeserializationConfig;
@@ -66,8 +70,10 @@ import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.ResultSetExtractor;
 import org.springframework.jdbc.core.SingleColumnRowMapper;
+import org.springframework.jdbc.core.StatementCallback;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import com.google.common.base.Charsets;
 import com.google.common.base.Joiner;
@@ -79,6 +85,7 @@ import annis.CommonHelper;
 import annis.WekaHelper;
 import annis.examplequeries.ExampleQuery;
 import annis.exceptions.AnnisException;
+import annis.metrics.QueryTimer;
 import annis.model.AnnisConstants;
 import annis.model.Annotation;
 import annis.ql.parser.AnnisParserAntlr;
@@ -88,6 +95,7 @@ import annis.resolver.SingleResolverRequest;
 import annis.service.objects.AnnisAttribute;
 import annis.service.objects.AnnisBinaryMetaData;
 import annis.service.objects.AnnisCorpus;
+import annis.service.objects.CompactMatchWriter;
 import annis.service.objects.CorpusConfig;
 import annis.service.objects.CorpusConfigMap;
 import annis.service.objects.DocumentBrowserConfig;
@@ -110,12 +118,14 @@ import annis.sqlgen.ListDocumentsSqlHelper;
 import annis.sqlgen.ListExampleQueriesHelper;
 import annis.sqlgen.MatrixSqlGenerator;
 import annis.sqlgen.MetaByteHelper;
+import annis.sqlgen.RandomMatchSample;
 import annis.sqlgen.RawTextSqlHelper;
-import annis.sqlgen.ResultSetTypedIterator;
 import annis.sqlgen.SaltAnnotateExtractor;
 import annis.sqlgen.SelectedFactsFromClauseGenerator;
 import annis.sqlgen.SqlGenerator;
 import annis.sqlgen.SqlGeneratorAndExtractor;
+import annis.sqlgen.extensions.LimitOffsetQueryData;
+import annis.sqlgen.extensions.TimeoutQueryData;
 
 // FIXME: test and refactor timeout and transaction management
 public class QueryDaoImpl extends AbstractDao implements QueryDao,
@@ -148,6 +158,23 @@ public class QueryDaoImpl extends AbstractDao implements QueryDao,
   // configuration
   private int timeout;
 
+  /**
+   * If true the statement timeout is sent together with the query instead of
+   * an extra round-trip before it.
+   */
+  private boolean batchStatementTimeout = false;
+
+  /**
+   * Number of rows fetched at once when streaming the matches, 0 means
+   * that the whole result is fetched at once.
+   */
+  private int findFetchSize = 1000;
+
+  /**
+   * Captures the plans of slow queries, optional.
+   */
+  private SlowQueryLog slowQueryLog;
+
   @Override
   @Transactional(readOnly = true)
   public SaltProject graph(QueryData data)
@@ -259,7 +286,27 @@ public class QueryDaoImpl extends AbstractDao implements QueryDao,
   @Override
   public HashMap<Long, Properties> getCorpusConfiguration()
   {
-    return corpusConfiguration;
+    if (corpusCatalog == null)
+    {
+      return corpusConfiguration;
+    }
+
+    ConfigCache c = getConfigCache();
+    HashMap<Long, Properties> result = c.byId;
+    if (result == null)
+    {
+      result = new HashMap<>();
+      for (AnnisCorpus corpus : corpusCatalog.getSnapshot().getCorpora())
+      {
+        Properties p = getCorpusConfigurationSave(corpus.getName());
+        if (p != null)
+        {
+          result.put(corpus.getId(), p);
+        }
+      }
+      c.byId = result;
+    }
+    return result;
   }
 
   @Override
@@ -373,6 +420,10 @@ public class QueryDaoImpl extends AbstractDao implements QueryDao,
         + "', 'application/text+plain', 'corpus.properties')");
     }
     log.info("write config file: " + dir + "/" + fileName);
+    if (corpusCatalog != null)
+    {
+      corpusCatalog.invalidate();
+    }
     try (FileOutputStream fStream = new FileOutputStream(new File(
       dir.getCanonicalPath() + "/" + fileName));
       OutputStreamWriter writer = new OutputStreamWriter(fStream,
@@ -531,6 +582,10 @@ public class QueryDaoImpl extends AbstractDao implements QueryDao,
 
   private HashMap<Long, Properties> corpusConfiguration;
 
+  private CorpusCatalog corpusCatalog;
+
+  private volatile ConfigCache configCache;
+
   private ByteHelper byteHelper;
 
   private MetaByteHelper metaByteHelper;
@@ -543,7 +598,35 @@ public class QueryDaoImpl extends AbstractDao implements QueryDao,
 
   public void init()
   {
-    parseCorpusConfiguration();
+    if (corpusCatalog == null)
+    {
+      parseCorpusConfiguration();
+    }
+    else
+    {
+      // the files might have been changed manually, this is checked by each
+      // reload of the catalog instead of each query
+      corpusCatalog.addChangeCheck(new CorpusCatalog.ChangeCheck()
+      {
+        @Override
+        public boolean hasChanged(long version)
+        {
+          ConfigCache c = configCache;
+          if (c == null || c.version != version)
+          {
+            return false;
+          }
+          for (CachedConfig cached : c.byName.values())
+          {
+            if (!cached.isCurrent())
+            {
+              return true;
+            }
+          }
+          return false;
+        }
+      });
+    }
   }
 
   @Override
@@ -570,20 +653,28 @@ public class QueryDaoImpl extends AbstractDao implements QueryDao,
 
   private void prepareTransaction(QueryData queryData)
   {
+    long start = System.currentTimeMillis();
     JdbcTemplate jdbcTemplate = getJdbcTemplate();
 
     // FIXME: muss corpusConfiguration an jeden Query angehangen werden?
     // oder nur an annotate-Queries?
-    queryData.setCorpusConfiguration(corpusConfiguration);
+    queryData.setCorpusConfiguration(getCorpusConfiguration());
 
     // filter by meta data
     queryData.setDocuments(metaDataFilter.getDocumentsForMetadata(queryData));
 
-    // execute session modifiers if any
+    QueryTimer.record(QueryTimer.Stage.sqlgen, System.currentTimeMillis()
+      - start);
+
+    // execute session modifiers if any, they might need a round-trip to the
+    // database
+    start = System.currentTimeMillis();
     for (SqlSessionModifier sqlSessionModifier : sqlSessionModifiers)
     {
       sqlSessionModifier.modifySqlSession(jdbcTemplate, queryData);
     }
+    QueryTimer.record(QueryTimer.Stage.session, System.currentTimeMillis()
+      - start);
   }
 
   // query functions
@@ -605,16 +696,312 @@ public class QueryDaoImpl extends AbstractDao implements QueryDao,
 
     prepareTransaction(queryData);
 
+    long start = System.currentTimeMillis();
+    String sql = generator.toSql(queryData);
+    QueryTimer.record(QueryTimer.Stage.sqlgen, System.currentTimeMillis()
+      - start);
+
     // execute query and return result
-    return getJdbcTemplate().query(generator.toSql(queryData), extractor);
+    boolean explain = generator instanceof ExplainSqlGenerator;
+    TimedExtractor<T> timedExtractor = new TimedExtractor<>(extractor);
+    T result;
+    try
+    {
+      result = query(sql, queryData, timedExtractor);
+    }
+    catch (DataAccessException ex)
+    {
+      if (!explain && isQueryCanceled(ex))
+      {
+        offerSlowQuery(generator, queryData, sql, timedExtractor.
+          getExecutionTime(), true);
+      }
+      throw ex;
+    }
+    if (!explain)
+    {
+      offerSlowQuery(generator, queryData, sql, timedExtractor.
+        getExecutionTime(), false);
+    }
+    return result;
+  }
+
+  private <T> T query(final String sql, QueryData queryData,
+    final ResultSetExtractor<T> extractor)
+  {
+    final String settings = batchedSessionSettings(queryData);
+    if (settings.isEmpty())
+    {
+      return getJdbcTemplate().query(sql, extractor);
+    }
+    return getJdbcTemplate().execute(new StatementCallback<T>()
+    {
+      @Override
+      public T doInStatement(Statement stmt) throws SQLException,
+        DataAccessException
+      {
+        try (ResultSet rs = executeWithSettings(stmt, settings, sql))
+        {
+          return extractor.extractData(rs);
+        }
+      }
+    });
+  }
+
+  /**
+   * Executes the settings and the query in a single round-trip.
+   *
+   * @param stmt
+   * @param settings Statements without a result, each terminated by ";".
+   * @param sql The query.
+   * @return The result of the query.
+   * @throws SQLException
+   */
+  private static ResultSet executeWithSettings(Statement stmt, String settings,
+    String sql) throws SQLException
+  {
+    if (settings.isEmpty())
+    {
+      return stmt.executeQuery(sql);
+    }
+    boolean isResultSet = stmt.execute(settings + "\n" + sql);
+    // skip the results of the settings
+    while (!isResultSet && stmt.getUpdateCount() != -1)
+    {
+      isResultSet = stmt.getMoreResults();
+    }
+    if (!isResultSet)
+    {
+      throw new SQLException("the query did not return a result");
+    }
+    return stmt.getResultSet();
+  }
+
+  /**
+   * The SQL which sets the statement timeout for a query.
+   *
+   * Inside a transaction the timeout is only set for the transaction, thus
+   * it does not affect other users of the pooled connection.
+   *
+   * @param queryData
+   * @return The SQL or an empty string if no timeout is needed.
+   */
+  String statementTimeoutSql(QueryData queryData)
+  {
+    List<TimeoutQueryData> ext = queryData == null
+      ? new LinkedList<TimeoutQueryData>()
+      : queryData.getExtensions(TimeoutQueryData.class);
+    int effectiveTimeout;
+    if (!ext.isEmpty())
+    {
+      effectiveTimeout = ext.get(0).getTimeout();
+    }
+    else if (timeout > 0)
+    {
+      effectiveTimeout = timeout;
+    }
+    else
+    {
+      return "";
+    }
+    String scope = TransactionSynchronizationManager.isActualTransactionActive()
+      ? "SET LOCAL" : "SET";
+    return scope + " statement_timeout TO " + effectiveTimeout;
+  }
+
+  /**
+   * The settings which are sent in the same round-trip as the query.
+   *
+   * @param queryData
+   * @return The SQL terminated by ";" or an empty string if no settings are
+   * needed.
+   */
+  String batchedSessionSettings(QueryData queryData)
+  {
+    String sql = batchStatementTimeout ? statementTimeoutSql(queryData) : "";
+    return sql.isEmpty() ? "" : sql + ";";
+  }
+
+  /**
+   * Executes a query and reports it to the slow query log. Only the time until
+   * the result is available is reported, not the time needed to read it.
+   *
+   * @param generator
+   * @param queryData
+   * @param stmt
+   * @param settings See {@link #executeWithSettings(java.sql.Statement,
+   * java.lang.String, java.lang.String) }.
+   * @param sql
+   * @return
+   * @throws SQLException
+   */
+  private ResultSet executeAndOffer(Object generator, QueryData queryData,
+    Statement stmt, String settings, String sql) throws SQLException
+  {
+    long start = System.currentTimeMillis();
+    ResultSet rs;
+    try
+    {
+      rs = executeWithSettings(stmt, settings, sql);
+    }
+    catch (SQLException ex)
+    {
+      if (isQueryCanceled(ex))
+      {
+        offerSlowQuery(generator, queryData, sql, System.currentTimeMillis()
+          - start, true);
+      }
+      throw ex;
+    }
+    long duration = System.currentTimeMillis() - start;
+    QueryTimer.record(QueryTimer.Stage.execute, duration);
+    offerSlowQuery(generator, queryData, sql, duration, false);
+    return rs;
+  }
+
+  private void offerSlowQuery(Object generator, QueryData queryData,
+    String sql, long duration, boolean timedOut)
+  {
+    if (slowQueryLog != null)
+    {
+      slowQueryLog.offer(generator, queryData, sql, duration, timedOut);
+    }
+  }
+
+  /**
+   * True if the query was canceled, e.g. by the statement timeout.
+   *
+   * @param ex
+   * @return
+   */
+  private static boolean isQueryCanceled(Throwable ex)
+  {
+    for (Throwable t = ex; t != null; t = t.getCause())
+    {
+      if (t instanceof SQLException && "57014".equals(((SQLException) t).
+        getSQLState()))
+      {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Records the time until the result is available as execution and the time
+   * of the wrapped extractor as extraction stage of the current
+   * {@link QueryTimer}.
+   */
+  private static class TimedExtractor<T> implements ResultSetExtractor<T>
+  {
+
+    private final ResultSetExtractor<T> extractor;
+
+    private final long created = System.currentTimeMillis();
+
+    private volatile long executionTime = -1;
+
+    public TimedExtractor(ResultSetExtractor<T> extractor)
+    {
+      this.extractor = extractor;
+    }
+
+    @Override
+    public T extractData(ResultSet rs) throws SQLException,
+      DataAccessException
+    {
+      long start = System.currentTimeMillis();
+      executionTime = start - created;
+      QueryTimer.record(QueryTimer.Stage.execute, executionTime);
+      try
+      {
+        return extractor.extractData(rs);
+      }
+      finally
+      {
+        QueryTimer.record(QueryTimer.Stage.extract, System.currentTimeMillis()
+          - start);
+      }
+    }
+
+    /**
+     * The milliseconds until the result was available or, if there is no
+     * result, until now.
+     *
+     * @return
+     */
+    public long getExecutionTime()
+    {
+      long t = executionTime;
+      return t >= 0 ? t : System.currentTimeMillis() - created;
+    }
+  }
+
+  /**
+   * The corpus configurations which were read for a version of the corpus
+   * catalog. If a file was changed, the catalog creates a new version and all
+   * configurations are read again.
+   */
+  private static class ConfigCache
+  {
+
+    private final long version;
+
+    private final ConcurrentMap<String, CachedConfig> byName
+      = new ConcurrentHashMap<>();
+
+    private volatile HashMap<Long, Properties> byId;
+
+    public ConfigCache(long version)
+    {
+      this.version = version;
+    }
+  }
+
+  /**
+   * The configuration read from a corpus.properties file. It is outdated when
+   * the file was changed, e.g. manually by an administrator.
+   */
+  private static class CachedConfig
+  {
+
+    /**
+     * The configuration or null if the corpus has none.
+     */
+    private final Properties properties;
+
+    private final File file;
+
+    private final long lastModified;
+
+    public CachedConfig(Properties properties, File file, long lastModified)
+    {
+      this.properties = properties;
+      this.file = file;
+      this.lastModified = lastModified;
+    }
+
+    public boolean isCurrent()
+    {
+      return file == null || file.lastModified() == lastModified;
+    }
   }
 
   @Override
   public void modifySqlSession(JdbcTemplate jdbcTemplate, QueryData queryData)
   {
-    if (timeout > 0)
+    if (batchStatementTimeout)
     {
-      jdbcTemplate.update("SET statement_timeout TO " + timeout);
+      // the timeout is sent together with the query
+      return;
+    }
+    // uses SET LOCAL inside a transaction, thus a special timeout (e.g. of
+    // the background runtime measurement) does not stay on the pooled
+    // connection
+    String sql = statementTimeoutSql(queryData);
+    if (!sql.isEmpty())
+    {
+      jdbcTemplate.update(sql);
     }
   }
 
@@ -637,6 +1024,24 @@ public class QueryDaoImpl extends AbstractDao implements QueryDao,
   @Override
   public List<Match> find(QueryData queryData)
   {
+    LimitOffsetQueryData limitOffset = getLimitOffset(queryData);
+    if(limitOffset != null && limitOffset.isSampled())
+    {
+      final List<Match> result = new ArrayList<>();
+      final FindSqlGenerator.SaltIDBuilder idBuilder 
+        = new FindSqlGenerator.SaltIDBuilder();
+      streamMatches(queryData, new FindSqlGenerator.MatchHandler()
+      {
+        @Override
+        public void match(List<String> corpusPath, List<String> nodeNames,
+          List<String> annos)
+        {
+          result.add(findSqlGenerator.createMatch(corpusPath, nodeNames, annos,
+            idBuilder));
+        }
+      });
+      return result;
+    }
     return executeQueryFunction(queryData, findSqlGenerator, findSqlGenerator);
   }
 
@@ -644,6 +1049,128 @@ public class QueryDaoImpl extends AbstractDao implements QueryDao,
   @Override
   public boolean find(final QueryData queryData, final OutputStream out)
   {
+    return find(queryData, out, false);
+  }
+
+  @Transactional(readOnly = true)
+  @Override
+  public boolean find(final QueryData queryData, final OutputStream out,
+    final boolean compact)
+  {
+    if(compact)
+    {
+      try(final CompactMatchWriter w = new CompactMatchWriter(out))
+      {
+        boolean finished = streamMatches(queryData, 
+          new FindSqlGenerator.MatchHandler()
+        {
+          @Override
+          public void match(List<String> corpusPath,
+            List<String> nodeNames, List<String> annos) throws IOException
+          {
+            w.writeMatch(corpusPath, nodeNames, annos);
+          }
+        });
+        // only a complete result gets the end marker
+        if(finished)
+        {
+          w.finish();
+        }
+        return finished;
+      }
+      catch (IOException ex)
+      {
+        log.warn("Could not write the matches to the output stream", ex);
+        return false;
+      }
+    }
+    else
+    {
+      try
+      {
+        final Writer w = new BufferedWriter(
+          new OutputStreamWriter(out, "UTF-8"));
+        final FindSqlGenerator.SaltIDBuilder idBuilder 
+          = new FindSqlGenerator.SaltIDBuilder();
+        boolean finished = streamMatches(queryData, 
+          new FindSqlGenerator.MatchHandler()
+        {
+          private int i = 1;
+
+          @Override
+          public void match(List<String> corpusPath,
+            List<String> nodeNames, List<String> annos) throws IOException
+          {
+            // write single match to output stream
+            for(int n=0; n < nodeNames.size(); n++)
+            {
+              if(n > 0)
+              {
+                w.write(' ');
+              }
+              w.write(Match.singleMatchToString(
+                idBuilder.build(corpusPath, nodeNames.get(n)), 
+                annos.get(n)));
+            }
+            w.write('\n');
+
+            // flush the first matches early, so clients can start 
+            // processing them, and then only every 1000th item
+            if ((i <= 100 && i % 10 == 0) || i % 1000 == 0)
+            {
+              w.flush();
+            }
+            i++;
+          }
+        });
+        w.flush();
+        return finished;
+      }
+      catch (UnsupportedEncodingException ex)
+      {
+        log.error(
+          "Your system is not able to handle UTF-8 but ANNIS really needs this charset",
+          ex);
+      }
+      catch (IOException ex)
+      {
+        log.warn("Could not write the matches to the output stream", ex);
+      }
+      return false;
+    }
+  }
+  
+  private LimitOffsetQueryData getLimitOffset(QueryData queryData)
+  {
+    List<LimitOffsetQueryData> ext = queryData.getExtensions(
+      LimitOffsetQueryData.class);
+    return ext.isEmpty() ? null : ext.get(0);
+  }
+  
+  /**
+   * Executes the find query and passes each match to the handler. If the
+   * result is sampled (e.g. because of the random order), the selected page
+   * is passed to the handler after the complete result was read.
+   * 
+   * @param queryData
+   * @param handler
+   * @return True if all matches have been passed to the handler.
+   */
+  private boolean streamMatches(final QueryData queryData, 
+    final FindSqlGenerator.MatchHandler handler)
+  {
+    LimitOffsetQueryData limitOffset = getLimitOffset(queryData);
+    final RandomMatchSample sample;
+    if(limitOffset != null && limitOffset.isSampled())
+    {
+      sample = new RandomMatchSample(limitOffset.getSeed(), 
+        limitOffset.getOffset(), limitOffset.getLimit());
+    }
+    else
+    {
+      sample = null;
+    }
+    
     prepareTransaction(queryData);
     Boolean finished = getJdbcTemplate().execute(
       new ConnectionCallback<Boolean>()
@@ -655,39 +1182,45 @@ public class QueryDaoImpl extends AbstractDao implements QueryDao,
           try(Statement stmt = con.createStatement(ResultSet.TYPE_FORWARD_ONLY,
             ResultSet.CONCUR_READ_ONLY);)
           {
+            long start = System.currentTimeMillis();
             String sql = findSqlGenerator.toSql(queryData);
+            QueryTimer.record(QueryTimer.Stage.sqlgen,
+              System.currentTimeMillis() - start);
+            
+            // Use a cursor instead of loading the complete result into memory.
+            // PostgreSQL will only use the fetch size if auto-commit is
+            // disabled, which is already the case inside the transaction.
+            if(findFetchSize > 0 && !con.getAutoCommit())
+            {
+              stmt.setFetchSize(findFetchSize);
+            }
+            // the cursor can only be used for a single statement, thus the
+            // timeout is not batched with the query
+            String settings = batchedSessionSettings(queryData);
+            if(!settings.isEmpty())
+            {
+              stmt.execute(settings);
+            }
 
-            PrintWriter w;
-            try (ResultSet rs = stmt.executeQuery(sql))
+            try (ResultSet rs = executeAndOffer(findSqlGenerator, queryData,
+              stmt, "", sql))
             {
-              w = new PrintWriter(new OutputStreamWriter(out, "UTF-8"));
-              ResultSetTypedIterator<Match> itMatches = new ResultSetTypedIterator<>(
-                rs, findSqlGenerator);
-              int i = 1;
-              while (itMatches.hasNext())
-              {
-                // write single match to output stream
-                Match m = itMatches.next();
-                w.print(m.toString());
-                w.print("\n");
-                
-                // flush after every 10th item
-                if (i % 10 == 0)
-                {
-                  w.flush();
-                }
-                
-                i++;
-              } // end for each match
+              start = System.currentTimeMillis();
+              findSqlGenerator.streamMatches(rs, 
+                sample == null ? handler : sample);
             }
-            w.flush();
+            if(sample != null)
+            {
+              sample.replay(handler);
+            }
+            QueryTimer.record(QueryTimer.Stage.extract,
+              System.currentTimeMillis() - start);
             return true;
           }
-          catch (UnsupportedEncodingException ex)
+          catch (IOException ex)
           {
-            log.error(
-              "Your system is not able to handle UTF-8 but ANNIS really needs this charset",
-              ex);
+            // most likely the client closed the connection, stop fetching
+            log.warn("Could not write the matches to the output stream", ex);
           }
 
           return false;
@@ -724,11 +1257,17 @@ public class QueryDaoImpl extends AbstractDao implements QueryDao,
       @Override
       public Boolean doInConnection(Connection con) throws SQLException, DataAccessException
       {
+        long start = System.currentTimeMillis();
+        String sql = matrixSqlGenerator.toSql(queryData);
+        QueryTimer.record(QueryTimer.Stage.sqlgen, System.currentTimeMillis()
+          - start);
         
         try(Statement stmt = con.createStatement(ResultSet.TYPE_SCROLL_SENSITIVE,
           ResultSet.CONCUR_READ_ONLY);
-          ResultSet rs = stmt.executeQuery(matrixSqlGenerator.toSql(queryData));)
+          ResultSet rs = executeAndOffer(matrixSqlGenerator, queryData, stmt,
+            batchedSessionSettings(queryData), sql);)
         {
+          long extractStart = System.currentTimeMillis();
           
           AnnotatedMatchIterator itMatches
             = new AnnotatedMatchIterator(rs, matrixSqlGenerator.
@@ -758,6 +1297,8 @@ public class QueryDaoImpl extends AbstractDao implements QueryDao,
             WekaHelper.exportArffData(itMatches, columnsByNodePos, w);
           }
           w.flush();
+          QueryTimer.record(QueryTimer.Stage.extract,
+            System.currentTimeMillis() - extractStart);
         }
         catch (UnsupportedEncodingException ex)
         {
@@ -800,6 +1341,10 @@ public class QueryDaoImpl extends AbstractDao implements QueryDao,
   @Transactional(readOnly = true)
   public List<AnnisCorpus> listCorpora()
   {
+    if (useCatalog())
+    {
+      return new ArrayList<>(corpusCatalog.getSnapshot().getCorpora());
+    }
     return (List<AnnisCorpus>) getJdbcTemplate().query(
       listCorpusSqlHelper.createSqlQuery(), listCorpusSqlHelper);
   }
@@ -808,6 +1353,10 @@ public class QueryDaoImpl extends AbstractDao implements QueryDao,
   @Transactional(readOnly = true)
   public List<AnnisCorpus> listCorpora(List<Long> ids)
   {
+    if (useCatalog())
+    {
+      return corpusCatalog.getSnapshot().getCorpora(ids);
+    }
     return (List<AnnisCorpus>) getJdbcTemplate().query(
       listCorpusSqlHelper.createSqlQueryWithList(ids.size()),
       listCorpusSqlHelper, ids.toArray());
@@ -847,9 +1396,14 @@ public class QueryDaoImpl extends AbstractDao implements QueryDao,
   {
     
     long toplevelCorpusID = mapCorpusNameToId(toplevelCorpusName);
+    long start = System.currentTimeMillis();
     SaltProject p
       = graphSqlGenerator.queryAnnotationGraph(getJdbcTemplate(),
         toplevelCorpusID, documentName, nodeAnnotationFilter);
+    // the SQL of a document graph is trivial, thus execution and extraction
+    // are not measured separately
+    QueryTimer.record(QueryTimer.Stage.execute, System.currentTimeMillis()
+      - start);
     return p;
   }
 
@@ -898,6 +1452,10 @@ public class QueryDaoImpl extends AbstractDao implements QueryDao,
     {
       return new LinkedList<>();
     }
+    if (useCatalog())
+    {
+      return corpusCatalog.getSnapshot().mapNamesToIds(corpusNames);
+    }
     final String sql = listCorpusByNameDaoHelper.createSql(corpusNames);
     final List<Long> result = getJdbcTemplate().query(sql,
       listCorpusByNameDaoHelper);
@@ -925,6 +1483,67 @@ public class QueryDaoImpl extends AbstractDao implements QueryDao,
 
   @Override
   public Properties getCorpusConfiguration(String corpusName) throws FileNotFoundException
+  {
+    if (!useCatalog())
+    {
+      return loadCorpusConfiguration(corpusName);
+    }
+
+    ConfigCache c = getConfigCache();
+    CachedConfig cached = c.byName.get(corpusName);
+    if (cached == null)
+    {
+      cached = loadCachedConfig(corpusName);
+      c.byName.put(corpusName, cached);
+      // the configurations of all corpora must be collected again
+      c.byId = null;
+    }
+    if (cached.properties == null)
+    {
+      throw new FileNotFoundException("no corpus.properties found for " + corpusName);
+    }
+    // the callers may change the configuration
+    Properties copy = new Properties();
+    copy.putAll(cached.properties);
+    return copy;
+  }
+
+  /**
+   * Reads the corpus.properties of a corpus and remembers the modification
+   * time of the file.
+   */
+  private CachedConfig loadCachedConfig(String corpusName)
+  {
+    List<AnnisBinaryMetaData> binaryMetas = getBinaryMeta(corpusName);
+    if (binaryMetas != null)
+    {
+      for (AnnisBinaryMetaData metaData : binaryMetas)
+      {
+        if ("application/text+plain".equals(metaData.getMimeType())
+          && "corpus.properties".equals(metaData.getFileName()))
+        {
+          File file = new File(getRealDataDir(), metaData.getLocalFileName());
+          // taken before reading, thus a change while reading is noticed
+          long lastModified = file.lastModified();
+          try (InputStream in = new FileInputStream(file))
+          {
+            Properties props = new Properties();
+            props.load(in);
+            return new CachedConfig(props, file, lastModified);
+          }
+          catch (IOException ex)
+          {
+            log.error("could not read corpus config of {}", corpusName, ex);
+            // checked again when the file is changed or created
+            return new CachedConfig(null, file, lastModified);
+          }
+        }
+      }
+    }
+    return new CachedConfig(null, null, 0);
+  }
+
+  private Properties loadCorpusConfiguration(String corpusName) throws FileNotFoundException
   {
 
     Properties props = new Properties();
@@ -1309,6 +1928,73 @@ public class QueryDaoImpl extends AbstractDao implements QueryDao,
     this.timeout = timeout;
   }
 
+  /**
+   * Checks if the corpus catalog can be used instead of the database. This is
+   * not the case inside a transaction which might change the corpora, e.g. an
+   * import.
+   */
+  private boolean useCatalog()
+  {
+    return corpusCatalog != null
+      && (!TransactionSynchronizationManager.isActualTransactionActive()
+      || TransactionSynchronizationManager.isCurrentTransactionReadOnly());
+  }
+
+  /**
+   * Returns the cached corpus configurations of the current catalog version.
+   */
+  private ConfigCache getConfigCache()
+  {
+    long version = corpusCatalog.getSnapshot().getVersion();
+    ConfigCache c = configCache;
+    if (c == null || c.version != version)
+    {
+      c = new ConfigCache(version);
+      configCache = c;
+    }
+    return c;
+  }
+
+  public CorpusCatalog getCorpusCatalog()
+  {
+    return corpusCatalog;
+  }
+
+  public void setCorpusCatalog(CorpusCatalog corpusCatalog)
+  {
+    this.corpusCatalog = corpusCatalog;
+  }
+
+  public boolean isBatchStatementTimeout()
+  {
+    return batchStatementTimeout;
+  }
+
+  public void setBatchStatementTimeout(boolean batchStatementTimeout)
+  {
+    this.batchStatementTimeout = batchStatementTimeout;
+  }
+
+  public int getFindFetchSize()
+  {
+    return findFetchSize;
+  }
+
+  public void setFindFetchSize(int findFetchSize)
+  {
+    this.findFetchSize = findFetchSize;
+  }
+
+  public SlowQueryLog getSlowQueryLog()
+  {
+    return slowQueryLog;
+  }
+
+  public void setSlowQueryLog(SlowQueryLog slowQueryLog)
+  {
+    this.slowQueryLog = slowQueryLog;
+  }
+
   public MatrixSqlGenerator getMatrixSqlGenerator()
   {
     return matrixSqlGenerator;
@@ -1401,6 +2087,10 @@ public class QueryDaoImpl extends AbstractDao implements QueryDao,
   @Override
   public List<Long> mapCorpusAliasToIds(String alias)
   {
+    if (useCatalog())
+    {
+      return new ArrayList<>(corpusCatalog.getSnapshot().mapAliasToIds(alias));
+    }
     try
     {
       return getJdbcTemplate().queryForList(
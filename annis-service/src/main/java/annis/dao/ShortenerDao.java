@@ -15,21 +15,36 @@
  */
 package annis.dao;
 
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import java.util.Date;
 import java.util.List;
 import java.util.UUID;
-
 import org.springframework.transaction.annotation.Transactional;
 
-import com.google.common.base.Preconditions;
-
 /**
  * A DAO for retrieving and adding URL shortener information from the database.
+ * 
+ * Since the URL of an ID never changes, the URLs of the recently resolved IDs
+ * are kept in a bounded cache. Existing URLs are found by the index of their
+ * MD5 digest.
+ * 
  * @author Thomas Krause <krauseto@hu-berlin.de>
  */
 public class ShortenerDao extends AbstractDao
 {
 
+  private int cacheSize = 1000;
+
+  private Cache<UUID, String> urlCache;
+
+  public ShortenerDao()
+  {
+    initCache();
+  }
+
   /**
    * 
    * @param str
@@ -45,8 +60,9 @@ public class ShortenerDao extends AbstractDao
     {
       // no, this string is new
       
-      // find a new random identifier for that string
-      
+      // find a new random identifier for that string, nothing is inserted if
+      // the identifier is already taken (without ON CONFLICT, which needs
+      // PostgreSQL 9.5, and without aborting the transaction)
       int numberOfTries = 0;
       while(result == null)
       {
@@ -55,18 +71,17 @@ public class ShortenerDao extends AbstractDao
           + "Will abort since it seems that no new shortener IDs are available.");
         
         UUID randomUUID = UUID.randomUUID();
-        long existing = 
-          getJdbcTemplate().queryForObject("SELECT count(*) FROM url_shortener WHERE id = ?", Long.class, randomUUID);
-        if(existing == 0l) 
+        int inserted = getJdbcTemplate().update(
+          "INSERT INTO url_shortener(id, \"owner\", created, url) "
+          + "SELECT ?, ?, ?, ? "
+          + "WHERE NOT EXISTS (SELECT 1 FROM url_shortener WHERE id = ?)",
+          randomUUID, userName, new Date(), str, randomUUID);
+        if(inserted > 0) 
         {
           result = randomUUID;
         }
         numberOfTries++;
       }
-      
-      getJdbcTemplate().update("INSERT INTO url_shortener(id, \"owner\", created, url) VALUES(?, ?, ?, ?)",
-        result, userName, new Date(), str);
-
     }
     return result;
   }
@@ -74,16 +89,61 @@ public class ShortenerDao extends AbstractDao
   @Transactional(readOnly = true)
   public String unshorten(UUID id)
   {
+    String url = urlCache.getIfPresent(id);
+    if(url != null)
+    {
+      return url;
+    }
     List<String> result = getJdbcTemplate().queryForList(
       "SELECT url FROM url_shortener WHERE id=? LIMIT 1", String.class, id);
-    return result.isEmpty() ? null : result.get(0);
+    if(result.isEmpty())
+    {
+      // unknown IDs are not cached, since they could be created later
+      return null;
+    }
+    urlCache.put(id, result.get(0));
+    return result.get(0);
   }
   
   private UUID getExistingShortID(String str)
   {
+    // the digest is compared first, since only it is indexed
     List<UUID> result = getJdbcTemplate().queryForList(
-      "SELECT id FROM url_shortener WHERE url=? LIMIT 1", UUID.class, str);
+      "SELECT id FROM url_shortener WHERE md5(url)=md5(?) AND url=? LIMIT 1",
+      UUID.class, str, str);
     return result.isEmpty() ? null : result.get(0);
   }
+
+  private void initCache()
+  {
+    urlCache = CacheBuilder.newBuilder().maximumSize(cacheSize).recordStats().
+      build();
+  }
+
+  /**
+   * The hits and misses of the URLs resolved from the cache.
+   * 
+   * @return 
+   */
+  public CacheStats getCacheStats()
+  {
+    return urlCache.stats();
+  }
+
+  /**
+   * The maximal number of URLs which are cached.
+   * 
+   * @return 
+   */
+  public int getCacheSize()
+  {
+    return cacheSize;
+  }
+
+  public void setCacheSize(int cacheSize)
+  {
+    this.cacheSize = cacheSize;
+    initCache();
+  }
   
 }
@@ -0,0 +1,439 @@
+/*
+ * Copyright 2016 SFB 632.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package annis.dao;
+
+import annis.ql.parser.QueryData;
+import annis.service.objects.SlowQuery;
+import com.google.common.base.Joiner;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.File;
+import java.io.FileFilter;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.xml.bind.DataBindingException;
+import javax.xml.bind.JAXB;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+
+/**
+ * Captures the query plan of queries which took longer than a threshold.
+ *
+ * Only a sample of the slow queries is captured and two captures are at least
+ * {@link #getMinInterval() } milliseconds apart, since the plan is created with
+ * EXPLAIN ANALYZE and thus the query is executed again. This happens in a
+ * background thread on its own connection and is aborted after
+ * {@link #getExplainTimeout() } milliseconds, in which case only the estimated
+ * plan is stored. Queries which were canceled by the statement timeout are
+ * captured as well, but only with their estimated plan. Session settings made
+ * by the SQL session modifiers are not applied to this connection.
+ *
+ * The captured queries are stored as XML files in a directory, which holds at
+ * most {@link #getCapacity() } files. When it is full, the oldest file is
+ * overwritten.
+ *
+ * @author Thomas Krause <krauseto@hu-berlin.de>
+ */
+public class SlowQueryLog extends AbstractDao
+{
+
+  private final static Logger log = LoggerFactory.getLogger(
+    SlowQueryLog.class);
+
+  private static final Pattern FILE_NAME = Pattern.compile(
+    "slow-query-([0-9]+)\\.xml");
+
+  /**
+   * Executes the captures, if the queue is full new slow queries are ignored.
+   */
+  private final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0,
+    TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(4),
+    new ThreadFactoryBuilder().setNameFormat("slow-query-log-%d").setDaemon(
+      true).build(), new ThreadPoolExecutor.DiscardPolicy());
+
+  private final AtomicLong lastCapture = new AtomicLong();
+
+  private long threshold = 10000;
+
+  private double sampleRate = 1.0;
+
+  private long minInterval = 60000;
+
+  private long explainTimeout = 120000;
+
+  private int capacity = 100;
+
+  private String directory;
+
+  private File realDirectory;
+
+  private int nextSlot;
+
+  /**
+   * Called when Spring configuration finished. Continues after the newest
+   * existing file.
+   */
+  public void init()
+  {
+    realDirectory = directory == null || directory.isEmpty()
+      ? new File(System.getProperty("user.home"), ".annis/slow-queries")
+      : new File(directory);
+    if (!realDirectory.isDirectory() && !realDirectory.mkdirs())
+    {
+      log.warn("could not create directory {} for the slow queries",
+        realDirectory);
+    }
+
+    long newest = Long.MIN_VALUE;
+    for (File f : listFiles())
+    {
+      Matcher m = FILE_NAME.matcher(f.getName());
+      if (m.matches() && f.lastModified() > newest)
+      {
+        newest = f.lastModified();
+        nextSlot = (Integer.parseInt(m.group(1)) + 1) % capacity;
+      }
+    }
+  }
+
+  /**
+   * Called when the Spring context is closed.
+   */
+  public void destroy()
+  {
+    executor.shutdownNow();
+  }
+
+  /**
+   * Reports an executed query, which is captured in the background if it is
+   * slow and selected.
+   *
+   * @param generator The generator of the SQL.
+   * @param queryData The parsed query.
+   * @param sql The executed SQL.
+   * @param duration The time in milliseconds until the result was available
+   * or the query was canceled.
+   * @param timedOut True if the query was canceled by the statement timeout.
+   * @return True if the query will be captured.
+   */
+  public boolean offer(Object generator, QueryData queryData,
+    final String sql, long duration, boolean timedOut)
+  {
+    if (!shouldCapture(duration, System.currentTimeMillis()))
+    {
+      return false;
+    }
+
+    final SlowQuery q = new SlowQuery();
+    q.setTime(new Date());
+    q.setGenerator(generator.getClass().getSimpleName());
+    q.setAql(queryData.toAQL());
+    q.setSql(sql);
+    q.setDuration(duration);
+    q.setTimedOut(timedOut);
+    final List<Long> corpusIDs = new ArrayList<>();
+    if (queryData.getCorpusList() != null)
+    {
+      corpusIDs.addAll(queryData.getCorpusList());
+    }
+
+    executor.execute(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        try
+        {
+          q.setCorpora(corpusNames(corpusIDs));
+          explain(q);
+          store(q);
+          log.info("captured the plan of a slow query ({} ms): {}", q.
+            getDuration(), q.getAql());
+        }
+        catch (DataAccessException | DataBindingException ex)
+        {
+          log.warn("could not capture a slow query", ex);
+        }
+      }
+    });
+    return true;
+  }
+
+  /**
+   * Decides if a query is captured, which includes the sampling and rate
+   * limit.
+   *
+   * @param duration
+   * @param now
+   * @return
+   */
+  boolean shouldCapture(long duration, long now)
+  {
+    if (threshold <= 0 || duration < threshold)
+    {
+      return false;
+    }
+    if (ThreadLocalRandom.current().nextDouble() >= sampleRate)
+    {
+      return false;
+    }
+    long last = lastCapture.get();
+    if (last > 0 && now - last < minInterval)
+    {
+      return false;
+    }
+    return lastCapture.compareAndSet(last, now);
+  }
+
+  /**
+   * Lists the captured queries.
+   *
+   * @return The queries, the newest first.
+   */
+  public List<SlowQuery> list()
+  {
+    List<SlowQuery> result = new ArrayList<>();
+    for (File f : listFiles())
+    {
+      try
+      {
+        result.add(JAXB.unmarshal(f, SlowQuery.class));
+      }
+      catch (DataBindingException ex)
+      {
+        log.warn("could not read " + f.getAbsolutePath(), ex);
+      }
+    }
+    Collections.sort(result, new Comparator<SlowQuery>()
+    {
+      @Override
+      public int compare(SlowQuery o1, SlowQuery o2)
+      {
+        return o2.getTime().compareTo(o1.getTime());
+      }
+    });
+    return result;
+  }
+
+  /**
+   * Writes a captured query into the next slot of the directory.
+   *
+   * @param q
+   */
+  synchronized void store(SlowQuery q)
+  {
+    File f = new File(realDirectory, "slow-query-" + nextSlot + ".xml");
+    JAXB.marshal(q, f);
+    nextSlot = (nextSlot + 1) % capacity;
+  }
+
+  private File[] listFiles()
+  {
+    File[] files = realDirectory.listFiles(new FileFilter()
+    {
+      @Override
+      public boolean accept(File f)
+      {
+        Matcher m = FILE_NAME.matcher(f.getName());
+        // files of a former larger capacity are ignored
+        return f.isFile() && m.matches() && Integer.parseInt(m.group(1))
+          < capacity;
+      }
+    });
+    return files == null ? new File[0] : files;
+  }
+
+  private List<String> corpusNames(List<Long> corpusIDs)
+  {
+    if (corpusIDs.isEmpty())
+    {
+      return new ArrayList<>();
+    }
+    return getJdbcTemplate().queryForList(
+      "SELECT name FROM corpus WHERE id IN ("
+      + Joiner.on(", ").join(Collections.nCopies(corpusIDs.size(), "?"))
+      + ") ORDER BY name", String.class, corpusIDs.toArray());
+  }
+
+  private void explain(final SlowQuery q)
+  {
+    getJdbcTemplate().execute(new ConnectionCallback<Void>()
+    {
+      @Override
+      public Void doInConnection(Connection con) throws SQLException,
+        DataAccessException
+      {
+        boolean autoCommit = con.getAutoCommit();
+        con.setAutoCommit(false);
+        long start = System.currentTimeMillis();
+        try (Statement stmt = con.createStatement())
+        {
+          stmt.execute("SET LOCAL statement_timeout TO " + explainTimeout);
+          if (q.isTimedOut())
+          {
+            // analyzing the query would most likely run into a timeout again
+            q.setPlan(readPlan(stmt, "EXPLAIN " + q.getSql()));
+            q.setAnalyzed(false);
+            return null;
+          }
+          try
+          {
+            q.setPlan(readPlan(stmt, "EXPLAIN (ANALYZE, BUFFERS) " + q.
+              getSql()));
+            q.setAnalyzed(true);
+          }
+          catch (SQLException ex)
+          {
+            log.debug("EXPLAIN ANALYZE of a slow query failed", ex);
+            // the estimated plan is still useful
+            con.rollback();
+            q.setPlan(readPlan(stmt, "EXPLAIN " + q.getSql()));
+            q.setAnalyzed(false);
+          }
+        }
+        finally
+        {
+          q.setExplainDuration(System.currentTimeMillis() - start);
+          // EXPLAIN ANALYZE executed the query, nothing should be kept
+          con.rollback();
+          con.setAutoCommit(autoCommit);
+        }
+        return null;
+      }
+    });
+  }
+
+  private static String readPlan(Statement stmt, String sql) throws
+    SQLException
+  {
+    StringBuilder sb = new StringBuilder();
+    try (ResultSet rs = stmt.executeQuery(sql))
+    {
+      while (rs.next())
+      {
+        sb.append(rs.getString(1)).append("\n");
+      }
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Queries which take at least this many milliseconds are slow, 0 disables
+   * the capture.
+   *
+   * @return
+   */
+  public long getThreshold()
+  {
+    return threshold;
+  }
+
+  public void setThreshold(long threshold)
+  {
+    this.threshold = threshold;
+  }
+
+  /**
+   * The fraction of slow queries which is captured.
+   *
+   * @return
+   */
+  public double getSampleRate()
+  {
+    return sampleRate;
+  }
+
+  public void setSampleRate(double sampleRate)
+  {
+    this.sampleRate = sampleRate;
+  }
+
+  /**
+   * The minimal time between two captures in milliseconds.
+   *
+   * @return
+   */
+  public long getMinInterval()
+  {
+    return minInterval;
+  }
+
+  public void setMinInterval(long minInterval)
+  {
+    this.minInterval = minInterval;
+  }
+
+  /**
+   * The maximal time in milliseconds for EXPLAIN ANALYZE.
+   *
+   * @return
+   */
+  public long getExplainTimeout()
+  {
+    return explainTimeout;
+  }
+
+  public void setExplainTimeout(long explainTimeout)
+  {
+    this.explainTimeout = explainTimeout;
+  }
+
+  /**
+   * The maximal number of stored queries.
+   *
+   * @return
+   */
+  public int getCapacity()
+  {
+    return capacity;
+  }
+
+  public void setCapacity(int capacity)
+  {
+    this.capacity = capacity;
+  }
+
+  /**
+   * The directory of the stored queries, if empty
+   * "&lt;user-home&gt;/.annis/slow-queries" is used.
+   *
+   * @return
+   */
+  public String getDirectory()
+  {
+    return directory;
+  }
+
+  public void setDirectory(String directory)
+  {
+    this.directory = directory;
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2016 SFB 632.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package annis.dao.autogenqueries;
+
+import annis.service.objects.AnnisAttribute;
+import java.util.Arrays;
+import java.util.List;
+import org.corpus_tools.salt.common.SaltProject;
+
+/**
+ * Generates a query for the most frequent value of a node annotation.
+ *
+ * The annotation is selected from the annotation catalog of the corpus, thus
+ * no search is needed to find a candidate.
+ *
+ * <p>The Structure of the query is like this:</p>
+ *
+ * <p>Query:
+ * <code>pos="NN"</code></p>
+ * <p>Description:
+ * <code>search for the annotation "pos" with the value "NN"</code></p>
+ *
+ * @author Thomas Krause <krauseto@hu-berlin.de>
+ */
+public class AutoAnnotationQuery extends AbstractAutoQuery implements
+  QueriesGenerator.CatalogQueryBuilder
+{
+
+  /**
+   * Annotations which are preferred, because most users know them.
+   */
+  private static final List<String> PREFERRED = Arrays.asList("pos", "lemma");
+
+  private String name;
+
+  private String value;
+
+  @Override
+  public void setAnnotations(List<AnnisAttribute> annotations)
+  {
+    name = null;
+    value = null;
+    int bestRank = Integer.MAX_VALUE;
+    for (AnnisAttribute a : annotations)
+    {
+      if (a.getType() != AnnisAttribute.Type.node || a.getName() == null
+        || a.getValueSet().isEmpty())
+      {
+        continue;
+      }
+      String localName = a.getName().substring(a.getName().indexOf(':') + 1);
+      int rank = PREFERRED.indexOf(localName);
+      if (rank < 0)
+      {
+        rank = PREFERRED.size();
+      }
+      if (rank < bestRank || (rank == bestRank && a.getName().compareTo(name)
+        < 0))
+      {
+        bestRank = rank;
+        name = a.getName();
+        value = a.getValueSet().iterator().next();
+      }
+    }
+  }
+
+  @Override
+  public String getAQL()
+  {
+    if (name == null)
+    {
+      return null;
+    }
+    return name + "=\"" + value.replace("\\", "\\\\").replace("\"", "\\\"")
+      + "\"";
+  }
+
+  @Override
+  public void analyzingQuery(SaltProject saltProject)
+  {
+    // the query is already known
+  }
+
+  @Override
+  public int getNodes()
+  {
+    return 1;
+  }
+
+  @Override
+  public String getFinalAQLQuery()
+  {
+    return getAQL();
+  }
+
+  @Override
+  public String getDescription()
+  {
+    return "search for the annotation \"" + name + "\" with the value \""
+      + value + "\"";
+  }
+}
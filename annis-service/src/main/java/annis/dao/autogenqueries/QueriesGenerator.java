@@ -19,16 +19,29 @@ import annis.GraphHelper;
 import annis.dao.QueryDao;
 import annis.examplequeries.ExampleQuery;
 import annis.ql.parser.QueryData;
+import annis.service.objects.AnnisAttribute;
 import annis.service.objects.AnnisCorpus;
 import annis.service.objects.Match;
 import annis.service.objects.MatchGroup;
 import annis.sqlgen.extensions.AnnotateQueryData;
 import annis.sqlgen.extensions.LimitOffsetQueryData;
+import annis.sqlgen.extensions.TimeoutQueryData;
+import annis.utils.ReplicaRoutingDataSource;
+import com.google.common.base.Stopwatch;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import org.corpus_tools.salt.common.SaltProject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -51,12 +64,6 @@ public class QueriesGenerator
   // for executing AQL queries
   private QueryDao queryDao;
 
-  // only contains one element: the top level corpus id of the imported corpus
-  private List<Long> corpusIds;
-
-  // the name of the imported top level corpus
-  private String corpusName;
-
   // defines which cols of the tmp table are selected
   private Map<String, String> tableInsertSelect;
 
@@ -66,6 +73,20 @@ public class QueriesGenerator
   // to execute some sql commands directly
   private JdbcTemplate jdbcTemplate;
 
+  // number of candidate queries which are executed at the same time
+  private int parallelism = 2;
+
+  // the maximal runtime of an example query in milliseconds
+  private int queryTimeout = 10000;
+
+  // generates the example queries of one corpus after the other
+  private final ExecutorService backgroundExecutor = Executors.
+    newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat(
+        "example-queries-%d").setDaemon(true).build());
+
+  // executes the candidate queries
+  private ExecutorService queryExecutor;
+
   /**
    * All automatic generated queries must implement this interface.
    *
@@ -116,6 +137,187 @@ public class QueriesGenerator
     public ExampleQuery getExampleQuery();
   }
 
+  /**
+   * A query builder which selects its query from the annotation catalog of
+   * the corpus instead of analyzing search results.
+   */
+  public interface CatalogQueryBuilder extends QueryBuilder
+  {
+
+    /**
+     * Called before {@link #getAQL()}.
+     *
+     * @param annotations The annotations of the corpus with their most
+     * frequent value.
+     */
+    public void setAnnotations(List<AnnisAttribute> annotations);
+  }
+
+  /**
+   * Called when the Spring context is created.
+   */
+  public void init()
+  {
+    queryExecutor = Executors.newFixedThreadPool(Math.max(1, parallelism),
+      new ThreadFactoryBuilder().setNameFormat("example-query-%d").setDaemon(
+        true).build());
+  }
+
+  /**
+   * Called when the Spring context is closed.
+   */
+  public void destroy()
+  {
+    backgroundExecutor.shutdownNow();
+    if (queryExecutor != null)
+    {
+      queryExecutor.shutdownNow();
+    }
+  }
+
+  /**
+   * Generates the example queries of a corpus and measures the runtime of
+   * all its example queries in a background thread.
+   *
+   * @param corpusId The ID of an imported top level corpus, the import
+   * transaction must already be committed.
+   * @param generate If false only the runtimes of the existing queries are
+   * measured.
+   */
+  public void generateQueriesInBackground(final long corpusId,
+    final boolean generate)
+  {
+    // the corpus was just committed and might not be visible on a replica yet
+    backgroundExecutor.submit(ReplicaRoutingDataSource.onPrimary(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        try
+        {
+          if (generate)
+          {
+            generateQueries(corpusId);
+          }
+          measureExampleQueries(corpusId);
+        }
+        catch (Exception ex)
+        {
+          log.error("Could not generate the example queries of corpus "
+            + corpusId, ex);
+        }
+      }
+    }));
+  }
+
+  /**
+   * Waits until all example queries which were requested by
+   * {@link #generateQueriesInBackground(long, boolean) } are generated.
+   */
+  public void awaitBackgroundTasks()
+  {
+    log.info("waiting for the example queries to be generated");
+    Future<?> marker = backgroundExecutor.submit(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        // all tasks submitted before are finished
+      }
+    });
+    waitFor(Collections.<Future<?>>singletonList(marker));
+  }
+
+  /**
+   * Measures the runtime of all example queries of a corpus which have not
+   * been measured yet. Queries which exceed the timeout get the runtime -1.
+   *
+   * @param corpusId
+   */
+  public void measureExampleQueries(long corpusId)
+  {
+    final List<Long> corpusIds = Collections.singletonList(corpusId);
+    List<Map<String, Object>> queries = getJdbcTemplate().queryForList(
+      "SELECT id, example_query FROM example_queries "
+      + "WHERE corpus_ref = ? AND runtime IS NULL", corpusId);
+
+    List<Future<?>> results = new LinkedList<>();
+    for (final Map<String, Object> q : queries)
+    {
+      results.add(submitQuery(new Runnable()
+      {
+        @Override
+        public void run()
+        {
+          long runtime = measureRuntime((String) q.get("example_query"),
+            corpusIds);
+          getJdbcTemplate().update(
+            "UPDATE example_queries SET runtime = ? WHERE id = ?", runtime,
+            q.get("id"));
+        }
+      }));
+    }
+    waitFor(results);
+  }
+
+  /**
+   * Executes the query and measures how long it takes.
+   *
+   * @param aql
+   * @param corpusIds
+   * @return The runtime in milliseconds or -1 if the query failed or exceeded
+   * the timeout.
+   */
+  private long measureRuntime(String aql, List<Long> corpusIds)
+  {
+    try
+    {
+      QueryData queryData = getQueryDao().parseAQL(aql, corpusIds);
+      queryData.addExtension(new TimeoutQueryData(queryTimeout));
+      Stopwatch stopwatch = Stopwatch.createStarted();
+      getQueryDao().count(queryData);
+      return stopwatch.elapsed(TimeUnit.MILLISECONDS);
+    }
+    catch (Exception ex)
+    {
+      log.info("example query {} failed or exceeded the timeout", aql);
+      log.debug(null, ex);
+      return -1;
+    }
+  }
+
+  private Future<?> submitQuery(Runnable task)
+  {
+    if (queryExecutor == null)
+    {
+      // not started by Spring, run in the calling thread
+      task.run();
+      return Futures.immediateFuture(null);
+    }
+    // the queries refer to corpora which were just imported
+    return queryExecutor.submit(ReplicaRoutingDataSource.onPrimary(task));
+  }
+
+  private void waitFor(List<Future<?>> results)
+  {
+    for (Future<?> f : results)
+    {
+      try
+      {
+        f.get();
+      }
+      catch (InterruptedException ex)
+      {
+        Thread.currentThread().interrupt();
+        return;
+      }
+      catch (ExecutionException ex)
+      {
+        log.warn("Cannot generate example query", ex.getCause());
+      }
+    }
+  }
+
   /**
    * Deletes all example queries for a specific corpus.
    *
@@ -180,19 +382,35 @@ public class QueriesGenerator
    */
   public void generateQueries(long corpusId)
   {
-    corpusIds = new ArrayList<>();
-    corpusIds.add(corpusId);
+    final List<Long> corpusIds = Collections.singletonList(corpusId);
     List<String> corpusNames = getQueryDao().mapCorpusIdsToNames(corpusIds);
     if(!corpusNames.isEmpty())
     {
-      corpusName = corpusNames.get(0);
+      final String corpusName = corpusNames.get(0);
 
       if (queryBuilder != null)
       {
-        for (QueryBuilder qB : queryBuilder)
+        final List<AnnisAttribute> annotations = getQueryDao().
+          listAnnotations(corpusIds, true, true);
+
+        // the different query builders are executed in parallel
+        List<Future<?>> results = new LinkedList<>();
+        for (final QueryBuilder qB : queryBuilder)
         {
-          generateQuery(qB);
+          results.add(submitQuery(new Runnable()
+          {
+            @Override
+            public void run()
+            {
+              // the query builders are not thread safe
+              synchronized (qB)
+              {
+                generateQuery(qB, corpusIds, corpusName, annotations);
+              }
+            }
+          }));
         }
+        waitFor(results);
       }
     }
   }
@@ -233,17 +451,27 @@ public class QueriesGenerator
     }
   }
 
-  private void generateQuery(QueryBuilder queryBuilder)
+  private void generateQuery(QueryBuilder queryBuilder, List<Long> corpusIds,
+    String corpusName, List<AnnisAttribute> annotations)
   {
     try
     {
+      if (queryBuilder instanceof CatalogQueryBuilder)
+      {
+        ((CatalogQueryBuilder) queryBuilder).setAnnotations(annotations);
+      }
 
       // retrieve the aql query for analyzing purposes
       String aql = queryBuilder.getAQL();
+      if (aql == null)
+      {
+        return;
+      }
 
       // set some necessary extensions for generating complete sql
-      QueryData queryData = getQueryDao().parseAQL(aql, this.corpusIds);
+      QueryData queryData = getQueryDao().parseAQL(aql, corpusIds);
       queryData.addExtension(queryBuilder.getLimitOffsetQueryData());
+      queryData.addExtension(new TimeoutQueryData(queryTimeout));
       
       // retrieve the salt project to analyze
       List<Match> matches = getQueryDao().find(queryData);
@@ -255,6 +483,7 @@ public class QueriesGenerator
       
       QueryData matchQueryData = GraphHelper.createQueryData(new MatchGroup(matches), queryDao);
       matchQueryData.addExtension(queryBuilder.getAnnotateQueryData());
+      matchQueryData.addExtension(new TimeoutQueryData(queryTimeout));
       
       SaltProject saltProject = getQueryDao().graph(matchQueryData);
       queryBuilder.analyzingQuery(saltProject);
@@ -267,7 +496,15 @@ public class QueriesGenerator
       if (exampleQuery.getExampleQuery() != null
         && !"".equals(exampleQuery.getExampleQuery()))
       {
-        if (getTableInsertSelect().containsKey("example_queries"))
+        // only store queries which are known to be fast
+        long runtime = measureRuntime(exampleQuery.getExampleQuery(),
+          corpusIds);
+        if (runtime < 0)
+        {
+          log.info("skipping slow example query: {}", exampleQuery.
+            getExampleQuery());
+        }
+        else if (getTableInsertSelect().containsKey("example_queries"))
         {
           
           Object[] values = new Object[]
@@ -277,18 +514,20 @@ public class QueriesGenerator
             exampleQuery.getType() == null ? "" : exampleQuery.getType(),
             exampleQuery.getNodes(),
             "{}",
-            corpusIds.get(0)
+            corpusIds.get(0),
+            runtime
           };
           int[] argTypes = new int[]
           {
             Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.INTEGER,
-            Types.VARCHAR, Types.INTEGER
+            Types.VARCHAR, Types.INTEGER, Types.BIGINT
           };
 
           getJdbcTemplate().update("INSERT INTO example_queries(" 
             + getTableInsertSelect().get("example_queries") 
-            + ") VALUES(?, ?, ?, ?, ?::text[], ?)", values, argTypes);
-          log.info("generated example query: {}", exampleQuery.getExampleQuery());
+            + ", runtime) VALUES(?, ?, ?, ?, ?::text[], ?, ?)", values, argTypes);
+          log.info("generated example query: {} ({} ms)", exampleQuery.
+            getExampleQuery(), runtime);
         }
       }
       else
@@ -360,6 +599,34 @@ public class QueriesGenerator
     this.queryDao = queryDao;
   }
 
+  public int getParallelism()
+  {
+    return parallelism;
+  }
+
+  /**
+   * @param parallelism The number of example queries which are executed at
+   * the same time.
+   */
+  public void setParallelism(int parallelism)
+  {
+    this.parallelism = parallelism;
+  }
+
+  public int getQueryTimeout()
+  {
+    return queryTimeout;
+  }
+
+  /**
+   * @param queryTimeout The maximal runtime of an example query in
+   * milliseconds. Slower generated queries are not stored.
+   */
+  public void setQueryTimeout(int queryTimeout)
+  {
+    this.queryTimeout = queryTimeout;
+  }
+
   /**
    * @return the queryBuilder
    */
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2016 SFB 632.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package annis.metrics;
+
+import com.google.common.base.Preconditions;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts observed values, e.g. durations in seconds, in cumulative buckets.
+ *
+ * Each combination of label values has its own buckets.
+ *
+ * @author Thomas Krause <krauseto@hu-berlin.de>
+ */
+public class Histogram implements Collector
+{
+
+  /**
+   * Buckets for durations in seconds, from 5 milliseconds to 5 minutes.
+   */
+  public static final double[] DURATION_BUCKETS =
+  {
+    0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60, 300
+  };
+
+  private final String name;
+
+  private final String help;
+
+  private final double[] buckets;
+
+  private final String[] labelNames;
+
+  private final ConcurrentMap<List<String>, Child> children
+    = new ConcurrentHashMap<>();
+
+  public Histogram(String name, String help, double[] buckets,
+    String... labelNames)
+  {
+    this.name = name;
+    this.help = help;
+    this.buckets = Arrays.copyOf(buckets, buckets.length);
+    Arrays.sort(this.buckets);
+    this.labelNames = labelNames;
+  }
+
+  /**
+   * Adds a value.
+   *
+   * @param value
+   * @param labelValues The values of the labels in the order of their names.
+   */
+  public void observe(double value, String... labelValues)
+  {
+    Preconditions.checkArgument(labelValues.length == labelNames.length,
+      "expected %s label values", labelNames.length);
+    List<String> key = Arrays.asList(labelValues);
+    Child c = children.get(key);
+    if (c == null)
+    {
+      Child newChild = new Child(buckets.length);
+      c = children.putIfAbsent(key, newChild);
+      if (c == null)
+      {
+        c = newChild;
+      }
+    }
+    c.observe(value);
+  }
+
+  /**
+   * Adds a duration given in milliseconds as seconds.
+   *
+   * @param millis
+   * @param labelValues
+   */
+  public void observeMillis(long millis, String... labelValues)
+  {
+    observe(millis / 1000.0, labelValues);
+  }
+
+  /**
+   * The number of observed values.
+   *
+   * @param labelValues
+   * @return
+   */
+  public long getCount(String... labelValues)
+  {
+    Child c = children.get(Arrays.asList(labelValues));
+    return c == null ? 0 : c.count.sum();
+  }
+
+  @Override
+  public void collect(PrometheusWriter out) throws IOException
+  {
+    out.header(name, help, "histogram");
+    for (Map.Entry<List<String>, Child> e : children.entrySet())
+    {
+      Child c = e.getValue();
+      long cumulative = 0;
+      for (int i = 0; i < buckets.length; i++)
+      {
+        cumulative += c.buckets[i].sum();
+        out.sample(name + "_bucket", cumulative, labels(e.getKey(), "le",
+          PrometheusWriter.format(buckets[i])));
+      }
+      out.sample(name + "_bucket", c.count.sum(), labels(e.getKey(), "le",
+        "+Inf"));
+      out.sample(name + "_sum", c.sum.sum(), labels(e.getKey()));
+      out.sample(name + "_count", c.count.sum(), labels(e.getKey()));
+    }
+  }
+
+  private String[] labels(List<String> values, String... extra)
+  {
+    String[] result = new String[labelNames.length * 2 + extra.length];
+    for (int i = 0; i < labelNames.length; i++)
+    {
+      result[2 * i] = labelNames[i];
+      result[2 * i + 1] = values.get(i);
+    }
+    System.arraycopy(extra, 0, result, labelNames.length * 2, extra.length);
+    return result;
+  }
+
+  public String getName()
+  {
+    return name;
+  }
+
+  private class Child
+  {
+
+    /**
+     * Non-cumulative counts, the last bucket (+Inf) is given by the count.
+     */
+    private final LongAdder[] buckets;
+
+    private final LongAdder count = new LongAdder();
+
+    private final DoubleAdder sum = new DoubleAdder();
+
+    public Child(int size)
+    {
+      buckets = new LongAdder[size];
+      for (int i = 0; i < size; i++)
+      {
+        buckets[i] = new LongAdder();
+      }
+    }
+
+    public void observe(double value)
+    {
+      for (int i = 0; i < buckets.length; i++)
+      {
+        if (value <= Histogram.this.buckets[i])
+        {
+          buckets[i].increment();
+          break;
+        }
+      }
+      count.increment();
+      sum.add(value);
+    }
+  }
+}
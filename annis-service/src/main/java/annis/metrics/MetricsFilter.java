@@ -0,0 +1,84 @@
+/*
+ * Copyright 2016 SFB 632.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package annis.metrics;
+
+import java.io.IOException;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Starts a {@link QueryTimer} for each request and adds it to the
+ * histograms when the response was written.
+ *
+ * Only requests whose resource set a query function are counted. This is
+ * done before the request is processed, thus failed and rejected requests are
+ * counted as well and labeled with their outcome.
+ *
+ * @author Thomas Krause <krauseto@hu-berlin.de>
+ */
+public class MetricsFilter implements Filter
+{
+
+  private final MetricsRegistry registry;
+
+  public MetricsFilter(MetricsRegistry registry)
+  {
+    this.registry = registry;
+  }
+
+  @Override
+  public void init(FilterConfig filterConfig) throws ServletException
+  {
+  }
+
+  @Override
+  public void doFilter(ServletRequest request, ServletResponse response,
+    FilterChain chain) throws IOException, ServletException
+  {
+    QueryTimer timer = QueryTimer.start(null);
+    boolean completed = false;
+    try
+    {
+      chain.doFilter(request, response);
+      completed = true;
+    }
+    finally
+    {
+      QueryTimer.stop();
+      String outcome = "error";
+      if (timer.isRejected())
+      {
+        outcome = "rejected";
+      }
+      else if (completed && response instanceof HttpServletResponse)
+      {
+        outcome = QueryTimer.outcome(((HttpServletResponse) response).
+          getStatus());
+      }
+      timer.observe(registry, outcome);
+    }
+  }
+
+  @Override
+  public void destroy()
+  {
+  }
+}
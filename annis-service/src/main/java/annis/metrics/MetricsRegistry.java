@@ -0,0 +1,88 @@
+/*
+ * Copyright 2016 SFB 632.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package annis.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Holds all metrics of the service.
+ *
+ * @author Thomas Krause <krauseto@hu-berlin.de>
+ */
+public class MetricsRegistry
+{
+
+  private final List<Collector> collectors = new CopyOnWriteArrayList<>();
+
+  private final ConcurrentMap<String, Histogram> histograms
+    = new ConcurrentHashMap<>();
+
+  /**
+   * Returns the histogram with the given name and creates it if needed.
+   *
+   * @param name
+   * @param help
+   * @param labelNames
+   * @return
+   */
+  public Histogram histogram(String name, String help, String... labelNames)
+  {
+    Histogram h = histograms.get(name);
+    if (h == null)
+    {
+      Histogram newHistogram = new Histogram(name, help,
+        Histogram.DURATION_BUCKETS, labelNames);
+      h = histograms.putIfAbsent(name, newHistogram);
+      if (h == null)
+      {
+        h = newHistogram;
+        collectors.add(h);
+      }
+    }
+    return h;
+  }
+
+  public void register(Collector collector)
+  {
+    collectors.add(collector);
+  }
+
+  public void unregister(Collector collector)
+  {
+    collectors.remove(collector);
+  }
+
+  /**
+   * Writes all metrics in the text format of Prometheus.
+   *
+   * @param out
+   * @throws IOException
+   */
+  public void write(Writer out) throws IOException
+  {
+    PrometheusWriter w = new PrometheusWriter(out);
+    for (Collector c : collectors)
+    {
+      c.collect(w);
+    }
+    w.flush();
+  }
+}
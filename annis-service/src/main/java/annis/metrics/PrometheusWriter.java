@@ -0,0 +1,106 @@
+/*
+ * Copyright 2016 SFB 632.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package annis.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes metrics in the text format of Prometheus (version 0.0.4).
+ *
+ * @author Thomas Krause <krauseto@hu-berlin.de>
+ */
+public class PrometheusWriter
+{
+
+  public static final String CONTENT_TYPE = "text/plain; version=0.0.4";
+
+  private final Writer out;
+
+  public PrometheusWriter(Writer out)
+  {
+    this.out = out;
+  }
+
+  /**
+   * Starts a new metric.
+   *
+   * @param name
+   * @param help A short description.
+   * @param type "counter", "gauge" or "histogram"
+   * @throws IOException
+   */
+  public void header(String name, String help, String type) throws IOException
+  {
+    out.write("# HELP " + name + " " + help.replace("\\", "\\\\").replace(
+      "\n", "\\n") + "\n");
+    out.write("# TYPE " + name + " " + type + "\n");
+  }
+
+  /**
+   * Writes a single value.
+   *
+   * @param name
+   * @param value
+   * @param labels Alternating label names and values.
+   * @throws IOException
+   */
+  public void sample(String name, double value, String... labels) throws
+    IOException
+  {
+    StringBuilder sb = new StringBuilder(name);
+    if (labels.length > 0)
+    {
+      sb.append('{');
+      for (int i = 0; i + 1 < labels.length; i += 2)
+      {
+        if (i > 0)
+        {
+          sb.append(',');
+        }
+        sb.append(labels[i]).append("=\"").append(escape(labels[i + 1])).
+          append('"');
+      }
+      sb.append('}');
+    }
+    sb.append(' ').append(format(value)).append('\n');
+    out.write(sb.toString());
+  }
+
+  public void flush() throws IOException
+  {
+    out.flush();
+  }
+
+  static String format(double value)
+  {
+    if (Double.isInfinite(value))
+    {
+      return value > 0 ? "+Inf" : "-Inf";
+    }
+    if (value == Math.rint(value) && Math.abs(value) < 1e15)
+    {
+      return Long.toString((long) value);
+    }
+    return Double.toString(value);
+  }
+
+  private static String escape(String value)
+  {
+    return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n",
+      "\\n");
+  }
+}
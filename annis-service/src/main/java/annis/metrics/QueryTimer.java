@@ -0,0 +1,224 @@
+/*
+ * Copyright 2016 SFB 632.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package annis.metrics;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Measures the stages of a single query request in the current thread.
+ *
+ * The timer is started for a request by {@link #start(java.lang.String) } and
+ * the stages are added with {@link #record(annis.metrics.QueryTimer.Stage, long)
+ * } from wherever they are executed. When no timer was started, e.g. in the
+ * administration tool, recording a stage does nothing.
+ *
+ * @author Thomas Krause <krauseto@hu-berlin.de>
+ */
+public class QueryTimer
+{
+
+  public enum Stage
+  {
+    admission, parse, sqlgen, session, execute, extract, serialize
+  }
+
+  public static final String STAGE_METRIC = "annis_query_stage_seconds";
+
+  public static final String TOTAL_METRIC = "annis_query_seconds";
+
+  private static final ThreadLocal<QueryTimer> current = new ThreadLocal<>();
+
+  private final long startTime = System.nanoTime();
+
+  private final Map<Stage, Long> stages = new EnumMap<>(Stage.class);
+
+  private String function;
+
+  private volatile boolean rejected;
+
+  /**
+   * Starts a new timer for the current thread.
+   *
+   * @param function The query function, e.g. "count" or "find".
+   * @return
+   */
+  public static QueryTimer start(String function)
+  {
+    QueryTimer t = new QueryTimer();
+    t.function = function;
+    current.set(t);
+    return t;
+  }
+
+  /**
+   * The timer of the current thread or null.
+   *
+   * @return
+   */
+  public static QueryTimer current()
+  {
+    return current.get();
+  }
+
+  /**
+   * Removes the timer from the current thread.
+   *
+   * @return The removed timer or null.
+   */
+  public static QueryTimer stop()
+  {
+    QueryTimer t = current.get();
+    current.remove();
+    return t;
+  }
+
+  /**
+   * Adds the time of a stage to the timer of the current thread.
+   *
+   * @param stage
+   * @param millis
+   */
+  public static void record(Stage stage, long millis)
+  {
+    QueryTimer t = current.get();
+    if (t != null)
+    {
+      t.add(stage, millis);
+    }
+  }
+
+  /**
+   * Sets the function of the timer of the current thread.
+   *
+   * @param function
+   */
+  public static void setFunction(String function)
+  {
+    QueryTimer t = current.get();
+    if (t != null)
+    {
+      t.function = function;
+    }
+  }
+
+  /**
+   * Marks the request of the current thread as rejected by the admission
+   * control. Other requests answered with the same HTTP status, e.g. when the
+   * database is not available, are not counted as rejected.
+   */
+  public static void markRejected()
+  {
+    QueryTimer t = current.get();
+    if (t != null)
+    {
+      t.rejected = true;
+    }
+  }
+
+  public synchronized void add(Stage stage, long millis)
+  {
+    Long old = stages.get(stage);
+    stages.put(stage, old == null ? millis : old + millis);
+  }
+
+  public String getFunction()
+  {
+    return function;
+  }
+
+  public boolean isRejected()
+  {
+    return rejected;
+  }
+
+  /**
+   * The milliseconds since the timer was started.
+   *
+   * @return
+   */
+  public long getElapsed()
+  {
+    return (System.nanoTime() - startTime) / 1000000;
+  }
+
+  /**
+   * The recorded stages and their duration in milliseconds.
+   *
+   * @return
+   */
+  public synchronized Map<Stage, Long> getStages()
+  {
+    return new EnumMap<>(stages);
+  }
+
+  /**
+   * Classifies a finished request by its HTTP status. Rejections by the
+   * admission control are not recognized by their status, see
+   * {@link #markRejected() }.
+   *
+   * @param status
+   * @return "success", "client_error", "timeout" (of the query) or "error".
+   */
+  public static String outcome(int status)
+  {
+    if (status < 400)
+    {
+      return "success";
+    }
+    if (status == 504)
+    {
+      return "timeout";
+    }
+    return status < 500 ? "client_error" : "error";
+  }
+
+  /**
+   * Adds the stages of this timer to the histograms of the registry.
+   *
+   * The time not spent in any other stage is counted as serialization. The
+   * total duration is labeled with the outcome of the request.
+   *
+   * @param registry
+   * @param outcome See {@link #outcome(int) }, or "rejected" if the request
+   * was rejected by the admission control.
+   */
+  public void observe(MetricsRegistry registry, String outcome)
+  {
+    if (function == null)
+    {
+      return;
+    }
+    long total = getElapsed();
+    Map<Stage, Long> measured = getStages();
+    long other = 0;
+    Histogram stageHistogram = registry.histogram(STAGE_METRIC,
+      "Duration of the stages of a query in seconds.", "function", "stage");
+    for (Map.Entry<Stage, Long> e : measured.entrySet())
+    {
+      other += e.getValue();
+      stageHistogram.observeMillis(e.getValue(), function, e.getKey().name());
+    }
+    if (!measured.containsKey(Stage.serialize))
+    {
+      stageHistogram.observeMillis(Math.max(0, total - other), function,
+        Stage.serialize.name());
+    }
+    registry.histogram(TOTAL_METRIC,
+      "Duration of a query request in seconds.", "function", "outcome")
+      .observeMillis(total, function, outcome);
+  }
+}
@@ -16,13 +16,20 @@
 package annis.security;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.shiro.authz.Permission;
 import org.apache.shiro.authz.permission.RolePermissionResolver;
 import org.apache.shiro.authz.permission.WildcardPermission;
 
 /**
+ * Resolves the permissions of the ANNIS groups.
+ *
+ * Shiro resolves the roles on every permission check, thus the permissions of
+ * a role are cached until the user configuration changes.
  *
  * @author Thomas Krause <krauseto@hu-berlin.de>
  */
@@ -31,8 +38,29 @@ public class ANNISRolePermissionResolver implements RolePermissionResolver
 
   private ANNISUserConfigurationManager confManager;
 
+  private volatile RoleCache roleCache = new RoleCache(-1);
+
   @Override
   public Collection<Permission> resolvePermissionsInRole(String roleString)
+  {
+    long version = confManager.getVersion();
+    RoleCache c = roleCache;
+    if (c.version != version)
+    {
+      c = new RoleCache(version);
+      roleCache = c;
+    }
+
+    Collection<Permission> perms = c.permissions.get(roleString);
+    if (perms == null)
+    {
+      perms = Collections.unmodifiableCollection(resolve(roleString));
+      c.permissions.put(roleString, perms);
+    }
+    return perms;
+  }
+
+  private Collection<Permission> resolve(String roleString)
   {
     HashSet<Permission> perms = new HashSet<>();
 
@@ -79,4 +107,22 @@ public class ANNISRolePermissionResolver implements RolePermissionResolver
     this.confManager = confManager;
   }
 
+  /**
+   * The resolved permissions of all roles for a version of the user
+   * configuration.
+   */
+  private static class RoleCache
+  {
+
+    private final long version;
+
+    private final ConcurrentMap<String, Collection<Permission>> permissions
+      = new ConcurrentHashMap<>();
+
+    public RoleCache(long version)
+    {
+      this.version = version;
+    }
+  }
+
 }
@@ -16,10 +16,27 @@
 
 package annis.security;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import org.apache.shiro.authz.AuthorizationException;
 import org.apache.shiro.realm.Realm;
+import org.apache.shiro.subject.Subject;
 import org.apache.shiro.web.mgt.DefaultWebSecurityManager;
 
 /**
+ * The security manager of ANNIS.
+ * 
+ * Additionally to the standard behavior it caches the decisions of corpus
+ * permission checks for each user. The searches and the corpus list check the
+ * same permission for many corpora, and each single check has to match the
+ * permission against all wildcard permissions of the user. The cached
+ * decisions are dropped as soon as the user configuration changes.
  * 
  * @author Thomas Krause <krauseto@hu-berlin.de>
  */
@@ -27,6 +44,16 @@ public class ANNISSecurityManager extends DefaultWebSecurityManager
 {
   private ANNISUserConfigurationManager confManager;
 
+  /**
+   * Decisions are kept as long as the authorization info is cached by the
+   * realm, thus changes like an expired account are noticed in the same time.
+   */
+  private final Cache<Object, PermittedCorpora> permittedCorpora = CacheBuilder.
+    newBuilder()
+    .maximumSize(1000)
+    .expireAfterWrite(120, TimeUnit.SECONDS)
+    .build();
+
   public ANNISUserConfigurationManager getConfManager()
   {
     return confManager;
@@ -52,6 +79,125 @@ public class ANNISSecurityManager extends DefaultWebSecurityManager
     
     return null;
   }
-  
-  
+
+  /**
+   * Returns all corpora for which the subject has the permission
+   * <code>prefix + corpus</code>.
+   *
+   * @param subject
+   * @param prefix The permission without the corpus, e.g.
+   * <code>query:show:</code>
+   * @param corpora
+   * @return The permitted corpora in the original order.
+   */
+  public List<String> filterPermittedCorpora(Subject subject, String prefix,
+    Collection<String> corpora)
+  {
+    List<String> result = new ArrayList<>(corpora.size());
+    PermittedCorpora permitted = getPermittedCorpora(subject);
+    for (String c : corpora)
+    {
+      if (isPermitted(subject, permitted, prefix + c))
+      {
+        result.add(c);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Checks if the subject has the permission <code>prefix + corpus</code> for
+   * all given corpora.
+   *
+   * @param subject
+   * @param prefix The permission without the corpus, e.g.
+   * <code>query:find:</code>
+   * @param corpora
+   * @throws AuthorizationException If a single permission is missing.
+   */
+  public void checkPermittedCorpora(Subject subject, String prefix,
+    Collection<String> corpora) throws AuthorizationException
+  {
+    PermittedCorpora permitted = getPermittedCorpora(subject);
+    for (String c : corpora)
+    {
+      if (!isPermitted(subject, permitted, prefix + c))
+      {
+        // let Shiro throw the appropriate exception
+        subject.checkPermission(prefix + c);
+      }
+    }
+  }
+
+  private boolean isPermitted(Subject subject, PermittedCorpora permitted,
+    String permission)
+  {
+    if (permitted == null)
+    {
+      return subject.isPermitted(permission);
+    }
+    Boolean decision = permitted.decisions.get(permission);
+    if (decision == null)
+    {
+      decision = subject.isPermitted(permission);
+      permitted.decisions.put(permission, decision);
+    }
+    return decision;
+  }
+
+  private PermittedCorpora getPermittedCorpora(Subject subject)
+  {
+    Object principal = subject.getPrincipal();
+    if (principal == null)
+    {
+      // nothing to cache for unauthenticated subjects
+      return null;
+    }
+
+    long version = 0;
+    long userModified = 0;
+    if (confManager != null)
+    {
+      version = confManager.getVersion();
+      userModified = confManager.getUserLastModified(principal.toString());
+    }
+
+    PermittedCorpora permitted = permittedCorpora.getIfPresent(principal);
+    if (permitted == null || permitted.version != version
+      || permitted.userModified != userModified)
+    {
+      if (permitted != null)
+      {
+        // also the cached authorization info of the realm is outdated
+        ANNISUserRealm realm = getANNISUserRealm();
+        if (realm != null)
+        {
+          realm.clearCacheForUser(principal.toString());
+        }
+      }
+      permitted = new PermittedCorpora(version, userModified);
+      permittedCorpora.put(principal, permitted);
+    }
+    return permitted;
+  }
+
+  /**
+   * The permission decisions for a single user.
+   */
+  private static class PermittedCorpora
+  {
+
+    private final long version;
+
+    private final long userModified;
+
+    private final ConcurrentMap<String, Boolean> decisions
+      = new ConcurrentHashMap<>();
+
+    public PermittedCorpora(long version, long userModified)
+    {
+      this.version = version;
+      this.userModified = userModified;
+    }
+  }
 }
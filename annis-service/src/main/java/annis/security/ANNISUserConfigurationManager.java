@@ -28,6 +28,7 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import org.apache.commons.io.FileUtils;
@@ -40,6 +41,10 @@ import org.slf4j.LoggerFactory;
  * It has a global lock to ensure that read/write operations are not interfering
  * which each other.
  *
+ * Every change of the groups or a user done by this class or detected in the
+ * groups file increases a version number, thus derived information like
+ * resolved permissions can be cached until the version changes.
+ *
  * @author Thomas Krause <krauseto@hu-berlin.de>
  */
 public class ANNISUserConfigurationManager {
@@ -58,6 +63,8 @@ public class ANNISUserConfigurationManager {
 
 	private final ReadWriteLock lock = new ReentrantReadWriteLock();
 
+	private final AtomicLong version = new AtomicLong();
+
 	private void checkConfiguration() {
 		boolean reload = false;
 
@@ -95,6 +102,7 @@ public class ANNISUserConfigurationManager {
 				for (String k : propGroups.stringPropertyNames()) {
 					groups.put(k, new Group(k, propGroups.getProperty(k)));
 				}
+				version.incrementAndGet();
 
 			} catch (IOException ex) {
 				log.error(null, ex);
@@ -153,6 +161,7 @@ public class ANNISUserConfigurationManager {
 
 					// update the last modification time
 					lastTimeReloaded = new Date(groupsFile.lastModified());
+					version.incrementAndGet();
 					return true;
 				} catch (IOException ex) {
 					log.error("Could not write groups file", ex);
@@ -183,6 +192,7 @@ public class ANNISUserConfigurationManager {
 					Properties props = user.toProperties();
 					try (FileOutputStream out = new FileOutputStream(userFile)) {
 						props.store(out, "");
+						version.incrementAndGet();
 						return true;
 					} catch (IOException ex) {
 						log.error("Could not write users file", ex);
@@ -211,6 +221,7 @@ public class ANNISUserConfigurationManager {
 				if (userDir.isDirectory()) {
 					// get the file which corresponds to the user
 					File userFile = new File(userDir.getAbsolutePath(), userName);
+					version.incrementAndGet();
 					return userFile.delete();
 				}
 			} finally {
@@ -240,6 +251,35 @@ public class ANNISUserConfigurationManager {
 		return false;
 	}
 
+	/**
+	 * Returns the current version of the user configuration. The groups file is
+	 * checked for modifications before.
+	 * 
+	 * @return A number which is increased on every change.
+	 */
+	public long getVersion() {
+		checkConfiguration();
+		return version.get();
+	}
+
+	/**
+	 * Returns the time the file of a user was modified the last time.
+	 * 
+	 * @param userName
+	 * @return The time in milliseconds or 0 if there is no such file.
+	 */
+	public long getUserLastModified(String userName) {
+		if (resourcePath != null) {
+			lock.readLock().lock();
+			try {
+				return new File(new File(resourcePath, "users"), userName).lastModified();
+			} finally {
+				lock.readLock().unlock();
+			}
+		}
+		return 0;
+	}
+
 	public User getUser(String userName) {
 		// load user info from file
 		if (resourcePath != null) {
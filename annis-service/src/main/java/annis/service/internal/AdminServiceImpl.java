@@ -18,7 +18,9 @@ package annis.service.internal;
 import annis.administration.AdministrationDao;
 import annis.administration.CorpusAdministration;
 import annis.administration.DeleteCorpusDao;
+import annis.administration.StatisticsMaintenance;
 import annis.dao.QueryDao;
+import annis.dao.SlowQueryLog;
 import annis.security.ANNISSecurityManager;
 import annis.security.ANNISUserConfigurationManager;
 import annis.security.ANNISUserRealm;
@@ -26,7 +28,11 @@ import annis.security.Group;
 import annis.security.User;
 import annis.security.UserConfig;
 import annis.service.AdminService;
+import annis.service.objects.AdmissionPoolStatus;
 import annis.service.objects.ImportJob;
+import annis.service.objects.ImportPhaseTiming;
+import annis.service.objects.MaintenanceReport;
+import annis.service.objects.SlowQuery;
 import annis.utils.ANNISFormatHelper;
 import com.google.common.base.Joiner;
 import com.google.common.io.ByteStreams;
@@ -79,6 +85,12 @@ public class AdminServiceImpl implements AdminService
   private AdministrationDao adminDao;
   private DeleteCorpusDao deleteCorpusDao;
 
+  private StatisticsMaintenance statisticsMaintenance;
+
+  private AdmissionControl admissionControl;
+
+  private SlowQueryLog slowQueryLog;
+
   private CorpusAdministration corpusAdmin;
 
   private QueryDao queryDao;
@@ -407,7 +419,8 @@ public class AdminServiceImpl implements AdminService
 
       // get ID of corpus
       long id = queryDao.mapCorpusNameToId(corpusName);
-      deleteCorpusDao.deleteCorpora(Arrays.asList(id), true);
+      // the shared tables are cleaned up in the background
+      deleteCorpusDao.deleteCorporaFast(Arrays.asList(id), true);
       return Response.status(Response.Status.OK).build();
     }
     catch (IllegalArgumentException ex)
@@ -429,12 +442,72 @@ public class AdminServiceImpl implements AdminService
     if (current != null
       && current.getStatus() != ImportJob.Status.SUCCESS && current.getStatus() != ImportJob.Status.ERROR)
     {
+      current.setProgress(adminDao.getImportProgress(importWorker));
       result.add(current);
     }
     result.addAll(importWorker.getImportQueue());
     return result;
   }
 
+  @GET
+  @Path("import/timings")
+  @Override
+  public List<ImportPhaseTiming> importTimings()
+  {
+    Subject user = SecurityUtils.getSubject();
+    user.checkPermission("admin:query-import:finished");
+
+    return adminDao.listImportTimings(1000);
+  }
+
+  @GET
+  @Path("maintenance")
+  @Produces("application/xml")
+  @Override
+  public MaintenanceReport maintenanceReport()
+  {
+    Subject user = SecurityUtils.getSubject();
+    user.checkPermission("admin:read:maintenance");
+
+    return statisticsMaintenance.createReport();
+  }
+
+  @POST
+  @Path("maintenance/refresh")
+  @Override
+  public Response refreshStatistics()
+  {
+    Subject user = SecurityUtils.getSubject();
+    user.checkPermission("admin:write:maintenance");
+
+    statisticsMaintenance.refreshInBackground();
+    return Response.status(Response.Status.ACCEPTED).build();
+  }
+
+  @GET
+  @Path("admission")
+  @Produces("application/xml")
+  @Override
+  public List<AdmissionPoolStatus> admissionStatus()
+  {
+    Subject user = SecurityUtils.getSubject();
+    user.checkPermission("admin:read:admission");
+
+    return admissionControl.getStatus();
+  }
+
+  @GET
+  @Path("slow-queries")
+  @Produces("application/xml")
+  @Override
+  public List<SlowQuery> slowQueries()
+  {
+    Subject user = SecurityUtils.getSubject();
+    user.checkPermission("admin:read:slowquery");
+
+    return slowQueryLog.list();
+  }
+
   @GET
   @Path("import/status/finished/{uuid}")
   @Override
@@ -614,7 +687,36 @@ public class AdminServiceImpl implements AdminService
   {
     this.deleteCorpusDao = deleteCorpusDao;
   }
-  
-  
+
+  public StatisticsMaintenance getStatisticsMaintenance()
+  {
+    return statisticsMaintenance;
+  }
+
+  public void setStatisticsMaintenance(
+    StatisticsMaintenance statisticsMaintenance)
+  {
+    this.statisticsMaintenance = statisticsMaintenance;
+  }
+
+  public AdmissionControl getAdmissionControl()
+  {
+    return admissionControl;
+  }
+
+  public void setAdmissionControl(AdmissionControl admissionControl)
+  {
+    this.admissionControl = admissionControl;
+  }
+
+  public SlowQueryLog getSlowQueryLog()
+  {
+    return slowQueryLog;
+  }
+
+  public void setSlowQueryLog(SlowQueryLog slowQueryLog)
+  {
+    this.slowQueryLog = slowQueryLog;
+  }
 
 }
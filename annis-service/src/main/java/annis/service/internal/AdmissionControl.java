@@ -0,0 +1,188 @@
+/*
+ * Copyright 2016 SFB 632.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package annis.service.internal;
+
+import annis.metrics.QueryTimer;
+import annis.service.objects.AdmissionPoolStatus;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import org.apache.shiro.SecurityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decides when a query may use the database.
+ *
+ * Cheap queries needed by the user interface (count, find, subgraph) and
+ * expensive bulk queries (matrix, frequency) have separate
+ * {@link AdmissionPool}s, thus the bulk queries can't block the interactive
+ * ones. Queries which are rejected get the HTTP status 503 with a
+ * "Retry-After" header.
+ *
+ * @author Thomas Krause <krauseto@hu-berlin.de>
+ */
+public class AdmissionControl
+{
+
+  private final static Logger log = LoggerFactory.getLogger(
+    AdmissionControl.class);
+
+  public enum QueryClass
+  {
+
+    INTERACTIVE, BULK
+  }
+
+  private final Map<QueryClass, AdmissionPool> pools = new EnumMap<>(
+    QueryClass.class);
+
+  private int interactiveConcurrency = 6;
+
+  private int interactiveQueue = 100;
+
+  private long interactiveMaxWait = 10000;
+
+  private int bulkConcurrency = 2;
+
+  private int bulkQueue = 10;
+
+  private long bulkMaxWait = 60000;
+
+  /**
+   * Called when Spring configuration finished.
+   */
+  public void init()
+  {
+    pools.put(QueryClass.INTERACTIVE, new AdmissionPool("interactive",
+      interactiveConcurrency, interactiveQueue, interactiveMaxWait));
+    pools.put(QueryClass.BULK, new AdmissionPool("bulk", bulkConcurrency,
+      bulkQueue, bulkMaxWait));
+  }
+
+  /**
+   * Waits until a query of the current user may be executed.
+   *
+   * @param queryClass
+   * @return A permit which must be closed when the query finished.
+   * @throws WebApplicationException With the status 503 if the query was
+   * rejected.
+   */
+  public AdmissionPool.Permit admit(QueryClass queryClass) throws
+    WebApplicationException
+  {
+    Object principal = SecurityUtils.getSubject().getPrincipal();
+    String user = principal == null ? "" : principal.toString();
+
+    AdmissionPool pool = pools.get(queryClass);
+    AdmissionPool.Permit permit = pool.acquire(user);
+    if (permit == null)
+    {
+      long retryAfter = pool.getRetryAfter();
+      log.warn("rejected {} query of user \"{}\", retry after {} seconds",
+        pool.getName(), user, retryAfter);
+      QueryTimer.markRejected();
+      throw new WebApplicationException(Response.status(
+        Response.Status.SERVICE_UNAVAILABLE)
+        .header("Retry-After", retryAfter)
+        .type(MediaType.TEXT_PLAIN)
+        .entity("Too many " + pool.getName()
+          + " queries, please try again later.")
+        .build());
+    }
+    return permit;
+  }
+
+  /**
+   * The state of all pools.
+   *
+   * @return
+   */
+  public List<AdmissionPoolStatus> getStatus()
+  {
+    List<AdmissionPoolStatus> result = new ArrayList<>();
+    for (AdmissionPool p : pools.values())
+    {
+      result.add(p.getStatus());
+    }
+    return result;
+  }
+
+  public int getInteractiveConcurrency()
+  {
+    return interactiveConcurrency;
+  }
+
+  public void setInteractiveConcurrency(int interactiveConcurrency)
+  {
+    this.interactiveConcurrency = interactiveConcurrency;
+  }
+
+  public int getInteractiveQueue()
+  {
+    return interactiveQueue;
+  }
+
+  public void setInteractiveQueue(int interactiveQueue)
+  {
+    this.interactiveQueue = interactiveQueue;
+  }
+
+  public long getInteractiveMaxWait()
+  {
+    return interactiveMaxWait;
+  }
+
+  public void setInteractiveMaxWait(long interactiveMaxWait)
+  {
+    this.interactiveMaxWait = interactiveMaxWait;
+  }
+
+  public int getBulkConcurrency()
+  {
+    return bulkConcurrency;
+  }
+
+  public void setBulkConcurrency(int bulkConcurrency)
+  {
+    this.bulkConcurrency = bulkConcurrency;
+  }
+
+  public int getBulkQueue()
+  {
+    return bulkQueue;
+  }
+
+  public void setBulkQueue(int bulkQueue)
+  {
+    this.bulkQueue = bulkQueue;
+  }
+
+  public long getBulkMaxWait()
+  {
+    return bulkMaxWait;
+  }
+
+  public void setBulkMaxWait(long bulkMaxWait)
+  {
+    this.bulkMaxWait = bulkMaxWait;
+  }
+
+}
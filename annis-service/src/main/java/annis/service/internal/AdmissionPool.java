@@ -0,0 +1,245 @@
+/*
+ * Copyright 2016 SFB 632.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package annis.service.internal;
+
+import annis.service.objects.AdmissionPoolStatus;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the number of queries of one class which are executed at the same
+ * time.
+ *
+ * Queries which can't be executed immediately wait in a queue. The waiting
+ * queries of different users are admitted in turn, thus a single user with
+ * many queries can't block the queries of the other users. If the queue is
+ * full or a query waited too long it is rejected.
+ *
+ * @author Thomas Krause <krauseto@hu-berlin.de>
+ */
+public class AdmissionPool
+{
+
+  private final String name;
+
+  private final int maxConcurrent;
+
+  private final int maxQueued;
+
+  private final long maxWait;
+
+  private int running;
+
+  private int queued;
+
+  /**
+   * The waiting queries of each user. The user whose query is admitted next
+   * is the first entry.
+   */
+  private final LinkedHashMap<String, Deque<Waiter>> waiting
+    = new LinkedHashMap<>();
+
+  private long admitted;
+
+  private long rejected;
+
+  private long totalWait;
+
+  private long completed;
+
+  private long totalRuntime;
+
+  /**
+   *
+   * @param name
+   * @param maxConcurrent Maximal number of queries executed at the same time.
+   * @param maxQueued Maximal number of waiting queries.
+   * @param maxWait Maximal time in milliseconds a query waits.
+   */
+  public AdmissionPool(String name, int maxConcurrent, int maxQueued,
+    long maxWait)
+  {
+    this.name = name;
+    this.maxConcurrent = Math.max(1, maxConcurrent);
+    this.maxQueued = Math.max(0, maxQueued);
+    this.maxWait = Math.max(0, maxWait);
+  }
+
+  /**
+   * Waits until a query of the user may be executed.
+   *
+   * @param user The name of the user or an empty string for anonymous users.
+   * @return A permit which must be closed when the query finished or null if
+   * the query was rejected.
+   */
+  public synchronized Permit acquire(String user)
+  {
+    long start = System.nanoTime();
+    if (running < maxConcurrent && queued == 0)
+    {
+      running++;
+      admitted++;
+      return new Permit();
+    }
+    if (queued >= maxQueued)
+    {
+      rejected++;
+      return null;
+    }
+
+    Waiter w = new Waiter();
+    Deque<Waiter> userQueue = waiting.get(user);
+    if (userQueue == null)
+    {
+      userQueue = new ArrayDeque<>();
+      waiting.put(user, userQueue);
+    }
+    userQueue.add(w);
+    queued++;
+
+    long deadline = start + TimeUnit.MILLISECONDS.toNanos(maxWait);
+    boolean interrupted = false;
+    while (!w.admitted)
+    {
+      long remaining = deadline - System.nanoTime();
+      if (remaining <= 0 || interrupted)
+      {
+        userQueue.remove(w);
+        if (userQueue.isEmpty())
+        {
+          waiting.remove(user);
+        }
+        queued--;
+        rejected++;
+        if (interrupted)
+        {
+          Thread.currentThread().interrupt();
+        }
+        return null;
+      }
+      try
+      {
+        TimeUnit.NANOSECONDS.timedWait(this, remaining);
+      }
+      catch (InterruptedException ex)
+      {
+        interrupted = true;
+      }
+    }
+    if (interrupted)
+    {
+      Thread.currentThread().interrupt();
+    }
+    totalWait += TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    return new Permit();
+  }
+
+  private synchronized void release(long runtime)
+  {
+    running--;
+    completed++;
+    totalRuntime += runtime;
+
+    // admit the next query of the user who waits longest for their turn
+    Iterator<Map.Entry<String, Deque<Waiter>>> it = waiting.entrySet().
+      iterator();
+    if (running < maxConcurrent && it.hasNext())
+    {
+      Map.Entry<String, Deque<Waiter>> next = it.next();
+      it.remove();
+      Waiter w = next.getValue().poll();
+      if (!next.getValue().isEmpty())
+      {
+        waiting.put(next.getKey(), next.getValue());
+      }
+      w.admitted = true;
+      queued--;
+      running++;
+      admitted++;
+      notifyAll();
+    }
+  }
+
+  /**
+   * Estimates how many seconds a rejected client should wait before it
+   * repeats the query.
+   *
+   * @return
+   */
+  public synchronized long getRetryAfter()
+  {
+    long averageRuntime = completed == 0 ? maxWait : totalRuntime / completed;
+    long estimated = averageRuntime * (queued + 1) / maxConcurrent;
+    return Math.max(1, TimeUnit.MILLISECONDS.toSeconds(estimated));
+  }
+
+  /**
+   * The current state and the statistics of this pool.
+   *
+   * @return
+   */
+  public synchronized AdmissionPoolStatus getStatus()
+  {
+    AdmissionPoolStatus status = new AdmissionPoolStatus();
+    status.setName(name);
+    status.setMaxConcurrent(maxConcurrent);
+    status.setMaxQueued(maxQueued);
+    status.setRunning(running);
+    status.setQueued(queued);
+    status.setAdmitted(admitted);
+    status.setRejected(rejected);
+    status.setTotalWait(totalWait);
+    status.setCompleted(completed);
+    status.setTotalRuntime(totalRuntime);
+    return status;
+  }
+
+  public String getName()
+  {
+    return name;
+  }
+
+  private static class Waiter
+  {
+
+    private boolean admitted = false;
+  }
+
+  /**
+   * Allows to execute a query until it is closed.
+   */
+  public class Permit implements AutoCloseable
+  {
+
+    private final long start = System.nanoTime();
+
+    private boolean closed = false;
+
+    @Override
+    public synchronized void close()
+    {
+      if (!closed)
+      {
+        closed = true;
+        release(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+      }
+    }
+  }
+}
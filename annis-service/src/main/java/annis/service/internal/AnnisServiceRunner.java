@@ -19,7 +19,11 @@ import annis.AnnisBaseRunner;
 import annis.AnnisRunnerException;
 import annis.AnnisXmlContextHelper;
 import annis.dao.QueryDao;
+import annis.compression.CompressionFilter;
+import annis.compression.CompressionPolicy;
 import annis.exceptions.AnnisException;
+import annis.metrics.MetricsFilter;
+import annis.metrics.MetricsRegistry;
 import annis.security.MultipleIniWebEnvironment;
 import annis.service.objects.AnnisCorpus;
 import annis.utils.Utils;
@@ -39,9 +43,9 @@ import org.apache.shiro.web.servlet.ShiroFilter;
 import org.eclipse.jetty.server.Connector;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.FilterHolder;
 import org.eclipse.jetty.servlet.ServletContextHandler;
 import org.eclipse.jetty.servlet.ServletHolder;
-import org.eclipse.jetty.servlets.GzipFilter;
 import org.eclipse.jetty.util.thread.ExecutorThreadPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -249,9 +253,15 @@ public class AnnisServiceRunner extends AnnisBaseRunner
           "file:" + System.getProperty("annis.home") + "/conf/shiro_no_security.ini");
       }
 
-      EnumSet<DispatcherType> gzipDispatcher = EnumSet.
+      // measure the query requests including the compression of the response
+      context.addFilter(new FilterHolder(new MetricsFilter(ctx.getBean(
+        MetricsRegistry.class))), "/annis/query/*", EnumSet.of(
+          DispatcherType.REQUEST));
+
+      EnumSet<DispatcherType> compressionDispatcher = EnumSet.
         of(DispatcherType.REQUEST);
-      context.addFilter(GzipFilter.class, "/*", gzipDispatcher);
+      context.addFilter(new FilterHolder(new CompressionFilter(ctx.getBean(
+        CompressionPolicy.class))), "/*", compressionDispatcher);
 
       // configure Apache Shiro with the web application
       context.addEventListener(new EnvironmentLoaderListener());
@@ -0,0 +1,249 @@
+/*
+ * Copyright 2016 SFB 632.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package annis.service.internal;
+
+import annis.administration.CorpusAdministration;
+import annis.compression.CompressionPolicy;
+import annis.dao.ShortenerDao;
+import annis.metrics.Collector;
+import annis.metrics.MetricsRegistry;
+import annis.metrics.PrometheusWriter;
+import annis.service.objects.AdmissionPoolStatus;
+import com.google.common.cache.CacheStats;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Response;
+import org.apache.commons.dbcp2.BasicDataSource;
+import org.apache.shiro.SecurityUtils;
+import org.springframework.stereotype.Component;
+
+/**
+ * Provides the metrics of the service in the text format of Prometheus.
+ *
+ * Besides the histograms of the query stages and import phases this service
+ * adds the current state of the database connection pool, the admission
+ * control and the caches.
+ *
+ * @author Thomas Krause <krauseto@hu-berlin.de>
+ */
+@Component
+@Path("annis/metrics")
+public class MetricsServiceImpl
+{
+
+  private MetricsRegistry metricsRegistry;
+
+  private BasicDataSource dataSource;
+
+  private AdmissionControl admissionControl;
+
+  private CorpusAdministration corpusAdministration;
+
+  private CompressionPolicy compressionPolicy;
+
+  private ShortenerDao shortenerDao;
+
+  public void init()
+  {
+    metricsRegistry.register(new Collector()
+    {
+      @Override
+      public void collect(PrometheusWriter out) throws IOException
+      {
+        collectPool(out);
+        collectAdmission(out);
+        collectCaches(out);
+      }
+    });
+  }
+
+  /**
+   * Returns all metrics.
+   *
+   * @return
+   * @throws IOException
+   */
+  @GET
+  @Produces(PrometheusWriter.CONTENT_TYPE)
+  public Response metrics() throws IOException
+  {
+    SecurityUtils.getSubject().checkPermission("admin:read:metrics");
+
+    StringWriter out = new StringWriter();
+    metricsRegistry.write(out);
+    return Response.ok(out.toString(), PrometheusWriter.CONTENT_TYPE).build();
+  }
+
+  private void collectPool(PrometheusWriter out) throws IOException
+  {
+    if (dataSource == null)
+    {
+      return;
+    }
+    out.header("annis_db_connections_active",
+      "Number of database connections in use.", "gauge");
+    out.sample("annis_db_connections_active", dataSource.getNumActive());
+    out.header("annis_db_connections_idle",
+      "Number of idle database connections in the pool.", "gauge");
+    out.sample("annis_db_connections_idle", dataSource.getNumIdle());
+    out.header("annis_db_connections_max",
+      "Maximal number of database connections.", "gauge");
+    out.sample("annis_db_connections_max", dataSource.getMaxTotal());
+  }
+
+  private void collectAdmission(PrometheusWriter out) throws IOException
+  {
+    if (admissionControl == null)
+    {
+      return;
+    }
+    out.header("annis_admission_running",
+      "Number of queries currently executed.", "gauge");
+    for (AdmissionPoolStatus s : admissionControl.getStatus())
+    {
+      out.sample("annis_admission_running", s.getRunning(), "pool", s.
+        getName());
+    }
+    out.header("annis_admission_queued",
+      "Number of queries waiting to be executed.", "gauge");
+    for (AdmissionPoolStatus s : admissionControl.getStatus())
+    {
+      out.sample("annis_admission_queued", s.getQueued(), "pool", s.getName());
+    }
+    out.header("annis_admission_admitted_total",
+      "Number of admitted queries.", "counter");
+    for (AdmissionPoolStatus s : admissionControl.getStatus())
+    {
+      out.sample("annis_admission_admitted_total", s.getAdmitted(), "pool", s.
+        getName());
+    }
+    out.header("annis_admission_rejected_total",
+      "Number of rejected queries.", "counter");
+    for (AdmissionPoolStatus s : admissionControl.getStatus())
+    {
+      out.sample("annis_admission_rejected_total", s.getRejected(), "pool", s.
+        getName());
+    }
+    out.header("annis_admission_wait_seconds_total",
+      "Time admitted queries waited in the queue.", "counter");
+    for (AdmissionPoolStatus s : admissionControl.getStatus())
+    {
+      out.sample("annis_admission_wait_seconds_total", s.getTotalWait()
+        / 1000.0, "pool", s.getName());
+    }
+  }
+
+  private void collectCaches(PrometheusWriter out) throws IOException
+  {
+    Map<String, CacheStats> caches = new LinkedHashMap<>();
+    if (corpusAdministration != null)
+    {
+      caches.put("corpus_path", corpusAdministration.getCorpusPathScanner().
+        getCacheStats());
+    }
+    if (compressionPolicy != null)
+    {
+      caches.put("compressed_response", compressionPolicy.getCacheStats());
+    }
+    if (shortenerDao != null)
+    {
+      caches.put("url_shortener", shortenerDao.getCacheStats());
+    }
+    if (caches.isEmpty())
+    {
+      return;
+    }
+    out.header("annis_cache_hits_total", "Number of cache hits.", "counter");
+    for (Map.Entry<String, CacheStats> e : caches.entrySet())
+    {
+      out.sample("annis_cache_hits_total", e.getValue().hitCount(), "cache", e.
+        getKey());
+    }
+    out.header("annis_cache_misses_total", "Number of cache misses.",
+      "counter");
+    for (Map.Entry<String, CacheStats> e : caches.entrySet())
+    {
+      out.sample("annis_cache_misses_total", e.getValue().missCount(),
+        "cache", e.getKey());
+    }
+  }
+
+  public MetricsRegistry getMetricsRegistry()
+  {
+    return metricsRegistry;
+  }
+
+  public void setMetricsRegistry(MetricsRegistry metricsRegistry)
+  {
+    this.metricsRegistry = metricsRegistry;
+  }
+
+  public BasicDataSource getDataSource()
+  {
+    return dataSource;
+  }
+
+  public void setDataSource(BasicDataSource dataSource)
+  {
+    this.dataSource = dataSource;
+  }
+
+  public AdmissionControl getAdmissionControl()
+  {
+    return admissionControl;
+  }
+
+  public void setAdmissionControl(AdmissionControl admissionControl)
+  {
+    this.admissionControl = admissionControl;
+  }
+
+  public CorpusAdministration getCorpusAdministration()
+  {
+    return corpusAdministration;
+  }
+
+  public void setCorpusAdministration(
+    CorpusAdministration corpusAdministration)
+  {
+    this.corpusAdministration = corpusAdministration;
+  }
+
+  public CompressionPolicy getCompressionPolicy()
+  {
+    return compressionPolicy;
+  }
+
+  public void setCompressionPolicy(CompressionPolicy compressionPolicy)
+  {
+    this.compressionPolicy = compressionPolicy;
+  }
+
+  public ShortenerDao getShortenerDao()
+  {
+    return shortenerDao;
+  }
+
+  public void setShortenerDao(ShortenerDao shortenerDao)
+  {
+    this.shortenerDao = shortenerDao;
+  }
+}
@@ -19,16 +19,20 @@ package annis.service.internal;
 import annis.CommonHelper;
 import annis.GraphHelper;
 import annis.WekaHelper;
+import annis.dao.CorpusCatalog;
 import annis.dao.QueryDao;
 import annis.examplequeries.ExampleQuery;
+import annis.metrics.QueryTimer;
 import annis.model.QueryNode;
 import annis.ql.parser.QueryData;
 import annis.resolver.ResolverEntry;
 import annis.resolver.SingleResolverRequest;
+import annis.security.ANNISSecurityManager;
 import annis.service.QueryService;
 import annis.service.objects.AnnisAttribute;
 import annis.service.objects.AnnisBinaryMetaData;
 import annis.service.objects.AnnisCorpus;
+import annis.service.objects.CompactMatchWriter;
 import annis.service.objects.CorpusConfig;
 import annis.service.objects.CorpusConfigMap;
 import annis.service.objects.DocumentBrowserConfig;
@@ -54,9 +58,11 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
 import static java.util.Arrays.asList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -73,11 +79,15 @@ import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.CacheControl;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.GenericEntity;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
 import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 import org.apache.commons.lang3.StringUtils;
@@ -104,6 +114,12 @@ public class QueryServiceImpl implements QueryService
 
   private final static Logger queryLog = LoggerFactory.getLogger("QueryLog");
 
+  /**
+   * Used if no {@link AdmissionControl} is configured.
+   */
+  private final static AdmissionPool UNLIMITED = new AdmissionPool(
+    "unlimited", Integer.MAX_VALUE, 0, 0);
+
   private QueryDao queryDao;
 
   private WekaHelper wekaHelper;
@@ -112,6 +128,10 @@ public class QueryServiceImpl implements QueryService
 
   private CorpusConfig defaultCorpusConfig;
 
+  private AdmissionControl admissionControl;
+
+  private CorpusCatalog corpusCatalog;
+
   @Context
   private UriInfo uriInfo;
 
@@ -144,6 +164,7 @@ public class QueryServiceImpl implements QueryService
   public Response count(@QueryParam("q") String query,
     @QueryParam("corpora") String rawCorpusNames)
   {
+    QueryTimer.setFunction("COUNT");
 
     requiredParameter(query, "q", "AnnisQL query");
     requiredParameter(rawCorpusNames, "corpora",
@@ -151,14 +172,16 @@ public class QueryServiceImpl implements QueryService
 
     Subject user = SecurityUtils.getSubject();
     List<String> corpusNames = splitCorpusNamesFromRaw(rawCorpusNames);
-    for (String c : corpusNames)
-    {
-      user.checkPermission("query:count:" + c);
-    }
+    checkCorpusPermission(user, "query:count:", corpusNames);
 
     QueryData data = queryDataFromParameters(query, rawCorpusNames);
+    MatchAndDocumentCount count;
     long start = new Date().getTime();
-    MatchAndDocumentCount count = queryDao.countMatchesAndDocuments(data);
+    try (AdmissionPool.Permit permit = admit(
+      AdmissionControl.QueryClass.INTERACTIVE))
+    {
+      count = queryDao.countMatchesAndDocuments(data);
+    }
     long end = new Date().getTime();
 
     logQuery("COUNT", query, splitCorpusNamesFromRaw(rawCorpusNames),
@@ -168,15 +191,23 @@ public class QueryServiceImpl implements QueryService
   }
   
   private StreamingOutput findRaw(final QueryData data, 
-    final String rawCorpusNames, final String query) throws IOException
+    final String rawCorpusNames, final String query, 
+    final boolean compact) throws IOException
   {
     return new StreamingOutput()
     {
       @Override
       public void write(OutputStream output) throws IOException, WebApplicationException
       {
+        // the permit is only acquired if the output is written, thus it is
+        // not lost if the client disconnects before; nothing was written yet,
+        // thus a rejected query still gets the proper status code
         long start = new Date().getTime();
-        queryDao.find(data, output);
+        try (AdmissionPool.Permit permit = admit(
+          AdmissionControl.QueryClass.INTERACTIVE))
+        {
+          queryDao.find(data, output, compact);
+        }
         long end = new Date().getTime();
         logQuery("FIND", query, splitCorpusNamesFromRaw(rawCorpusNames),
           end - start);
@@ -188,8 +219,13 @@ public class QueryServiceImpl implements QueryService
   private List<Match> findXml(QueryData data,
     final String rawCorpusNames, final String query) throws IOException
   {
+    List<Match> result;
     long start = new Date().getTime();
-    List<Match> result = queryDao.find(data);
+    try (AdmissionPool.Permit permit = admit(
+      AdmissionControl.QueryClass.INTERACTIVE))
+    {
+      result = queryDao.find(data);
+    }
     long end = new Date().getTime();
     logQuery("FIND", query, splitCorpusNamesFromRaw(rawCorpusNames), end - start);
     return result;
@@ -199,24 +235,23 @@ public class QueryServiceImpl implements QueryService
   
   @GET
   @Path("search/find")
-  @Produces({"application/xml", "text/plain"})
+  @Produces({"application/xml", "text/plain", CompactMatchWriter.MEDIA_TYPE})
   @Override
   public Response find(@QueryParam("q") String query,
     @QueryParam("corpora") String rawCorpusNames,
     @DefaultValue("0") @QueryParam("offset") String offsetRaw,
     @DefaultValue("-1") @QueryParam("limit") String limitRaw,
-    @DefaultValue("ascending") @QueryParam("order") String orderRaw) throws IOException
+    @DefaultValue("ascending") @QueryParam("order") String orderRaw,
+    @QueryParam("seed") String seedRaw) throws IOException
   {
+    QueryTimer.setFunction("FIND");
     requiredParameter(query, "q", "AnnisQL query");
     requiredParameter(rawCorpusNames, "corpora",
       "comma separated list of corpus names");
 
     Subject user = SecurityUtils.getSubject();
     List<String> corpusNames = splitCorpusNamesFromRaw(rawCorpusNames);
-    for (String c : corpusNames)
-    {
-      user.checkPermission("query:find:" + c);
-    }
+    checkCorpusPermission(user, "query:find:", corpusNames);
 
     int offset = Integer.parseInt(offsetRaw);
     int limit = Integer.parseInt(limitRaw);
@@ -236,9 +271,26 @@ public class QueryServiceImpl implements QueryService
         build());
     }
     
+    Long seed = null;
+    if(seedRaw != null && !seedRaw.isEmpty())
+    {
+      try
+      {
+        seed = Long.parseLong(seedRaw);
+      }
+      catch(NumberFormatException ex)
+      {
+        throw new WebApplicationException(
+          Response.status(Response.Status.BAD_REQUEST).type(
+          MediaType.TEXT_PLAIN).entity(
+          "parameter 'seed' has the invalid value '" + seedRaw + "'. It should be a number").
+          build());
+      }
+    }
+    
     final QueryData data = queryDataFromParameters(query, rawCorpusNames);
     data.setCorpusConfiguration(queryDao.getCorpusConfiguration());
-    data.addExtension(new LimitOffsetQueryData(offset, limit, order));
+    data.addExtension(new LimitOffsetQueryData(offset, limit, order, seed));
     
     String acceptHeader = request.getHeader(HttpHeaders.ACCEPT);
     if (acceptHeader == null || acceptHeader.trim().isEmpty())
@@ -246,7 +298,8 @@ public class QueryServiceImpl implements QueryService
       acceptHeader = "*/*";
     }
     
-    List<String> knownTypes = Lists.newArrayList("text/plain", "application/xml");
+    List<String> knownTypes = Lists.newArrayList("text/plain", "application/xml",
+      CompactMatchWriter.MEDIA_TYPE);
     
     // find the best matching mime type
     String bestMediaTypeMatch =
@@ -254,7 +307,12 @@ public class QueryServiceImpl implements QueryService
     
     if("text/plain".equals(bestMediaTypeMatch))
     {
-      return Response.ok(findRaw(data, rawCorpusNames, query), "text/plain").build();
+      return Response.ok(findRaw(data, rawCorpusNames, query, false), "text/plain").build();
+    }
+    else if(CompactMatchWriter.MEDIA_TYPE.equals(bestMediaTypeMatch))
+    {
+      return Response.ok(findRaw(data, rawCorpusNames, query, true), 
+        CompactMatchWriter.MEDIA_TYPE).build();
     }
     else
     {
@@ -282,6 +340,7 @@ public class QueryServiceImpl implements QueryService
     @QueryParam("metakeys") String rawMetaKeys,
     @DefaultValue("false") @QueryParam("csv") String rawCsv)
   {
+    QueryTimer.setFunction("MATRIX");
     requiredParameter(query, "q", "AnnisQL query");
     requiredParameter(rawCorpusNames, "corpora",
       "comma separated list of corpus names");
@@ -290,10 +349,7 @@ public class QueryServiceImpl implements QueryService
     
     Subject user = SecurityUtils.getSubject();
     List<String> corpusNames = splitCorpusNamesFromRaw(rawCorpusNames);
-    for (String c : corpusNames)
-    {
-      user.checkPermission("query:matrix:" + c);
-    }
+    checkCorpusPermission(user, "query:matrix:", corpusNames);
 
     final QueryData data = queryDataFromParameters(query, rawCorpusNames);
 
@@ -315,7 +371,11 @@ public class QueryServiceImpl implements QueryService
       public void write(OutputStream output) throws IOException, WebApplicationException
       {
         long start = new Date().getTime();
-        queryDao.matrix(data, outputCsv, output);
+        try (AdmissionPool.Permit permit = admit(
+          AdmissionControl.QueryClass.BULK))
+        {
+          queryDao.matrix(data, outputCsv, output);
+        }
         long end = new Date().getTime();
         logQuery("MATRIX", query, splitCorpusNamesFromRaw(rawCorpusNames),
           end - start);
@@ -341,23 +401,26 @@ public class QueryServiceImpl implements QueryService
     @QueryParam("corpora") String rawCorpusNames,
     @QueryParam("fields") String rawFields)
   {
+    QueryTimer.setFunction("FREQUENCY");
     requiredParameter(query, "q", "AnnisQL query");
     requiredParameter(rawCorpusNames, "corpora", "comma separated list of corpus names");
     requiredParameter(rawFields, "fields", "Comma seperated list of result vector elements.");
     
     Subject user = SecurityUtils.getSubject();
     List<String> corpusNames = splitCorpusNamesFromRaw(rawCorpusNames);
-    for(String c : corpusNames)
-    {
-      user.checkPermission("query:matrix:" + c);
-    }
+    checkCorpusPermission(user, "query:matrix:", corpusNames);
     
     QueryData data = queryDataFromParameters(query, rawCorpusNames);
     FrequencyTableQuery ext = FrequencyTableQuery.parse(rawFields);
     data.addExtension(ext);
     
+    FrequencyTable freqTable;
     long start = new Date().getTime();
-    FrequencyTable freqTable = queryDao.frequency(data);
+    try (AdmissionPool.Permit permit = admit(
+      AdmissionControl.QueryClass.BULK))
+    {
+      freqTable = queryDao.frequency(data);
+    }
     long end = new Date().getTime();
     logQuery("FREQUENCY", query, splitCorpusNamesFromRaw(rawCorpusNames), end - start);
     
@@ -380,6 +443,7 @@ public class QueryServiceImpl implements QueryService
     @DefaultValue("0") @QueryParam("right") String rightRaw, 
     @DefaultValue("all") @QueryParam("filter") String filterRaw)
   {
+    QueryTimer.setFunction("SUBGRAPH");
     
     // some robustness stuff
     if (matches == null)
@@ -408,6 +472,7 @@ public class QueryServiceImpl implements QueryService
     @DefaultValue("0") @QueryParam("right") String rightRaw, 
     @DefaultValue("all") @QueryParam("filter") String filterRaw)
   {
+    QueryTimer.setFunction("SUBGRAPH");
     // some robustness stuff
     requiredParameter(matchRaw, "match", "definition of the match");
     
@@ -445,10 +510,7 @@ public class QueryServiceImpl implements QueryService
       }
     }
 
-    for (String c : corpusNames)
-    {
-      user.checkPermission("query:subgraph:" + c);
-    }
+    checkCorpusPermission(user, "query:subgraph:", corpusNames);
 
     List<String> corpusNamesList = new LinkedList<>(corpusNames);
     
@@ -457,8 +519,13 @@ public class QueryServiceImpl implements QueryService
       throw new WebApplicationException(Response.Status.BAD_REQUEST.getStatusCode());
     }
     
+    SaltProject p;
     long start = new Date().getTime();
-    SaltProject p = queryDao.graph(data);
+    try (AdmissionPool.Permit permit = admit(
+      AdmissionControl.QueryClass.INTERACTIVE))
+    {
+      p = queryDao.graph(data);
+    }
     long end = new Date().getTime();
     String options =
       "matches: " + matches.toString()
@@ -481,6 +548,7 @@ public class QueryServiceImpl implements QueryService
     @PathParam("doc") String documentName,
     @QueryParam("filternodeanno") String filternodeanno)
   {
+    QueryTimer.setFunction("GRAPH");
 
     Subject user = SecurityUtils.getSubject();
     user.checkPermission("query:subgraph:" + toplevelCorpusName);
@@ -492,7 +560,8 @@ public class QueryServiceImpl implements QueryService
         .splitToList(filternodeanno);
     }
     
-    try
+    try (AdmissionPool.Permit permit = admit(
+      AdmissionControl.QueryClass.INTERACTIVE))
     {
       long start = new Date().getTime();
       SaltProject p = queryDao.retrieveAnnotationGraph(toplevelCorpusName,
@@ -501,6 +570,11 @@ public class QueryServiceImpl implements QueryService
       logQuery("GRAPH", toplevelCorpusName, documentName, end - start);
       return p;
     }
+    catch (WebApplicationException ex)
+    {
+      // the query was rejected by the admission control
+      throw ex;
+    }
     catch (Exception ex)
     {
       log.error("error when accessing graph " + toplevelCorpusName + "/"
@@ -525,7 +599,7 @@ public class QueryServiceImpl implements QueryService
   @GET
   @Path("corpora")
   @Produces("application/xml")
-  public List<AnnisCorpus> corpora()
+  public Response corpora(@Context Request httpRequest)
   { 
     List<AnnisCorpus> allCorpora = queryDao.listCorpora();
     
@@ -534,38 +608,94 @@ public class QueryServiceImpl implements QueryService
 
     // filter by which corpora the user is allowed to access
     Subject user = SecurityUtils.getSubject();
+    List<String> names = new ArrayList<>(allCorpora.size());
+    for (AnnisCorpus c : allCorpora)
+    {
+      names.add(c.getName());
+    }
+    List<String> allowedList = filterCorpusPermission(user, "query:show:",
+      names);
+
+    EntityTag tag = catalogTag(allowedList);
+    ResponseBuilder notModified = tag == null ? null : httpRequest.
+      evaluatePreconditions(tag);
+    if (notModified != null)
+    {
+      return notModified.cacheControl(revalidate()).build();
+    }
+
+    Set<String> allowedNames = new HashSet<>(allowedList);
     for (AnnisCorpus c : allCorpora)
     {
-      if (user.isPermitted("query:show:" + c.getName()))
+      if (allowedNames.contains(c.getName()))
       {
         allowedCorpora.add(c);
       }
     }
 
-    return allowedCorpora;
+    return Response.ok(new GenericEntity<List<AnnisCorpus>>(allowedCorpora) {})
+      .tag(tag).cacheControl(revalidate()).build();
   }
 
   @GET
   @Path("corpora/config")
   @Produces("application/xml")
-  public CorpusConfigMap corpusConfigs()
+  public Response corpusConfigs(@Context Request httpRequest)
   {
     CorpusConfigMap corpusConfigs = queryDao.getCorpusConfigurations();
     CorpusConfigMap result = new CorpusConfigMap();
     Subject user = SecurityUtils.getSubject();
 
+    List<String> allowed = new ArrayList<>();
     if (corpusConfigs != null)
     {
-      for (String c : corpusConfigs.getCorpusConfigs().keySet())
-      {
-        if (user.isPermitted("query:*:" + c))
-        {
-          result.put(c, corpusConfigs.get(c));
-        }
-      }
+      allowed = filterCorpusPermission(user, "query:*:",
+        corpusConfigs.getCorpusConfigs().keySet());
     }
 
-    return result;
+    EntityTag tag = catalogTag(allowed);
+    ResponseBuilder notModified = tag == null ? null : httpRequest.
+      evaluatePreconditions(tag);
+    if (notModified != null)
+    {
+      return notModified.cacheControl(revalidate()).build();
+    }
+
+    for (String c : allowed)
+    {
+      result.put(c, corpusConfigs.get(c));
+    }
+    return Response.ok(result).tag(tag).cacheControl(revalidate()).build();
+  }
+
+  /**
+   * Creates an entity tag from the version of the corpus catalog and the
+   * corpora the user is allowed to see, since the content of the response
+   * depends on both. A changed corpus configuration file creates a new
+   * version of the catalog as well.
+   *
+   * @return The tag or null if there is no corpus catalog.
+   */
+  private EntityTag catalogTag(List<String> allowedCorpora)
+  {
+    if (corpusCatalog == null)
+    {
+      return null;
+    }
+    return new EntityTag(corpusCatalog.getTag() + "-" + Integer.toHexString(
+      allowedCorpora.hashCode()));
+  }
+
+  /**
+   * Clients may store the response, but have to check if it is still valid
+   * before using it.
+   */
+  private static CacheControl revalidate()
+  {
+    CacheControl cc = new CacheControl();
+    cc.setPrivate(true);
+    cc.setNoCache(true);
+    return cc;
   }
   
 
@@ -683,10 +813,7 @@ public class QueryServiceImpl implements QueryService
   {
     Subject user = SecurityUtils.getSubject();
     List<String> corpusNames = splitCorpusNamesFromRaw(rawCorpusNames);
-    for (String c : corpusNames)
-    {
-      user.checkPermission("query:parse:" + c);
-    }
+    checkCorpusPermission(user, "query:parse:", corpusNames);
     Collections.sort(corpusNames);
     
     List<Long> corpusIDs = queryDao.mapCorpusNamesToIds(
@@ -712,10 +839,7 @@ public class QueryServiceImpl implements QueryService
   {
     Subject user = SecurityUtils.getSubject();
     List<String> corpusNames = splitCorpusNamesFromRaw(rawCorpusNames);
-    for (String c : corpusNames)
-    {
-      user.checkPermission("query:parse:" + c);
-    }
+    checkCorpusPermission(user, "query:parse:", corpusNames);
     Collections.sort(corpusNames);
     
     List<Long> corpusIDs = queryDao.mapCorpusNamesToIds(
@@ -928,16 +1052,9 @@ public class QueryServiceImpl implements QueryService
         }
       }
 
-      List<String> allowedCorpora = new ArrayList<>();
-
       // filter by which corpora the user is allowed to access
-      for (String c : corpusNames)
-      {
-        if (user.isPermitted("query:*:" + c))
-        {
-          allowedCorpora.add(c);
-        }
-      }
+      List<String> allowedCorpora = filterCorpusPermission(user, "query:*:",
+        asList(corpusNames));
 
       List<Long> corpusIDs = queryDao.mapCorpusNamesToIds(allowedCorpora);
       return queryDao.getExampleQueries(corpusIDs);
@@ -965,6 +1082,7 @@ public class QueryServiceImpl implements QueryService
   private void logQuery(String queryFunction, String annisQuery,
     List<String> corpusNames, long runtime, String options)
   {
+    QueryTimer.setFunction(queryFunction);
     StringBuilder sb = new StringBuilder();
     sb.append("function: ");
     sb.append(queryFunction);
@@ -990,6 +1108,75 @@ public class QueryServiceImpl implements QueryService
     queryLog.info(message);
   }
 
+  /**
+   * Waits until the query may be executed, see {@link AdmissionControl}.
+   *
+   * @param queryClass
+   * @return A permit which must be closed after the query was executed.
+   */
+  private AdmissionPool.Permit admit(AdmissionControl.QueryClass queryClass)
+  {
+    if (admissionControl == null)
+    {
+      // no limits, e.g. in tests
+      return UNLIMITED.acquire("");
+    }
+    long start = System.currentTimeMillis();
+    try
+    {
+      return admissionControl.admit(queryClass);
+    }
+    finally
+    {
+      QueryTimer.record(QueryTimer.Stage.admission, System.currentTimeMillis()
+        - start);
+    }
+  }
+
+  /**
+   * Checks the permission <code>prefix + corpus</code> for all corpora. The
+   * decisions are cached by the {@link ANNISSecurityManager}.
+   */
+  private static void checkCorpusPermission(Subject user, String prefix,
+    Collection<String> corpora)
+  {
+    if (SecurityUtils.getSecurityManager() instanceof ANNISSecurityManager)
+    {
+      ((ANNISSecurityManager) SecurityUtils.getSecurityManager()).
+        checkPermittedCorpora(user, prefix, corpora);
+    }
+    else
+    {
+      for (String c : corpora)
+      {
+        user.checkPermission(prefix + c);
+      }
+    }
+  }
+
+  /**
+   * Returns the corpora for which the permission <code>prefix + corpus</code>
+   * is granted. The decisions are cached by the {@link ANNISSecurityManager}.
+   */
+  private static List<String> filterCorpusPermission(Subject user,
+    String prefix, Collection<String> corpora)
+  {
+    if (SecurityUtils.getSecurityManager() instanceof ANNISSecurityManager)
+    {
+      return ((ANNISSecurityManager) SecurityUtils.getSecurityManager()).
+        filterPermittedCorpora(user, prefix, corpora);
+    }
+    List<String> result = new ArrayList<>(corpora.size());
+    for (String c : corpora)
+    {
+      if (user.isPermitted(prefix + c))
+      {
+        result.add(c);
+      }
+    }
+    return result;
+  }
+
   /**
    * Throw an exception if the parameter is missing.
    *
@@ -1039,7 +1226,11 @@ public class QueryServiceImpl implements QueryService
         "text/plain").entity("one ore more corpora are unknown to the system").
         build());
     }
-    return queryDao.parseAQL(query, corpusIDs);
+    long start = System.currentTimeMillis();
+    QueryData data = queryDao.parseAQL(query, corpusIDs);
+    QueryTimer.record(QueryTimer.Stage.parse, System.currentTimeMillis()
+      - start);
+    return data;
   }
 
   /**
@@ -1175,6 +1366,26 @@ public class QueryServiceImpl implements QueryService
     this.defaultCorpusConfig = defaultCorpusConfig;
   }
 
+  public AdmissionControl getAdmissionControl()
+  {
+    return admissionControl;
+  }
+
+  public void setAdmissionControl(AdmissionControl admissionControl)
+  {
+    this.admissionControl = admissionControl;
+  }
+
+  public CorpusCatalog getCorpusCatalog()
+  {
+    return corpusCatalog;
+  }
+
+  public void setCorpusCatalog(CorpusCatalog corpusCatalog)
+  {
+    this.corpusCatalog = corpusCatalog;
+  }
+
   /**
    * Fetches the raw text from the text.tab file.
    *
@@ -236,11 +236,15 @@ public abstract class AbstractSqlGenerator
   {
     if (orderByClauseSqlGenerator != null)
     {
-      sb.append(indent);
-      sb.append("ORDER BY ");
-      sb.append(orderByClauseSqlGenerator.orderByClause(queryData, alternative,
-        indent));
-      sb.append("\n");
+      String orderBy = orderByClauseSqlGenerator.orderByClause(queryData,
+        alternative, indent);
+      if (orderBy != null && !orderBy.trim().isEmpty())
+      {
+        sb.append(indent);
+        sb.append("ORDER BY ");
+        sb.append(orderBy);
+        sb.append("\n");
+      }
     }
   }
 
@@ -40,6 +40,12 @@ public class CommonLimitOffsetGenerator implements
 
     if (LimitOffsetQueryData != null)
     {
+      if(LimitOffsetQueryData.isSampled())
+      {
+        // the page is selected from the complete result afterwards
+        return "";
+      }
+
       limit = LimitOffsetQueryData.getLimit();
       offset = LimitOffsetQueryData.getOffset();
     }
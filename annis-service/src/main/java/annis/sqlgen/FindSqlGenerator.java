@@ -22,17 +22,18 @@ import annis.service.objects.Match;
 import com.google.common.base.Preconditions;
 import com.google.common.escape.Escaper;
 import com.google.common.net.UrlEscapers;
+import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.TreeMap;
 import org.slf4j.Logger;
@@ -59,8 +60,8 @@ public class FindSqlGenerator extends AbstractSqlGenerator
   private AnnotationConditionProvider annoCondition;
   private SolutionSqlGenerator solutionSqlGenerator;
 
-  private final Escaper fragmentEscaper = UrlEscapers.urlFragmentEscaper();
-  private final Escaper pathEscaper = UrlEscapers.urlPathSegmentEscaper();
+  private static final Escaper fragmentEscaper = UrlEscapers.urlFragmentEscaper();
+  private static final Escaper pathEscaper = UrlEscapers.urlPathSegmentEscaper();
   
   @Override
   public String selectClause(QueryData queryData, List<QueryNode> alternative,
@@ -156,106 +157,162 @@ public class FindSqlGenerator extends AbstractSqlGenerator
   
   
   
+  /**
+   * Receives the raw values of each match when the result is streamed with
+   * {@link #streamMatches(java.sql.ResultSet, annis.sqlgen.FindSqlGenerator.MatchHandler) }.
+   */
+  public interface MatchHandler
+  {
+    /**
+     * Called for each row of the result.
+     * 
+     * The lists of node names and annotations are re-used for the next row
+     * and must be copied if they are needed after this call.
+     * 
+     * @param corpusPath The unescaped corpus path, starting with the top-level corpus.
+     * @param nodeNames The unescaped node names.
+     * @param annos The qualified matched annotation names, can contain {@code null}.
+     * @throws SQLException
+     * @throws IOException 
+     */
+    public void match(List<String> corpusPath, List<String> nodeNames,
+      List<String> annos) throws SQLException, IOException;
+  }
+  
   @Override
   public List<Match> extractData(ResultSet rs) throws SQLException,
     DataAccessException
   {
     List<Match> matches = new ArrayList<>();
-    int rowNum = 0;
+    ColumnLayout layout = null;
+    SaltIDBuilder idBuilder = new SaltIDBuilder();
     while (rs.next())
     {
-      matches.add(mapRow(rs, ++rowNum));
+      if(layout == null)
+      {
+        layout = new ColumnLayout(rs);
+      }
+      matches.add(createMatch(rs, layout, idBuilder));
     }
     return matches;
   }
 
   @Override
   public Match mapRow(ResultSet rs, int rowNum) throws SQLException
+  {
+    return createMatch(rs, new ColumnLayout(rs), new SaltIDBuilder());
+  }
+  
+  /**
+   * Iterates over the complete result and calls the handler for each row
+   * without creating any {@link Match} or {@link URI} objects.
+   * 
+   * The column indexes are only resolved once for the whole result.
+   * 
+   * @param rs
+   * @param handler
+   * @return The number of matches.
+   * @throws SQLException
+   * @throws IOException 
+   */
+  public int streamMatches(ResultSet rs, MatchHandler handler) 
+    throws SQLException, IOException
+  {
+    int count = 0;
+    ColumnLayout layout = null;
+    List<String> nodeNames = new ArrayList<>();
+    List<String> annos = new ArrayList<>();
+    while(rs.next())
+    {
+      if(layout == null)
+      {
+        layout = new ColumnLayout(rs);
+      }
+      nodeNames.clear();
+      annos.clear();
+      List<String> corpusPath = readRow(rs, layout, nodeNames, annos);
+      handler.match(corpusPath, nodeNames, annos);
+      count++;
+    }
+    return count;
+  }
+  
+  private Match createMatch(ResultSet rs, ColumnLayout layout, 
+    SaltIDBuilder idBuilder) throws SQLException
+  {
+    List<String> nodeNames = new ArrayList<>();
+    List<String> annos = new ArrayList<>();
+    List<String> corpusPath = readRow(rs, layout, nodeNames, annos);
+    
+    return createMatch(corpusPath, nodeNames, annos, idBuilder);
+  }
+  
+  /**
+   * Creates a match from the values given to a {@link MatchHandler}.
+   * 
+   * @param corpusPath
+   * @param nodeNames
+   * @param annos
+   * @param idBuilder
+   * @return 
+   */
+  public Match createMatch(List<String> corpusPath, List<String> nodeNames,
+    List<String> annos, SaltIDBuilder idBuilder)
   {
     Match match = new Match();
-
-    // get size of solution
-    ResultSetMetaData metaData = rs.getMetaData();
-    int columnCount = metaData.getColumnCount();
-
-    // the order of columns is not determined and I have to combined two
-    // values, so save them here and combine later
-    List<String> corpus_path = null;
-
-    //get path
+    for(int i=0; i < nodeNames.size(); i++)
+    {
+      String saltID = idBuilder.build(corpusPath, nodeNames.get(i));
+      try
+      {
+        match.addSaltId(new URI(saltID), annos.get(i));
+      }
+      catch (URISyntaxException ex)
+      {
+        log.error("Could not generate valid ID from path "
+          + corpusPath + " and node name " + nodeNames.get(i), ex);
+      }
+    }
+    return match;
+  }
+  
+  /**
+   * Reads the node names and annotation names of the current row.
+   * 
+   * @return The corpus path.
+   */
+  private List<String> readRow(ResultSet rs, ColumnLayout layout,
+    List<String> nodeNames, List<String> annos) throws SQLException
+  {
+    List<String> corpusPath = null;
     if (outputCorpusPath)
     {
-      for (int column = 1; column <= columnCount; ++column)
+      if(corpusPathExtractor != null)
       {
-        if (corpusPathExtractor != null && metaData.getColumnName(column).
-          startsWith("path_name"))
+        for(String column : layout.pathColumns)
         {
-          List<String> genCorpusPath = corpusPathExtractor.extractCorpusPath(rs,
-            metaData.getColumnName(column));
-          // only use corpus path if valid
-          if (genCorpusPath != null)
+          corpusPath = corpusPathExtractor.extractCorpusPath(rs, column);
+          // only use corpus path if valid, all corpus paths are the same
+          if(corpusPath != null)
           {
-            corpus_path = genCorpusPath;
-            // all corpus paths are the same
             break;
           }
         }
       }
 
-      // collect the salt id, node name appendix, annotation namespaces and annotation names
-      Map<Integer, String> saltIDs = new TreeMap<>();
-      Map<Integer, String> nodeAnnoNamespaces = new HashMap<>();
-      Map<Integer, String> nodeAnnoNames = new HashMap<>();
-
-      for (int column = 1; column <= columnCount; ++column)
+      for(int i=0; i < layout.saltIDColumns.length; i++)
       {
-        String columnName = metaData.getColumnName(column);
-        if (columnName.startsWith("salt_id"))
+        String saltID = rs.getString(layout.saltIDColumns[i]);
+        if(saltID != null)
         {
-          String numberAsString = columnName.substring("salt_id".length());
-          try
-          {
-            int number = Integer.parseInt(numberAsString);
-            String saltIDForNode = rs.getString(column);
-            if(saltIDForNode != null)
-            {
-              saltIDs.put(number, rs.getString(column));
-
-              String annoNamespace = rs.getString("node_annotation_ns" + number);
-              if (annoNamespace != null)
-              {
-                nodeAnnoNamespaces.put(number, annoNamespace);
-              }
-              String annoName = rs.getString("node_annotation_name" + number);
-              if (annoName != null)
-              {
-                nodeAnnoNames.put(number, annoName);
-              }
-            }
-
-          }
-          catch (NumberFormatException ex)
-          {
-            log.error("Could not extract the number for column " + columnName,
-              ex);
-          }
+          nodeNames.add(saltID);
+          annos.add(buildAnnoName(rs.getString(layout.annoNamespaceColumns[i]),
+            rs.getString(layout.annoNameColumns[i])));
         }
       }
-
-      for (Map.Entry<Integer, String> saltIDEntry : saltIDs.entrySet())
-      {
-        URI saltID = buildSaltId(corpus_path, saltIDEntry.getValue());
-        
-        String qualifiedAnnoName = 
-          buildAnnoName(nodeAnnoNamespaces.get(saltIDEntry.getKey()),
-            nodeAnnoNames.get(saltIDEntry.getKey()));
-        
-        match.addSaltId(saltID, qualifiedAnnoName);
-      }
-
     } // end if output path
-
-    return match;
+    
+    return corpusPath;
   }
   
   private String buildAnnoName(String ns, String name)
@@ -275,41 +332,97 @@ public class FindSqlGenerator extends AbstractSqlGenerator
   }
   
   /**
-   * Builds a proper salt ID.
-   * @param path
-   * @param saltID
-   * @return 
+   * The indexes of the columns needed to construct a match. The order of the
+   * columns is not determined, so they are looked up once per result set
+   * instead of searching the meta data for each row.
    */
-  private URI buildSaltId(List<String> path, String saltID)
+  private static class ColumnLayout
   {
-    StringBuilder sb = new StringBuilder("salt:/");
-
-    Iterator<String> itPath = path.iterator();
-    while(itPath.hasNext())
+    private final List<String> pathColumns = new ArrayList<>();
+    private final int[] saltIDColumns;
+    private final int[] annoNamespaceColumns;
+    private final int[] annoNameColumns;
+    
+    public ColumnLayout(ResultSet rs) throws SQLException
     {
-      String dir = itPath.next();
-      sb.append(pathEscaper.escape(dir));
-      if(itPath.hasNext())
+      ResultSetMetaData metaData = rs.getMetaData();
+      int columnCount = metaData.getColumnCount();
+      
+      // the salt ID columns are ordered by their node number
+      Map<Integer, Integer> saltIDs = new TreeMap<>();
+      for (int column = 1; column <= columnCount; ++column)
+      {
+        String columnName = metaData.getColumnName(column);
+        if(columnName.startsWith("path_name") 
+          && !pathColumns.contains(columnName))
+        {
+          pathColumns.add(columnName);
+        }
+        else if (columnName.startsWith("salt_id"))
+        {
+          String numberAsString = columnName.substring("salt_id".length());
+          try
+          {
+            saltIDs.put(Integer.parseInt(numberAsString), column);
+          }
+          catch (NumberFormatException ex)
+          {
+            log.error("Could not extract the number for column " + columnName,
+              ex);
+          }
+        }
+      }
+      
+      saltIDColumns = new int[saltIDs.size()];
+      annoNamespaceColumns = new int[saltIDs.size()];
+      annoNameColumns = new int[saltIDs.size()];
+      int i=0;
+      for(Map.Entry<Integer, Integer> e : saltIDs.entrySet())
       {
-        sb.append("/");
+        saltIDColumns[i] = e.getValue();
+        annoNamespaceColumns[i] = rs.findColumn("node_annotation_ns" + e.getKey());
+        annoNameColumns[i] = rs.findColumn("node_annotation_name" + e.getKey());
+        i++;
       }
     }
+  }
+  
+  /**
+   * Builds proper escaped Salt IDs.
+   * 
+   * The escaped corpus path is re-used as long as consecutive matches belong
+   * to the same document. Instances are not thread-safe.
+   */
+  public static class SaltIDBuilder
+  {
+    private List<String> lastPath;
+    private String lastPrefix;
     
-    sb.append("#").append(fragmentEscaper.escape(saltID));
-
-
-    URI result;
-    try
-    {
-      result = new URI(sb.toString());
-      return result;
-    }
-    catch (URISyntaxException ex)
+    public String build(List<String> path, String saltID)
     {
-      log.error("Could not generate valid ID from path "
-        + path.toString() + " and node name " + saltID, ex);
+      if(lastPrefix == null || !Objects.equals(path, lastPath))
+      {
+        StringBuilder sb = new StringBuilder("salt:/");
+        if(path != null)
+        {
+          Iterator<String> itPath = path.iterator();
+          while(itPath.hasNext())
+          {
+            String dir = itPath.next();
+            sb.append(pathEscaper.escape(dir));
+            if(itPath.hasNext())
+            {
+              sb.append("/");
+            }
+          }
+        }
+        sb.append("#");
+        
+        lastPath = path;
+        lastPrefix = sb.toString();
+      }
+      return lastPrefix + fragmentEscaper.escape(saltID);
     }
-    return null;
   }
   
   
@@ -36,21 +36,24 @@ RowMapper<ExampleQuery>
 
   public String createSQLQuery(List<Long> corpusIDs)
   {
+    // queries which exceeded the timeout are not listed
     if (corpusIDs == null || corpusIDs.isEmpty())
     {
       return "SELECT example_query, example_queries.\"type\", used_ops, "
-        + "description, c.name as corpus_name "
+        + "description, runtime, c.name as corpus_name "
         + "\nFROM example_queries, corpus c"
-        + "\nWHERE corpus_ref = c.id";
+        + "\nWHERE corpus_ref = c.id"
+        + "\nAND (runtime IS NULL OR runtime >= 0)";
     }
     else
     {
       String sql = "SELECT example_query, example_queries.\"type\", used_ops, "
-        + "description, c.name as corpus_name  "
+        + "description, runtime, c.name as corpus_name  "
         + "\nFROM example_queries, ("
         + "\nSELECT * FROM corpus "
         + "\nWHERE corpus.id in (" + StringUtils.join(corpusIDs, ",") + ")) as c"
         + "\nWHERE	corpus_ref = c.id"
+        + "\nAND (runtime IS NULL OR runtime >= 0)"
         + "\nORDER BY (nodes, used_ops)";
 
       return sql;
@@ -67,6 +70,8 @@ RowMapper<ExampleQuery>
     exampleQuery.setExampleQuery(rs.getString("example_query"));
     exampleQuery.setDescription(rs.getString("description"));
     exampleQuery.setCorpusName(rs.getString("corpus_name"));
+    long runtime = rs.getLong("runtime");
+    exampleQuery.setRuntime(rs.wasNull() ? null : runtime);
 
     return exampleQuery;
   }
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2016 SFB 632.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package annis.sqlgen;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Selects a page of randomly ordered matches while the complete result is
+ * streamed from the database.
+ *
+ * Each match gets a pseudo-random key which is a hash of the seed and the
+ * match itself. The random order is the order of these keys, so it does not
+ * depend on the order the database returns the matches in and the same seed
+ * always results in the same pages. Only the {@code offset + limit} matches
+ * with the smallest keys are kept in memory, so the database does not need to
+ * sort the complete result.
+ *
+ * @author Thomas Krause <krauseto@hu-berlin.de>
+ */
+public class RandomMatchSample implements FindSqlGenerator.MatchHandler
+{
+
+  private final HashFunction hashFunction = Hashing.murmur3_128();
+
+  private final long seed;
+
+  private final int offset;
+
+  private final int capacity;
+
+  /**
+   * Contains the sampled matches, the entry with the largest key is the head.
+   */
+  private final PriorityQueue<Entry> sample;
+
+  /**
+   * Constructor.
+   *
+   * @param seed The seed for the random order, if {@code null} a random seed
+   * is chosen.
+   * @param offset Number of matches to skip.
+   * @param limit Number of matches of the page, a negative value means that
+   * all matches are returned.
+   */
+  public RandomMatchSample(Long seed, int offset, int limit)
+  {
+    this.seed = seed == null ? ThreadLocalRandom.current().nextLong() : seed;
+    this.offset = Math.max(offset, 0);
+    if (limit < 0 || (long) this.offset + limit > Integer.MAX_VALUE)
+    {
+      this.capacity = Integer.MAX_VALUE;
+    }
+    else
+    {
+      this.capacity = this.offset + limit;
+    }
+    this.sample = new PriorityQueue<>(Math.min(capacity, 1024) + 1,
+      Collections.reverseOrder());
+  }
+
+  @Override
+  public void match(List<String> corpusPath, List<String> nodeNames,
+    List<String> annos)
+  {
+    if (capacity == 0)
+    {
+      return;
+    }
+
+    Hasher hasher = hashFunction.newHasher();
+    hasher.putLong(seed);
+    putList(hasher, corpusPath);
+    putList(hasher, nodeNames);
+    long key = hasher.hash().asLong();
+
+    if (sample.size() < capacity)
+    {
+      sample.add(new Entry(key, corpusPath, nodeNames, annos));
+    }
+    else
+    {
+      Entry largest = sample.peek();
+      if (compare(key, corpusPath, nodeNames, largest) < 0)
+      {
+        sample.poll();
+        sample.add(new Entry(key, corpusPath, nodeNames, annos));
+      }
+    }
+  }
+
+  /**
+   * Passes the selected page in the random order to the given handler.
+   *
+   * @param handler
+   * @throws SQLException
+   * @throws IOException
+   */
+  public void replay(FindSqlGenerator.MatchHandler handler) throws SQLException,
+    IOException
+  {
+    List<Entry> sorted = new ArrayList<>(sample);
+    Collections.sort(sorted);
+    for (int i = offset; i < sorted.size(); i++)
+    {
+      Entry e = sorted.get(i);
+      handler.match(e.corpusPath, e.nodeNames, e.annos);
+    }
+  }
+
+  public long getSeed()
+  {
+    return seed;
+  }
+
+  private static void putList(Hasher hasher, List<String> values)
+  {
+    if (values != null)
+    {
+      for (String v : values)
+      {
+        hasher.putUnencodedChars(v == null ? "" : v);
+        hasher.putChar('\0');
+      }
+    }
+    hasher.putChar('\1');
+  }
+
+  private static int compare(long key, List<String> corpusPath,
+    List<String> nodeNames, Entry other)
+  {
+    int result = Long.compare(key, other.key);
+    if (result == 0)
+    {
+      // make the order deterministic even if two hashes collide
+      result = compareLists(corpusPath, other.corpusPath);
+    }
+    if (result == 0)
+    {
+      result = compareLists(nodeNames, other.nodeNames);
+    }
+    return result;
+  }
+
+  private static int compareLists(List<String> a, List<String> b)
+  {
+    if (a == null || b == null)
+    {
+      return a == null ? (b == null ? 0 : -1) : 1;
+    }
+    for (int i = 0; i < a.size() && i < b.size(); i++)
+    {
+      String x = a.get(i) == null ? "" : a.get(i);
+      String y = b.get(i) == null ? "" : b.get(i);
+      int result = x.compareTo(y);
+      if (result != 0)
+      {
+        return result;
+      }
+    }
+    return Integer.compare(a.size(), b.size());
+  }
+
+  private static class Entry implements Comparable<Entry>
+  {
+
+    private final long key;
+
+    private final List<String> corpusPath;
+
+    private final List<String> nodeNames;
+
+    private final List<String> annos;
+
+    public Entry(long key, List<String> corpusPath, List<String> nodeNames,
+      List<String> annos)
+    {
+      this.key = key;
+      // the lists are re-used by the caller
+      this.corpusPath = corpusPath == null ? null : new ArrayList<>(corpusPath);
+      this.nodeNames = new ArrayList<>(nodeNames);
+      this.annos = new ArrayList<>(annos);
+    }
+
+    @Override
+    public int compareTo(Entry o)
+    {
+      return compare(key, corpusPath, nodeNames, o);
+    }
+  }
+}
@@ -182,6 +182,7 @@ public class SolutionSqlGenerator extends AbstractUnionSqlGenerator
     String indent)
   {
     OrderType order = OrderType.ascending;
+    boolean sampled = false;
     
     List<LimitOffsetQueryData> ext = queryData.getExtensions(
       LimitOffsetQueryData.class);
@@ -189,11 +190,14 @@ public class SolutionSqlGenerator extends AbstractUnionSqlGenerator
     if(!ext.isEmpty())
     {
       order = ext.get(0).getOrder();
+      sampled = ext.get(0).isSampled();
     }
     
     if(order == OrderType.random)
     {
-      return "random()";
+      // a sampled result is ordered by RandomMatchSample, which does not need
+      // any specific order
+      return sampled ? null : "random()";
     }
     else
     {
@@ -27,19 +27,34 @@ public class LimitOffsetQueryData
   private final int offset;
   private final int limit;
   private final OrderType order;
+  private final Long seed;
 
   public LimitOffsetQueryData(int offset, int limit)
   {
-    this.offset = offset;
-    this.limit = limit;
-    this.order = OrderType.ascending;
+    this(offset, limit, OrderType.ascending);
   }
 
   public LimitOffsetQueryData(int offset, int limit, OrderType order)
+  {
+    this(offset, limit, order, null);
+  }
+
+  /**
+   * Constructor.
+   * 
+   * @param offset
+   * @param limit
+   * @param order
+   * @param seed The seed for the random order. The same seed will always
+   * result in the same order, so the pages are consistent. If {@code null}
+   * a new random seed is used for each query.
+   */
+  public LimitOffsetQueryData(int offset, int limit, OrderType order, Long seed)
   {
     this.offset = offset;
     this.limit = limit;
     this.order = order;
+    this.seed = seed;
   }
   
   
@@ -63,5 +78,23 @@ public class LimitOffsetQueryData
   {
     return order;
   }
+
+  public Long getSeed()
+  {
+    return seed;
+  }
+
+  /**
+   * Returns true if the page is not selected by the database, but by
+   * sampling the complete result (e.g. for the random order). Without a
+   * limit all matches would be kept in memory, thus the database orders them
+   * randomly instead.
+   * 
+   * @return 
+   */
+  public boolean isSampled()
+  {
+    return order == OrderType.random && limit >= 0;
+  }
   
 }
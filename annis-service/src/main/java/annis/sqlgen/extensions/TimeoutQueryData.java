@@ -0,0 +1,41 @@
+/*
+ * Copyright 2016 SFB 632.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package annis.sqlgen.extensions;
+
+/**
+ * Overrides the configured statement timeout for a single query.
+ *
+ * @author Thomas Krause <krauseto@hu-berlin.de>
+ */
+public class TimeoutQueryData
+{
+
+  private final int timeout;
+
+  /**
+   *
+   * @param timeout The timeout in milliseconds, 0 disables the timeout.
+   */
+  public TimeoutQueryData(int timeout)
+  {
+    this.timeout = timeout;
+  }
+
+  public int getTimeout()
+  {
+    return timeout;
+  }
+}
@@ -0,0 +1,556 @@
+/*
+ * Copyright 2016 SFB 632.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package annis.utils;
+
+import com.google.common.base.Splitter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.sql.DataSource;
+import org.apache.commons.dbcp2.BasicDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.ConnectionProxy;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * A DataSource that sends read-only transactions to replicas of the primary
+ * database.
+ *
+ * All connections which are not requested for a read-only transaction (thus
+ * all writes and all administration tasks) are taken from the primary
+ * DataSource. Read-only transactions use the healthy replica with the least
+ * connections in use. A replica is healthy if it can be reached and does not
+ * lag behind the primary more than {@link #getMaxLag() } seconds. If no
+ * replica is healthy the primary is used. Tasks which must see their own
+ * commits can be bound to the primary with
+ * {@link #onPrimary(java.lang.Runnable) }.
+ *
+ * <p>
+ * Since the read-only flag of a transaction is only known after its
+ * connection was requested, this DataSource must be wrapped by a
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}.
+ * </p>
+ *
+ * @author Thomas Krause <krauseto@hu-berlin.de>
+ */
+public class ReplicaRoutingDataSource extends AbstractDataSource
+{
+
+  private static final Logger log = LoggerFactory.getLogger(
+    ReplicaRoutingDataSource.class);
+
+  private static final ThreadLocal<Boolean> primaryOnly = new ThreadLocal<>();
+
+  private DataSource primary;
+
+  private final List<Replica> replicas = new ArrayList<>();
+
+  private String replicaUrls;
+
+  private String driverClassName;
+
+  private String username;
+
+  private String password;
+
+  private String connectionProperties;
+
+  private List<String> connectionInitSqls;
+
+  private int maxLag = 30;
+
+  private int healthCheckInterval = 10;
+
+  private final AtomicInteger nextReplica = new AtomicInteger();
+
+  private ScheduledExecutorService healthCheckExecutor;
+
+  /**
+   * Called when Spring configuration finished. Creates the configured
+   * replicas and starts checking their health.
+   */
+  public void init()
+  {
+    if (replicaUrls != null)
+    {
+      for (String url : Splitter.on(',').trimResults().omitEmptyStrings().
+        split(replicaUrls))
+      {
+        addReplica(url, createDataSource(url));
+      }
+    }
+
+    if (!replicas.isEmpty())
+    {
+      log.info("routing read-only transactions to {} replicas",
+        replicas.size());
+      healthCheckExecutor = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder().setNameFormat("replica-health-%d").
+        setDaemon(true).build());
+      healthCheckExecutor.scheduleWithFixedDelay(new Runnable()
+      {
+        @Override
+        public void run()
+        {
+          checkHealth();
+        }
+      }, 0, healthCheckInterval, TimeUnit.SECONDS);
+    }
+  }
+
+  /**
+   * Called when the Spring context is closed.
+   */
+  public void destroy()
+  {
+    if (healthCheckExecutor != null)
+    {
+      healthCheckExecutor.shutdownNow();
+    }
+    for (Replica r : replicas)
+    {
+      if (r.dataSource instanceof BasicDataSource)
+      {
+        try
+        {
+          ((BasicDataSource) r.dataSource).close();
+        }
+        catch (SQLException ex)
+        {
+          log.warn("Could not close the connections to replica " + r.name, ex);
+        }
+      }
+    }
+  }
+
+  /**
+   * Adds a replica. It is not used before its health was checked.
+   *
+   * @param name A name used in log messages, e.g. the JDBC URL.
+   * @param dataSource
+   */
+  public void addReplica(String name, DataSource dataSource)
+  {
+    replicas.add(new Replica(name, dataSource));
+  }
+
+  /**
+   * Wraps a task, thus all its read-only transactions use the primary. This
+   * is needed for reads which must see a commit that just happened (e.g. of
+   * an import), since the replicas might not have replayed it yet.
+   *
+   * @param task
+   * @return
+   */
+  public static Runnable onPrimary(final Runnable task)
+  {
+    return new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        Boolean old = primaryOnly.get();
+        primaryOnly.set(Boolean.TRUE);
+        try
+        {
+          task.run();
+        }
+        finally
+        {
+          if (old == null)
+          {
+            primaryOnly.remove();
+          }
+          else
+          {
+            primaryOnly.set(old);
+          }
+        }
+      }
+    };
+  }
+
+  @Override
+  public Connection getConnection() throws SQLException
+  {
+    Connection con = getReplicaConnection(null, null);
+    return con == null ? primary.getConnection() : con;
+  }
+
+  @Override
+  public Connection getConnection(String username, String password) throws
+    SQLException
+  {
+    Connection con = getReplicaConnection(username, password);
+    return con == null ? primary.getConnection(username, password) : con;
+  }
+
+  /**
+   * Gets a connection from a healthy replica if the current transaction is
+   * read-only and not bound to the primary by {@link #onPrimary(java.lang.Runnable)
+   * }.
+   *
+   * @param username The user or null to use the default one.
+   * @param password
+   * @return The connection or null if the primary must be used.
+   */
+  private Connection getReplicaConnection(String username, String password)
+  {
+    if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+      || primaryOnly.get() != null)
+    {
+      return null;
+    }
+    Replica replica;
+    while ((replica = selectReplica()) != null)
+    {
+      try
+      {
+        return replica.getConnection(username, password);
+      }
+      catch (SQLException ex)
+      {
+        log.warn("Could not connect to replica " + replica.name
+          + ", it is not used until the next health check", ex);
+        replica.healthy = false;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Checks if the replicas can be reached and how far they lag behind the
+   * primary.
+   */
+  public void checkHealth()
+  {
+    for (Replica r : replicas)
+    {
+      boolean healthy;
+      try (Connection con = r.dataSource.getConnection())
+      {
+        r.lag = queryLag(con);
+        healthy = r.lag <= maxLag;
+        if (!healthy && r.healthy)
+        {
+          log.warn("replica {} lags {} seconds behind the primary and is not "
+            + "used anymore", r.name, r.lag);
+        }
+      }
+      catch (SQLException ex)
+      {
+        healthy = false;
+        if (r.healthy)
+        {
+          log.warn("replica " + r.name + " is not reachable", ex);
+        }
+      }
+      if (healthy && !r.healthy)
+      {
+        log.info("using replica {}", r.name);
+      }
+      r.healthy = healthy;
+    }
+  }
+
+  /**
+   * The healthy replica with the least connections in use.
+   *
+   * @return The replica or null if no replica is healthy.
+   */
+  private Replica selectReplica()
+  {
+    int size = replicas.size();
+    if (size == 0)
+    {
+      return null;
+    }
+    // start at a different replica each time, so replicas with the same
+    // number of connections are used in turn
+    int start = (nextReplica.getAndIncrement() & Integer.MAX_VALUE) % size;
+    Replica best = null;
+    for (int i = 0; i < size; i++)
+    {
+      Replica r = replicas.get((start + i) % size);
+      if (r.healthy && (best == null
+        || r.outstanding.get() < best.outstanding.get()))
+      {
+        best = r;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Seconds the replica of the connection lags behind the primary.
+   *
+   * @param con
+   * @return
+   * @throws SQLException
+   */
+  protected double queryLag(Connection con) throws SQLException
+  {
+    String receive;
+    String replay;
+    if (con.getMetaData().getDatabaseMajorVersion() >= 10)
+    {
+      receive = "pg_last_wal_receive_lsn()";
+      replay = "pg_last_wal_replay_lsn()";
+    }
+    else
+    {
+      receive = "pg_last_xlog_receive_location()";
+      replay = "pg_last_xlog_replay_location()";
+    }
+    // a replica which replayed everything it received does not lag, even
+    // when the last transaction on the primary is long ago
+    String sql = "SELECT CASE\n"
+      + "  WHEN NOT pg_is_in_recovery() THEN 0\n"
+      + "  WHEN " + receive + " = " + replay + " THEN 0\n"
+      + "  ELSE coalesce(extract(epoch FROM now() - "
+      + "pg_last_xact_replay_timestamp()), 0)\n"
+      + "END";
+    try (Statement stmt = con.createStatement();
+      ResultSet rs = stmt.executeQuery(sql))
+    {
+      return rs.next() ? rs.getDouble(1) : 0.0;
+    }
+  }
+
+  private DataSource createDataSource(String url)
+  {
+    BasicDataSource result = new BasicDataSource();
+    result.setUrl(url);
+    result.setDriverClassName(driverClassName);
+    result.setUsername(username);
+    result.setPassword(password);
+    if (connectionProperties != null && !connectionProperties.isEmpty())
+    {
+      result.setConnectionProperties(connectionProperties);
+    }
+    if (connectionInitSqls != null)
+    {
+      result.setConnectionInitSqls(connectionInitSqls);
+    }
+    if (primary instanceof BasicDataSource)
+    {
+      // validate the connections the same way as the primary database
+      BasicDataSource p = (BasicDataSource) primary;
+      result.setValidationQuery(p.getValidationQuery());
+      result.setValidationQueryTimeout(p.getValidationQueryTimeout());
+      result.setTestOnBorrow(p.getTestOnBorrow());
+      result.setTimeBetweenEvictionRunsMillis(p.
+        getTimeBetweenEvictionRunsMillis());
+      result.setNumTestsPerEvictionRun(p.getNumTestsPerEvictionRun());
+    }
+    else
+    {
+      result.setTestOnBorrow(true);
+    }
+    result.setTestWhileIdle(true);
+    result.setDefaultReadOnly(true);
+    result.setAccessToUnderlyingConnectionAllowed(true);
+    return result;
+  }
+
+  public DataSource getPrimary()
+  {
+    return primary;
+  }
+
+  /**
+   * The DataSource for all writes and all transactions which are not
+   * read-only.
+   *
+   * @param primary
+   */
+  public void setPrimary(DataSource primary)
+  {
+    this.primary = primary;
+  }
+
+  public String getReplicaUrls()
+  {
+    return replicaUrls;
+  }
+
+  /**
+   * Comma separated list of JDBC URLs of the replicas. The replicas use the
+   * same user and password as the primary.
+   *
+   * @param replicaUrls
+   */
+  public void setReplicaUrls(String replicaUrls)
+  {
+    this.replicaUrls = replicaUrls;
+  }
+
+  public String getDriverClassName()
+  {
+    return driverClassName;
+  }
+
+  public void setDriverClassName(String driverClassName)
+  {
+    this.driverClassName = driverClassName;
+  }
+
+  public String getUsername()
+  {
+    return username;
+  }
+
+  public void setUsername(String username)
+  {
+    this.username = username;
+  }
+
+  public String getPassword()
+  {
+    return password;
+  }
+
+  public void setPassword(String password)
+  {
+    this.password = password;
+  }
+
+  public String getConnectionProperties()
+  {
+    return connectionProperties;
+  }
+
+  public void setConnectionProperties(String connectionProperties)
+  {
+    this.connectionProperties = connectionProperties;
+  }
+
+  public List<String> getConnectionInitSqls()
+  {
+    return connectionInitSqls;
+  }
+
+  public void setConnectionInitSqls(List<String> connectionInitSqls)
+  {
+    this.connectionInitSqls = connectionInitSqls;
+  }
+
+  public int getMaxLag()
+  {
+    return maxLag;
+  }
+
+  /**
+   * Maximal number of seconds a replica may lag behind the primary.
+   *
+   * @param maxLag
+   */
+  public void setMaxLag(int maxLag)
+  {
+    this.maxLag = maxLag;
+  }
+
+  public int getHealthCheckInterval()
+  {
+    return healthCheckInterval;
+  }
+
+  /**
+   * Number of seconds between two health checks.
+   *
+   * @param healthCheckInterval
+   */
+  public void setHealthCheckInterval(int healthCheckInterval)
+  {
+    this.healthCheckInterval = healthCheckInterval;
+  }
+
+  private static class Replica
+  {
+
+    private final String name;
+
+    private final DataSource dataSource;
+
+    private final AtomicInteger outstanding = new AtomicInteger();
+
+    private volatile boolean healthy = false;
+
+    private volatile double lag;
+
+    public Replica(String name, DataSource dataSource)
+    {
+      this.name = name;
+      this.dataSource = dataSource;
+    }
+
+    /**
+     * Gets a connection which is counted as outstanding until it is closed.
+     */
+    public Connection getConnection(String username, String password) throws
+      SQLException
+    {
+      final Connection con = username == null ? dataSource.getConnection()
+        : dataSource.getConnection(username, password);
+      outstanding.incrementAndGet();
+      final AtomicBoolean closed = new AtomicBoolean(false);
+      return (Connection) Proxy.newProxyInstance(ConnectionProxy.class.
+        getClassLoader(), new Class<?>[]
+        {
+          ConnectionProxy.class
+        }, new InvocationHandler()
+      {
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws
+          Throwable
+        {
+          if ("getTargetConnection".equals(method.getName()))
+          {
+            return con;
+          }
+          if ("close".equals(method.getName()) && closed.compareAndSet(false,
+            true))
+          {
+            outstanding.decrementAndGet();
+          }
+          try
+          {
+            return method.invoke(con, args);
+          }
+          catch (InvocationTargetException ex)
+          {
+            throw ex.getCause();
+          }
+        }
+      });
+    }
+  }
+}
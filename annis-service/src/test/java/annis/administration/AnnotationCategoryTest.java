@@ -0,0 +1,86 @@
+/*
+ * Copyright 2016 SFB 632.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package annis.administration;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.SQLException;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Matchers;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCallback;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+
+/**
+ *
+ * @author Thomas Krause <krauseto@hu-berlin.de>
+ */
+public class AnnotationCategoryTest
+{
+
+  private JdbcTemplate jdbcTemplate;
+
+  private AdministrationDao administrationDao;
+
+  @Before
+  public void setUp()
+  {
+    jdbcTemplate = mock(JdbcTemplate.class);
+    administrationDao = new AdministrationDao();
+    administrationDao.setJdbcTemplate(jdbcTemplate);
+    administrationDao.setScriptPath(new File(System.getProperty("annis.home",
+      "src/main/distribution"), "sql").getPath());
+  }
+
+  @Test
+  public void testUpdateDeletesRemovedCategories() throws SQLException
+  {
+    administrationDao.createAnnoCategory(42);
+
+    String sql = executedSql();
+    int delete = sql.indexOf("DELETE FROM annotation_category");
+    int insert = sql.indexOf("INSERT INTO annotation_category");
+    // the categories which are not used by the updated corpus anymore are
+    // removed before the new ones are added
+    assertTrue(delete >= 0);
+    assertTrue(delete < insert);
+    assertTrue(sql.substring(delete, insert).contains(
+      "WHERE c.toplevel_corpus = 42"));
+    assertTrue(sql.substring(delete, insert).contains(
+      "FROM annotations_42 AS a"));
+    assertFalse(sql.contains(":id"));
+  }
+
+  private String executedSql() throws SQLException
+  {
+    ArgumentCaptor<PreparedStatementCreator> creator = ArgumentCaptor.forClass(
+      PreparedStatementCreator.class);
+    verify(jdbcTemplate).execute(creator.capture(), Matchers.
+      <PreparedStatementCallback<Void>>any());
+
+    Connection con = mock(Connection.class);
+    creator.getValue().createPreparedStatement(con);
+    ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+    verify(con).prepareCall(sql.capture());
+    return sql.getValue();
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2016 SFB 632.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package annis.administration;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import org.apache.commons.io.FileUtils;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ *
+ * @author Thomas Krause <krauseto@hu-berlin.de>
+ */
+public class CorpusBundleTest
+{
+
+  @Test
+  public void testManifest() throws IOException
+  {
+    File dir = Files.createTempDir();
+    try
+    {
+      CorpusBundle bundle = new CorpusBundle("pcc2", "3.3.0-abc");
+      bundle.setColumns(CorpusBundle.CORPUS, ImmutableList.of("id", "name",
+        "pre", "post"));
+      bundle.setRows(CorpusBundle.CORPUS, 5);
+      bundle.write(dir);
+
+      CorpusBundle read = CorpusBundle.read(dir);
+      assertEquals("pcc2", read.getCorpusName());
+      assertEquals("3.3.0-abc", read.getSchemaVersion());
+      assertEquals(ImmutableList.of("id", "name", "pre", "post"), read.
+        getColumns(CorpusBundle.CORPUS));
+      assertEquals(5, read.getRows(CorpusBundle.CORPUS));
+      assertTrue(read.getColumns(CorpusBundle.FACTS).isEmpty());
+    }
+    finally
+    {
+      FileUtils.deleteDirectory(dir);
+    }
+  }
+
+  @Test
+  public void testExportQuery()
+  {
+    List<String> columns = ImmutableList.of("id", "name", "pre", "post");
+    assertEquals("SELECT \"id\", \"name\", \"pre\", \"post\" FROM corpus "
+      + "WHERE pre BETWEEN 10 AND 20",
+      CorpusBundle.CORPUS.exportQuery(columns, 3, 10, 20));
+
+    assertEquals("SELECT \"id\", \"toplevel_corpus\" FROM facts_3",
+      CorpusBundle.FACTS.exportQuery(ImmutableList.of("id", "toplevel_corpus"),
+        3, 10, 20));
+    assertEquals("facts", CorpusBundle.FACTS.getColumnTable());
+  }
+
+  @Test
+  public void testImportStatement()
+  {
+    List<String> columns = ImmutableList.of("id", "text_ref",
+      "node_anno_category");
+    assertEquals("INSERT INTO facts_:id (\"id\", \"text_ref\", "
+      + "\"node_anno_category\")\n"
+      + "SELECT t.id + :offset_node_id, t.\"text_ref\", m.\"new\"\n"
+      + "FROM _bundle_facts AS t LEFT JOIN _bundle_category_map AS m "
+      + "ON (m.\"old\" = t.node_anno_category)",
+      CorpusBundle.FACTS.importStatement(columns));
+  }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2016 SFB 632.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package annis.administration;
+
+import annis.dao.CorpusCatalog;
+import com.google.common.io.Files;
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import static java.util.Arrays.asList;
+import java.util.Collections;
+import java.util.List;
+import org.apache.commons.io.FileUtils;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Matchers;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCallback;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ *
+ * @author Thomas Krause <krauseto@hu-berlin.de>
+ */
+public class DeleteCorpusDaoTest
+{
+
+  private JdbcTemplate jdbcTemplate;
+
+  private CorpusCatalog corpusCatalog;
+
+  private DeleteCorpusDao deleteCorpusDao;
+
+  private File dataDir;
+
+  @Before
+  public void setUp()
+  {
+    jdbcTemplate = mock(JdbcTemplate.class);
+    corpusCatalog = mock(CorpusCatalog.class);
+    dataDir = Files.createTempDir();
+
+    deleteCorpusDao = new DeleteCorpusDao();
+    deleteCorpusDao.setJdbcTemplate(jdbcTemplate);
+    deleteCorpusDao.setCorpusCatalog(corpusCatalog);
+    deleteCorpusDao.setExternalFilesPath(dataDir.getPath());
+    deleteCorpusDao.setCleanupBatchSize(100);
+    deleteCorpusDao.setScriptPath(new File(System.getProperty("annis.home",
+      "src/main/distribution"), "sql").getPath());
+  }
+
+  @After
+  public void tearDown() throws IOException
+  {
+    deleteCorpusDao.destroy();
+    FileUtils.deleteDirectory(dataDir);
+  }
+
+  @Test
+  public void testDeleteCorporaFastHidesCorpus() throws SQLException
+  {
+    TransactionSynchronizationManager.initSynchronization();
+    try
+    {
+      deleteCorpusDao.deleteCorporaFast(asList(3l), false);
+
+      // the cleanup starts after the transaction was committed
+      assertEquals(1, TransactionSynchronizationManager.getSynchronizations().
+        size());
+    }
+    finally
+    {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    verify(jdbcTemplate).execute("DROP TABLE IF EXISTS facts_3");
+    verify(jdbcTemplate).execute("DROP TABLE IF EXISTS annotations_3");
+
+    // the corpus is removed from the listings at once
+    String sql = executedSql();
+    assertTrue(sql.contains("INSERT INTO corpus_cleanup"));
+    assertTrue(sql.contains("DELETE FROM corpus_stats WHERE id = 3;"));
+    assertTrue(sql.contains("UPDATE corpus SET top_level = FALSE WHERE id = 3;"));
+    verify(corpusCatalog).invalidate();
+
+    // but the large tables are not touched
+    assertFalse(sql.contains("DELETE FROM corpus_annotation"));
+    assertFalse(sql.contains("DELETE FROM text"));
+    verify(jdbcTemplate, never()).update(anyString(), anyArgs());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testCleanupDeletedCorpora() throws IOException
+  {
+    File media = new File(dataDir, "video.webm");
+    Files.touch(media);
+
+    List<long[]> hidden = Collections.singletonList(new long[]
+    {
+      3l, 10l, 20l
+    });
+    when(jdbcTemplate.query(anyString(), any(RowMapper.class))).thenReturn(
+      hidden);
+    when(jdbcTemplate.queryForList(startsWith("DELETE FROM media_files"), eq(
+      String.class), anyArgs())).thenReturn(asList("video.webm"), Collections.
+      <String>emptyList());
+    when(jdbcTemplate.update(startsWith("DELETE FROM corpus_annotation "),
+      anyArgs())).thenReturn(100, 20, 0);
+    when(jdbcTemplate.update(startsWith("DELETE FROM text "), anyArgs())).
+      thenReturn(1, 0);
+    when(jdbcTemplate.update(startsWith("DELETE FROM corpus "), anyArgs())).
+      thenReturn(5, 0);
+
+    deleteCorpusDao.cleanupDeletedCorpora();
+
+    assertFalse(media.exists());
+    // the rows in the range of the corpus tree are deleted in batches
+    verify(jdbcTemplate, times(3)).update(startsWith(
+      "DELETE FROM corpus_annotation "), eq(10l), eq(20l), eq(100));
+    verify(jdbcTemplate, times(2)).update(startsWith("DELETE FROM text "),
+      eq(10l), eq(20l), eq(100));
+    verify(jdbcTemplate, times(1)).update(startsWith(
+      "DELETE FROM document_fingerprint "), eq(10l), eq(20l), eq(100));
+    verify(jdbcTemplate, times(2)).update(startsWith("DELETE FROM corpus "),
+      eq(10l), eq(20l), eq(100));
+    verify(jdbcTemplate).update(
+      "DELETE FROM corpus_cleanup WHERE corpus_ref = ?", 3l);
+    verify(jdbcTemplate).execute("VACUUM ANALYZE corpus");
+  }
+
+  @Test
+  public void testCleanupWithoutDeletedCorpora()
+  {
+    deleteCorpusDao.cleanupDeletedCorpora();
+
+    verify(jdbcTemplate, never()).update(anyString(), anyArgs());
+    verify(jdbcTemplate, never()).execute(anyString());
+  }
+
+  private String executedSql() throws SQLException
+  {
+    ArgumentCaptor<PreparedStatementCreator> creator = ArgumentCaptor.forClass(
+      PreparedStatementCreator.class);
+    verify(jdbcTemplate).execute(creator.capture(), Matchers.
+      <PreparedStatementCallback<Void>>any());
+
+    Connection con = mock(Connection.class);
+    creator.getValue().createPreparedStatement(con);
+    ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+    verify(con).prepareCall(sql.capture());
+    return sql.getValue();
+  }
+
+  private static Object[] anyArgs()
+  {
+    return Matchers.<Object[]>anyVararg();
+  }
+}
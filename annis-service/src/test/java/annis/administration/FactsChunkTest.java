@@ -0,0 +1,78 @@
+/*
+ * Copyright 2016 SFB 632.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package annis.administration;
+
+import com.google.common.collect.Range;
+import static java.util.Arrays.asList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ *
+ * @author Thomas Krause <krauseto@hu-berlin.de>
+ */
+public class FactsChunkTest
+{
+
+  @Test
+  public void testSplitIntoChunks()
+  {
+    SortedMap<Long, Long> nodes = new TreeMap<>();
+    nodes.put(1l, 40l);
+    nodes.put(2l, 50l);
+    nodes.put(5l, 20l);
+    nodes.put(7l, 250l);
+    nodes.put(8l, 10l);
+
+    List<Range<Long>> chunks = AdministrationDao.splitIntoChunks(nodes, 100);
+    assertEquals(asList(Range.closed(1l, 2l), Range.closed(5l, 5l),
+      Range.closed(7l, 7l), Range.closed(8l, 8l)), chunks);
+  }
+
+  @Test
+  public void testSelectedCorpora()
+  {
+    SortedMap<Long, Long> nodes = new TreeMap<>();
+    nodes.put(1l, 10l);
+    nodes.put(2l, 10l);
+    nodes.put(3l, 10l);
+    nodes.put(4l, 10l);
+    nodes.put(5l, 10l);
+
+    // the unselected corpus 3 must not be part of a chunk
+    List<Range<Long>> chunks = AdministrationDao.splitIntoChunks(nodes,
+      new HashSet<>(asList(1l, 2l, 4l)), 100);
+    assertEquals(asList(Range.closed(1l, 2l), Range.closed(4l, 4l)), chunks);
+  }
+
+  @Test
+  public void testSingleChunk()
+  {
+    SortedMap<Long, Long> nodes = new TreeMap<>();
+    nodes.put(0l, 1000l);
+    nodes.put(3l, 1000l);
+
+    assertEquals(asList(Range.closed(0l, 3l)),
+      AdministrationDao.splitIntoChunks(nodes, 0));
+    assertTrue(AdministrationDao.splitIntoChunks(new TreeMap<Long, Long>(), 10).
+      isEmpty());
+  }
+}
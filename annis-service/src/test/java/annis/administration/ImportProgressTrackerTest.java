@@ -0,0 +1,122 @@
+/*
+ * Copyright 2016 SFB 632.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package annis.administration;
+
+import annis.service.objects.ImportPhaseTiming;
+import annis.service.objects.ImportProgress;
+import annis.service.objects.ImportProgress.Phase;
+import com.google.common.base.Ticker;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.assertEquals;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Thomas Krause <krauseto@hu-berlin.de>
+ */
+public class ImportProgressTrackerTest
+{
+
+  private FakeTicker ticker;
+
+  @Before
+  public void setUp()
+  {
+    ticker = new FakeTicker();
+  }
+
+  @Test
+  public void testEstimateFromBytes() throws IOException
+  {
+    ImportProgressTracker tracker = new ImportProgressTracker(null, ticker);
+    tracker.setBytesTotal(1000);
+    tracker.startPhase(Phase.BULK_LOAD);
+
+    try (InputStream in = tracker.track(new ByteArrayInputStream(
+      new byte[250])))
+    {
+      while (in.read(new byte[100]) >= 0)
+      {
+        // just read
+      }
+    }
+    ticker.advance(2000);
+
+    ImportProgress p = tracker.getProgress();
+    assertEquals(250, p.getBytesRead());
+    assertEquals(2000, p.getPhaseElapsed());
+    assertEquals(8000, p.getPhaseEstimated());
+    // there are no timings for the other phases
+    assertEquals(-1, p.getRemaining());
+  }
+
+  @Test
+  public void testEstimateFromHistory()
+  {
+    Map<Phase, Double> rates = new EnumMap<>(Phase.class);
+    for (Phase p : Phase.values())
+    {
+      rates.put(p, 1.0);
+    }
+    ImportProgressTracker tracker = new ImportProgressTracker(rates, ticker);
+    tracker.setBytesTotal(100);
+
+    tracker.startPhase(Phase.PREPARE);
+    ticker.advance(100);
+    tracker.startPhase(Phase.BULK_LOAD);
+    ticker.advance(50);
+    tracker.addBytes(50);
+
+    ImportProgress p = tracker.getProgress();
+    assertEquals(Phase.BULK_LOAD, p.getPhase());
+    assertEquals(150, p.getElapsed());
+    // 50 ms for the rest of BULK_LOAD and 100 ms for the 5 remaining phases
+    assertEquals(550, p.getRemaining());
+    assertEquals(150.0 / 700.0, p.getFraction(), 0.0001);
+
+    tracker.setCorpus("pcc2");
+    tracker.finishPhase();
+    List<ImportPhaseTiming> timings = tracker.getTimings();
+    assertEquals(2, timings.size());
+    assertEquals(Phase.BULK_LOAD, timings.get(1).getPhase());
+    assertEquals(50, timings.get(1).getDuration());
+    assertEquals("pcc2", timings.get(0).getCorpus());
+  }
+
+  private static class FakeTicker extends Ticker
+  {
+
+    private long nanos = 0;
+
+    public void advance(long millis)
+    {
+      nanos += TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    @Override
+    public long read()
+    {
+      return nanos;
+    }
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2016 SFB 632.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package annis.administration;
+
+import annis.service.objects.TableStatistics;
+import java.util.Calendar;
+import java.util.Date;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ *
+ * @author Thomas Krause <krauseto@hu-berlin.de>
+ */
+public class StatisticsMaintenanceTest
+{
+
+  @Test
+  public void testIsStale()
+  {
+    Date analyzed = new Date();
+
+    // never analyzed
+    assertTrue(StatisticsMaintenance.isStale(new TableStatistics("facts_1",
+      10, 0, null, 0), 0.1, 1000));
+    assertFalse(StatisticsMaintenance.isStale(new TableStatistics("empty",
+      0, 0, null, 0), 0.1, 1000));
+
+    // 1000 + 10% of 100000 rows
+    assertFalse(StatisticsMaintenance.isStale(new TableStatistics("facts_2",
+      100000, 11000, analyzed, 0), 0.1, 1000));
+    assertTrue(StatisticsMaintenance.isStale(new TableStatistics("facts_2",
+      100000, 11001, analyzed, 0), 0.1, 1000));
+  }
+
+  @Test
+  public void testModificationsSinceAnalyze()
+  {
+    StatisticsMaintenance maintenance = new StatisticsMaintenance();
+    Date analyzed = new Date(1000);
+
+    // never analyzed
+    assertEquals(500, maintenance.modificationsSinceAnalyze("facts_1", 500,
+      null));
+
+    // the first counter after an ANALYZE is the baseline
+    assertEquals(0, maintenance.modificationsSinceAnalyze("facts_1", 5000,
+      analyzed));
+    assertEquals(0, maintenance.modificationsSinceAnalyze("facts_1", 5000,
+      analyzed));
+    assertEquals(2000, maintenance.modificationsSinceAnalyze("facts_1", 7000,
+      analyzed));
+
+    // analyzed again
+    Date reanalyzed = new Date(2000);
+    assertEquals(0, maintenance.modificationsSinceAnalyze("facts_1", 7500,
+      reanalyzed));
+    assertEquals(100, maintenance.modificationsSinceAnalyze("facts_1", 7600,
+      reanalyzed));
+
+    // statistics were reset
+    assertEquals(0, maintenance.modificationsSinceAnalyze("facts_1", 10,
+      reanalyzed));
+  }
+
+  @Test
+  public void testNextRun()
+  {
+    Calendar now = Calendar.getInstance();
+    now.set(2016, Calendar.MAY, 12, 13, 42, 0);
+
+    Calendar expected = Calendar.getInstance();
+    expected.setTime(now.getTime());
+    expected.set(Calendar.MILLISECOND, 0);
+
+    // later on the same day
+    expected.set(2016, Calendar.MAY, 12, 22, 0, 0);
+    assertEquals(expected.getTime(), StatisticsMaintenance.nextRun(now.
+      getTime(), 22));
+
+    // the hour already passed
+    expected.set(2016, Calendar.MAY, 13, 3, 0, 0);
+    assertEquals(expected.getTime(), StatisticsMaintenance.nextRun(now.
+      getTime(), 3));
+  }
+}
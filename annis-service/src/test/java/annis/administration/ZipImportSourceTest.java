@@ -0,0 +1,92 @@
+/*
+ * Copyright 2016 SFB 632.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package annis.administration;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.CharStreams;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import static java.util.Arrays.asList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ *
+ * @author Thomas Krause <krauseto@hu-berlin.de>
+ */
+public class ZipImportSourceTest
+{
+
+  @Test
+  public void testCorporaInZipFile() throws IOException
+  {
+    File f = File.createTempFile("annis-import", ".zip");
+    f.deleteOnExit();
+    try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(f)))
+    {
+      addEntry(out, "pcc2/annis.version", "3.3");
+      addEntry(out, "pcc2/corpus.annis", "0\tpcc2\tCORPUS\tNULL\t0\t1");
+      addEntry(out, "pcc2/ExtData/video.webm", "top");
+      addEntry(out, "pcc2/ExtData/doc1/audio.mp3", "doc");
+      addEntry(out, "other/corpus.tab", "0\tother\tCORPUS\tNULL\t0\t1");
+    }
+
+    try (ZipFile zip = new ZipFile(f))
+    {
+      List<ZipImportSource> corpora = ZipImportSource.corporaInZipFile(zip);
+      assertEquals(2, corpora.size());
+
+      ZipImportSource pcc2 = corpora.get(0);
+      assertTrue(pcc2.getPath().endsWith("!/pcc2/"));
+      assertEquals(f.getPath(), pcc2.getSourcePath());
+      assertTrue(pcc2.exists("corpus.annis"));
+      assertFalse(pcc2.exists("corpus.tab"));
+      assertEquals(asList("video.webm"), pcc2.listFiles("ExtData"));
+      assertEquals(asList("doc1"), pcc2.listDirectories("ExtData"));
+      assertEquals(asList("audio.mp3"), pcc2.listFiles("ExtData/doc1"));
+      assertEquals("audio.mp3",
+        pcc2.getResource("ExtData/doc1/audio.mp3").getFilename());
+
+      try (InputStream in = pcc2.getResource("annis.version").getInputStream())
+      {
+        assertEquals("3.3", CharStreams.toString(
+          new InputStreamReader(in, Charsets.UTF_8)));
+      }
+
+      ZipImportSource other = corpora.get(1);
+      assertTrue(other.exists("corpus.tab"));
+      assertFalse(other.exists("annis.version"));
+      assertFalse(other.getResource("node.tab").exists());
+    }
+  }
+
+  private static void addEntry(ZipOutputStream out, String name, String content)
+    throws IOException
+  {
+    out.putNextEntry(new ZipEntry(name));
+    out.write(content.getBytes(Charsets.UTF_8));
+    out.closeEntry();
+  }
+}
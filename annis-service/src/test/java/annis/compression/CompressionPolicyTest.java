@@ -0,0 +1,130 @@
+/*
+ * Copyright 2016 SFB 632.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package annis.compression;
+
+import com.google.common.base.Strings;
+import com.google.common.io.ByteStreams;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+import org.junit.After;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Thomas Krause <krauseto@hu-berlin.de>
+ */
+public class CompressionPolicyTest
+{
+
+  private CompressionPolicy policy;
+
+  @Before
+  public void setUp()
+  {
+    policy = new CompressionPolicy();
+    policy.setAsyncPaths("/annis/query/search/find");
+    policy.setAsyncBuffers(2);
+    policy.init();
+  }
+
+  @After
+  public void tearDown()
+  {
+    policy.destroy();
+  }
+
+  @Test
+  public void testNegotiate()
+  {
+    assertNull(policy.negotiate(null));
+    assertNull(policy.negotiate("identity"));
+    assertEquals(Encoding.gzip, policy.negotiate("gzip, deflate"));
+    assertEquals(Encoding.deflate, policy.negotiate("deflate"));
+    assertEquals(Encoding.deflate, policy.negotiate("gzip;q=0.5, deflate"));
+    assertEquals(Encoding.deflate, policy.negotiate("gzip;q=0, *"));
+    assertNull(policy.negotiate("gzip;q=0, deflate;q=0"));
+  }
+
+  @Test
+  public void testCompressible()
+  {
+    assertTrue(policy.isCompressible("application/xml"));
+    assertTrue(policy.isCompressible("text/plain; charset=UTF-8"));
+    assertFalse(policy.isCompressible("video/webm"));
+    assertFalse(policy.isCompressible("Application/PDF"));
+    assertFalse(policy.isCompressible(null));
+
+    assertTrue(policy.isAsync("/annis/query/search/find"));
+    assertFalse(policy.isAsync("/annis/query/search/count"));
+  }
+
+  @Test
+  public void testCache() throws IOException
+  {
+    byte[] data = Strings.repeat("<match>pcc2/4282</match>", 100).getBytes(
+      StandardCharsets.UTF_8);
+    byte[] compressed = policy.compress(Encoding.gzip, data, data.length);
+    assertArrayEquals(data, ByteStreams.toByteArray(new GZIPInputStream(
+      new ByteArrayInputStream(compressed))));
+
+    // the same content is only compressed once per encoding
+    assertSame(compressed, policy.compress(Encoding.gzip, data.clone(),
+      data.length));
+    assertEquals(1, policy.getCacheStats().hitCount());
+
+    byte[] deflated = policy.compress(Encoding.deflate, data, data.length);
+    assertArrayEquals(data, ByteStreams.toByteArray(new InflaterInputStream(
+      new ByteArrayInputStream(deflated))));
+  }
+
+  @Test
+  public void testAsyncWriter() throws IOException
+  {
+    ByteArrayOutputStream target = new ByteArrayOutputStream();
+    byte[] data = Strings.repeat("pcc2/4282 tiger::pos::NN\n", 20000).getBytes(
+      StandardCharsets.UTF_8);
+    try (OutputStream out = new AsyncWriterStream(Encoding.gzip.wrap(target,
+      1), policy))
+    {
+      for (int i = 0; i < data.length; i += 1000)
+      {
+        out.write(data, i, Math.min(1000, data.length - i));
+        if (i % 100000 == 0)
+        {
+          out.flush();
+        }
+      }
+    }
+    try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(
+      target.toByteArray())))
+    {
+      assertArrayEquals(data, ByteStreams.toByteArray(in));
+    }
+  }
+}
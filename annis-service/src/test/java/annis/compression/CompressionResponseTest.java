@@ -0,0 +1,310 @@
+/*
+ * Copyright 2016 SFB 632.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package annis.compression;
+
+import com.google.common.base.Strings;
+import com.google.common.io.ByteStreams;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.junit.After;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import org.junit.Before;
+import org.junit.Test;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ *
+ * @author Thomas Krause <krauseto@hu-berlin.de>
+ */
+public class CompressionResponseTest
+{
+
+  private CompressionPolicy policy;
+
+  private HttpServletResponse response;
+
+  private ByteArrayOutputStream body;
+
+  @Before
+  public void setUp() throws IOException
+  {
+    policy = new CompressionPolicy();
+    policy.setBufferSize(4096);
+    policy.init();
+
+    body = new ByteArrayOutputStream();
+    response = mock(HttpServletResponse.class);
+    when(response.getStatus()).thenReturn(200);
+    when(response.getContentType()).thenReturn("text/plain");
+    when(response.getCharacterEncoding()).thenReturn("UTF-8");
+    when(response.getOutputStream()).thenReturn(new ServletOutputStream()
+    {
+      @Override
+      public void write(int b) throws IOException
+      {
+        body.write(b);
+      }
+
+      @Override
+      public boolean isReady()
+      {
+        return true;
+      }
+
+      @Override
+      public void setWriteListener(WriteListener writeListener)
+      {
+      }
+    });
+  }
+
+  @After
+  public void tearDown()
+  {
+    policy.destroy();
+  }
+
+  @Test
+  public void testSmallBody() throws IOException
+  {
+    CompressionResponse r = new CompressionResponse(response, policy,
+      Encoding.gzip, false);
+    r.setContentLength(5);
+    r.getOutputStream().write(data(5));
+    r.finish();
+
+    // not worth compressing
+    assertArrayEquals(data(5), body.toByteArray());
+    verify(response).setContentLengthLong(5);
+    verify(response, never()).setHeader(eq("Content-Encoding"), anyString());
+  }
+
+  @Test
+  public void testBufferedBody() throws IOException
+  {
+    CompressionResponse r = new CompressionResponse(response, policy,
+      Encoding.gzip, false);
+    // the length of the uncompressed body must not be sent
+    r.setHeader("Content-Length", "2000");
+    r.getWriter().write(new String(data(2000), StandardCharsets.UTF_8));
+    r.finish();
+
+    assertArrayEquals(data(2000), gunzip(body.toByteArray()));
+    verify(response).setHeader("Content-Encoding", "gzip");
+    verify(response).setContentLengthLong(body.size());
+    verify(response, never()).setContentLengthLong(2000);
+  }
+
+  @Test
+  public void testStreamedBody() throws IOException
+  {
+    CompressionResponse r = new CompressionResponse(response, policy,
+      Encoding.gzip, true);
+    ServletOutputStream out = r.getOutputStream();
+    for (int i = 0; i < 10; i++)
+    {
+      out.write(data(1000));
+      // a flush must not commit the response while the body is buffered
+      r.flushBuffer();
+    }
+    r.finish();
+
+    byte[] expected = new byte[10000];
+    for (int i = 0; i < 10; i++)
+    {
+      System.arraycopy(data(1000), 0, expected, i * 1000, 1000);
+    }
+    assertArrayEquals(expected, gunzip(body.toByteArray()));
+    verify(response).setHeader("Content-Encoding", "gzip");
+    verify(response, never()).setContentLengthLong(anyLong());
+  }
+
+  @Test
+  public void testPassThrough() throws IOException
+  {
+    when(response.getContentType()).thenReturn("image/png");
+    CompressionResponse r = new CompressionResponse(response, policy,
+      Encoding.gzip, false);
+    r.setContentLength(2000);
+    r.getOutputStream().write(data(2000));
+    r.finish();
+
+    assertArrayEquals(data(2000), body.toByteArray());
+    verify(response).setContentLengthLong(2000);
+
+    // already compressed by the application
+    when(response.getContentType()).thenReturn("text/plain");
+    body.reset();
+    r = new CompressionResponse(response, policy, Encoding.gzip, false);
+    r.setHeader("Content-Encoding", "br");
+    r.getOutputStream().write(data(2000));
+    r.finish();
+    assertArrayEquals(data(2000), body.toByteArray());
+    verify(response, never()).setHeader("Content-Encoding", "gzip");
+  }
+
+  @Test
+  public void testAbortBufferedBody() throws IOException
+  {
+    CompressionResponse r = new CompressionResponse(response, policy,
+      Encoding.gzip, false);
+    r.getOutputStream().write(data(2000));
+    r.abort();
+
+    assertEquals(0, body.size());
+    verify(response).resetBuffer();
+    verify(response, never()).setContentLengthLong(anyLong());
+    verify(response, never()).setHeader(eq("Content-Encoding"), anyString());
+  }
+
+  @Test
+  public void testAbortStreamedBody() throws IOException
+  {
+    CompressionResponse r = new CompressionResponse(response, policy,
+      Encoding.gzip, true);
+    ServletOutputStream out = r.getOutputStream();
+    for (int i = 0; i < 10; i++)
+    {
+      out.write(data(1000));
+    }
+    r.abort();
+
+    // the compressed body is incomplete
+    try
+    {
+      gunzip(body.toByteArray());
+      fail("the body must not be a valid gzip stream");
+    }
+    catch (EOFException ex)
+    {
+      // expected
+    }
+  }
+
+  @Test
+  public void testAbortReleasesDeflater() throws IOException
+  {
+    OutputStream out = Encoding.deflate.wrap(new ByteArrayOutputStream(), 6);
+    out.write(data(100));
+    Encoding.abort(out);
+    try
+    {
+      out.write(data(100));
+      out.flush();
+      fail("the deflater must be released");
+    }
+    catch (NullPointerException ex)
+    {
+      // expected, the deflater was ended
+    }
+  }
+
+  @Test
+  public void testWriteListener() throws IOException
+  {
+    WriteListener listener = mock(WriteListener.class);
+
+    CompressionResponse r = new CompressionResponse(response, policy,
+      Encoding.gzip, false);
+    try
+    {
+      r.getOutputStream().setWriteListener(listener);
+      fail("compressed responses can't be written asynchronously");
+    }
+    catch (IllegalStateException ex)
+    {
+      // expected
+    }
+
+    // the listener is passed on if the response is not compressed
+    ServletOutputStream raw = mock(ServletOutputStream.class);
+    when(response.getContentType()).thenReturn("image/png");
+    when(response.getOutputStream()).thenReturn(raw);
+    r = new CompressionResponse(response, policy, Encoding.gzip, false);
+    r.getOutputStream().setWriteListener(listener);
+    verify(raw).setWriteListener(listener);
+  }
+
+  @Test
+  public void testFilterFailure() throws IOException
+  {
+    HttpServletRequest request = mock(HttpServletRequest.class);
+    when(request.getHeader("Accept-Encoding")).thenReturn("gzip");
+    when(request.getRequestURI()).thenReturn("/annis/query/search/count");
+    when(request.getContextPath()).thenReturn("");
+
+    try
+    {
+      new CompressionFilter(policy).doFilter(request, response,
+        new FilterChain()
+      {
+        @Override
+        public void doFilter(ServletRequest request, ServletResponse response)
+          throws IOException, ServletException
+        {
+          response.getOutputStream().write(data(2000));
+          throw new ServletException("failed");
+        }
+      });
+      fail("the exception must be passed on");
+    }
+    catch (ServletException ex)
+    {
+      assertEquals("failed", ex.getMessage());
+    }
+
+    // the partial body is not sent as a successful response
+    assertEquals(0, body.size());
+    verify(response).resetBuffer();
+  }
+
+  private static byte[] data(int length)
+  {
+    return Strings.repeat("pcc2/4282 tiger::pos::NN\n", length / 25 + 1).
+      substring(0, length).getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static byte[] gunzip(byte[] compressed) throws IOException
+  {
+    try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(
+      compressed)))
+    {
+      return ByteStreams.toByteArray(in);
+    }
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2016 SFB 632.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package annis.corpuspathsearch;
+
+import com.google.common.base.Strings;
+import com.google.common.io.Files;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Thomas Krause <krauseto@hu-berlin.de>
+ */
+public class CorpusPathScannerTest
+{
+
+  private File root;
+
+  @Before
+  public void setUp() throws IOException
+  {
+    root = Files.createTempDir();
+    createCorpus(new File(root, "a/large"), "large", 1000);
+    createCorpus(new File(root, "b/c/small"), "small", 10);
+    new File(root, "empty/dir").mkdirs();
+  }
+
+  @After
+  public void tearDown() throws IOException
+  {
+    FileUtils.deleteDirectory(root);
+  }
+
+  @Test
+  public void testScan()
+  {
+    CorpusPathScanner scanner = new CorpusPathScanner(2, 60);
+    List<CorpusRoot> corpora = scanner.scan(root);
+
+    assertEquals(2, corpora.size());
+    // the smallest corpus first
+    assertEquals("small", corpora.get(0).getName());
+    assertEquals(new File(root, "b/c/small").getAbsoluteFile(), corpora.get(0).
+      getDirectory().getAbsoluteFile());
+    assertEquals("large", corpora.get(1).getName());
+    assertEquals(corpora.get(0).getSize() + 990, corpora.get(1).getSize());
+  }
+
+  @Test
+  public void testCache() throws IOException
+  {
+    CorpusPathScanner scanner = new CorpusPathScanner(2, 60);
+    List<CorpusRoot> first = scanner.scan(root);
+
+    // new corpora are only found after the cache was invalidated
+    createCorpus(new File(root, "new"), "new", 1);
+    List<CorpusRoot> second = scanner.scan(root);
+    assertEquals(first, second);
+    assertSame(first.get(0).getCorpusFile(), second.get(0).getCorpusFile());
+
+    scanner.invalidate();
+    assertEquals(3, scanner.scan(root).size());
+  }
+
+  @Test
+  public void testScanWithoutCache() throws IOException
+  {
+    CorpusPathScanner scanner = new CorpusPathScanner(2, 60);
+    assertEquals(2, scanner.scan(root).size());
+
+    createCorpus(new File(root, "new"), "new", 1);
+    assertEquals(3, scanner.scan(Collections.singletonList(root), false).
+      size());
+    // the new result replaced the cached one
+    assertEquals(3, scanner.scan(root).size());
+  }
+
+  @Test
+  public void testDistinctByName() throws IOException
+  {
+    createCorpus(new File(root, "z/copy"), "small", 100);
+    CorpusPathScanner scanner = new CorpusPathScanner(2, 60);
+
+    List<CorpusRoot> corpora = scanner.scan(root);
+    assertEquals(3, corpora.size());
+
+    List<CorpusRoot> distinct = CorpusPathScanner.distinctByName(corpora);
+    assertEquals(2, distinct.size());
+    assertEquals("small", distinct.get(0).getName());
+    assertEquals(new File(root, "b/c/small").getAbsoluteFile(), distinct.get(
+      0).getDirectory().getAbsoluteFile());
+    assertEquals("large", distinct.get(1).getName());
+  }
+
+  private static void createCorpus(File dir, String name, int nodeBytes)
+    throws IOException
+  {
+    dir.mkdirs();
+    Files.write("0\t" + name + "\tCORPUS\tNULL\t0\t1\n", new File(dir,
+      "corpus.tab"), StandardCharsets.UTF_8);
+    Files.write(Strings.repeat("x", nodeBytes), new File(dir, "node.tab"),
+      StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2016 SFB 632.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package annis.dao;
+
+import annis.service.objects.AnnisCorpus;
+import annis.sqlgen.ListCorpusSqlHelper;
+import com.google.common.collect.ImmutableListMultimap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+
+/**
+ *
+ * @author Thomas Krause <krauseto@hu-berlin.de>
+ */
+public class CorpusCatalogTest
+{
+
+  private JdbcTemplate jdbcTemplate;
+
+  private CorpusCatalog catalog;
+
+  @Before
+  @SuppressWarnings("unchecked")
+  public void setUp()
+  {
+    jdbcTemplate = mock(JdbcTemplate.class);
+    when(jdbcTemplate.query(anyString(), any(RowMapper.class))).thenReturn(
+      corpora(100));
+    when(jdbcTemplate.query(anyString(), any(ResultSetExtractor.class))).
+      thenReturn(ImmutableListMultimap.of("tiger", 2l));
+
+    catalog = new CorpusCatalog();
+    catalog.setJdbcTemplate(jdbcTemplate);
+    catalog.setListCorpusSqlHelper(new ListCorpusSqlHelper());
+  }
+
+  @Test
+  public void testLookup()
+  {
+    CorpusCatalog.Snapshot s = catalog.getSnapshot();
+
+    assertEquals(2, s.getCorpora().size());
+    assertEquals(Arrays.asList(2l, 1l), s.mapNamesToIds(Arrays.asList(
+      "tiger2", "unknown", "pcc2")));
+    assertEquals(Arrays.asList(2l), s.mapAliasToIds("tiger"));
+    assertEquals(Collections.<Long>emptyList(), s.mapAliasToIds("pcc"));
+    assertEquals("tiger2", s.getCorpora(Arrays.asList(2l, 3l)).get(0).
+      getName());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testVersion()
+  {
+    CorpusCatalog.Snapshot first = catalog.getSnapshot();
+    assertSame(first, catalog.getSnapshot());
+    verify(jdbcTemplate, times(1)).query(anyString(), any(RowMapper.class));
+
+    // reloading the same content keeps the version
+    assertSame(first, catalog.refresh());
+
+    // a changed corpus creates a new version
+    when(jdbcTemplate.query(anyString(), any(RowMapper.class))).thenReturn(
+      corpora(200));
+    assertEquals(first.getVersion() + 1, catalog.refresh().getVersion());
+
+    // an invalidated catalog always creates a new version
+    catalog.invalidate();
+    assertEquals(first.getVersion() + 2, catalog.getSnapshot().getVersion());
+  }
+
+  @Test
+  public void testChangeCheck()
+  {
+    final AtomicBoolean changed = new AtomicBoolean();
+    final AtomicLong checkedVersion = new AtomicLong();
+    catalog.addChangeCheck(new CorpusCatalog.ChangeCheck()
+    {
+      @Override
+      public boolean hasChanged(long version)
+      {
+        checkedVersion.set(version);
+        return changed.get();
+      }
+    });
+
+    CorpusCatalog.Snapshot first = catalog.getSnapshot();
+    assertSame(first, catalog.refresh());
+    assertEquals(first.getVersion(), checkedVersion.get());
+
+    // e.g. a corpus configuration file was changed
+    changed.set(true);
+    assertEquals(first.getVersion() + 1, catalog.refresh().getVersion());
+    assertEquals(first.getVersion() + 1, catalog.getSnapshot().getVersion());
+  }
+
+  @Test
+  public void testRefreshOnPrimary()
+  {
+    PlatformTransactionManager transactionManager = mock(
+      PlatformTransactionManager.class);
+    when(transactionManager.getTransaction(any(TransactionDefinition.class))).
+      thenReturn(mock(TransactionStatus.class));
+    catalog.setTransactionManager(transactionManager);
+
+    catalog.refresh();
+
+    // a new transaction which is not read-only is routed to the primary
+    ArgumentCaptor<TransactionDefinition> definition = ArgumentCaptor.forClass(
+      TransactionDefinition.class);
+    verify(transactionManager).getTransaction(definition.capture());
+    assertEquals(TransactionDefinition.PROPAGATION_REQUIRES_NEW, definition.
+      getValue().getPropagationBehavior());
+    assertFalse(definition.getValue().isReadOnly());
+    verify(transactionManager).commit(any(TransactionStatus.class));
+  }
+
+  private static List<AnnisCorpus> corpora(int tokens)
+  {
+    return Arrays.asList(new AnnisCorpus(1, "pcc2", 2, tokens),
+      new AnnisCorpus(2, "tiger2", 1, 500));
+  }
+}
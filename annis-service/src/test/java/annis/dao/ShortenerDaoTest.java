@@ -0,0 +1,111 @@
+/*
+ * Copyright 2016 SFB 632.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package annis.dao;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Matchers;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ *
+ * @author Thomas Krause <krauseto@hu-berlin.de>
+ */
+public class ShortenerDaoTest
+{
+
+  private JdbcTemplate jdbcTemplate;
+
+  private ShortenerDao shortenerDao;
+
+  @Before
+  public void setUp()
+  {
+    jdbcTemplate = mock(JdbcTemplate.class);
+    shortenerDao = new ShortenerDao();
+    shortenerDao.setJdbcTemplate(jdbcTemplate);
+  }
+
+  @Test
+  public void testUnshortenCachesKnownIDs()
+  {
+    UUID id = UUID.randomUUID();
+    when(jdbcTemplate.queryForList(anyString(), eq(String.class), anyArgs())).
+      thenReturn(Arrays.asList("/?id=abc"));
+
+    assertEquals("/?id=abc", shortenerDao.unshorten(id));
+    assertEquals("/?id=abc", shortenerDao.unshorten(id));
+
+    verify(jdbcTemplate, times(1)).queryForList(anyString(), eq(String.class),
+      anyArgs());
+    assertEquals(1, shortenerDao.getCacheStats().hitCount());
+  }
+
+  @Test
+  public void testUnshortenDoesNotCacheUnknownIDs()
+  {
+    UUID id = UUID.randomUUID();
+    when(jdbcTemplate.queryForList(anyString(), eq(String.class), anyArgs())).
+      thenReturn(Collections.<String>emptyList());
+
+    assertNull(shortenerDao.unshorten(id));
+    assertNull(shortenerDao.unshorten(id));
+
+    verify(jdbcTemplate, times(2)).queryForList(anyString(), eq(String.class),
+      anyArgs());
+  }
+
+  @Test
+  public void testShortenReusesExistingID()
+  {
+    UUID existing = UUID.randomUUID();
+    when(jdbcTemplate.queryForList(anyString(), eq(UUID.class), anyArgs())).
+      thenReturn(Arrays.asList(existing));
+
+    assertEquals(existing, shortenerDao.shorten("/?id=abc", "user"));
+    verify(jdbcTemplate, never()).update(anyString(), anyArgs());
+  }
+
+  @Test
+  public void testShortenRetriesTakenID()
+  {
+    when(jdbcTemplate.queryForList(anyString(), eq(UUID.class), anyArgs())).
+      thenReturn(Collections.<UUID>emptyList());
+    when(jdbcTemplate.update(anyString(), anyArgs())).thenReturn(0, 1);
+
+    assertNotNull(shortenerDao.shorten("/?id=abc", "user"));
+    verify(jdbcTemplate, times(2)).update(anyString(), anyArgs());
+  }
+
+  private static Object[] anyArgs()
+  {
+    return Matchers.<Object[]>anyVararg();
+  }
+
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2016 SFB 632.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package annis.dao;
+
+import annis.ql.parser.QueryData;
+import annis.service.objects.SlowQuery;
+import com.google.common.io.Files;
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ *
+ * @author Thomas Krause <krauseto@hu-berlin.de>
+ */
+public class SlowQueryLogTest
+{
+
+  private File dir;
+
+  private SlowQueryLog slowQueryLog;
+
+  @Before
+  public void setUp()
+  {
+    dir = Files.createTempDir();
+    slowQueryLog = new SlowQueryLog();
+    slowQueryLog.setDirectory(dir.getAbsolutePath());
+    slowQueryLog.setCapacity(2);
+    slowQueryLog.setThreshold(1000);
+    slowQueryLog.setSampleRate(1.0);
+    slowQueryLog.setMinInterval(60000);
+    slowQueryLog.init();
+  }
+
+  @After
+  public void tearDown() throws IOException
+  {
+    slowQueryLog.destroy();
+    FileUtils.deleteDirectory(dir);
+  }
+
+  @Test
+  public void testShouldCapture()
+  {
+    assertFalse(slowQueryLog.shouldCapture(999, 100000));
+    assertTrue(slowQueryLog.shouldCapture(1000, 100000));
+    // rate limited
+    assertFalse(slowQueryLog.shouldCapture(5000, 130000));
+    assertTrue(slowQueryLog.shouldCapture(5000, 160000));
+
+    slowQueryLog.setThreshold(0);
+    assertFalse(slowQueryLog.shouldCapture(5000, 1000000));
+
+    slowQueryLog.setThreshold(1000);
+    slowQueryLog.setSampleRate(0.0);
+    assertFalse(slowQueryLog.shouldCapture(5000, 1000000));
+  }
+
+  @Test
+  public void testRingBuffer()
+  {
+    slowQueryLog.store(query("a", 1000));
+    slowQueryLog.store(query("b", 2000));
+    slowQueryLog.store(query("c", 3000));
+
+    // the oldest query was overwritten
+    List<SlowQuery> queries = slowQueryLog.list();
+    assertEquals(2, queries.size());
+    assertEquals("c", queries.get(0).getAql());
+    assertEquals("b", queries.get(1).getAql());
+    assertEquals(Arrays.asList("pcc2"), queries.get(0).getCorpora());
+
+    // a new log continues after the newest file
+    new File(dir, "slow-query-0.xml").setLastModified(3000000);
+    new File(dir, "slow-query-1.xml").setLastModified(2000000);
+    SlowQueryLog other = new SlowQueryLog();
+    other.setDirectory(dir.getAbsolutePath());
+    other.setCapacity(2);
+    other.init();
+    other.store(query("d", 4000));
+    queries = other.list();
+    assertEquals("d", queries.get(0).getAql());
+    assertEquals("c", queries.get(1).getAql());
+    other.destroy();
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testTimedOutQuery() throws Exception
+  {
+    final Connection con = mock(Connection.class);
+    Statement stmt = mock(Statement.class);
+    ResultSet rs = mock(ResultSet.class);
+    when(con.createStatement()).thenReturn(stmt);
+    when(stmt.executeQuery(anyString())).thenReturn(rs);
+    when(rs.next()).thenReturn(true, false);
+    when(rs.getString(1)).thenReturn("Seq Scan on facts");
+
+    JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    when(jdbcTemplate.execute(any(ConnectionCallback.class))).thenAnswer(
+      new Answer<Object>()
+    {
+      @Override
+      public Object answer(InvocationOnMock invocation) throws Throwable
+      {
+        return ((ConnectionCallback<?>) invocation.getArguments()[0]).
+          doInConnection(con);
+      }
+    });
+    slowQueryLog.setJdbcTemplate(jdbcTemplate);
+
+    assertTrue(slowQueryLog.offer(this, new QueryData(), "SELECT 1", 2000,
+      true));
+
+    List<SlowQuery> queries = slowQueryLog.list();
+    for (int i = 0; i < 500 && queries.isEmpty(); i++)
+    {
+      Thread.sleep(10);
+      queries = slowQueryLog.list();
+    }
+    assertEquals(1, queries.size());
+    assertTrue(queries.get(0).isTimedOut());
+    assertEquals(2000, queries.get(0).getDuration());
+
+    // the query is not executed again, it would run into the timeout as well
+    assertFalse(queries.get(0).isAnalyzed());
+    verify(stmt).executeQuery("EXPLAIN SELECT 1");
+    verify(stmt, never()).executeQuery(startsWith("EXPLAIN (ANALYZE"));
+  }
+
+  private static SlowQuery query(String aql, long time)
+  {
+    SlowQuery q = new SlowQuery();
+    q.setAql(aql);
+    q.setTime(new Date(time));
+    q.setCorpora(Arrays.asList("pcc2"));
+    q.setPlan("Seq Scan on facts");
+    return q;
+  }
+}
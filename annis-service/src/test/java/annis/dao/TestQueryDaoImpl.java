@@ -47,6 +47,7 @@ import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.SingleColumnRowMapper;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import annis.AnnisXmlContextLoader;
 import annis.model.Annotation;
@@ -61,6 +62,7 @@ import annis.sqlgen.ListCorpusAnnotationsSqlHelper;
 import annis.sqlgen.ListCorpusSqlHelper;
 import annis.sqlgen.SaltAnnotateExtractor;
 import annis.sqlgen.SqlGenerator;
+import annis.sqlgen.extensions.TimeoutQueryData;
 import annis.test.TestHelper;
 
 @RunWith(SpringJUnit4ClassRunner.class)
@@ -246,6 +248,27 @@ public class TestQueryDaoImpl
     verify(jdbcTemplate).update("SET statement_timeout TO " + timeout);
   }
 
+  @Test
+  public void transactionTimeout()
+  {
+    queryDao.setTimeout(100);
+    QueryData data = new QueryData();
+    data.addExtension(new TimeoutQueryData(5));
+
+    TransactionSynchronizationManager.setActualTransactionActive(true);
+    try
+    {
+      queryDao.modifySqlSession(jdbcTemplate, data);
+    }
+    finally
+    {
+      TransactionSynchronizationManager.setActualTransactionActive(false);
+    }
+
+    // the special timeout must not stay on the pooled connection
+    verify(jdbcTemplate).update("SET LOCAL statement_timeout TO 5");
+  }
+
   @Test
   public void noTimeout()
   {
@@ -259,6 +282,29 @@ public class TestQueryDaoImpl
     verifyNoMoreInteractions(jdbcTemplate);
   }
 
+  @Test
+  public void batchedTimeout()
+  {
+    queryDao.setTimeout(100);
+    queryDao.setBatchStatementTimeout(true);
+
+    // the timeout is not set in a separate statement
+    queryDao.modifySqlSession(jdbcTemplate, new QueryData());
+    verifyNoMoreInteractions(jdbcTemplate);
+
+    // no transaction is active, thus the timeout is set for the session
+    assertThat(queryDao.batchedSessionSettings(new QueryData()),
+      is("SET statement_timeout TO 100;"));
+
+    QueryData data = new QueryData();
+    data.addExtension(new TimeoutQueryData(5));
+    assertThat(queryDao.batchedSessionSettings(data),
+      is("SET statement_timeout TO 5;"));
+
+    queryDao.setTimeout(0);
+    assertThat(queryDao.batchedSessionSettings(new QueryData()), is(""));
+  }
+
   /**
    * Tests only an invalid corpus id.
    */
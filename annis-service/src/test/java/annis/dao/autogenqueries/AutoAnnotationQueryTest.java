@@ -0,0 +1,78 @@
+/*
+ * Copyright 2016 SFB 632.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package annis.dao.autogenqueries;
+
+import annis.service.objects.AnnisAttribute;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import org.junit.Test;
+
+/**
+ *
+ * @author Thomas Krause <krauseto@hu-berlin.de>
+ */
+public class AutoAnnotationQueryTest
+{
+
+  @Test
+  public void testPreferredAnnotation()
+  {
+    AutoAnnotationQuery q = new AutoAnnotationQuery();
+    q.setAnnotations(Arrays.asList(
+      attribute("tiger:cat", AnnisAttribute.Type.node, "S"),
+      attribute("tiger:pos", AnnisAttribute.Type.node, "NN"),
+      attribute("tiger:func", AnnisAttribute.Type.edge, "HD")));
+
+    assertEquals("tiger:pos=\"NN\"", q.getAQL());
+    assertEquals(q.getAQL(), q.getExampleQuery().getExampleQuery());
+  }
+
+  @Test
+  public void testEscapeValue()
+  {
+    AutoAnnotationQuery q = new AutoAnnotationQuery();
+    q.setAnnotations(Arrays.asList(
+      attribute("b", AnnisAttribute.Type.node, "\"quoted\""),
+      attribute("a", AnnisAttribute.Type.node)));
+
+    // annotations without values are ignored
+    assertEquals("b=\"\\\"quoted\\\"\"", q.getAQL());
+  }
+
+  @Test
+  public void testNoNodeAnnotation()
+  {
+    AutoAnnotationQuery q = new AutoAnnotationQuery();
+    q.setAnnotations(new ArrayList<AnnisAttribute>());
+    assertNull(q.getAQL());
+  }
+
+  private static AnnisAttribute attribute(String name, AnnisAttribute.Type type,
+    String... values)
+  {
+    AnnisAttribute a = new AnnisAttribute();
+    a.setName(name);
+    a.setType(type);
+    for (String v : values)
+    {
+      a.addValue(v);
+    }
+    return a;
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2016 SFB 632.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package annis.metrics;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Map;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ *
+ * @author Thomas Krause <krauseto@hu-berlin.de>
+ */
+public class MetricsRegistryTest
+{
+
+  @After
+  public void tearDown()
+  {
+    QueryTimer.stop();
+  }
+
+  @Test
+  public void testHistogram() throws IOException
+  {
+    MetricsRegistry registry = new MetricsRegistry();
+    Histogram h = registry.histogram("test_seconds", "Test.", "function");
+    assertSame(h, registry.histogram("test_seconds", "Test.", "function"));
+
+    h.observeMillis(500, "COUNT");
+    h.observeMillis(1000, "COUNT");
+    h.observeMillis(2500, "COUNT");
+    assertEquals(3, h.getCount("COUNT"));
+    assertEquals(0, h.getCount("FIND"));
+
+    StringWriter out = new StringWriter();
+    registry.write(out);
+    String text = out.toString();
+
+    assertTrue(text.startsWith("# HELP test_seconds Test.\n"
+      + "# TYPE test_seconds histogram\n"));
+    // buckets are cumulative
+    assertTrue(text.contains(
+      "test_seconds_bucket{function=\"COUNT\",le=\"0.005\"} 0\n"));
+    assertTrue(text.contains(
+      "test_seconds_bucket{function=\"COUNT\",le=\"0.5\"} 1\n"));
+    assertTrue(text.contains(
+      "test_seconds_bucket{function=\"COUNT\",le=\"1\"} 2\n"));
+    assertTrue(text.contains(
+      "test_seconds_bucket{function=\"COUNT\",le=\"2.5\"} 3\n"));
+    assertTrue(text.contains(
+      "test_seconds_bucket{function=\"COUNT\",le=\"+Inf\"} 3\n"));
+    assertTrue(text.contains("test_seconds_sum{function=\"COUNT\"} 4\n"));
+    assertTrue(text.contains("test_seconds_count{function=\"COUNT\"} 3\n"));
+  }
+
+  @Test
+  public void testEscapeLabel() throws IOException
+  {
+    StringWriter out = new StringWriter();
+    new PrometheusWriter(out).sample("m", 0.5, "l", "a\"b\\c");
+    assertEquals("m{l=\"a\\\"b\\\\c\"} 0.5\n", out.toString());
+  }
+
+  @Test
+  public void testOutcome()
+  {
+    assertEquals("success", QueryTimer.outcome(200));
+    assertEquals("success", QueryTimer.outcome(304));
+    assertEquals("client_error", QueryTimer.outcome(400));
+    assertEquals("error", QueryTimer.outcome(500));
+    // e.g. the database is not available
+    assertEquals("error", QueryTimer.outcome(503));
+    assertEquals("timeout", QueryTimer.outcome(504));
+  }
+
+  @Test
+  public void testQueryTimer()
+  {
+    // nothing is recorded without a timer
+    QueryTimer.record(QueryTimer.Stage.parse, 10);
+    assertNull(QueryTimer.current());
+
+    QueryTimer timer = QueryTimer.start(null);
+    QueryTimer.record(QueryTimer.Stage.parse, 10);
+    QueryTimer.record(QueryTimer.Stage.extract, 5);
+    QueryTimer.record(QueryTimer.Stage.extract, 7);
+    assertSame(timer, QueryTimer.stop());
+
+    Map<QueryTimer.Stage, Long> stages = timer.getStages();
+    assertEquals(Long.valueOf(10), stages.get(QueryTimer.Stage.parse));
+    assertEquals(Long.valueOf(12), stages.get(QueryTimer.Stage.extract));
+
+    // requests without a query function are not counted
+    MetricsRegistry registry = new MetricsRegistry();
+    timer.observe(registry, "success");
+
+    QueryTimer.start("FIND");
+    QueryTimer.record(QueryTimer.Stage.execute, 1);
+    QueryTimer.stop().observe(registry, "success");
+
+    // the function can be set after the timer was started
+    QueryTimer.start(null);
+    QueryTimer.setFunction("FIND");
+    QueryTimer.markRejected();
+    timer = QueryTimer.stop();
+    assertTrue(timer.isRejected());
+    timer.observe(registry, "rejected");
+
+    Histogram totalHistogram = registry.histogram(QueryTimer.TOTAL_METRIC, "",
+      "function", "outcome");
+    assertEquals(1, totalHistogram.getCount("FIND", "success"));
+    assertEquals(1, totalHistogram.getCount("FIND", "rejected"));
+    Histogram stageHistogram = registry.histogram(QueryTimer.STAGE_METRIC, "",
+      "function", "stage");
+    assertEquals(1, stageHistogram.getCount("FIND", "execute"));
+    assertEquals(2, stageHistogram.getCount("FIND", "serialize"));
+    assertEquals(0, stageHistogram.getCount("FIND", "parse"));
+  }
+}
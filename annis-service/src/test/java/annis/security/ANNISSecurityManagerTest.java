@@ -0,0 +1,112 @@
+/*
+ * Copyright 2016 SFB 632.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package annis.security;
+
+import com.google.common.io.Files;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.commons.io.FileUtils;
+import org.apache.shiro.authz.UnauthorizedException;
+import org.apache.shiro.subject.Subject;
+import org.junit.After;
+import static org.junit.Assert.assertEquals;
+import org.junit.Before;
+import org.junit.Test;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ *
+ * @author Thomas Krause <krauseto@hu-berlin.de>
+ */
+public class ANNISSecurityManagerTest
+{
+
+  private static final List<String> CORPORA = Arrays.asList("pcc2", "tiger",
+    "tiger2");
+
+  private File dir;
+
+  private ANNISUserConfigurationManager confManager;
+
+  private ANNISSecurityManager securityManager;
+
+  private Subject subject;
+
+  @Before
+  public void setUp() throws IOException
+  {
+    dir = Files.createTempDir();
+    new File(dir, "users").mkdirs();
+    Files.write("reader=pcc2,tiger\n", new File(dir, "groups"),
+      StandardCharsets.UTF_8);
+
+    confManager = new ANNISUserConfigurationManager();
+    confManager.setResourcePath(dir.getAbsolutePath());
+
+    securityManager = new ANNISSecurityManager();
+    securityManager.setConfManager(confManager);
+
+    subject = mock(Subject.class);
+    when(subject.getPrincipal()).thenReturn("user");
+    when(subject.isPermitted(anyString())).thenReturn(false);
+    when(subject.isPermitted("query:show:pcc2")).thenReturn(true);
+    when(subject.isPermitted("query:show:tiger")).thenReturn(true);
+  }
+
+  @After
+  public void tearDown() throws IOException
+  {
+    FileUtils.deleteDirectory(dir);
+  }
+
+  @Test
+  public void testCachedDecisions()
+  {
+    assertEquals(Arrays.asList("pcc2", "tiger"), securityManager.
+      filterPermittedCorpora(subject, "query:show:", CORPORA));
+    assertEquals(Arrays.asList("pcc2", "tiger"), securityManager.
+      filterPermittedCorpora(subject, "query:show:", CORPORA));
+
+    verify(subject, times(1)).isPermitted("query:show:pcc2");
+    verify(subject, times(1)).isPermitted("query:show:tiger2");
+  }
+
+  @Test
+  public void testInvalidateOnChange()
+  {
+    securityManager.filterPermittedCorpora(subject, "query:show:", CORPORA);
+
+    confManager.writeGroup(new Group("writer", "tiger2"));
+    securityManager.filterPermittedCorpora(subject, "query:show:", CORPORA);
+    verify(subject, times(2)).isPermitted("query:show:pcc2");
+  }
+
+  @Test(expected = UnauthorizedException.class)
+  public void testCheckMissingPermission()
+  {
+    doThrow(new UnauthorizedException()).when(subject).checkPermission(
+      "query:find:tiger2");
+    securityManager.checkPermittedCorpora(subject, "query:find:", CORPORA);
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2016 SFB 632.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package annis.service.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import org.junit.Test;
+
+/**
+ *
+ * @author Thomas Krause <krauseto@hu-berlin.de>
+ */
+public class AdmissionPoolTest
+{
+
+  @Test
+  public void testRejectWhenQueueFull()
+  {
+    AdmissionPool pool = new AdmissionPool("test", 1, 0, 1000);
+    AdmissionPool.Permit first = pool.acquire("a");
+    assertNotNull(first);
+    assertNull(pool.acquire("b"));
+
+    first.close();
+    // closing twice must not release a second slot
+    first.close();
+    assertNotNull(pool.acquire("b"));
+    assertNull(pool.acquire("c"));
+
+    assertEquals(2, pool.getStatus().getAdmitted());
+    assertEquals(2, pool.getStatus().getRejected());
+  }
+
+  @Test
+  public void testMaxWait()
+  {
+    AdmissionPool pool = new AdmissionPool("test", 1, 1, 50);
+    AdmissionPool.Permit first = pool.acquire("a");
+    assertNotNull(first);
+
+    assertNull(pool.acquire("a"));
+    assertEquals(0, pool.getStatus().getQueued());
+    assertEquals(1, pool.getStatus().getRejected());
+  }
+
+  @Test
+  public void testUsersInTurn() throws InterruptedException
+  {
+    final AdmissionPool pool = new AdmissionPool("test", 1, 10, 10000);
+    final List<String> order = Collections.synchronizedList(
+      new ArrayList<String>());
+
+    AdmissionPool.Permit running = pool.acquire("a");
+
+    List<Thread> threads = new ArrayList<>();
+    for (final String query : Arrays.asList("a1", "a2", "b1"))
+    {
+      Thread t = new Thread(new Runnable()
+      {
+        @Override
+        public void run()
+        {
+          try (AdmissionPool.Permit permit = pool.acquire(query.substring(0,
+            1)))
+          {
+            order.add(query);
+          }
+        }
+      });
+      t.start();
+      threads.add(t);
+      // wait until the query is queued, thus the order is known
+      while (pool.getStatus().getQueued() < threads.size())
+      {
+        Thread.sleep(1);
+      }
+    }
+
+    running.close();
+    for (Thread t : threads)
+    {
+      t.join();
+    }
+
+    // the second query of "a" has to wait for the one of "b"
+    assertEquals(Arrays.asList("a1", "b1", "a2"), order);
+    assertEquals(4, pool.getStatus().getCompleted());
+  }
+}
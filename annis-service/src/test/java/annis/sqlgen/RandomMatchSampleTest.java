@@ -0,0 +1,108 @@
+/*
+ * Copyright 2016 SFB 632.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package annis.sqlgen;
+
+import java.util.ArrayList;
+import static java.util.Arrays.asList;
+import java.util.Collections;
+import java.util.List;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+
+/**
+ *
+ * @author Thomas Krause <krauseto@hu-berlin.de>
+ */
+public class RandomMatchSampleTest
+{
+
+  private static final List<String> PATH = asList("pcc2", "4282");
+
+  @Test
+  public void shouldReturnSamePageForSameSeed() throws Exception
+  {
+    // given
+    List<String> ids = createIDs(1000);
+    List<String> shuffled = new ArrayList<>(ids);
+    Collections.shuffle(shuffled);
+    // when
+    List<String> page1 = sample(ids, 42L, 20, 10);
+    List<String> page2 = sample(shuffled, 42L, 20, 10);
+    // then
+    assertThat(page1.size(), is(10));
+    assertThat(page1, is(page2));
+  }
+
+  @Test
+  public void shouldReturnConsistentPages() throws Exception
+  {
+    // given
+    List<String> ids = createIDs(500);
+    // when
+    List<String> all = sample(ids, 7L, 0, -1);
+    List<String> pages = new ArrayList<>();
+    for (int offset = 0; offset < ids.size(); offset += 30)
+    {
+      pages.addAll(sample(ids, 7L, offset, 30));
+    }
+    // then
+    assertThat(all.size(), is(ids.size()));
+    assertThat(pages, is(all));
+    assertThat(all, is(not(ids)));
+  }
+
+  @Test
+  public void shouldUseSeed() throws Exception
+  {
+    // given
+    List<String> ids = createIDs(1000);
+    // then
+    assertThat(sample(ids, 1L, 0, 10), is(not(sample(ids, 2L, 0, 10))));
+  }
+
+  private static List<String> createIDs(int size)
+  {
+    List<String> ids = new ArrayList<>(size);
+    for (int i = 0; i < size; i++)
+    {
+      ids.add("tok_" + i);
+    }
+    return ids;
+  }
+
+  private static List<String> sample(List<String> ids, Long seed, int offset,
+    int limit) throws Exception
+  {
+    RandomMatchSample sample = new RandomMatchSample(seed, offset, limit);
+    for (String id : ids)
+    {
+      sample.match(PATH, asList(id), asList((String) null));
+    }
+    final List<String> result = new ArrayList<>();
+    sample.replay(new FindSqlGenerator.MatchHandler()
+    {
+      @Override
+      public void match(List<String> corpusPath, List<String> nodeNames,
+        List<String> annos)
+      {
+        result.add(nodeNames.get(0));
+      }
+    });
+    return result;
+  }
+}
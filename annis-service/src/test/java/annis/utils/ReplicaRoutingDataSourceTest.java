@@ -0,0 +1,204 @@
+/*
+ * Copyright 2016 SFB 632.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package annis.utils;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import javax.sql.DataSource;
+import org.junit.After;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.springframework.jdbc.datasource.ConnectionProxy;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ *
+ * @author Thomas Krause <krauseto@hu-berlin.de>
+ */
+public class ReplicaRoutingDataSourceTest
+{
+
+  private DataSource primary;
+
+  private Connection primaryCon;
+
+  private DataSource replica1;
+
+  private Connection replica1Con;
+
+  private DataSource replica2;
+
+  private Connection replica2Con;
+
+  private ReplicaRoutingDataSource routing;
+
+  private double lag;
+
+  @Before
+  public void setUp() throws SQLException
+  {
+    primary = mock(DataSource.class);
+    primaryCon = mock(Connection.class);
+    when(primary.getConnection()).thenReturn(primaryCon);
+
+    replica1 = mock(DataSource.class);
+    replica1Con = mock(Connection.class);
+    when(replica1.getConnection()).thenReturn(replica1Con);
+
+    replica2 = mock(DataSource.class);
+    replica2Con = mock(Connection.class);
+    when(replica2.getConnection()).thenReturn(replica2Con);
+
+    routing = new ReplicaRoutingDataSource()
+    {
+      @Override
+      protected double queryLag(Connection con) throws SQLException
+      {
+        return lag;
+      }
+    };
+    routing.setPrimary(primary);
+    routing.addReplica("replica1", replica1);
+    routing.addReplica("replica2", replica2);
+  }
+
+  @After
+  public void tearDown()
+  {
+    TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+  }
+
+  @Test
+  public void testWritesUsePrimary() throws SQLException
+  {
+    // replicas are only used after they were checked
+    TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+    assertSame(primaryCon, routing.getConnection());
+
+    markHealthy();
+    TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+    assertSame(primaryCon, routing.getConnection());
+  }
+
+  @Test
+  public void testLeastOutstanding() throws SQLException
+  {
+    markHealthy();
+    TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+    Connection first = routing.getConnection();
+    Connection second = routing.getConnection();
+    Connection firstTarget = ((ConnectionProxy) first).getTargetConnection();
+    Connection secondTarget = ((ConnectionProxy) second).getTargetConnection();
+    assertSame(replica1Con == firstTarget ? replica2Con : replica1Con,
+      secondTarget);
+
+    // the replica of the closed connection has less outstanding connections
+    first.close();
+    // the first close was done by the health check
+    verify(firstTarget, times(2)).close();
+    for (int i = 0; i < 3; i++)
+    {
+      Connection c = routing.getConnection();
+      assertSame(firstTarget, ((ConnectionProxy) c).getTargetConnection());
+      c.close();
+    }
+  }
+
+  @Test
+  public void testLaggingReplica() throws SQLException
+  {
+    markHealthy();
+    lag = 60;
+    routing.setMaxLag(30);
+    routing.checkHealth();
+
+    TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+    assertSame(primaryCon, routing.getConnection());
+
+    // the replicas caught up
+    markHealthy();
+    assertTrue(routing.getConnection() instanceof ConnectionProxy);
+  }
+
+  @Test
+  public void testUnreachableReplica() throws SQLException
+  {
+    markHealthy();
+    when(replica1.getConnection()).thenThrow(new SQLException("down"));
+    when(replica2.getConnection()).thenThrow(new SQLException("down"));
+
+    TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+    assertSame(primaryCon, routing.getConnection());
+  }
+
+  @Test
+  public void testUnreachableReplicaWithCredentials() throws SQLException
+  {
+    Connection userCon = mock(Connection.class);
+    when(primary.getConnection("user", "pass")).thenReturn(userCon);
+    markHealthy();
+    when(replica1.getConnection("user", "pass")).thenThrow(new SQLException(
+      "down"));
+    when(replica2.getConnection("user", "pass")).thenThrow(new SQLException(
+      "down"));
+
+    TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+    assertSame(userCon, routing.getConnection("user", "pass"));
+  }
+
+  @Test
+  public void testOnPrimary() throws SQLException
+  {
+    markHealthy();
+    TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+    final List<Connection> connections = new ArrayList<>();
+    ReplicaRoutingDataSource.onPrimary(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        try
+        {
+          connections.add(routing.getConnection());
+        }
+        catch (SQLException ex)
+        {
+          throw new IllegalStateException(ex);
+        }
+      }
+    }).run();
+    assertSame(primaryCon, connections.get(0));
+
+    // the hint is removed after the task
+    assertTrue(routing.getConnection() instanceof ConnectionProxy);
+  }
+
+  private void markHealthy()
+  {
+    lag = 0;
+    routing.checkHealth();
+  }
+}
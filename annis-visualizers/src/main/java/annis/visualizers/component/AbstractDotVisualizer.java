@@ -21,15 +21,17 @@ import annis.libgui.visualizers.AbstractVisualizer;
 import annis.libgui.visualizers.VisualizerInput;
 import com.vaadin.server.StreamResource;
 import com.vaadin.ui.Embedded;
-import java.io.File;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.PipedInputStream;
-import java.io.PipedOutputStream;
 import java.util.Random;
-import org.apache.commons.io.FileUtils;
-import org.apache.commons.lang3.StringUtils;
+import javax.imageio.ImageIO;
 import org.slf4j.LoggerFactory;
 
 /**
@@ -44,118 +46,103 @@ public abstract class AbstractDotVisualizer extends AbstractVisualizer<ImagePane
   @Override
   public ImagePanel createComponent(final VisualizerInput visInput, VisualizationToggle visToggle)
   { 
-    try
-    {
-     
-      final PipedOutputStream out = new PipedOutputStream();
-      final PipedInputStream in = new PipedInputStream(out);
-      
-      
-      new Thread(new Runnable()
+    String fileName = "dotvis_" 
+      + new Random().nextInt(Integer.MAX_VALUE) + ".png";
+    StreamResource resource = new StreamResource(new StreamResource.StreamSource()
       {
+
         @Override
-        public void run()
+        public InputStream getStream()
         {
-          writeOutput(visInput, out);
+          // the image is rendered (or fetched from the cache) when the browser
+          // actually requests it
+          return new ByteArrayInputStream(renderImage(visInput));
         }
-      }).start();
-
-       String fileName = "dotvis_" 
-        + new Random().nextInt(Integer.MAX_VALUE) + ".png";
-      StreamResource resource = new StreamResource(new StreamResource.StreamSource()
-        {
+      }, fileName);
 
-          @Override
-          public InputStream getStream()
-          {
-            return in;
-          }
-        }, fileName);
-      
-      Embedded emb = new Embedded("", resource);
-      emb.setMimeType("image/png");
-      emb.setSizeFull();
-      emb.setStandby("loading image");
-      emb.setAlternateText("DOT graph visualization");
-      return new ImagePanel(emb);
+    Embedded emb = new Embedded("", resource);
+    emb.setMimeType("image/png");
+    emb.setSizeFull();
+    emb.setStandby("loading image");
+    emb.setAlternateText("DOT graph visualization");
+    return new ImagePanel(emb);
+  }
 
+  public void writeOutput(VisualizerInput input, OutputStream outstream)
+  {
+    try
+    {
+      outstream.write(renderImage(input));
     }
     catch (IOException ex)
     {
       log.error(null, ex);
     }
-    return new ImagePanel(new Embedded());
   }
+  
+  /**
+   * Creates the dot content and renders it as PNG image using the shared
+   * {@link DotRenderService}.
+   *
+   * @param input
+   * @return The PNG image or an image with an error message if rendering
+   * failed.
+   */
+  protected byte[] renderImage(VisualizerInput input)
+  {
+    StringBuilder dotContent = new StringBuilder();
+    createDotContent(input, dotContent);
 
-  public void writeOutput(VisualizerInput input, OutputStream outstream)
+    String dotPath = input.getMappings().getProperty("dotpath", "dot");
+    try
+    {
+      return DotRenderService.getInstance().render(dotPath, "png",
+        dotContent.toString(), input.getMappings());
+    }
+    catch (IOException ex)
+    {
+      log.error("Could not render dot graph", ex);
+      return createErrorImage(
+        "Could not render the graph, please check if dot is installed ("
+        + dotPath + ").");
+    }
+  }
+
+  /**
+   * Creates a PNG image which displays an error message.
+   *
+   * @param message
+   * @return
+   */
+  protected static byte[] createErrorImage(String message)
   {
-    
-    StringBuilder dot = new StringBuilder();
-   
+    BufferedImage image = new BufferedImage(Math.max(200, 7 * message.length()
+      + 20), 30, BufferedImage.TYPE_INT_RGB);
+    Graphics2D g = image.createGraphics();
     try
     {
-      File tmpInput = File.createTempFile("annis-dot-input", ".dot");
-      tmpInput.deleteOnExit();
-      
-      // write out input file
-      StringBuilder dotContent = new StringBuilder();
-      createDotContent(input, dotContent);
-      FileUtils.writeStringToFile(tmpInput, dotContent.toString());
-     
-      // execute dot
-      String dotPath = input.getMappings().getProperty("dotpath", "dot");
-      ProcessBuilder pBuilder = new ProcessBuilder(dotPath,
-          "-Tpng", 
-        tmpInput.getCanonicalPath());
-     
-      
-      pBuilder.redirectErrorStream(false);
-      Process process = pBuilder.start();
-     
-      try (InputStream inputFromProcess = process.getInputStream())
-      {
-        for(int chr=inputFromProcess.read(); chr != -1; chr = inputFromProcess.read())
-        {
-          outstream.write(chr);
-        }
-      }
-      
-      int resultCode = process.waitFor();
-      
-      if(resultCode != 0)
-      {  
-        InputStream stderr = process.getErrorStream();
-        StringBuilder errorMessage = new StringBuilder();
-        
-        for(int chr=stderr.read(); chr != -1; chr = stderr.read())
-        {
-          errorMessage.append((char) chr);
-        }
-        if (!"".equals(errorMessage.toString()))
-        {
-          log.error(
-            "Could not execute dot graph-layouter.\ncommand line:\n{}\n\nstderr:\n{}\n\nstdin:\n{}",
-            new Object[]
-            {
-              StringUtils.join(pBuilder.command(), " "), 
-              errorMessage.toString(), dot.toString()
-            });
-        }
-      }
-      
-      
-      // cleanup
-      if(!tmpInput.delete())
-      {
-        log.warn("Cannot delete " + tmpInput.getAbsolutePath());
-      }
+      g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING,
+        RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+      g.setColor(Color.WHITE);
+      g.fillRect(0, 0, image.getWidth(), image.getHeight());
+      g.setColor(Color.RED);
+      g.drawString(message, 10, 20);
+    }
+    finally
+    {
+      g.dispose();
+    }
 
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try
+    {
+      ImageIO.write(image, "png", out);
     }
-    catch (IOException | InterruptedException ex)
+    catch (IOException ex)
     {
       log.error(null, ex);
     }
-
+    return out.toByteArray();
   }
 
   public abstract void createDotContent(VisualizerInput input, StringBuilder sb);
@@ -42,7 +42,9 @@ public abstract class AbstractImageVisualizer extends AbstractVisualizer<ImagePa
     final ByteArrayOutputStream out = new ByteArrayOutputStream();
     writeOutput(visInput, out);
 
-    String fileName = "vis_" + UUID.randomUUID().toString() + ".png";
+    String contentType = getContentType(visInput);
+    String fileName = "vis_" + UUID.randomUUID().toString() + "." 
+      + getFileExtension(contentType);
     StreamResource resource = new StreamResource(new StreamResource.StreamSource()
       {
         @Override
@@ -53,7 +55,7 @@ public abstract class AbstractImageVisualizer extends AbstractVisualizer<ImagePa
       }, fileName);
 
     Embedded emb = new Embedded("", resource);
-    emb.setMimeType(getContentType());
+    emb.setMimeType(contentType);
     emb.setSizeUndefined();
     emb.setStandby("loading image");
     emb.setAlternateText("Visualization of the result");
@@ -63,6 +65,26 @@ public abstract class AbstractImageVisualizer extends AbstractVisualizer<ImagePa
   
   public abstract void writeOutput(VisualizerInput input, OutputStream outstream);
   public abstract String getContentType();
+  
+  /**
+   * Get the content type for a specific input. Visualizers that support 
+   * different output formats (e.g. selected by a mapping) can overwrite this.
+   * 
+   * @param input
+   * @return The content type, per default the one of {@link #getContentType() }
+   */
+  public String getContentType(VisualizerInput input)
+  {
+    return getContentType();
+  }
+  
+  private static String getFileExtension(String contentType)
+  {
+    // e.g. "image/png" -> "png" and "image/svg+xml" -> "svg"
+    String ext = contentType.substring(contentType.indexOf('/') + 1);
+    int plusIdx = ext.indexOf('+');
+    return plusIdx >= 0 ? ext.substring(0, plusIdx) : ext;
+  }
  
   
 }
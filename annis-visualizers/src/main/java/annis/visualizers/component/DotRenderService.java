@@ -0,0 +1,233 @@
+/*
+ * Copyright 2016 SFB 632.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package annis.visualizers.component;
+
+import com.google.common.base.Charsets;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Renders dot graphs to images by calling the external "dot" program.
+ *
+ * The produced images are cached by a hash over the dot source, the output
+ * format and the visualizer mappings. The number of dot processes that run at
+ * the same time is limited by a fixed size worker pool, so toggling many graph
+ * visualizers at once will not fork a process for each of them in parallel.
+ *
+ * @author Thomas Krause <krauseto@hu-berlin.de>
+ */
+public class DotRenderService
+{
+
+  private static final Logger log = LoggerFactory.getLogger(
+    DotRenderService.class);
+
+  /**
+   * Maximum size of all cached images in bytes. Can be overwritten with the
+   * system property "annis.dot.cachesize".
+   */
+  public static final long DEFAULT_CACHE_SIZE = 64l * 1024l * 1024l;
+
+  private static final DotRenderService instance = new DotRenderService(
+    Long.getLong("annis.dot.cachesize", DEFAULT_CACHE_SIZE),
+    Integer.getInteger("annis.dot.workers",
+      Runtime.getRuntime().availableProcessors()));
+
+  private final Cache<String, byte[]> cache;
+
+  private final ExecutorService workers;
+
+  public DotRenderService(long maxCacheSize, int numberOfWorkers)
+  {
+    this.cache = CacheBuilder.newBuilder()
+      .maximumWeight(maxCacheSize)
+      .weigher(new Weigher<String, byte[]>()
+      {
+        @Override
+        public int weigh(String key, byte[] value)
+        {
+          return value.length;
+        }
+      })
+      .recordStats()
+      .build();
+
+    this.workers = Executors.newFixedThreadPool(Math.max(1, numberOfWorkers),
+      new ThreadFactoryBuilder()
+      .setNameFormat("dot-render-%d")
+      .setDaemon(true)
+      .build());
+  }
+
+  public static DotRenderService getInstance()
+  {
+    return instance;
+  }
+
+  /**
+   * Get the rendered image for a dot graph, either from the cache or by
+   * executing the dot program.
+   *
+   * @param dotPath The path to the dot executable.
+   * @param format The output format as understood by dot (e.g. "png")
+   * @param dotContent The graph description in the dot language.
+   * @param mappings The visualizer mappings, which are part of the cache key.
+   * @return The rendered image.
+   * @throws IOException If dot could not be executed or failed. Failures are
+   * not cached.
+   */
+  public byte[] render(final String dotPath, final String format,
+    final String dotContent, Properties mappings) throws IOException
+  {
+    String key = createKey(dotPath, format, dotContent, mappings);
+    try
+    {
+      return cache.get(key, new Callable<byte[]>()
+      {
+        @Override
+        public byte[] call() throws Exception
+        {
+          return workers.submit(new Callable<byte[]>()
+          {
+            @Override
+            public byte[] call() throws Exception
+            {
+              return executeDot(dotPath, format, dotContent);
+            }
+          }).get();
+        }
+      });
+    }
+    catch (ExecutionException | UncheckedExecutionException ex)
+    {
+      Throwable cause = ex.getCause();
+      // the worker future wraps the actual cause once more
+      if (cause instanceof ExecutionException && cause.getCause() != null)
+      {
+        cause = cause.getCause();
+      }
+      throw new IOException("Could not render dot graph", cause);
+    }
+  }
+
+  public long getCacheSize()
+  {
+    return cache.size();
+  }
+
+  public double getCacheHitRate()
+  {
+    return cache.stats().hitRate();
+  }
+
+  public void invalidateCache()
+  {
+    cache.invalidateAll();
+  }
+
+  private static String createKey(String dotPath, String format,
+    String dotContent, Properties mappings)
+  {
+    Hasher hasher = Hashing.sha1().newHasher();
+    hasher.putString(dotPath, Charsets.UTF_8).putChar('\0');
+    hasher.putString(format, Charsets.UTF_8).putChar('\0');
+    if (mappings != null)
+    {
+      // sort the mapping names to get the same hash for the same mappings
+      for (String name : new TreeSet<>(mappings.stringPropertyNames()))
+      {
+        hasher.putString(name, Charsets.UTF_8).putChar('=');
+        hasher.putString(mappings.getProperty(name), Charsets.UTF_8).putChar(
+          '\0');
+      }
+    }
+    hasher.putString(dotContent, Charsets.UTF_8);
+    return hasher.hash().toString();
+  }
+
+  private static byte[] executeDot(String dotPath, String format,
+    String dotContent) throws IOException, InterruptedException
+  {
+    File tmpInput = File.createTempFile("annis-dot-input", ".dot");
+    File tmpError = File.createTempFile("annis-dot-error", ".txt");
+    tmpInput.deleteOnExit();
+    tmpError.deleteOnExit();
+    try
+    {
+      FileUtils.writeStringToFile(tmpInput, dotContent, "UTF-8");
+
+      ProcessBuilder pBuilder = new ProcessBuilder(dotPath,
+        "-T" + format,
+        tmpInput.getCanonicalPath());
+      // stderr is redirected to a file so a chatty dot can never block
+      // while we are still reading the image from stdout
+      pBuilder.redirectError(ProcessBuilder.Redirect.to(tmpError));
+      Process process = pBuilder.start();
+
+      ByteArrayOutputStream result = new ByteArrayOutputStream(64 * 1024);
+      try (InputStream inputFromProcess = process.getInputStream())
+      {
+        ByteStreams.copy(inputFromProcess, result);
+      }
+
+      int resultCode = process.waitFor();
+      if (resultCode != 0)
+      {
+        String errorMessage = FileUtils.readFileToString(tmpError, "UTF-8");
+        log.error(
+          "Could not execute dot graph-layouter.\ncommand line:\n{}\n\nstderr:\n{}\n\nstdin:\n{}",
+          new Object[]
+          {
+            StringUtils.join(pBuilder.command(), " "),
+            errorMessage, dotContent
+          });
+        throw new IOException("dot exited with code " + resultCode);
+      }
+      return result.toByteArray();
+    }
+    finally
+    {
+      if (!tmpInput.delete())
+      {
+        log.warn("Cannot delete " + tmpInput.getAbsolutePath());
+      }
+      if (!tmpError.delete())
+      {
+        log.warn("Cannot delete " + tmpError.getAbsolutePath());
+      }
+    }
+  }
+}
@@ -15,6 +15,8 @@
  */
 package annis.visualizers.component.tree;
 
+import java.util.Objects;
+
 public class LayoutOptions {
 	private final VerticalOrientation orientation;
 	private final HorizontalOrientation h_orientation;
@@ -31,4 +33,24 @@ public class LayoutOptions {
 	public HorizontalOrientation getHorizontalOrientation() {
 		return h_orientation;
 	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(orientation, h_orientation);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == null || getClass() != obj.getClass()) {
+			return false;
+		}
+		final LayoutOptions other = (LayoutOptions) obj;
+		return orientation == other.orientation
+				&& h_orientation == other.h_orientation;
+	}
+
+	@Override
+	public String toString() {
+		return orientation + "," + h_orientation;
+	}
 }
@@ -24,10 +24,13 @@ import annis.service.ifaces.AnnisResult;
 import annis.visualizers.component.AbstractImageVisualizer;
 import annis.visualizers.component.tree.backends.staticimg.AbstractImageGraphicsItem;
 import annis.visualizers.component.tree.backends.staticimg.Java2dBackend;
+import com.google.common.base.Charsets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.vaadin.ui.Notification;
 import edu.uci.ics.jung.graph.DirectedGraph;
 import java.awt.BasicStroke;
 import java.awt.Color;
+import java.awt.Dimension;
 import java.awt.Font;
 import java.awt.Graphics2D;
 import java.awt.RenderingHints;
@@ -37,15 +40,26 @@ import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Serializable;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import javax.imageio.ImageIO;
 import net.xeoh.plugins.base.annotations.PluginImplementation;
+import org.apache.batik.dom.GenericDOMImplementation;
+import org.apache.batik.svggen.SVGGraphics2D;
+import org.w3c.dom.Document;
 
 /**
  * Visualizes a constituent syntax tree.
@@ -61,6 +75,10 @@ import net.xeoh.plugins.base.annotations.PluginImplementation;
  * select span nodes with the corresponding annotations as terminal elements
  * instead of the default tokens.
  * </p>
+ * <p>
+ * If the mapping <b>format:svg</b> is given, the trees are rendered as SVG 
+ * instead of PNG, which can be scaled by the browser.
+ * </p>
  * @author Thomas Krause <krauseto@hu-berlin.de>
  */
 @PluginImplementation
@@ -72,10 +90,16 @@ public class TigerTreeVisualizer extends AbstractImageVisualizer
   private static final int TREE_DISTANCE = 40;
   private transient Java2dBackend backend;
   private final DefaultLabeler labeler;
-  private transient DefaultStyler styler;
-  private AnnisGraphTools graphtools;
   public static final String TERMINAL_NAME_KEY = "terminal_name";
   public static final String TERMINAL_NS_KEY = "terminal_ns";
+  public static final String FORMAT_KEY = "format";
+  
+  /**
+   * Bounded pool shared by all instances to layout and render the trees.
+   */
+  private static final ExecutorService workers = Executors.newFixedThreadPool(
+    Runtime.getRuntime().availableProcessors(),
+    new ThreadFactoryBuilder().setNameFormat("tree-layout-%d").setDaemon(true).build());
   
   public class DefaultStyler implements TreeElementStyler
   {
@@ -86,10 +110,12 @@ public class TigerTreeVisualizer extends AbstractImageVisualizer
     public static final int TOKEN_SPACING = 15;
     public static final int VEDGE_OVERLAP_THRESHOLD = 20;
     private final Java2dBackend backend;
+    private final AnnisGraphTools graphtools;
     
-    public DefaultStyler(Java2dBackend backend_)
+    public DefaultStyler(Java2dBackend backend_, AnnisGraphTools graphtools)
     {
       this.backend = backend_;
+      this.graphtools = graphtools;
     }
 
     public int getLabelPadding()
@@ -300,7 +326,8 @@ public class TigerTreeVisualizer extends AbstractImageVisualizer
   
   private void initTransients()
   {
-    styler = new DefaultStyler(getBackend());
+    // created eagerly, since the layout workers use it concurrently
+    backend = new Java2dBackend();
   }
   
   private void readObject(java.io.ObjectInputStream in) throws IOException, ClassNotFoundException
@@ -318,47 +345,149 @@ public class TigerTreeVisualizer extends AbstractImageVisualizer
   
   
   @Override
-  public void writeOutput(VisualizerInput input, OutputStream outstream)
+  public void writeOutput(final VisualizerInput input, OutputStream outstream)
   {
     AnnisResult result = input.getResult();
-    graphtools = new AnnisGraphTools(input);
+    // the graph tools and the styler belong to this single rendering, since
+    // the visualizer instance is shared between concurrent renderings
+    final AnnisGraphTools graphtools = new AnnisGraphTools(input);
+    final DefaultStyler styler = new DefaultStyler(getBackend(), graphtools);
+    final LayoutOptions options = new LayoutOptions(VerticalOrientation.TOP_ROOT, 
+      AnnisGraphTools.detectLayoutDirection(result.getGraph()));
+    
+    // layout the independent trees in parallel
+    List<Future<AbstractImageGraphicsItem>> layoutJobs = new LinkedList<>();
+    for(final DirectedGraph<AnnisNode, Edge> g : graphtools.getSyntaxGraphs())
+    {
+      if(g.getEdgeCount() > 0 && g.getVertexCount() > 0)
+      {
+        layoutJobs.add(workers.submit(new Callable<AbstractImageGraphicsItem>()
+        {
+          @Override
+          public AbstractImageGraphicsItem call() throws Exception
+          {
+            return createLayout(g, options, input, graphtools, styler);
+          }
+        }));
+      }
+    }
+    
     List<AbstractImageGraphicsItem> layouts = new LinkedList<AbstractImageGraphicsItem>();
 
     double width = 0;
     double maxheight = 0;
 
-    for(DirectedGraph<AnnisNode, Edge> g : graphtools.getSyntaxGraphs())
+    for(AbstractImageGraphicsItem item : waitForAll(layoutJobs))
     {
-      if(g.getEdgeCount() > 0 && g.getVertexCount() > 0)
-      {
-      
-        ConstituentLayouter<AbstractImageGraphicsItem> cl = new ConstituentLayouter<AbstractImageGraphicsItem>(
-          g, getBackend(), labeler, styler, input, graphtools);
-
-        AbstractImageGraphicsItem item = cl.createLayout(
-          new LayoutOptions(VerticalOrientation.TOP_ROOT, AnnisGraphTools.
-          detectLayoutDirection(result.getGraph())));
-
-        Rectangle2D treeSize = item.getBounds();
+      Rectangle2D treeSize = item.getBounds();
 
-        maxheight = Math.max(maxheight, treeSize.getHeight());
-        width += treeSize.getWidth();
-        layouts.add(item);
-      }
+      maxheight = Math.max(maxheight, treeSize.getHeight());
+      width += treeSize.getWidth();
+      layouts.add(item);
     }
     
-    BufferedImage image;
     if(width == 0 || maxheight == 0)
     {
       Notification.show("Can't generate tree visualization.", Notification.Type.WARNING_MESSAGE);
-      image = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
     }
-    else
+    
+    try
+    {
+      if(isSVG(input))
+      {
+        writeSVG(layouts, width, maxheight, outstream);
+      }
+      else
+      {
+        ImageIO.write(renderImage(layouts, width, maxheight), "png", outstream);
+      }
+    }
+    catch (IOException e)
+    {
+      throw new RuntimeException(e);
+    }
+  }
+  
+  private AbstractImageGraphicsItem createLayout(final DirectedGraph<AnnisNode, Edge> g,
+    final LayoutOptions options, final VisualizerInput input,
+    final AnnisGraphTools graphtools, final DefaultStyler styler) throws ExecutionException
+  {
+    return TreeLayoutCache.get(TreeLayoutCache.createKey(g, options, input),
+      new Callable<AbstractImageGraphicsItem>()
+      {
+        @Override
+        public AbstractImageGraphicsItem call() throws Exception
+        {
+          ConstituentLayouter<AbstractImageGraphicsItem> cl = new ConstituentLayouter<AbstractImageGraphicsItem>(
+            g, getBackend(), labeler, styler, input, graphtools);
+          return cl.createLayout(options);
+        }
+      });
+  }
+  
+  private BufferedImage renderImage(List<AbstractImageGraphicsItem> layouts, 
+    double width, final double maxheight)
+  {
+    if(width == 0 || maxheight == 0)
+    {
+      return new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+    }
+    
+    final int imageHeight = (int) (maxheight + 2 * TOP_MARGIN);
+    BufferedImage image = new BufferedImage(
+      (int) (width + (layouts.size() - 1) * TREE_DISTANCE + 2 * SIDE_MARGIN),
+      imageHeight, BufferedImage.TYPE_INT_ARGB);
+    
+    // rasterize each tree on its own (transparent) image in parallel, 
+    // including the margin around it
+    List<Future<BufferedImage>> renderJobs = new LinkedList<>();
+    for(final AbstractImageGraphicsItem item : layouts)
+    {
+      renderJobs.add(workers.submit(new Callable<BufferedImage>()
+      {
+        @Override
+        public BufferedImage call() throws Exception
+        {
+          Rectangle2D bounds = item.getBounds();
+          BufferedImage treeImage = new BufferedImage(
+            (int) (bounds.getWidth() + 2 * SIDE_MARGIN), imageHeight, 
+            BufferedImage.TYPE_INT_ARGB);
+          Graphics2D treeCanvas = createCanvas(treeImage);
+          treeCanvas.translate(SIDE_MARGIN, TOP_MARGIN + maxheight - bounds.getHeight());
+          renderTree(item, treeCanvas);
+          treeCanvas.dispose();
+          return treeImage;
+        }
+      }));
+    }
+    
+    Graphics2D canvas = createCanvas(image);
+    double xOffset = SIDE_MARGIN;
+    Iterator<AbstractImageGraphicsItem> itLayouts = layouts.iterator();
+    for(BufferedImage treeImage : waitForAll(renderJobs))
+    {
+      canvas.drawImage(treeImage, (int) xOffset - SIDE_MARGIN, 0, null);
+      xOffset += itLayouts.next().getBounds().getWidth() + TREE_DISTANCE;
+    }
+    canvas.dispose();
+    return image;
+  }
+  
+  private void writeSVG(List<AbstractImageGraphicsItem> layouts, 
+    double width, double maxheight, OutputStream outstream) throws IOException
+  {
+    Document doc = GenericDOMImplementation.getDOMImplementation()
+      .createDocument("http://www.w3.org/2000/svg", "svg", null);
+    SVGGraphics2D canvas = new SVGGraphics2D(doc);
+    canvas.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+    canvas.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+    
+    if(width > 0 && maxheight > 0)
     {
-      image = new BufferedImage(
+      canvas.setSVGCanvasSize(new Dimension(
         (int) (width + (layouts.size() - 1) * TREE_DISTANCE + 2 * SIDE_MARGIN),
-        (int) (maxheight + 2 * TOP_MARGIN), BufferedImage.TYPE_INT_ARGB);
-      Graphics2D canvas = createCanvas(image);
+        (int) (maxheight + 2 * TOP_MARGIN)));
+      
       double xOffset = SIDE_MARGIN;
       for(AbstractImageGraphicsItem item : layouts)
       {
@@ -370,14 +499,36 @@ public class TigerTreeVisualizer extends AbstractImageVisualizer
         canvas.setTransform(t);
       }
     }
+    
+    Writer writer = new OutputStreamWriter(outstream, Charsets.UTF_8);
+    canvas.stream(writer, true);
+    writer.flush();
+  }
+  
+  private static <T> List<T> waitForAll(List<Future<T>> jobs)
+  {
+    List<T> result = new ArrayList<>(jobs.size());
     try
     {
-      ImageIO.write(image, "png", outstream);
+      for(Future<T> f : jobs)
+      {
+        result.add(f.get());
+      }
     }
-    catch (IOException e)
+    catch (InterruptedException | ExecutionException ex)
     {
-      throw new RuntimeException(e);
+      for(Future<T> f : jobs)
+      {
+        f.cancel(true);
+      }
+      throw new RuntimeException(ex);
     }
+    return result;
+  }
+  
+  private boolean isSVG(VisualizerInput input)
+  {
+    return "svg".equalsIgnoreCase(input.getMappings().getProperty(FORMAT_KEY, "png"));
   }
 
   private void renderTree(AbstractImageGraphicsItem item, Graphics2D canvas)
@@ -418,12 +569,14 @@ public class TigerTreeVisualizer extends AbstractImageVisualizer
     return "image/png";
   }
 
+  @Override
+  public String getContentType(VisualizerInput input)
+  {
+    return isSVG(input) ? "image/svg+xml" : getContentType();
+  }
+
   private Java2dBackend getBackend()
   {
-    if(backend == null)
-    {
-      backend = new Java2dBackend();
-    }
     return backend;
   }
   
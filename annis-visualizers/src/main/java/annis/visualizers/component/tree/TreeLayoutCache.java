@@ -0,0 +1,179 @@
+/*
+ * Copyright 2016 SFB 632.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package annis.visualizers.component.tree;
+
+import annis.libgui.visualizers.VisualizerInput;
+import annis.model.AnnisNode;
+import annis.model.Annotation;
+import annis.model.Edge;
+import annis.visualizers.component.tree.backends.staticimg.AbstractImageGraphicsItem;
+import com.google.common.base.Charsets;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import edu.uci.ics.jung.graph.DirectedGraph;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Caches the layout of single constituent trees.
+ *
+ * The key of a layout is a hash over the content of the tree (nodes, edges,
+ * annotations and the matched nodes), the visualizer mappings and the
+ * {@link LayoutOptions}, which are everything the labeler and styler of the
+ * {@link TigerTreeVisualizer} depend on.
+ *
+ * @author Thomas Krause <krauseto@hu-berlin.de>
+ */
+public class TreeLayoutCache
+{
+
+  private static final Cache<String, AbstractImageGraphicsItem> cache
+    = CacheBuilder.newBuilder()
+    .maximumSize(Integer.getInteger("annis.tree.layoutcachesize", 500))
+    .recordStats()
+    .build();
+
+  /**
+   * Returns the cached layout or calculates a new one using the given loader.
+   *
+   * @param key A key as returned by
+   * {@link #createKey(edu.uci.ics.jung.graph.DirectedGraph, annis.visualizers.component.tree.LayoutOptions, annis.libgui.visualizers.VisualizerInput) }
+   * @param loader Calculates the layout if it is not in the cache.
+   * @return
+   * @throws ExecutionException
+   */
+  public static AbstractImageGraphicsItem get(String key,
+    Callable<AbstractImageGraphicsItem> loader) throws ExecutionException
+  {
+    return cache.get(key, loader);
+  }
+
+  public static double getHitRate()
+  {
+    return cache.stats().hitRate();
+  }
+
+  public static void invalidate()
+  {
+    cache.invalidateAll();
+  }
+
+  public static String createKey(DirectedGraph<AnnisNode, Edge> graph,
+    LayoutOptions options, VisualizerInput input)
+  {
+    Hasher hasher = Hashing.sha1().newHasher();
+
+    putString(hasher, options.toString());
+    putString(hasher, input.getNamespace());
+    for (String name : new TreeSet<>(input.getMappings().stringPropertyNames()))
+    {
+      putString(hasher, name);
+      putString(hasher, input.getMappings().getProperty(name));
+    }
+
+    Map<String, String> markables = input.getMarkableExactMap();
+
+    List<AnnisNode> nodes = new ArrayList<>(graph.getVertices());
+    Collections.sort(nodes, new Comparator<AnnisNode>()
+    {
+      @Override
+      public int compare(AnnisNode o1, AnnisNode o2)
+      {
+        return Long.compare(o1.getId(), o2.getId());
+      }
+    });
+    for (AnnisNode n : nodes)
+    {
+      hasher.putLong(n.getId());
+      hasher.putLong(n.getLeftToken());
+      hasher.putLong(n.getRightToken());
+      putString(hasher, n.getNamespace());
+      putString(hasher, n.getName());
+      putString(hasher, n.getSpannedText());
+      putString(hasher, markables == null ? null : markables.get("" + n.getId()));
+      putAnnotations(hasher, n.getNodeAnnotations());
+    }
+
+    List<Edge> edges = new ArrayList<>(graph.getEdges());
+    Collections.sort(edges, new Comparator<Edge>()
+    {
+      @Override
+      public int compare(Edge o1, Edge o2)
+      {
+        int result = Long.compare(o1.getSource().getId(), o2.getSource().getId());
+        if (result == 0)
+        {
+          result = Long.compare(o1.getDestination().getId(), o2.getDestination().getId());
+        }
+        if (result == 0)
+        {
+          result = Long.compare(o1.getPre(), o2.getPre());
+        }
+        return result;
+      }
+    });
+    for (Edge e : edges)
+    {
+      hasher.putLong(e.getSource().getId());
+      hasher.putLong(e.getDestination().getId());
+      putString(hasher, e.getEdgeType() == null ? null : e.getEdgeType().name());
+      putString(hasher, e.getNamespace());
+      putString(hasher, e.getName());
+      putAnnotations(hasher, e.getAnnotations());
+    }
+
+    return hasher.hash().toString();
+  }
+
+  private static void putAnnotations(Hasher hasher, Set<Annotation> annotations)
+  {
+    if (annotations != null)
+    {
+      TreeSet<String> sorted = new TreeSet<>();
+      for (Annotation a : annotations)
+      {
+        sorted.add(a.toString());
+      }
+      for (String a : sorted)
+      {
+        putString(hasher, a);
+      }
+    }
+  }
+
+  private static void putString(Hasher hasher, String value)
+  {
+    if (value == null)
+    {
+      hasher.putBoolean(false);
+    }
+    else
+    {
+      hasher.putBoolean(true);
+      hasher.putString(value, Charsets.UTF_8);
+    }
+    hasher.putChar('\0');
+  }
+}
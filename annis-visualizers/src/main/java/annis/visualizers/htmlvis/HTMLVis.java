@@ -231,6 +231,11 @@ public class HTMLVis extends AbstractVisualizer<Panel>
       {
         inStreamConfigRaw = response.getEntityInputStream();
       }
+      else
+      {
+        // releases the pooled connection
+        response.close();
+      }
     }
 
     if (inStreamConfigRaw == null)
@@ -279,6 +284,11 @@ public class HTMLVis extends AbstractVisualizer<Panel>
       {
         inStreamCSSRaw = response.getEntityInputStream();
       }
+      else
+      {
+        // releases the pooled connection
+        response.close();
+      }
     }
     if (inStreamCSSRaw != null)
     {
@@ -319,6 +329,11 @@ public class HTMLVis extends AbstractVisualizer<Panel>
       {
         inStreamJSONRaw = response.getEntityInputStream();
       }
+      else
+      {
+        // releases the pooled connection
+        response.close();
+      }
     }
     if (inStreamJSONRaw != null)
     {
@@ -33,10 +33,14 @@ import com.hp.gagawa.java.elements.Tr;
 import java.io.IOException;
 import java.io.Serializable;
 import java.io.Writer;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import net.xeoh.plugins.base.annotations.PluginImplementation;
 import org.apache.commons.codec.digest.DigestUtils;
@@ -44,7 +48,6 @@ import org.apache.commons.lang3.StringUtils;
 import org.corpus_tools.salt.common.SDocument;
 import org.corpus_tools.salt.common.SDocumentGraph;
 import org.corpus_tools.salt.common.SPointingRelation;
-import org.corpus_tools.salt.common.SStructuredNode;
 import org.corpus_tools.salt.common.STextualDS;
 import org.corpus_tools.salt.common.SToken;
 import org.corpus_tools.salt.core.SAnnotation;
@@ -83,31 +86,17 @@ public class CorefVisualizer extends WriterVisualizer
   long globalIndex;
   List<TReferent> referentList;
   List<TComponent> komponent;
-  HashMap<String, List<Long>> componentOfToken;
-  HashMap<String, List<String>> tokensOfNode; //ReferentOfToken
+  HashMap<String, BitSet> componentOfToken; // the set bits are the numbers of the components the token belongs to
+  HashMap<String, Set<String>> tokensOfNode; // cache of all tokens covered by a node
   HashMap<String, HashMap<Long, Integer>> referentOfToken; // the Long ist the Referend, the Integer means: { 0=incoming P-Edge, 1=outgoing P-Edge, 2=both(not used anymore)}
-  List<String> visitedNodes;
-  LinkedList<TComponenttype> componenttype; //used to save which Node (with outgoing "P"-Edge) gelongs to which component
   private HashMap<Integer, Integer> colorlist;
 
-  static class TComponenttype implements Serializable
-  {
-
-    String type;
-    List<String> nodeList;
-
-    TComponenttype()
-    {
-      type = "";
-      nodeList = new LinkedList<String>();
-    }
-  }
-
   static class TComponent implements Serializable
   {
 
     List<String> tokenList;
     String type;
+    String preparedTokenIDs; // lazily calculated by getPreparedTokenIDs()
 
     TComponent()
     {
@@ -234,13 +223,6 @@ public class CorefVisualizer extends WriterVisualizer
       body.setStyle("font-family: '" + StringUtils.join(fonts, "', '") + "';");
       
       //get Info
-      globalIndex = 0;
-      tokensOfNode = new HashMap<String, List<String>>();
-      referentList = new LinkedList<TReferent>();
-      komponent = new LinkedList<TComponent>();
-      referentOfToken = new HashMap<String, HashMap<Long, Integer>>();
-      componentOfToken = new HashMap<String, List<Long>>();
-      componenttype = new LinkedList<TComponenttype>();
       SDocument saltDoc = input.getDocument();
      
       SDocumentGraph saltGraph = saltDoc.getDocumentGraph();
@@ -249,80 +231,12 @@ public class CorefVisualizer extends WriterVisualizer
         body.setText("An Error occured: Could not get Graph of Result (Graph == null).");
         return;
       }
-      List<SRelation<SNode,SNode>> edgeList = saltGraph.getRelations();
-      if (edgeList == null)
+      if (saltGraph.getRelations() == null)
       {
         return;
       }
-
-      for (SRelation rawRel : edgeList)
-      {
-        if (includeEdge(rawRel, input.getNamespace()))
-        {
-          SPointingRelation rel = (SPointingRelation) rawRel;
-          
-          String relType = componentNameForRelation(rel);
-          
-          visitedNodes = new LinkedList<String>();
-          //got type for this?
-          boolean gotIt = false;
-          int componentnr;
-          for (componentnr = 0; componentnr < componenttype.size(); componentnr++)
-          {
-            if (componenttype.get(componentnr) != null && componenttype.get(componentnr).type != null 
-              && componenttype.get(componentnr).nodeList != null
-              && componenttype.get(componentnr).type.equals(relType) 
-              && componenttype.get(componentnr).nodeList.contains(rel.getSource().getId()))
-            {
-              gotIt = true;
-              break;
-            }
-          }
-          TComponent currentComponent;
-          TComponenttype currentComponenttype;
-          if (gotIt)
-          {
-            currentComponent = komponent.get(componentnr);
-            currentComponenttype = componenttype.get(componentnr);
-          }
-          else
-          {
-            currentComponenttype = new TComponenttype();
-            currentComponenttype.type = relType;
-            componenttype.add(currentComponenttype);
-            componentnr = komponent.size();
-            currentComponent = new TComponent();
-            currentComponent.type = relType;
-            currentComponent.tokenList = new LinkedList<String>();
-            komponent.add(currentComponent);
-            currentComponenttype.nodeList.add(rel.getSource().getId());
-          }
-          TReferent ref = new TReferent();
-          ref.annotations = new HashSet<SerializableAnnotation>();
-          for(SAnnotation anno : rel.getAnnotations())
-          {
-            ref.annotations.add(new SerializableAnnotation(anno));
-          }
-          ref.component = componentnr;
-          referentList.add(ref);
-
-          List<String> currentTokens = getAllTokens(rel.getSource(), componentNameForRelation(rel), 
-            currentComponenttype, componentnr, input.getNamespace());
-
-          setReferent(rel.getTarget(), globalIndex, 0);//neu
-          setReferent(rel.getSource(), globalIndex, 1);//neu
-
-          for (String s : currentTokens)
-          {
-            if (!currentComponent.tokenList.contains(s))
-            {
-              currentComponent.tokenList.add(s);
-            }
-          }
-
-          globalIndex++;
-        }
-      }
+      
+      computeComponents(saltGraph, input.getNamespace());
 
       colorlist = new HashMap<Integer, Integer>();
 
@@ -432,6 +346,7 @@ public class CorefVisualizer extends WriterVisualizer
     
     List<Long> prevpositions, listpositions;
     List<Long> finalpositions = null;
+    BitSet currentComponents;
     int maxlinkcount = 0;
     String lastId, currentId = null;
 
@@ -445,7 +360,8 @@ public class CorefVisualizer extends WriterVisualizer
       }
       lastId = currentId;
       currentId = tok.getId();
-      listpositions = componentOfToken.get(currentId);
+      currentComponents = componentOfToken.get(currentId);
+      listpositions = currentComponents == null ? null : toPositionList(currentComponents);
       List<Boolean> checklist = null;
 
       if (prevpositions == null && listpositions != null)
@@ -454,14 +370,15 @@ public class CorefVisualizer extends WriterVisualizer
       }
       else if (listpositions == null)
       {
-        finalpositions = new LinkedList<Long>();
+        finalpositions = new ArrayList<Long>();
       }
       else
       {
-        checklist = new LinkedList<Boolean>();
+        checklist = new ArrayList<Boolean>();
         for (int i = 0; prevpositions != null && i < prevpositions.size(); i++)
         {
-          if (listpositions.contains(prevpositions.get(i)))
+          long p = prevpositions.get(i);
+          if (p >= 0 && currentComponents.get((int) p))
           {
             checklist.add(true);
           }
@@ -470,10 +387,12 @@ public class CorefVisualizer extends WriterVisualizer
             checklist.add(false);
           }
         }
-        List<Long> remains = new LinkedList<Long>();
+        Set<Long> prevpositionSet = prevpositions == null 
+          ? null : new HashSet<Long>(prevpositions);
+        List<Long> remains = new ArrayList<Long>();
         for (int i = 0; i < listpositions.size(); i++)
         {
-          if (prevpositions != null && !prevpositions.contains(listpositions.get(i)))
+          if (prevpositionSet != null && !prevpositionSet.contains(listpositions.get(i)))
           {
             remains.add(listpositions.get(i));
           }
@@ -481,7 +400,7 @@ public class CorefVisualizer extends WriterVisualizer
 
         int minsize = checklist.size() + remains.size();
         int number = 0;
-        finalpositions = new LinkedList<Long>();
+        finalpositions = new ArrayList<Long>();
         for (int i = 0; i < minsize; i++)
         {
           if (prevpositions != null && checklist.size() > i && checklist.get(i).booleanValue())
@@ -545,14 +464,8 @@ public class CorefVisualizer extends WriterVisualizer
             if (!currentPositionComponent.equals(Long.MIN_VALUE) && komponent.size() > currentPositionComponent)
             {
               currentWriteComponent = komponent.get((int) (long) currentPositionComponent);
-              List<String> pi = currentWriteComponent.tokenList;
-              List<String> preparedPi = new LinkedList<String>();
-              for(String s : pi)
-              {
-                preparedPi.add(prepareID(s));
-              }
               currentType = currentWriteComponent.type;
-              left = StringUtils.join(preparedPi, ",");
+              left = getPreparedTokenIDs(currentWriteComponent);
               right = "" + currentPositionComponent + 1;
             }
             String annotations = getAnnotations(tok.getId(), currentPositionComponent);
@@ -571,16 +484,8 @@ public class CorefVisualizer extends WriterVisualizer
                   if (!currentPositionComponent2.equals(Long.MIN_VALUE) && komponent.size() > currentPositionComponent2)
                   {
                     currentWriteComponent2 = komponent.get((int) (long) currentPositionComponent2);
-                    List<String> pi2 = currentWriteComponent2.tokenList;
-                   
-                    // prepare each single ID
-                    List<String> preparedPi2 = new LinkedList<String>();
-                    for(String s : pi2)
-                    {
-                      preparedPi2.add(prepareID(s));
-                    }
                     currentType2 = currentWriteComponent2.type;
-                    left2 = StringUtils.join(preparedPi2, ",");
+                    left2 = getPreparedTokenIDs(currentWriteComponent2);
                     right2 = "" + currentPositionComponent2 + 1;
                     annotations2 = getAnnotations(tok.getId(), currentPositionComponent2);
                     pr = currentPositionComponent2;
@@ -753,100 +658,104 @@ public class CorefVisualizer extends WriterVisualizer
   }
 
   /**
-   * collects all Tokens of the component
-   * @param n SStructuredNode to start with
-   * @param name String that determines which component we search for
-   * @param c componenttype, that will include its Tokens
-   * @param cnr Number of the component
-   * @return List of Tokens
+   * Calculates the components (coreference chains) of the document graph.
+   * 
+   * All included pointing relations with the same type that share a node 
+   * belong to the same component. The components are found with a union-find 
+   * structure over the relation end points, the components are numbered in the
+   * order of the first relation that belongs to them.
+   * 
+   * @param saltGraph
+   * @param namespace Only relations of this layer are included.
    */
-  private List<String> getAllTokens(SStructuredNode n, String name, TComponenttype c, long cnr, String namespace)
+  void computeComponents(SDocumentGraph saltGraph, String namespace)
   {
-    List<String> result = null;
-    if (!visitedNodes.contains(n.getId()))
+    globalIndex = 0;
+    tokensOfNode = new HashMap<String, Set<String>>();
+    referentList = new ArrayList<TReferent>();
+    komponent = new ArrayList<TComponent>();
+    referentOfToken = new HashMap<String, HashMap<Long, Integer>>();
+    componentOfToken = new HashMap<String, BitSet>();
+    
+    // one disjoint-set structure per relation type
+    Map<String, UnionFind<String>> chainsByType = new HashMap<>();
+    List<SPointingRelation> relations = new ArrayList<>();
+    for (SRelation rawRel : saltGraph.getRelations())
     {
-      result = new LinkedList<String>();
-      visitedNodes.add(n.getId());
-      if (tokensOfNode.containsKey(n.getId()))
+      if (includeEdge(rawRel, namespace))
       {
-        for (String t : tokensOfNode.get(n.getId()))
+        SPointingRelation rel = (SPointingRelation) rawRel;
+        relations.add(rel);
+        
+        String relType = componentNameForRelation(rel);
+        UnionFind<String> chains = chainsByType.get(relType);
+        if(chains == null)
         {
-          result.add(t);
-          if (componentOfToken.get(t) == null)
-          {
-            List<Long> newlist = new LinkedList<Long>();
-            newlist.add(cnr);
-            componentOfToken.put(t, newlist);
-          }
-          else
-          {
-            if (!componentOfToken.get(t).contains(cnr))
-            {
-              componentOfToken.get(t).add(cnr);
-            }
-          }
+          chains = new UnionFind<>();
+          chainsByType.put(relType, chains);
         }
+        chains.union(rel.getSource().getId(), rel.getTarget().getId());
       }
-      else
+    }
+    
+    Map<String, Map<String, Integer>> componentOfChain = new HashMap<>();
+    List<Set<SNode>> nodesOfComponent = new ArrayList<>();
+    for(SPointingRelation rel : relations)
+    {
+      String relType = componentNameForRelation(rel);
+      String chain = chainsByType.get(relType).find(rel.getSource().getId());
+      
+      Map<String, Integer> componentOfChainForType = componentOfChain.get(relType);
+      if(componentOfChainForType == null)
       {
-        result = searchTokens(n, cnr);
-        if (result != null)
-        {
-          tokensOfNode.put(n.getId(), result);
-        }
+        componentOfChainForType = new HashMap<>();
+        componentOfChain.put(relType, componentOfChainForType);
       }
-      //get "P"-Edges!
-      List<SRelation<SNode,SNode>> outEdges = n.getGraph().getOutRelations(n.getId());
-      if(outEdges != null)
+      Integer componentnr = componentOfChainForType.get(chain);
+      if(componentnr == null)
       {
-        for (SRelation<? extends SNode,? extends SNode> e : outEdges)
-        {
-          if(includeEdge(e, namespace))
-          {
-            SPointingRelation rel = (SPointingRelation) e;
-            if (name.equals(componentNameForRelation(rel))
-              && !visitedNodes.contains(rel.getTarget().getId()))
-            {
-              c.nodeList.add(rel.getTarget().getId());
-              List<String> Med = getAllTokens(rel.getTarget(), 
-                name, c, cnr, namespace);
-              for (String l : Med)
-              {
-                if (result != null && !result.contains(l))
-                {
-                  result.add(l);
-                }
-              }
-            }
-          }
-        }
+        componentnr = komponent.size();
+        componentOfChainForType.put(chain, componentnr);
+        komponent.add(new TComponent(new ArrayList<String>(), relType));
+        nodesOfComponent.add(new LinkedHashSet<SNode>());
       }
-      List<SRelation<SNode,SNode>> inEdges = n.getGraph().getInRelations(n.getId());
-      if(inEdges != null)
+      nodesOfComponent.get(componentnr).add(rel.getSource());
+      nodesOfComponent.get(componentnr).add(rel.getTarget());
+      
+      TReferent ref = new TReferent();
+      for(SAnnotation anno : rel.getAnnotations())
+      {
+        ref.annotations.add(new SerializableAnnotation(anno));
+      }
+      ref.component = componentnr;
+      referentList.add(ref);
+      
+      setReferent(rel.getTarget(), globalIndex, 0);
+      setReferent(rel.getSource(), globalIndex, 1);
+      
+      globalIndex++;
+    }
+    
+    // collect the tokens of each component
+    for(int componentnr = 0; componentnr < komponent.size(); componentnr++)
+    {
+      Set<String> tokens = new LinkedHashSet<>();
+      for(SNode n : nodesOfComponent.get(componentnr))
       {
-        for (SRelation<? extends SNode,? extends SNode> e : inEdges)
+        tokens.addAll(searchTokens(n));
+      }
+      komponent.get(componentnr).tokenList.addAll(tokens);
+      for(String t : tokens)
+      {
+        BitSet components = componentOfToken.get(t);
+        if(components == null)
         {
-          if(includeEdge(e, namespace))
-          {
-            SPointingRelation rel = (SPointingRelation) e;
-            if (name.equals(componentNameForRelation(rel))
-              && !visitedNodes.contains(rel.getSource().getId()))
-            {
-              c.nodeList.add(rel.getSource().getId());
-              List<String> Med = getAllTokens(rel.getSource(), name, c, cnr, namespace);
-              for (String s : Med)
-              {
-                if (result != null && !result.contains(s))
-                {
-                  result.add(s);
-                }
-              }
-            }
-          }
+          components = new BitSet();
+          componentOfToken.put(t, components);
         }
+        components.set(componentnr);
       }
     }
-    return result;
   }
 
   /**
@@ -857,65 +766,37 @@ public class CorefVisualizer extends WriterVisualizer
    */
   private void setReferent(SNode n, long index, int value)
   {
-    if (n instanceof SToken)
+    for (String tokID : searchTokens(n))
     {
-      SToken tok = (SToken) n;
-      if (!referentOfToken.containsKey(tok.getId()))
+      HashMap<Long, Integer> referents = referentOfToken.get(tokID);
+      if (referents == null)
       {
-        HashMap<Long, Integer> newlist = new HashMap<Long, Integer>();
-        newlist.put(index, value);//globalindex?
-        referentOfToken.put(tok.getId(), newlist);
-      }
-      else
-      {
-        referentOfToken.get(tok.getId()).put(globalIndex, value);
-      }
-    }
-    else
-    {
-      List<SRelation<SNode,SNode>> outEdges = n.getGraph().getOutRelations(n.getId());
-      if(outEdges != null)
-      {
-        for (SRelation<? extends SNode,? extends SNode> edge : outEdges)
-        {
-          if(!(edge instanceof SPointingRelation))
-          {
-            if (edge.getSource() != null && edge.getTarget() != null)
-            {
-              setReferent(edge.getTarget(), index, value);
-            }
-          }
-        }
+        referents = new HashMap<Long, Integer>();
+        referentOfToken.put(tokID, referents);
       }
+      referents.put(index, value);
     }
   }
 
   /**
-   * Collects all Token dominated or covered by all outgoing Edges of AnnisNode a
+   * Collects all Token dominated or covered by all outgoing Edges of AnnisNode a.
+   * The result is cached for each node.
    * @param n
-   * @param cnr ComponentNumber this tokens will be added for
-   * @return List of Tokennumbers
+   * @return Set of token IDs
    */
-  private List<String> searchTokens(SNode n, long cnr)
+  private Set<String> searchTokens(SNode n)
   {
-    List<String> result = new LinkedList<String>();
+    Set<String> result = tokensOfNode.get(n.getId());
+    if (result != null)
+    {
+      return result;
+    }
+    
+    result = new LinkedHashSet<String>();
+    tokensOfNode.put(n.getId(), result);
     if (n instanceof SToken)
     {
       result.add(n.getId());
-      if (componentOfToken.get(n.getId()) == null)
-      {
-        List<Long> newlist = new LinkedList<Long>();
-        newlist.add(cnr);
-        componentOfToken.put(n.getId(), newlist);
-      }
-      else
-      {
-        List<Long> newlist = componentOfToken.get(n.getId());
-        if (!newlist.contains(cnr))
-        {
-          newlist.add(cnr);
-        }
-      }
     }
     else
     {
@@ -924,22 +805,39 @@ public class CorefVisualizer extends WriterVisualizer
       {
         for (SRelation<? extends SNode,? extends SNode> e : outgoing)
         {
-          if(!(e instanceof SPointingRelation) && e.getSource() instanceof SNode && e.getTarget() instanceof SNode)
+          if(!(e instanceof SPointingRelation) && e.getSource() != null && e.getTarget() != null)
           {
-            List<String> Med = searchTokens((SNode) e.getTarget(), cnr);
-            for (String s : Med)
-            {
-              if (!result.contains(s))
-              {
-                result.add(s);
-              }
-            }
+            result.addAll(searchTokens(e.getTarget()));
           }
         }
       }
     }
     return result;
   }
+  
+  private static List<Long> toPositionList(BitSet components)
+  {
+    List<Long> result = new ArrayList<>(components.cardinality());
+    for (int i = components.nextSetBit(0); i >= 0; i = components.nextSetBit(i + 1))
+    {
+      result.add((long) i);
+    }
+    return result;
+  }
+  
+  private String getPreparedTokenIDs(TComponent c)
+  {
+    if(c.preparedTokenIDs == null)
+    {
+      List<String> preparedIDs = new ArrayList<>(c.tokenList.size());
+      for(String s : c.tokenList)
+      {
+        preparedIDs.add(prepareID(s));
+      }
+      c.preparedTokenIDs = StringUtils.join(preparedIDs, ",");
+    }
+    return c.preparedTokenIDs;
+  }
 
   /**
    * Collects fitting annotations of an Token
@@ -1014,7 +912,7 @@ public class CorefVisualizer extends WriterVisualizer
    */
   private boolean connectionOf(String pre, String now, long currentComponent)
   {
-    List<Long> prel = new LinkedList<Long>(), nowl = new LinkedList<Long>();
+    Set<Long> prel = new HashSet<Long>(), nowl = new HashSet<Long>();
     if (!pre.equals(now) && referentOfToken.get(pre) != null && referentOfToken.get(now) != null)
     {
       for (long l : referentOfToken.get(pre).keySet())
@@ -1041,8 +939,8 @@ public class CorefVisualizer extends WriterVisualizer
         }
       }
     }
-    prel = new LinkedList<Long>();
-    nowl = new LinkedList<Long>();
+    prel = new HashSet<Long>();
+    nowl = new HashSet<Long>();
     if (!pre.equals(now) && referentOfToken.get(pre) != null && referentOfToken.get(now) != null)
     {
       for (long l : referentOfToken.get(pre).keySet())
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2016 SFB 632.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package annis.visualizers.iframe;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A disjoint-set forest with union by rank and path compression.
+ *
+ * Elements are added implicitly the first time they are used in
+ * {@link #find(java.lang.Object) } or
+ * {@link #union(java.lang.Object, java.lang.Object) }.
+ *
+ * @author Thomas Krause <krauseto@hu-berlin.de>
+ * @param <T> type of the elements
+ */
+class UnionFind<T>
+{
+
+  private final Map<T, T> parent = new HashMap<>();
+
+  private final Map<T, Integer> rank = new HashMap<>();
+
+  /**
+   * Finds the representative of the set the element belongs to.
+   *
+   * @param element
+   * @return
+   */
+  public T find(T element)
+  {
+    T root = parent.get(element);
+    if (root == null)
+    {
+      parent.put(element, element);
+      rank.put(element, 0);
+      return element;
+    }
+
+    // find the root without recursion, since chains can get very long
+    List<T> path = new ArrayList<>();
+    T current = element;
+    while (!root.equals(current))
+    {
+      path.add(current);
+      current = root;
+      root = parent.get(current);
+    }
+    // compress the path
+    for (T p : path)
+    {
+      parent.put(p, root);
+    }
+    return root;
+  }
+
+  /**
+   * Merges the sets of both elements.
+   *
+   * @param a
+   * @param b
+   * @return The representative of the merged set.
+   */
+  public T union(T a, T b)
+  {
+    T rootA = find(a);
+    T rootB = find(b);
+    if (rootA.equals(rootB))
+    {
+      return rootA;
+    }
+
+    int rankA = rank.get(rootA);
+    int rankB = rank.get(rootB);
+    if (rankA < rankB)
+    {
+      parent.put(rootA, rootB);
+      return rootB;
+    }
+    else if (rankA > rankB)
+    {
+      parent.put(rootB, rootA);
+      return rootA;
+    }
+    else
+    {
+      parent.put(rootB, rootA);
+      rank.put(rootA, rankA + 1);
+      return rootA;
+    }
+  }
+}
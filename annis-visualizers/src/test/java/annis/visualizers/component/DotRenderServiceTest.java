@@ -0,0 +1,85 @@
+/*
+ * Copyright 2016 SFB 632.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package annis.visualizers.component;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Properties;
+import javax.imageio.ImageIO;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Thomas Krause <krauseto@hu-berlin.de>
+ */
+public class DotRenderServiceTest
+{
+
+  private static final String MISSING_DOT = "/nonexistent/annis-test/dot";
+
+  private DotRenderService service;
+
+  @Before
+  public void setUp()
+  {
+    service = new DotRenderService(1024 * 1024, 1);
+  }
+
+  @Test
+  public void testFailureIsPropagated()
+  {
+    try
+    {
+      service.render(MISSING_DOT, "png", "digraph G { a -> b; }",
+        new Properties());
+      fail("rendering with a missing dot executable must fail");
+    }
+    catch (IOException ex)
+    {
+      assertNotNull(ex.getCause());
+    }
+  }
+
+  @Test
+  public void testFailureIsNotCached()
+  {
+    for (int i = 0; i < 2; i++)
+    {
+      try
+      {
+        service.render(MISSING_DOT, "png", "digraph G { a -> b; }", null);
+        fail("rendering with a missing dot executable must fail");
+      }
+      catch (IOException ex)
+      {
+        // expected
+      }
+    }
+    assertEquals(0, service.getCacheSize());
+  }
+
+  @Test
+  public void testErrorImage() throws IOException
+  {
+    byte[] png = AbstractDotVisualizer.createErrorImage("error");
+    assertNotNull(ImageIO.read(new ByteArrayInputStream(png)));
+  }
+
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2016 SFB 632.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package annis.visualizers.iframe;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import org.corpus_tools.salt.SaltFactory;
+import org.corpus_tools.salt.common.SDocumentGraph;
+import org.corpus_tools.salt.common.SPointingRelation;
+import org.corpus_tools.salt.common.SSpan;
+import org.corpus_tools.salt.common.SStructuredNode;
+import org.corpus_tools.salt.common.STextualDS;
+import org.corpus_tools.salt.common.SToken;
+import org.corpus_tools.salt.core.SLayer;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Thomas Krause <krauseto@hu-berlin.de>
+ */
+public class CorefVisualizerTest
+{
+
+  private CorefVisualizer vis;
+
+  @Before
+  public void setUp()
+  {
+    vis = new CorefVisualizer();
+  }
+
+  @Test
+  public void testComponentsPerType()
+  {
+    SDocumentGraph graph = createGraph(4);
+    SLayer layer = graph.getLayerByName("coref").get(0);
+    List<SSpan> spans = graph.getSpans();
+
+    addRelation(graph, layer, spans.get(1), spans.get(0), "anaphoric");
+    addRelation(graph, layer, spans.get(3), spans.get(1), "anaphoric");
+    addRelation(graph, layer, spans.get(2), spans.get(1), "bridging");
+
+    vis.computeComponents(graph, "coref");
+
+    assertEquals(2, vis.komponent.size());
+    assertEquals("anaphoric", vis.komponent.get(0).type);
+    assertEquals(3, vis.komponent.get(0).tokenList.size());
+    assertEquals("bridging", vis.komponent.get(1).type);
+    assertEquals(2, vis.komponent.get(1).tokenList.size());
+    assertEquals(3, vis.referentList.size());
+
+    // the second token is part of both components
+    SToken tok1 = graph.getSortedTokenByText().get(1);
+    assertEquals(2, vis.componentOfToken.get(tok1.getId()).cardinality());
+  }
+
+  @Test
+  public void testIgnoreOtherNamespace()
+  {
+    SDocumentGraph graph = createGraph(2);
+    SLayer otherLayer = SaltFactory.createSLayer();
+    otherLayer.setName("other");
+    graph.addLayer(otherLayer);
+    List<SSpan> spans = graph.getSpans();
+
+    addRelation(graph, otherLayer, spans.get(1), spans.get(0), "anaphoric");
+
+    vis.computeComponents(graph, "coref");
+
+    assertEquals(0, vis.komponent.size());
+    assertEquals(0, vis.componentOfToken.size());
+  }
+
+  /**
+   * Creates interleaved chains over a large synthetic document and checks
+   * that every token is assigned to the chain it belongs to.
+   */
+  @Test
+  public void testLargeDocument()
+  {
+    int numberOfToken = 20000;
+    int numberOfChains = 100;
+
+    SDocumentGraph graph = createGraph(numberOfToken);
+    SLayer layer = graph.getLayerByName("coref").get(0);
+    List<SSpan> spans = graph.getSpans();
+    for (int i = numberOfChains; i < spans.size(); i++)
+    {
+      addRelation(graph, layer, spans.get(i), spans.get(i - numberOfChains),
+        "anaphoric");
+    }
+
+    vis.computeComponents(graph, "coref");
+
+    assertEquals(numberOfChains, vis.komponent.size());
+    for (int c = 0; c < numberOfChains; c++)
+    {
+      assertEquals(numberOfToken / numberOfChains,
+        vis.komponent.get(c).tokenList.size());
+    }
+    assertEquals(numberOfToken, vis.componentOfToken.size());
+
+    List<SToken> token = graph.getSortedTokenByText();
+    for (int i = 0; i < numberOfToken; i++)
+    {
+      BitSet components = vis.componentOfToken.get(token.get(i).getId());
+      assertEquals(1, components.cardinality());
+      if (i >= numberOfChains)
+      {
+        // the token is in the same chain as the token it refers to
+        assertEquals(vis.componentOfToken.get(token.get(i - numberOfChains).
+          getId()), components);
+      }
+      else if (i > 0)
+      {
+        // the first token of each chain starts a different chain
+        assertNotEquals(vis.componentOfToken.get(token.get(i - 1).getId()),
+          components);
+      }
+    }
+  }
+
+  private static SDocumentGraph createGraph(int numberOfToken)
+  {
+    SDocumentGraph graph = SaltFactory.createSDocumentGraph();
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < numberOfToken; i++)
+    {
+      text.append("t ");
+    }
+    STextualDS textDS = graph.createTextualDS(text.toString());
+
+    List<SToken> token = new ArrayList<>(numberOfToken);
+    for (int i = 0; i < numberOfToken; i++)
+    {
+      token.add(graph.createToken(textDS, 2 * i, 2 * i + 1));
+    }
+    for (SToken t : token)
+    {
+      graph.createSpan(t);
+    }
+
+    SLayer layer = SaltFactory.createSLayer();
+    layer.setName("coref");
+    graph.addLayer(layer);
+
+    return graph;
+  }
+
+  private static void addRelation(SDocumentGraph graph, SLayer layer,
+    SStructuredNode source, SStructuredNode target, String type)
+  {
+    SPointingRelation rel = SaltFactory.createSPointingRelation();
+    rel.setSource(source);
+    rel.setTarget(target);
+    rel.setType(type);
+    graph.addRelation(rel);
+    layer.addRelation(rel);
+  }
+}